@@ -12,6 +12,13 @@ class Settings(BaseSettings):
     REDIS_DB: int = 0
     REDIS_MAX_CONNECTIONS: int = 100
     REDIS_SOCKET_TIMEOUT: int = 5
+    # 训练消息投递方式：pubsub 按通道 PUBLISH；stream 以 XADD 写入 REDIS_STREAM_KEY，由服务端消费组确认消费
+    # 与服务端 training.ingest.mode 取值一致（服务端默认同样读取 REDIS_INGEST_MODE）
+    REDIS_INGEST_MODE: str = "pubsub"
+    REDIS_STREAM_KEY: str = "task:experiment:stream"
+    # Stream 分片数：大于 1 时按 task_id % 分片数写入 REDIS_STREAM_KEY:{分片}，须与服务端 REDIS_STREAM_SHARDS 一致
+    REDIS_STREAM_SHARDS: int = 1
+    REDIS_STREAM_MAXLEN: int = 1000000
 
     # 智能助手配置（.env 中配置，OPENAI_API_KEY 必填）
     OPENAI_API_KEY: str = ""
@@ -14,6 +14,12 @@ class _FakeRedis:
         self.calls.append((channel, message))
         return 1
 
+    def xadd(self, name, fields, maxlen=None, approximate=True):
+        if self.should_fail:
+            raise RuntimeError("xadd failed")
+        self.calls.append((name, fields, maxlen, approximate))
+        return "1-0"
+
 
 def test_publish_round_should_return_true_and_publish_message():
     fake = _FakeRedis()
@@ -78,3 +84,38 @@ def test_publish_status_should_return_false_when_exception():
     ok = publisher.publish_status(1, "FAILED", "err")
     assert ok is False
 
+
+
+def test_publish_client_should_xadd_to_stream_in_stream_mode():
+    fake = _FakeRedis()
+    publisher = RedisPublisher(redis_client=fake, ingest_mode="stream")
+
+    ok = publisher.publish_client(2, 3, 4, {"f1_score": 0.45})
+
+    assert ok is True
+    assert len(fake.calls) == 1
+    key, fields, maxlen, approximate = fake.calls[0]
+    assert key == "task:experiment:stream"
+    assert fields["channel"] == "task:experiment:client:2"
+    assert json.loads(fields["payload"])["clientIndex"] == 4
+    assert maxlen > 0
+    assert approximate is True
+
+
+def test_publish_status_should_return_false_when_xadd_fails():
+    publisher = RedisPublisher(redis_client=_FakeRedis(should_fail=True), ingest_mode="stream")
+    ok = publisher.publish_status(1, "FAILED", "err")
+    assert ok is False
+
+
+def test_publish_round_should_xadd_to_task_shard_when_sharded(monkeypatch):
+    from config.settings import settings
+    monkeypatch.setattr(settings, "REDIS_STREAM_SHARDS", 4)
+    fake = _FakeRedis()
+    publisher = RedisPublisher(redis_client=fake, ingest_mode="stream")
+
+    assert publisher.publish_round(7, 0, {}) is True
+    assert publisher.publish_status(8, "SUCCESS") is True
+
+    assert fake.calls[0][0] == "task:experiment:stream:3"
+    assert fake.calls[1][0] == "task:experiment:stream:0"
@@ -4,6 +4,7 @@ from datetime import datetime
 from typing import Dict, Any
 
 from config.redis_conn import get_redis_client
+from config.settings import settings
 
 logger = logging.getLogger(__name__)
 
@@ -11,14 +12,53 @@ logger = logging.getLogger(__name__)
 class RedisPublisher:
     """Redis 消息发布器"""
 
-    def __init__(self, redis_client=None):
+    def __init__(self, redis_client=None, ingest_mode: str = None):
         """
         初始化 Redis 发布器
 
         Args:
             redis_client: Redis 客户端实例，如果为 None 则自动获取
+            ingest_mode: 投递方式 "pubsub" 或 "stream"，为 None 时取 settings.REDIS_INGEST_MODE
         """
         self.redis_client = redis_client or get_redis_client()
+        self.ingest_mode = ingest_mode or settings.REDIS_INGEST_MODE
+
+    @staticmethod
+    def _stream_key(task_id: int) -> str:
+        """
+        任务所在的 Stream key：单分片时为 REDIS_STREAM_KEY，否则按 task_id 取模追加分片序号，
+        同一任务的消息始终进入同一分片，由服务端持有该分片的节点按序消费
+
+        Args:
+            task_id: 任务 ID
+
+        Returns:
+            Stream key
+        """
+        shards = settings.REDIS_STREAM_SHARDS
+        if shards <= 1:
+            return settings.REDIS_STREAM_KEY
+        return f"{settings.REDIS_STREAM_KEY}:{task_id % shards}"
+
+    def _send(self, task_id: int, channel: str, payload: str) -> None:
+        """
+        按投递方式发送消息：pubsub 直接 PUBLISH 到 channel；
+        stream 将 channel 与 payload 一并 XADD 到任务所在分片的 Stream（近似 MAXLEN 裁剪），服务端确认后才算消费
+
+        Args:
+            task_id: 任务 ID
+            channel: 逻辑通道名
+            payload: JSON 消息体
+        """
+        if self.ingest_mode == "stream":
+            self.redis_client.xadd(
+                self._stream_key(task_id),
+                {"channel": channel, "payload": payload},
+                maxlen=settings.REDIS_STREAM_MAXLEN,
+                approximate=True,
+            )
+        else:
+            self.redis_client.publish(channel, payload)
 
     def publish_round(self, task_id: int, round_num: int, metrics: Dict[str, Any]) -> bool:
         """
@@ -44,7 +84,7 @@ class RedisPublisher:
                 "f1Score": metrics.get("f1_score"),
                 "timestamp": datetime.now().isoformat()
             }
-            self.redis_client.publish(channel, json.dumps(message))
+            self._send(task_id, channel, json.dumps(message))
             return True
         except Exception as e:
             logger.exception("Failed to publish round message: %s", e)
@@ -76,7 +116,7 @@ class RedisPublisher:
                 "f1Score": metrics.get("f1_score"),
                 "timestamp": datetime.now().isoformat()
             }
-            self.redis_client.publish(channel, json.dumps(message))
+            self._send(task_id, channel, json.dumps(message))
             return True
         except Exception as e:
             logger.exception("Failed to publish client message: %s", e)
@@ -102,7 +142,7 @@ class RedisPublisher:
                 "message": message,
                 "timestamp": datetime.now().isoformat()
             }
-            self.redis_client.publish(channel, json.dumps(status_message))
+            self._send(task_id, channel, json.dumps(status_message))
             return True
         except Exception as e:
             logger.exception("Failed to publish status message: %s", e)
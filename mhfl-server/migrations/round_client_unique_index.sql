@@ -0,0 +1,52 @@
+-- 为 scripts.sql 加入唯一索引之前建立的库补建 round(tid, round_num) 与 client(rid, client_index) 唯一索引，
+-- 新库直接执行 scripts.sql 即可，无需本脚本。Round/Client 写入改为按唯一键 upsert 后依赖这两个索引，升级服务前执行一次。
+-- 执行前停止 mhfl-server 的训练消息接入，避免去重期间写入新的重复行。
+--
+-- 旧版本先查后写，重复投递与多节点并发会留下重复行，建索引前先去重：
+--   轮次：每组 (tid, round_num) 保留一行——未删除优先，其次 update_time 最新，再次 id 最大；
+--         被去除轮次下的 Client 改挂到保留的轮次，再删除被去除的轮次。
+--   客户端：改挂后每组 (rid, client_index) 保留一行——未删除优先，其次 timestamp 最新，再次 id 最大。
+--
+-- is_deleted 处理：唯一索引不含 is_deleted，逻辑删除的行仍占用唯一键；
+-- 写入端的 upsert 命中逻辑删除行时将其恢复（is_deleted = 0, delete_time = null），同一键始终只有一行。
+
+start transaction;
+
+create temporary table round_dedup as
+select id, keep_id
+from (select id,
+             first_value(id) over (partition by tid, round_num
+                 order by is_deleted, update_time desc, id desc) as keep_id
+      from round) t
+where id <> keep_id;
+
+update client c
+    join round_dedup d on c.rid = d.id
+set c.rid = d.keep_id;
+
+delete r
+from round r
+         join round_dedup d on r.id = d.id;
+
+create temporary table client_dedup as
+select id
+from (select id,
+             row_number() over (partition by rid, client_index
+                 order by is_deleted, timestamp desc, id desc) as rn
+      from client) t
+where rn > 1;
+
+delete c
+from client c
+         join client_dedup d on c.id = d.id;
+
+commit;
+
+drop temporary table round_dedup;
+drop temporary table client_dedup;
+
+create unique index round_tid_round_num_uindex
+    on round (tid, round_num);
+
+create unique index client_rid_client_index_uindex
+    on client (rid, client_index);
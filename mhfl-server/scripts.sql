@@ -93,6 +93,10 @@ create table round
 )
     comment '轮次表';
 
+-- 唯一键不含 is_deleted：逻辑删除的行仍占用 (tid, round_num)，upsert 命中时将其恢复；已有库升级见 migrations/round_client_unique_index.sql
+create unique index round_tid_round_num_uindex
+    on round (tid, round_num);
+
 create table client
 (
     id           bigint auto_increment comment '客户端 ID'
@@ -114,6 +118,9 @@ create table client
 )
     comment '客户端表';
 
+create unique index client_rid_client_index_uindex
+    on client (rid, client_index);
+
 create table conversation
 (
     id            bigint auto_increment comment '会话 ID'
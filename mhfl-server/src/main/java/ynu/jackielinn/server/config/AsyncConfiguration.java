@@ -1,42 +1,57 @@
 package ynu.jackielinn.server.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
 
 import java.util.concurrent.Executor;
 
 /**
  * 线程池配置类。
- * 提供 trainingMessageExecutor，用于异步处理 Redis 训练消息（先写 MySQL，再推 WebSocket），
- * 避免阻塞 Redis 订阅线程。
+ * 提供 trainingMessageDispatcher，按 taskId 有序地异步处理 Redis 训练消息（先写 MySQL，再推 WebSocket），
+ * 避免阻塞 Redis 订阅线程；提供 websocketSendExecutor，异步写出各 WebSocket 会话的发送队列。
  */
 @Configuration
 public class AsyncConfiguration {
 
     /**
-     * 提供训练消息处理专用线程池，用于异步处理 Redis 训练消息（先写 MySQL，再推 WebSocket），
-     * 避免阻塞 Redis 订阅线程。核心 5、最大 20、队列 100，线程名前缀 training-message-。
+     * 提供训练消息有序派发器：按 taskId 映射到固定的单线程 lane，同一任务的消息按到达顺序处理（先写 MySQL，再推 WebSocket），
+     * 不同任务在各 lane 间并行，避免阻塞 Redis 订阅线程。lane 数默认取 CPU 核数，线程名前缀 training-message-。
+     * 依赖 clientWriteBuffer 与 taskStateTracker，使停机时派发器先处理完剩余消息，二者再在销毁时落库全部待写内容。
      *
-     * @return 用于训练消息处理的 Executor
+     * @param lanes             lane 数，小于 1 时取 CPU 核数
+     * @param laneQueueCapacity 每条 lane 的队列容量
+     * @return 用于训练消息处理的 TaskOrderedDispatcher
      */
-    @Bean(name = "trainingMessageExecutor")
-    public Executor trainingMessageExecutor() {
+    @Bean(name = "trainingMessageDispatcher", destroyMethod = "shutdown")
+    @DependsOn({"clientWriteBuffer", "taskStateTracker"})
+    public TaskOrderedDispatcher trainingMessageDispatcher(
+            @Value("${training.dispatcher.lanes:0}") int lanes,
+            @Value("${training.dispatcher.lane-queue-capacity:1000}") int laneQueueCapacity) {
+        int laneCount = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        // 关闭时最多等待 60 秒处理完已提交的消息
+        return new TaskOrderedDispatcher(laneCount, laneQueueCapacity, "training-message-", 60);
+    }
+
+    /**
+     * WebSocket 异步发送线程池：各会话的 SessionSendQueue 在此排空，训练消息处理线程只负责入队。
+     * 每个会话同一时刻至多提交一个排空任务，排队数不超过会话数，故队列不设上限；线程名前缀 ws-send-。
+     *
+     * @param threads 发送线程数
+     * @return 用于 WebSocket 发送的 Executor
+     */
+    @Bean(name = "websocketSendExecutor")
+    public ThreadPoolTaskExecutor websocketSendExecutor(@Value("${training.websocket.send-threads:4}") int threads) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        // 核心线程数，常驻池中
-        executor.setCorePoolSize(5);
-        // 最大线程数，任务多时再创建
-        executor.setMaxPoolSize(20);
-        // 队列容量，超过后才会创建超过核心数的线程
-        executor.setQueueCapacity(100);
-        // 线程名前缀，便于日志排查
-        executor.setThreadNamePrefix("training-message-");
-        // 关闭时等待已提交任务执行完
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("ws-send-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
-        // 最多等待时间（秒），超时后强制结束
-        executor.setAwaitTerminationSeconds(60);
-        executor.initialize();
+        executor.setAwaitTerminationSeconds(10);
         return executor;
     }
 
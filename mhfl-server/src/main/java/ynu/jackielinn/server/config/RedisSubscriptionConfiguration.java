@@ -1,14 +1,27 @@
 package ynu.jackielinn.server.config;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import ynu.jackielinn.server.listener.TrainingMessageListener;
+import ynu.jackielinn.server.utils.Const;
+import ynu.jackielinn.server.websocket.ClusterPushRelay;
+
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Redis 订阅相关配置。
  * 提供 RedisMessageListenerContainer，用于订阅训练消息 channel（round/client/status），
- * 与现有 Lettuce 连接工厂共用同一连接配置。
+ * 与现有 Lettuce 连接工厂共用同一连接配置；多节点部署时另建一个容器订阅推送转发通道 ws:relay 与推荐页缓存失效通道。
  */
 @Configuration
 public class RedisSubscriptionConfiguration {
@@ -16,15 +29,85 @@ public class RedisSubscriptionConfiguration {
     /**
      * 创建 Redis 消息监听容器，用于订阅训练相关 channel（round/client/status），
      * 与现有 Lettuce 连接工厂共用同一连接配置。
+     * 无论 channel 还是 pattern 订阅，消息都由单线程的 trainingSubscriptionExecutor 按到达顺序交给监听器，
+     * 避免容器默认的 SimpleAsyncTaskExecutor 每条消息新建线程、打乱同一任务消息进入有序派发器的顺序。
+     * training.ingest.mode=pubsub 且 training.ingest.pubsub.subscription=pattern 时启动即 PSUBSCRIBE task:experiment:*，
+     * 不再按任务动态增删 channel。
      *
      * @param redisConnectionFactory Lettuce 连接工厂，与 Redis 配置共用
+     * @param ingestMode             训练消息接入模式（pubsub/stream，与训练端 REDIS_INGEST_MODE 一致）
+     * @param subscription           pubsub 模式下的订阅方式（channel/pattern）
+     * @param messageListener        训练消息监听器
+     * @param subscriptionExecutor   订阅消息派发执行器
      * @return RedisMessageListenerContainer 监听容器实例
      */
     @Bean
     public RedisMessageListenerContainer redisMessageListenerContainer(
-            LettuceConnectionFactory redisConnectionFactory) {
+            LettuceConnectionFactory redisConnectionFactory,
+            @Value("${training.ingest.mode:pubsub}") String ingestMode,
+            @Value("${training.ingest.pubsub.subscription:channel}") String subscription,
+            TrainingMessageListener messageListener,
+            @Qualifier("trainingSubscriptionExecutor") ThreadPoolTaskExecutor subscriptionExecutor) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(redisConnectionFactory);
+        container.setTaskExecutor(subscriptionExecutor);
+        if ("pubsub".equals(ingestMode) && "pattern".equals(subscription)) {
+            container.addMessageListener(messageListener, new PatternTopic(Const.TASK_EXPERIMENT_PATTERN));
+        }
         return container;
     }
+
+    /**
+     * 多节点部署（training.cluster.enabled=true）时订阅推送转发通道 ws:relay 与推荐页缓存失效通道的监听容器。
+     * 监听器只解析并提交到有序派发器或清空本地缓存，不做阻塞操作，故在订阅线程上同步执行以保持发布顺序。
+     *
+     * @param redisConnectionFactory    Lettuce 连接工厂
+     * @param clusterPushRelay          推送转发监听器
+     * @param recommendCacheInvalidator 推荐页缓存失效监听器
+     * @return RedisMessageListenerContainer 监听容器实例
+     */
+    @Bean(name = "clusterRelayListenerContainer")
+    @ConditionalOnProperty(name = "training.cluster.enabled", havingValue = "true")
+    public RedisMessageListenerContainer clusterRelayListenerContainer(
+            LettuceConnectionFactory redisConnectionFactory,
+            ClusterPushRelay clusterPushRelay,
+            @Qualifier("recommendResultCache") MessageListener recommendCacheInvalidator) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.setTaskExecutor(new SyncTaskExecutor());
+        container.addMessageListener(clusterPushRelay, new ChannelTopic(Const.WS_RELAY_CHANNEL));
+        container.addMessageListener(recommendCacheInvalidator, new ChannelTopic(Const.RECOMMEND_CACHE_INVALIDATE_CHANNEL));
+        return container;
+    }
+
+    /**
+     * 训练消息订阅的派发执行器：单线程保证消息按到达顺序交给监听器，线程名前缀 training-subscription-。
+     * 队列有界，队满时阻塞 Redis 订阅线程直至腾出空间，既不为每条消息新建线程，也不打乱顺序或丢消息。
+     *
+     * @param queueCapacity 派发队列容量
+     * @return 订阅派发执行器
+     */
+    @Bean(name = "trainingSubscriptionExecutor")
+    public ThreadPoolTaskExecutor trainingSubscriptionExecutor(
+            @Value("${training.ingest.pubsub.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("training-subscription-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Training subscription executor is shut down");
+            }
+            try {
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for subscription queue", e);
+            }
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
 }
@@ -4,6 +4,7 @@ import jakarta.annotation.Resource;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.access.AccessDeniedException;
@@ -14,6 +15,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.expression.WebExpressionAuthorizationManager;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import ynu.jackielinn.server.dto.response.AuthorizeVO;
 import ynu.jackielinn.server.entity.Account;
@@ -25,6 +27,8 @@ import ynu.jackielinn.server.utils.JwtUtils;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 /**
  * 安全配置类，用于配置 Spring Security 的核心安全功能
@@ -44,6 +48,12 @@ public class SecurityConfiguration {
     @Resource
     private AccountService accountService;
 
+    /**
+     * 允许免认证抓取 /actuator/prometheus 的来源地址（IP 或 CIDR，逗号分隔），其余来源需管理员登录
+     */
+    @Value("${monitor.prometheus.allowed-ips:127.0.0.1,::1}")
+    private String prometheusAllowedIps;
+
     /**
      * 配置安全过滤链，定义了接口的权限控制规则、登录、登出逻辑以及会话管理策略
      *
@@ -54,11 +64,13 @@ public class SecurityConfiguration {
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         // 定义无需认证的公共路径
-        var publicPaths = new String[]{"/doc/**", "/auth/**", "/captcha/**", "/error/**", "/uploads/**", "/ws/**"};
+        var publicPaths = new String[]{"/doc/**", "/auth/**", "/captcha/**", "/error/**", "/uploads/**", "/ws/**",
+                "/actuator/health"};
         return http
                 // 配置接口访问权限
                 .authorizeHttpRequests(conf -> conf
                         .requestMatchers(publicPaths).permitAll() // 公共路径无需认证
+                        .requestMatchers("/actuator/prometheus").access(prometheusAccess()) // 指标仅限白名单地址或管理员
                         .requestMatchers("/api/*/admin/**").hasRole("admin")
                         .anyRequest().authenticated() // 其他路径需要认证
                 )
@@ -90,6 +102,20 @@ public class SecurityConfiguration {
                 .build();
     }
 
+    /**
+     * /actuator/prometheus 的访问规则：来源地址命中白名单，或已登录且为管理员
+     *
+     * @return 基于表达式的授权管理器
+     */
+    private WebExpressionAuthorizationManager prometheusAccess() {
+        String ipRules = Arrays.stream(prometheusAllowedIps.split(","))
+                .map(String::trim)
+                .filter(ip -> !ip.isEmpty())
+                .map(ip -> "hasIpAddress('" + ip + "')")
+                .collect(Collectors.joining(" or "));
+        return new WebExpressionAuthorizationManager(ipRules.isEmpty() ? "hasRole('admin')" : ipRules + " or hasRole('admin')");
+    }
+
     /**
      * 登录成功后的处理方法
      *
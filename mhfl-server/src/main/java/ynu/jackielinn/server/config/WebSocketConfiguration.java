@@ -4,11 +4,14 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import ynu.jackielinn.server.websocket.AdminTaskWebSocketHandler;
+import ynu.jackielinn.server.websocket.TaskMultiplexWebSocketHandler;
 import ynu.jackielinn.server.websocket.TaskWebSocketHandler;
 
 /**
- * WebSocket 配置：注册任务监控 WebSocket 端点 /ws/task/{taskId}。
- * 前端连接后可按 taskId 接收该任务的 Round/Client/Status 实时推送。
+ * WebSocket 配置：注册任务监控 WebSocket 端点 /ws/task/{taskId}、多路复用端点 /ws/tasks 与管理员实时任务流端点 /ws/admin/tasks。
+ * 前端连接后可按 taskId 接收该任务的 Round/Client/Status 实时推送；同时监控多个任务时用一条 /ws/tasks 连接按命令订阅；
+ * 管理员通过 /ws/admin/tasks 接收全部进行中任务的摘要。
  */
 @Configuration
 @EnableWebSocket
@@ -16,12 +19,21 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
 
     private final TaskWebSocketHandler taskWebSocketHandler;
 
-    public WebSocketConfiguration(TaskWebSocketHandler taskWebSocketHandler) {
+    private final TaskMultiplexWebSocketHandler taskMultiplexWebSocketHandler;
+
+    private final AdminTaskWebSocketHandler adminTaskWebSocketHandler;
+
+    public WebSocketConfiguration(TaskWebSocketHandler taskWebSocketHandler,
+                                  TaskMultiplexWebSocketHandler taskMultiplexWebSocketHandler,
+                                  AdminTaskWebSocketHandler adminTaskWebSocketHandler) {
         this.taskWebSocketHandler = taskWebSocketHandler;
+        this.taskMultiplexWebSocketHandler = taskMultiplexWebSocketHandler;
+        this.adminTaskWebSocketHandler = adminTaskWebSocketHandler;
     }
 
     /**
-     * 注册 WebSocket 处理器，将任务监控端点 /ws/task/{taskId} 与 TaskWebSocketHandler 绑定，
+     * 注册 WebSocket 处理器，将任务监控端点 /ws/task/{taskId} 与 TaskWebSocketHandler、
+     * 多路复用端点 /ws/tasks 与 TaskMultiplexWebSocketHandler、管理员端点 /ws/admin/tasks 与 AdminTaskWebSocketHandler 绑定，
      * 并允许所有来源的跨域连接。
      *
      * @param registry WebSocketHandlerRegistry，用于注册处理器与路径
@@ -30,5 +42,9 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(taskWebSocketHandler, "/ws/task/{taskId}")
                 .setAllowedOriginPatterns("*");
+        registry.addHandler(taskMultiplexWebSocketHandler, "/ws/tasks")
+                .setAllowedOriginPatterns("*");
+        registry.addHandler(adminTaskWebSocketHandler, "/ws/admin/tasks")
+                .setAllowedOriginPatterns("*");
     }
 }
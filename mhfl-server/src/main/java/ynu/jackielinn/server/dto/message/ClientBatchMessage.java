@@ -0,0 +1,29 @@
+package ynu.jackielinn.server.dto.message;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * WebSocket 客户端指标合并帧
+ * 一个合并间隔内同一任务的 Client 消息按 clientIndex 取最新值，合并为一帧推送给前端。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "WebSocket 客户端指标合并帧（服务端推送）")
+public class ClientBatchMessage {
+
+    @JsonProperty("taskId")
+    @Schema(description = "任务ID")
+    private Long taskId;
+
+    @Schema(description = "本帧包含的客户端指标，按 clientIndex 各取最新一条")
+    private List<ClientMessage> clients;
+}
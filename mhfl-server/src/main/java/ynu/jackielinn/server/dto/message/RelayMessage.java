@@ -0,0 +1,58 @@
+package ynu.jackielinn.server.dto.message;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ynu.jackielinn.server.common.Status;
+
+/**
+ * 节点间推送转发消息
+ * 任务持有节点推送一条 Round/Client/Client 合并帧/Status 后发布到 ws:relay，其他节点据此更新本地快照，
+ * 并以持有节点分配的 epoch/seq 推送给本节点的 WebSocket 连接。round/client/clients/status 四者只有一个非空。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "节点间推送转发消息（Redis ws:relay）")
+public class RelayMessage {
+
+    @Schema(description = "发布节点标识，节点忽略自己发布的消息")
+    private String node;
+
+    @JsonProperty("taskId")
+    @Schema(description = "任务ID")
+    private Long taskId;
+
+    @Schema(description = "轮次消息")
+    private RoundMessage round;
+
+    @Schema(description = "客户端消息")
+    private ClientMessage client;
+
+    @Schema(description = "客户端指标合并帧")
+    private ClientBatchMessage clients;
+
+    @Schema(description = "状态消息")
+    private StatusMessage status;
+
+    @Schema(description = "轮次处理后的任务状态，供管理员实时任务流使用")
+    private Status taskStatus;
+
+    @Schema(description = "轮次处理后的最佳 accuracy，供管理员实时任务流使用")
+    private Double bestAccuracy;
+
+    @Schema(description = "推送后是否关闭该任务的 WebSocket 连接（用户停止训练）")
+    private Boolean closeSessions;
+
+    @Schema(description = "发布节点推送该消息时的编号纪元，发布节点没有推送流时为空")
+    private String epoch;
+
+    @Schema(description = "发布节点推送该消息时分配的 seq，与 epoch 同时出现")
+    private Long seq;
+}
@@ -0,0 +1,27 @@
+package ynu.jackielinn.server.dto.message;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * WebSocket 订阅失败应答
+ * 多路复用连接的 subscribe 命令被拒绝（任务不存在、无权限、订阅数超限或命令非法）时回给该连接。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "WebSocket 订阅失败应答（服务端推送）")
+public class SubscriptionErrorMessage {
+
+    @JsonProperty("taskId")
+    @Schema(description = "任务ID，命令未携带时为空")
+    private Long taskId;
+
+    @Schema(description = "失败原因")
+    private String error;
+}
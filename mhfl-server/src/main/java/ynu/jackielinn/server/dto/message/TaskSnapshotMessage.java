@@ -0,0 +1,35 @@
+package ynu.jackielinn.server.dto.message;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * WebSocket 任务快照帧
+ * 认证通过后作为首帧推送：进行中任务最近的 Round 与各客户端最新指标，前端据此回填曲线，无需再查库。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "WebSocket 任务快照帧（服务端推送，认证后的首帧）")
+public class TaskSnapshotMessage {
+
+    @JsonProperty("taskId")
+    @Schema(description = "任务ID")
+    private Long taskId;
+
+    @Schema(description = "最近的 Round 指标，按 roundNum 升序")
+    private List<RoundMessage> rounds;
+
+    @Schema(description = "各客户端最新一条指标，按 clientIndex 升序")
+    private List<ClientMessage> clients;
+
+    @Schema(description = "快照是否覆盖任务自第 0 轮起的全部 Round；为 false 时前端需通过接口回填")
+    private Boolean complete;
+}
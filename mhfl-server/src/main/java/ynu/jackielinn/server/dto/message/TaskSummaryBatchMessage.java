@@ -0,0 +1,27 @@
+package ynu.jackielinn.server.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 管理员实时任务流帧
+ * 连接后的首帧为全部进行中任务（full=true），此后每个节拍只推送有变化的任务。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "管理员实时任务流帧（服务端推送）")
+public class TaskSummaryBatchMessage {
+
+    @Schema(description = "是否为全量帧；全量帧替换前端已有列表，增量帧按 taskId 合并")
+    private Boolean full;
+
+    @Schema(description = "任务摘要列表")
+    private List<TaskSummaryMessage> tasks;
+}
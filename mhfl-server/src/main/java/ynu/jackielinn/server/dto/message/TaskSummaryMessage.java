@@ -0,0 +1,33 @@
+package ynu.jackielinn.server.dto.message;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ynu.jackielinn.server.common.Status;
+
+/**
+ * 管理员实时任务流中的单个任务摘要
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "管理员实时任务摘要")
+public class TaskSummaryMessage {
+
+    @JsonProperty("taskId")
+    @Schema(description = "任务ID")
+    private Long taskId;
+
+    @Schema(description = "任务状态码，进入终态的任务推送最后一次后移出")
+    private Status status;
+
+    @Schema(description = "最新轮次编号")
+    private Integer roundNum;
+
+    @Schema(description = "目前最佳 accuracy")
+    private Double bestAccuracy;
+}
@@ -1,15 +1,16 @@
 package ynu.jackielinn.server.dto.response;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-
-import java.util.List;
+import ynu.jackielinn.server.utils.NanAsNullArraySerializer;
 
 /**
  * 推荐展示页-测试集曲线中单个算法的曲线数据。
+ * 曲线以 double[] 承载，缺失轮次为 NaN，序列化时写为 null。
  */
 @Data
 @Builder
@@ -24,27 +25,35 @@ public class RecommendCurveAlgorithmVO {
     @Schema(description = "算法名称")
     private String algorithmName;
 
-    @Schema(description = "accuracy 原始曲线")
-    private List<Double> accuracyRaw;
+    @Schema(description = "accuracy 原始曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] accuracyRaw;
 
-    @Schema(description = "precision 原始曲线")
-    private List<Double> precisionRaw;
+    @Schema(description = "precision 原始曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] precisionRaw;
 
-    @Schema(description = "recall 原始曲线")
-    private List<Double> recallRaw;
+    @Schema(description = "recall 原始曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] recallRaw;
 
-    @Schema(description = "f1 原始曲线")
-    private List<Double> f1Raw;
+    @Schema(description = "f1 原始曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] f1Raw;
 
-    @Schema(description = "accuracy 高斯平滑曲线")
-    private List<Double> accuracySmooth;
+    @Schema(description = "accuracy 高斯平滑曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] accuracySmooth;
 
-    @Schema(description = "precision 高斯平滑曲线")
-    private List<Double> precisionSmooth;
+    @Schema(description = "precision 高斯平滑曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] precisionSmooth;
 
-    @Schema(description = "recall 高斯平滑曲线")
-    private List<Double> recallSmooth;
+    @Schema(description = "recall 高斯平滑曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] recallSmooth;
 
-    @Schema(description = "f1 高斯平滑曲线")
-    private List<Double> f1Smooth;
+    @Schema(description = "f1 高斯平滑曲线，缺失轮次为 null")
+    @JsonSerialize(using = NanAsNullArraySerializer.class)
+    private double[] f1Smooth;
 }
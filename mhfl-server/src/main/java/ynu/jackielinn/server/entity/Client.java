@@ -44,4 +44,16 @@ public class Client extends BaseEntity {
     @TableField("timestamp")
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
     private LocalDateTime timestamp;
+
+    /**
+     * 所属任务 id，非表字段；仅由按任务批量查询各 client_index 最新记录时经 round 连接回填。
+     */
+    @TableField(exist = false)
+    private Long tid;
+
+    /**
+     * 所属轮次编号，非表字段；仅由按任务查询各 client_index 最新记录时经 round 连接回填。
+     */
+    @TableField(exist = false)
+    private Integer roundNum;
 }
@@ -0,0 +1,74 @@
+package ynu.jackielinn.server.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * WebSocket 压缩协商开关。
+ * Tomcat 在握手时只要客户端提供 Sec-WebSocket-Extensions: permessage-deflate 就会协商压缩，此后该连接的每个数据帧都经 deflate 压缩；
+ * 仅在 training.websocket.compression.enabled=false 时注册本过滤器，对 /ws/ 下的握手请求隐藏该请求头，使连接退回不压缩。
+ */
+@Component
+@ConditionalOnProperty(name = "training.websocket.compression.enabled", havingValue = "false")
+public class WebSocketCompressionFilter extends HttpFilter {
+
+    static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    /**
+     * /ws/ 下的请求隐藏扩展协商头后放行，其余请求直接放行。
+     *
+     * @param request  HttpServletRequest 对象，包含了客户端的请求信息
+     * @param response HttpServletResponse 对象，用于向客户端发送响应
+     * @param chain    FilterChain 对象，用于将请求传递给下一个过滤器或目标资源
+     * @throws IOException      如果在处理请求或响应时发生 I/O 错误
+     * @throws ServletException 如果在处理请求时发生 Servlet 异常
+     */
+    @Override
+    protected void doFilter(HttpServletRequest request,
+                            HttpServletResponse response,
+                            FilterChain chain) throws IOException, ServletException {
+        String uri = request.getRequestURI();
+        if (uri != null && uri.startsWith("/ws/") && request.getHeader(EXTENSIONS_HEADER) != null) {
+            chain.doFilter(new WithoutExtensionsRequest(request), response);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * 隐藏 Sec-WebSocket-Extensions 请求头的请求包装。
+     */
+    private static final class WithoutExtensionsRequest extends HttpServletRequestWrapper {
+
+        private WithoutExtensionsRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+                    .filter(name -> !EXTENSIONS_HEADER.equalsIgnoreCase(name))
+                    .toList());
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package ynu.jackielinn.server.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ynu.jackielinn.server.entity.Client;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
+import ynu.jackielinn.server.service.ClientService;
+import ynu.jackielinn.server.utils.Const;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client 指标写后缓冲（write-behind）。
+ * 按 taskId 暂存待写入的 Client 行，达到行数阈值或时间阈值后以一条多行 INSERT 落库；
+ * 同一任务的 flush 串行执行且按到达顺序写入，Round/终态消息处理前先 flush 该任务，保证提交顺序。
+ * 写库失败时整批放回缓冲队首，按指数退避重试；连续失败达到上限或停机时仍未写入的行追加到 OverflowSpool，
+ * 由 TrainingMessageListener 回放时放回缓冲重新写入，只有溢出文件也写入失败时才丢弃并计入指标。
+ */
+@Slf4j
+@Component
+public class ClientWriteBuffer {
+
+    @Resource
+    private ClientService clientService;
+
+    @Resource
+    private TrainingMetrics trainingMetrics;
+
+    @Resource
+    private OverflowSpool spool;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Value("${training.client-buffer.max-rows:500}")
+    private int maxRows = 500;
+
+    @Value("${training.client-buffer.flush-interval-ms:50}")
+    private long flushIntervalMs = 50;
+
+    @Value("${training.client-buffer.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${training.client-buffer.retry-backoff-ms:500}")
+    private long retryBackoffMs = 500;
+
+    @Value("${training.client-buffer.retry-backoff-max-ms:30000}")
+    private long retryBackoffMaxMs = 30000;
+
+    private final ConcurrentHashMap<Long, TaskBuffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * 单个任务的待写入行、首行入队时间与重试状态；flush 与追加均在该对象上同步，保证同一任务按序提交。
+     */
+    private static final class TaskBuffer {
+        private List<Client> rows = new ArrayList<>();
+        private long firstAddedAt;
+        private int failedAttempts;
+        private long retryAt;
+    }
+
+    /**
+     * 追加一条 Client 行；达到行数阈值且不在退避期内时立即在调用线程 flush 该任务。
+     *
+     * @param taskId 任务 id
+     * @param client 待写入的 Client（rid 已确定）
+     */
+    public void add(Long taskId, Client client) {
+        TaskBuffer buffer = buffers.computeIfAbsent(taskId, k -> new TaskBuffer());
+        synchronized (buffer) {
+            if (buffer.rows.isEmpty()) {
+                buffer.firstAddedAt = System.currentTimeMillis();
+            }
+            buffer.rows.add(client);
+            if (buffer.rows.size() >= maxRows && System.currentTimeMillis() >= buffer.retryAt) {
+                flushLocked(taskId, buffer);
+            }
+        }
+    }
+
+    /**
+     * 立即写入该任务缓冲中的全部行（Round 消息写库前调用，保证该轮 Client 先于轮次指标提交）。
+     *
+     * @param taskId 任务 id
+     * @return 此前缓冲的行均已落库返回 true；写库失败（行留在缓冲中重试或已被丢弃）返回 false
+     */
+    public boolean flush(Long taskId) {
+        TaskBuffer buffer = buffers.get(taskId);
+        if (buffer == null) {
+            return true;
+        }
+        synchronized (buffer) {
+            return flushLocked(taskId, buffer);
+        }
+    }
+
+    /**
+     * 写入该任务剩余行并移除其缓冲，用于任务到达终态时释放内存；写入失败时缓冲放回，由定时扫描继续重试。
+     *
+     * @param taskId 任务 id
+     * @return 剩余行均已落库返回 true，否则返回 false
+     */
+    public boolean flushAndRemove(Long taskId) {
+        TaskBuffer buffer = buffers.remove(taskId);
+        if (buffer == null) {
+            return true;
+        }
+        synchronized (buffer) {
+            boolean flushed = flushLocked(taskId, buffer);
+            if (!buffer.rows.isEmpty()) {
+                restore(taskId, buffer);
+            }
+            return flushed;
+        }
+    }
+
+    /**
+     * 把从溢出文件回放的行追加到该任务缓冲队尾，由定时扫描按常规批量写入。
+     *
+     * @param taskId 任务 id
+     * @param rows   回放的 Client 行
+     */
+    public void requeue(Long taskId, List<Client> rows) {
+        TaskBuffer buffer = buffers.computeIfAbsent(taskId, k -> new TaskBuffer());
+        synchronized (buffer) {
+            if (buffer.rows.isEmpty()) {
+                buffer.firstAddedAt = System.currentTimeMillis();
+            }
+            buffer.rows.addAll(rows);
+        }
+    }
+
+    /**
+     * 当前留有缓冲的任务。
+     *
+     * @return 任务 id 集合（快照）
+     */
+    public Set<Long> taskIds() {
+        return Set.copyOf(buffers.keySet());
+    }
+
+    /**
+     * 定时扫描：首行入队已超过时间阈值且退避期已过的任务缓冲立即 flush，保证低流量时写入延迟有上界。
+     */
+    @Scheduled(fixedDelayString = "${training.client-buffer.flush-interval-ms:50}")
+    public void flushExpired() {
+        long now = System.currentTimeMillis();
+        buffers.forEach((taskId, buffer) -> {
+            synchronized (buffer) {
+                if (!buffer.rows.isEmpty() && now - buffer.firstAddedAt >= flushIntervalMs && now >= buffer.retryAt) {
+                    flushLocked(taskId, buffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * 关闭前写入全部缓冲行（包括退避期内的），写入失败的行追加到溢出文件，避免停机丢失已推送但未落库的指标。
+     */
+    @PreDestroy
+    public void flushAll() {
+        buffers.forEach((taskId, buffer) -> {
+            synchronized (buffer) {
+                if (!flushLocked(taskId, buffer) && !buffer.rows.isEmpty()) {
+                    spool(taskId, buffer.rows);
+                    buffer.rows = new ArrayList<>();
+                }
+            }
+        });
+    }
+
+    /**
+     * 溢出文件中 Client 行记录的 channel：前缀 + taskId。
+     *
+     * @param taskId 任务 id
+     * @return channel 字节
+     */
+    public static byte[] spoolChannel(Long taskId) {
+        return (Const.CLIENT_ROWS_SPOOL + taskId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 在持有任务缓冲锁的前提下写入并清空缓冲。
+     * 写库失败时整批放回队首（保持到达顺序）并按指数退避推迟下次定时 flush；
+     * 连续失败达到 maxAttempts 次后把这批行追加到溢出文件，等待回放重新写入。
+     *
+     * @param taskId 任务 id
+     * @param buffer 任务缓冲
+     * @return 写入成功或无待写入行返回 true
+     */
+    private boolean flushLocked(Long taskId, TaskBuffer buffer) {
+        if (buffer.rows.isEmpty()) {
+            return true;
+        }
+        List<Client> batch = buffer.rows;
+        buffer.rows = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            clientService.saveClientBatch(batch);
+            buffer.failedAttempts = 0;
+            buffer.retryAt = 0;
+            trainingMetrics.recordClientFlush(start);
+            log.debug("Flushed {} client rows for task {}", batch.size(), taskId);
+            return true;
+        } catch (Exception e) {
+            buffer.failedAttempts++;
+            if (buffer.failedAttempts >= maxAttempts) {
+                log.error("Spooling {} client rows for task {} after {} failed attempts: {}",
+                        batch.size(), taskId, buffer.failedAttempts, e.getMessage(), e);
+                spool(taskId, batch);
+                buffer.failedAttempts = 0;
+                buffer.retryAt = 0;
+                return false;
+            }
+            batch.addAll(buffer.rows);
+            buffer.rows = batch;
+            long backoff = Math.min(retryBackoffMs << Math.min(buffer.failedAttempts - 1, 20), retryBackoffMaxMs);
+            buffer.retryAt = System.currentTimeMillis() + backoff;
+            log.warn("Failed to flush {} client rows for task {} (attempt {}/{}), retrying in {} ms: {}",
+                    batch.size(), taskId, buffer.failedAttempts, maxAttempts, backoff, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 把未能写库的行以 JSON 数组追加到溢出文件；序列化或写盘失败时只能丢弃，计入 training.ingest.client.discarded。
+     *
+     * @param taskId 任务 id
+     * @param rows   未写入的行
+     */
+    private void spool(Long taskId, List<Client> rows) {
+        try {
+            if (spool.append(spoolChannel(taskId), objectMapper.writeValueAsBytes(rows))) {
+                trainingMetrics.recordClientSpooled(rows.size());
+                return;
+            }
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize client rows for task {}: {}", taskId, e.getMessage());
+        }
+        log.error("Discarding {} client rows for task {}: spool unavailable", rows.size(), taskId);
+        trainingMetrics.recordClientDiscarded(rows.size());
+    }
+
+    /**
+     * 将 flushAndRemove 中写入失败的缓冲放回；若其间已有新缓冲建立，则把失败行并到新缓冲队首。
+     * 调用方持有 buffer 锁；被移除的缓冲不再对其他线程可见，因此再获取新缓冲的锁不会形成环形等待。
+     *
+     * @param taskId 任务 id
+     * @param buffer 写入失败的缓冲
+     */
+    private void restore(Long taskId, TaskBuffer buffer) {
+        TaskBuffer existing = buffers.putIfAbsent(taskId, buffer);
+        if (existing == null) {
+            return;
+        }
+        synchronized (existing) {
+            existing.rows.addAll(0, buffer.rows);
+            existing.firstAddedAt = Math.min(existing.firstAddedAt, buffer.firstAddedAt);
+            existing.failedAttempts = buffer.failedAttempts;
+            existing.retryAt = buffer.retryAt;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package ynu.jackielinn.server.ingest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 训练消息溢出落盘（append-only 文件）。
+ * 派发队列超过高水位或被拒绝时，原始 channel 与消息体按 [len][channel][len][body] 追加到本地文件；
+ * 负载回落后由监听器按顺序读出并重新派发，全部读完后截断文件；ClientWriteBuffer 重试耗尽或停机时未写入的 Client 行也追加到此。
+ * 文件在首次溢出时才创建，
+ * 启动时若文件非空则视为上次未排空的积压，从旁路文件（spool-file + ".offset"）记录的消费位置继续回放，
+ * 已回放的记录不会因重启再次派发。相对路径按 training.data-dir 解析，目录不可写时启动失败。
+ */
+@Slf4j
+@Component
+public class OverflowSpool {
+
+    @Value("${training.data-dir:${user.home}/.mhfl-server}")
+    private String dataDir = System.getProperty("user.home") + "/.mhfl-server";
+
+    @Value("${training.backpressure.spool-file:spool/training-messages.spool}")
+    private String spoolFile = "spool/training-messages.spool";
+
+    private Path spoolPath;
+
+    private Path offsetPath;
+
+    private FileChannel channel;
+
+    /**
+     * 已确认消费到的文件偏移；之前的记录已重新派发。
+     */
+    private long readOffset;
+
+    /**
+     * 最近一次写入旁路文件的消费偏移。
+     */
+    private long persistedOffset;
+
+    /**
+     * 解析溢出文件路径并校验目录可写，恢复上次持久化的消费位置。
+     *
+     * @throws IllegalStateException 目录无法创建或不可写
+     */
+    @PostConstruct
+    public synchronized void init() {
+        spoolPath = Paths.get(dataDir).resolve(spoolFile).toAbsolutePath().normalize();
+        offsetPath = spoolPath.resolveSibling(spoolPath.getFileName() + ".offset");
+        Path dir = spoolPath.getParent();
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create training message spool directory " + dir, e);
+        }
+        if (!Files.isWritable(dir)) {
+            throw new IllegalStateException("Training message spool directory is not writable: " + dir);
+        }
+        readOffset = loadOffset();
+        persistedOffset = readOffset;
+        log.info("Training message spool at {} (resume offset {})", spoolPath, readOffset);
+    }
+
+    /**
+     * 从溢出文件读出的一条原始消息。
+     *
+     * @param channel   Redis channel 原始字节
+     * @param body      消息体原始字节
+     * @param endOffset 该记录结束位置，消费后传给 advance
+     */
+    public record SpoolRecord(byte[] channel, byte[] body, long endOffset) {
+    }
+
+    /**
+     * 追加一条原始消息到溢出文件末尾。
+     *
+     * @param channelBytes Redis channel 原始字节
+     * @param body         消息体原始字节
+     * @return 是否写入成功
+     */
+    public synchronized boolean append(byte[] channelBytes, byte[] body) {
+        try {
+            FileChannel ch = open();
+            ByteBuffer buf = ByteBuffer.allocate(8 + channelBytes.length + body.length);
+            buf.putInt(channelBytes.length).put(channelBytes).putInt(body.length).put(body).flip();
+            ch.position(ch.size());
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to append training message to spool {}: {}", spoolPath, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 从当前消费位置起按顺序读出最多 max 条记录（不移动消费位置）。
+     *
+     * @param max 最多读取条数
+     * @return 记录列表，无积压返回空列表
+     */
+    public synchronized List<SpoolRecord> read(int max) {
+        List<SpoolRecord> records = new ArrayList<>();
+        try {
+            FileChannel ch = openIfExists();
+            if (ch == null) {
+                return records;
+            }
+            long pos = readOffset;
+            long size = ch.size();
+            while (records.size() < max && pos + 4 <= size) {
+                byte[] channelBytes = readChunk(ch, pos, size);
+                if (channelBytes == null) {
+                    break;
+                }
+                pos += 4 + channelBytes.length;
+                byte[] body = readChunk(ch, pos, size);
+                if (body == null) {
+                    break;
+                }
+                pos += 4 + body.length;
+                records.add(new SpoolRecord(channelBytes, body, pos));
+            }
+        } catch (IOException e) {
+            log.error("Failed to read training message spool {}: {}", spoolPath, e.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * 确认已消费到 offset；若已读到文件末尾则先把消费位置归零并持久化，再截断文件，回收磁盘空间。
+     * 先写位置后截断：两步之间崩溃最多重放一次整个文件，而不会让旧位置指向截断后新追加的数据中间。
+     *
+     * @param offset 已消费记录的 endOffset
+     */
+    public synchronized void advance(long offset) {
+        readOffset = Math.max(readOffset, offset);
+        try {
+            if (channel != null && readOffset >= channel.size()) {
+                readOffset = 0;
+                checkpoint();
+                channel.truncate(0);
+            }
+        } catch (IOException e) {
+            log.error("Failed to truncate training message spool {}: {}", spoolPath, e.getMessage());
+        }
+    }
+
+    /**
+     * 将当前消费位置写入旁路文件（先写临时文件再原子替换）；位置未变化时不写。
+     * 监听器每回放完一批记录调用一次，重启后从该位置继续。
+     */
+    public synchronized void checkpoint() {
+        if (readOffset == persistedOffset) {
+            return;
+        }
+        try {
+            Path tmp = offsetPath.resolveSibling(offsetPath.getFileName() + ".tmp");
+            Files.write(tmp, ByteBuffer.allocate(8).putLong(readOffset).array());
+            Files.move(tmp, offsetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            persistedOffset = readOffset;
+        } catch (IOException e) {
+            log.error("Failed to persist training message spool offset {}: {}", offsetPath, e.getMessage());
+        }
+    }
+
+    /**
+     * 是否仍有未消费的积压记录。
+     *
+     * @return 有积压返回 true
+     */
+    public synchronized boolean hasPending() {
+        try {
+            FileChannel ch = openIfExists();
+            return ch != null && ch.size() > readOffset;
+        } catch (IOException e) {
+            log.error("Failed to stat training message spool {}: {}", spoolPath, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 持久化消费位置并关闭文件句柄。
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        checkpoint();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close training message spool {}: {}", spoolPath, e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * 读取旁路文件中的消费位置；旁路文件缺失、损坏或位置超出溢出文件大小时从 0 开始。
+     *
+     * @return 恢复的消费位置
+     */
+    private long loadOffset() {
+        try {
+            if (!Files.exists(offsetPath) || !Files.exists(spoolPath)) {
+                return 0;
+            }
+            byte[] data = Files.readAllBytes(offsetPath);
+            if (data.length != 8) {
+                log.warn("Ignoring malformed training message spool offset {}", offsetPath);
+                return 0;
+            }
+            long offset = ByteBuffer.wrap(data).getLong();
+            if (offset < 0 || offset > Files.size(spoolPath)) {
+                log.warn("Ignoring out-of-range training message spool offset {} in {}", offset, offsetPath);
+                return 0;
+            }
+            return offset;
+        } catch (IOException e) {
+            log.warn("Failed to read training message spool offset {}: {}", offsetPath, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 读取 [len][bytes] 形式的一段；文件尾部不完整（写入中断）时返回 null。
+     *
+     * @param ch   文件通道
+     * @param pos  起始偏移
+     * @param size 文件大小
+     * @return 该段字节，不完整返回 null
+     * @throws IOException 读取失败
+     */
+    private static byte[] readChunk(FileChannel ch, long pos, long size) throws IOException {
+        if (pos + 4 > size) {
+            return null;
+        }
+        ByteBuffer lenBuf = ByteBuffer.allocate(4);
+        readFully(ch, lenBuf, pos);
+        int len = lenBuf.flip().getInt();
+        if (len < 0 || pos + 4 + len > size) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate(len);
+        readFully(ch, data, pos + 4);
+        return data.array();
+    }
+
+    /**
+     * 从 pos 起读满 buf。
+     *
+     * @param ch  文件通道
+     * @param buf 目标缓冲
+     * @param pos 起始偏移
+     * @throws IOException 读取失败或提前到达文件尾
+     */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) {
+                throw new IOException("Unexpected end of spool");
+            }
+        }
+    }
+
+    /**
+     * 打开（必要时创建）溢出文件。
+     *
+     * @return 文件通道
+     * @throws IOException 创建或打开失败
+     */
+    private FileChannel open() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(spoolPath.getParent());
+            channel = FileChannel.open(spoolPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    /**
+     * 文件已存在时打开，不存在返回 null，避免未发生溢出时创建文件。
+     *
+     * @return 文件通道或 null
+     * @throws IOException 打开失败
+     */
+    private FileChannel openIfExists() throws IOException {
+        if (channel == null && !Files.exists(spoolPath)) {
+            return null;
+        }
+        return open();
+    }
+}
@@ -0,0 +1,93 @@
+package ynu.jackielinn.server.ingest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进行中任务的 (taskId, roundNum) → roundId 内存索引。
+ * 每个任务一个以 roundNum 为下标的 long 数组（0 表示未知），Round 创建或首次查库后写入，任务进入终态时整体移除；
+ * 稳态下 Round/Client 消息无需再按 (tid, round_num) 查库。同一任务的读写都在其派发 lane 上串行执行。
+ * roundNum 来自训练端消息，不可信：超过 training.round-index.max-rounds 的轮次不进索引，回退为按 (tid, round_num) 查库，
+ * 避免单条异常消息撑大数组。
+ */
+@Component
+public class RoundIdIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ConcurrentHashMap<Long, long[]> index = new ConcurrentHashMap<>();
+
+    @Value("${training.round-index.max-rounds:10000}")
+    private int maxRounds = 10000;
+
+    /**
+     * 查询该任务该轮次的 roundId。
+     *
+     * @param taskId   任务 id
+     * @param roundNum 轮次编号
+     * @return roundId，未缓存返回 0
+     */
+    public long get(Long taskId, Integer roundNum) {
+        if (taskId == null || roundNum == null || roundNum < 0) {
+            return 0;
+        }
+        long[] ids = index.get(taskId);
+        return ids != null && roundNum < ids.length ? ids[roundNum] : 0;
+    }
+
+    /**
+     * 记录该任务该轮次的 roundId；数组容量不足时按倍数扩容，但不超过 maxRounds，超出上限的轮次直接忽略。
+     *
+     * @param taskId   任务 id
+     * @param roundNum 轮次编号
+     * @param roundId  Round 主键
+     */
+    public void put(Long taskId, Integer roundNum, Long roundId) {
+        if (taskId == null || roundNum == null || roundNum < 0 || roundNum >= maxRounds || roundId == null) {
+            return;
+        }
+        long[] ids = index.get(taskId);
+        if (ids == null || roundNum >= ids.length) {
+            int capacity = ids == null ? Math.min(INITIAL_CAPACITY, maxRounds) : ids.length;
+            while (capacity <= roundNum) {
+                capacity = (int) Math.min((long) capacity << 1, maxRounds);
+            }
+            ids = ids == null ? new long[capacity] : Arrays.copyOf(ids, capacity);
+            index.put(taskId, ids);
+        }
+        ids[roundNum] = roundId;
+    }
+
+    /**
+     * 移除该任务的全部索引（任务进入终态时调用）。
+     *
+     * @param taskId 任务 id
+     */
+    public void evict(Long taskId) {
+        if (taskId != null) {
+            index.remove(taskId);
+        }
+    }
+
+    /**
+     * 当前缓存索引的任务。
+     *
+     * @return 任务 id 集合（快照）
+     */
+    public Set<Long> taskIds() {
+        return Set.copyOf(index.keySet());
+    }
+
+    /**
+     * 当前缓存的任务数。
+     *
+     * @return 任务数
+     */
+    public int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,135 @@
+package ynu.jackielinn.server.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 taskId 分片的有序派发器。
+ * 持有 N 条单线程 lane，taskId 固定映射到其中一条：同一任务的消息按到达顺序串行处理，无需按轮次加锁；
+ * 不同任务分散到各 lane 并行执行。每条 lane 的队列有界，队满时抛出 RejectedExecutionException。
+ */
+@Slf4j
+public class TaskOrderedDispatcher {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    private final long awaitTerminationSeconds;
+
+    /**
+     * 创建派发器并启动全部 lane。
+     *
+     * @param laneCount               lane 数（单线程执行器个数）
+     * @param laneQueueCapacity       每条 lane 的队列容量
+     * @param threadNamePrefix        线程名前缀，便于日志排查
+     * @param awaitTerminationSeconds 关闭时等待已提交消息处理完的最长时间（秒）
+     */
+    public TaskOrderedDispatcher(int laneCount, int laneQueueCapacity, String threadNamePrefix, long awaitTerminationSeconds) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be positive");
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(laneQueueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        }
+        this.awaitTerminationSeconds = awaitTerminationSeconds;
+    }
+
+    /**
+     * 将消息处理提交到该任务所属的 lane；同一 taskId 的提交按调用顺序执行。
+     *
+     * @param taskId 任务 id（null 统一落到第 0 条 lane）
+     * @param task   消息处理逻辑
+     * @throws RejectedExecutionException lane 队列已满或派发器已关闭
+     */
+    public void dispatch(Long taskId, Runnable task) {
+        lanes[laneOf(taskId)].execute(task);
+    }
+
+    /**
+     * 计算 taskId 对应的 lane 下标；对 id 做一次位扰动，避免连续 id 只落在少数 lane。
+     *
+     * @param taskId 任务 id
+     * @return lane 下标
+     */
+    public int laneOf(Long taskId) {
+        if (taskId == null) {
+            return 0;
+        }
+        long h = taskId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) lanes.length);
+    }
+
+    /**
+     * 获取 lane 数。
+     *
+     * @return lane 数
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * 统计全部 lane 队列中尚未执行的消息数。
+     *
+     * @return 排队中的消息数
+     */
+    public int getQueuedCount() {
+        int total = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            total += lane.getQueue().size();
+        }
+        return total;
+    }
+
+    /**
+     * 统计该任务所属 lane 队列中尚未执行的消息数，用于按 lane 判断高水位。
+     *
+     * @param taskId 任务 id
+     * @return 该 lane 排队中的消息数
+     */
+    public int getQueuedCount(Long taskId) {
+        return lanes[laneOf(taskId)].getQueue().size();
+    }
+
+    /**
+     * 获取排队最深的 lane 的队列长度，用于判断是否已回落到低水位。
+     *
+     * @return 最大 lane 队列长度
+     */
+    public int getMaxLaneQueuedCount() {
+        int max = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            max = Math.max(max, lane.getQueue().size());
+        }
+        return max;
+    }
+
+    /**
+     * 关闭全部 lane：不再接收新消息，等待已提交消息处理完，超时后强制结束。
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(awaitTerminationSeconds);
+        for (ThreadPoolExecutor lane : lanes) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !lane.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    lane.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                lane.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Training message dispatcher stopped ({} lanes)", lanes.length);
+    }
+}
@@ -0,0 +1,364 @@
+package ynu.jackielinn.server.ingest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import ynu.jackielinn.server.utils.Const;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 多节点部署下的任务归属（training.cluster.enabled=true 时生效）。
+ * 每个任务由一个节点以 Redis 租约 task:owner:{taskId} 持有，只有持有节点写库并向其他节点转发推送；
+ * 其余节点收到该任务的 Pub/Sub 消息直接丢弃，只通过 ClusterPushRelay 接收推送。
+ * 租约在处理消息时按需抢占；本节点持有且仍保留写入状态的任务另由独立的续期线程按租约的 1/3 周期续期，
+ * 训练暂时没有消息时也不会过期被其他节点接管，也不会被共用调度线程上的数据库任务拖延。持有节点退出、取消订阅或任务终态后释放，下一条消息由其他节点接管。
+ * 判定结果在本地缓存一段时间，避免每条消息都访问 Redis。
+ * Redis 不可用时沿用已取得且尚未到期的租约，否则按未持有处理，避免多个节点同时写入同一任务。
+ * stream 接入模式下消费组按条目而非按任务分发，因此改为按分片持有租约 task:stream:owner:{shard}：
+ * 训练端按 taskId 取模写入分片 Stream，只有持有该分片租约的节点读取它，同一任务的记录始终由一个节点处理。
+ * 失去任务或分片归属时，经该任务的派发 lane 写出其客户端缓冲并丢弃本节点的状态缓存与轮次索引，
+ * 避免旧状态覆盖新持有节点的写入，重新获得归属后从库重新加载。
+ */
+@Slf4j
+@Component
+public class TaskOwnership {
+
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end "
+                    + "if redis.call('get', KEYS[1]) == ARGV[1] then redis.call('pexpire', KEYS[1], ARGV[2]) return 1 end "
+                    + "return 0", Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ClientWriteBuffer clientWriteBuffer;
+
+    @Resource
+    private TaskStateTracker taskStateTracker;
+
+    @Resource
+    private RoundIdIndex roundIdIndex;
+
+    @Resource(name = "trainingMessageDispatcher")
+    private TaskOrderedDispatcher dispatcher;
+
+    @Value("${training.cluster.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${training.cluster.node-id:}")
+    private String nodeId = "";
+
+    @Value("${training.cluster.owner-lease-ms:30000}")
+    private long leaseMs = 30000;
+
+    /**
+     * 本节点对各任务的归属判定及其有效期。
+     *
+     * @param owner      是否由本节点持有
+     * @param validUntil 判定有效期截止时间（毫秒）
+     * @param leaseUntil 本节点持有时租约的到期时间（毫秒），未持有时为 0
+     */
+    private record Decision(boolean owner, long validUntil, long leaseUntil) {
+    }
+
+    private final ConcurrentHashMap<Long, Decision> decisions = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点持有的 stream 分片及其租约到期时间（毫秒）。
+     */
+    private final ConcurrentHashMap<Integer, Long> shardLeases = new ConcurrentHashMap<>();
+
+    private ThreadPoolTaskScheduler renewScheduler;
+
+    /**
+     * 未配置节点标识时使用 JVM 名称（pid@hostname）；启用多节点模式时启动独立的租约续期线程。
+     */
+    @PostConstruct
+    public void init() {
+        if (!StringUtils.hasText(nodeId)) {
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        if (enabled) {
+            renewScheduler = new ThreadPoolTaskScheduler();
+            renewScheduler.setPoolSize(1);
+            renewScheduler.setThreadNamePrefix("task-owner-renew-");
+            renewScheduler.setDaemon(true);
+            renewScheduler.initialize();
+            renewScheduler.scheduleWithFixedDelay(this::renewLeases, Duration.ofMillis(Math.max(leaseMs / 3, 1)));
+        }
+    }
+
+    /**
+     * 停止租约续期线程。
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (renewScheduler != null) {
+            renewScheduler.shutdown();
+        }
+    }
+
+    /**
+     * 是否启用多节点模式。
+     *
+     * @return 启用返回 true
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取本节点标识。
+     *
+     * @return 节点标识
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 获取租约时长。
+     *
+     * @return 租约毫秒数
+     */
+    public long getLeaseMs() {
+        return leaseMs;
+    }
+
+    /**
+     * 判定该任务是否由本节点处理：未启用多节点模式时恒为 true；否则抢占或续期租约。
+     * 持有时在租约过半前复用判定结果，未持有时按租约的 1/10 间隔重新抢占，以便持有节点退出后尽快接管。
+     * 此前持有、本次抢占失败（租约已被其他节点接管）时清理本节点的写入状态。
+     * Redis 不可用时沿用尚未到期的租约，租约到期或此前未持有时按未持有处理（Pub/Sub 此时本就收不到新消息）。
+     *
+     * @param taskId 任务 id
+     * @return 本节点应处理返回 true
+     */
+    public boolean isOwner(Long taskId) {
+        if (!enabled || taskId == null) {
+            return true;
+        }
+        Decision decision = decisions.get(taskId);
+        if (decision != null && System.currentTimeMillis() < decision.validUntil()) {
+            return decision.owner();
+        }
+        try {
+            return acquire(taskId, decision);
+        } catch (RuntimeException e) {
+            boolean owner = holdsUnexpiredLease(decision);
+            log.warn("Acquire ownership of task {} failed, {}: {}", taskId,
+                    owner ? "keeping unexpired lease" : "not processing", e.getMessage());
+            if (!owner) {
+                expire(taskId, decision);
+            }
+            return owner;
+        }
+    }
+
+    /**
+     * 定时续期本节点持有且仍保留写入状态的任务租约，训练消息间隔超过租约时长时归属也不会漂移；
+     * 续期失败说明租约已被其他节点接管，清理本节点的写入状态。没有写入状态的任务不续期，租约自然到期，过期判定一并移除。
+     * Redis 不可用时在租约到期前保留原判定，下一周期重试；租约到期后视为失去归属并清理写入状态。
+     * 在独立的单线程调度器上运行，不与 {@code @Scheduled} 的数据库任务争用默认调度线程。
+     */
+    public void renewLeases() {
+        if (!enabled || decisions.isEmpty()) {
+            return;
+        }
+        Set<Long> localTaskIds = localTaskIds();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Decision> entry : decisions.entrySet()) {
+            Long taskId = entry.getKey();
+            Decision decision = entry.getValue();
+            if (!decision.owner() || !localTaskIds.contains(taskId)) {
+                if (now >= decision.validUntil()) {
+                    decisions.remove(taskId, decision);
+                }
+                continue;
+            }
+            try {
+                acquire(taskId, decision);
+            } catch (RuntimeException e) {
+                log.warn("Renew ownership of task {} failed: {}", taskId, e.getMessage());
+                if (!holdsUnexpiredLease(decision)) {
+                    expire(taskId, decision);
+                }
+            }
+        }
+    }
+
+    /**
+     * 此前判定为持有且租约尚未到期。
+     *
+     * @param decision 此前的判定，可为 null
+     * @return 租约仍有效返回 true
+     */
+    private boolean holdsUnexpiredLease(Decision decision) {
+        return decision != null && decision.owner() && System.currentTimeMillis() < decision.leaseUntil();
+    }
+
+    /**
+     * Redis 不可用且租约已到期：按未持有缓存判定，此前持有时清理本节点的写入状态。
+     *
+     * @param taskId   任务 id
+     * @param previous 此前的判定，可为 null
+     */
+    private void expire(Long taskId, Decision previous) {
+        decisions.put(taskId, new Decision(false, System.currentTimeMillis() + leaseMs / 10, 0));
+        if (previous != null && previous.owner()) {
+            evictLocalState(taskId);
+        }
+    }
+
+    /**
+     * 抢占或续期任务租约并缓存判定；此前判定为持有而本次未抢到时清理本节点的写入状态。
+     *
+     * @param taskId   任务 id
+     * @param previous 此前的判定，可为 null
+     * @return 本节点持有返回 true
+     */
+    private boolean acquire(Long taskId, Decision previous) {
+        Long result = stringRedisTemplate.execute(ACQUIRE_SCRIPT, List.of(Const.TASK_OWNER + taskId),
+                nodeId, String.valueOf(leaseMs));
+        boolean owner = result != null && result == 1L;
+        long now = System.currentTimeMillis();
+        decisions.put(taskId, owner ? new Decision(true, now + leaseMs / 2, now + leaseMs)
+                : new Decision(false, now + leaseMs / 10, 0));
+        if (!owner && previous != null && previous.owner()) {
+            evictLocalState(taskId);
+        }
+        return owner;
+    }
+
+    /**
+     * 清除该任务的判定缓存；本节点持有时释放租约，使其他节点可立即接管。
+     *
+     * @param taskId 任务 id
+     */
+    public void release(Long taskId) {
+        if (!enabled || taskId == null) {
+            return;
+        }
+        Decision decision = decisions.remove(taskId);
+        if (decision == null || !decision.owner()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(Const.TASK_OWNER + taskId), nodeId);
+        } catch (RuntimeException e) {
+            log.warn("Release ownership of task {} failed: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 抢占或续期 stream 分片租约：未启用多节点模式时恒为 true。Redis 不可用时沿用尚未到期的分片租约，
+     * 到期后按未持有处理，此时本就无法读取 Stream，恢复后再重新抢占。
+     *
+     * @param shard 分片序号
+     * @return 本节点持有该分片返回 true
+     */
+    public boolean holdsStreamShard(int shard) {
+        if (!enabled) {
+            return true;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Long result = stringRedisTemplate.execute(ACQUIRE_SCRIPT, List.of(Const.STREAM_SHARD_OWNER + shard),
+                    nodeId, String.valueOf(leaseMs));
+            boolean held = result != null && result == 1L;
+            if (held) {
+                shardLeases.put(shard, now + leaseMs);
+            } else {
+                shardLeases.remove(shard);
+            }
+            return held;
+        } catch (RuntimeException e) {
+            Long leaseUntil = shardLeases.get(shard);
+            boolean held = leaseUntil != null && System.currentTimeMillis() < leaseUntil;
+            if (!held) {
+                shardLeases.remove(shard);
+            }
+            log.warn("Acquire stream shard {} failed, {}: {}", shard,
+                    held ? "keeping unexpired lease" : "treating as not held", e.getMessage());
+            return held;
+        }
+    }
+
+    /**
+     * 释放本节点持有的 stream 分片租约（消费者停止时调用），使其他节点可立即接管。
+     *
+     * @param shard 分片序号
+     */
+    public void releaseStreamShard(int shard) {
+        if (!enabled) {
+            return;
+        }
+        shardLeases.remove(shard);
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(Const.STREAM_SHARD_OWNER + shard), nodeId);
+        } catch (RuntimeException e) {
+            log.warn("Release stream shard {} failed: {}", shard, e.getMessage());
+        }
+    }
+
+    /**
+     * 本节点持有写入状态（状态缓存、轮次索引或客户端缓冲）的任务。
+     *
+     * @return 任务 id 集合
+     */
+    public Set<Long> localTaskIds() {
+        Set<Long> taskIds = new HashSet<>(taskStateTracker.taskIds());
+        taskIds.addAll(roundIdIndex.taskIds());
+        taskIds.addAll(clientWriteBuffer.taskIds());
+        return taskIds;
+    }
+
+    /**
+     * 失去归属后清理本节点为该任务保留的写入状态：写出已缓冲的 Client 行（按唯一键 upsert，与新持有节点不冲突），
+     * 丢弃未写回的 Task 状态与轮次索引。在该任务的派发 lane 上执行，与正在处理的消息串行。
+     *
+     * @param taskId 任务 id
+     */
+    public void evictLocalState(Long taskId) {
+        Runnable evict = () -> {
+            clientWriteBuffer.flushAndRemove(taskId);
+            taskStateTracker.discard(taskId);
+            roundIdIndex.evict(taskId);
+        };
+        try {
+            dispatcher.dispatch(taskId, evict);
+        } catch (RejectedExecutionException e) {
+            evict.run();
+        }
+        log.info("Lost ownership of task {}, evicted local ingest state", taskId);
+    }
+
+    /**
+     * 当前缓存判定结果的任务数。
+     *
+     * @return 任务数
+     */
+    public int size() {
+        return decisions.size();
+    }
+}
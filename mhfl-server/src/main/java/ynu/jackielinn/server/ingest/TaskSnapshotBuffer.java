@@ -0,0 +1,179 @@
+package ynu.jackielinn.server.ingest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.TaskSnapshotMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进行中任务的内存快照：每个任务一个定长 Round 环形缓冲（保留最近 maxRounds 轮）和按 clientIndex 的最新 Client 指标。
+ * 由训练消息处理器在写库后更新，WebSocket 认证通过后据此生成首帧，重连风暴不再查库；任务进入终态时整体移除。
+ * 更新与推送、取快照与登记会话都须持有 lockFor(taskId)，保证新会话既不漏掉也不先于快照收到增量推送；
+ * 单个任务的快照状态只在该锁内读写。
+ */
+@Component
+public class TaskSnapshotBuffer {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentHashMap<Long, TaskSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    @Value("${training.snapshot.max-rounds:500}")
+    private int maxRounds = 500;
+
+    public TaskSnapshotBuffer() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 获取该任务的快照锁（按 taskId 分段，不同任务大多互不竞争）。
+     *
+     * @param taskId 任务 id
+     * @return 锁对象
+     */
+    public Object lockFor(Long taskId) {
+        return locks[Math.floorMod(taskId == null ? 0 : taskId.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * 记录一条 Round；同一轮次重复投递时覆盖原值。
+     *
+     * @param message 轮次指标消息
+     */
+    public void recordRound(RoundMessage message) {
+        if (message.getTaskId() == null || message.getRoundNum() == null) {
+            return;
+        }
+        snapshot(message.getTaskId(), message.getRoundNum()).addRound(message);
+    }
+
+    /**
+     * 记录一条 Client；同一 clientIndex 只保留轮次最新的一条。
+     *
+     * @param message 客户端指标消息
+     */
+    public void recordClient(ClientMessage message) {
+        if (message.getTaskId() == null || message.getRoundNum() == null || message.getClientIndex() == null) {
+            return;
+        }
+        snapshot(message.getTaskId(), message.getRoundNum()).putClient(message);
+    }
+
+    /**
+     * 生成该任务当前快照；无缓存时返回空快照并标记不完整。
+     *
+     * @param taskId 任务 id
+     * @return 快照帧
+     */
+    public TaskSnapshotMessage snapshot(Long taskId) {
+        TaskSnapshot snapshot = snapshots.get(taskId);
+        if (snapshot == null) {
+            return TaskSnapshotMessage.builder().taskId(taskId)
+                    .rounds(List.of()).clients(List.of()).complete(false).build();
+        }
+        return TaskSnapshotMessage.builder().taskId(taskId)
+                .rounds(snapshot.rounds()).clients(new ArrayList<>(snapshot.clients.values()))
+                .complete(snapshot.fromStart && !snapshot.overflowed).build();
+    }
+
+    /**
+     * 移除该任务的快照（任务进入终态时调用）。
+     *
+     * @param taskId 任务 id
+     */
+    public void evict(Long taskId) {
+        if (taskId != null) {
+            snapshots.remove(taskId);
+        }
+    }
+
+    /**
+     * 当前缓存的任务数。
+     *
+     * @return 任务数
+     */
+    public int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * 取或建该任务的快照；首条消息即为第 0 轮时认为快照覆盖任务全程。
+     *
+     * @param taskId   任务 id
+     * @param roundNum 首条消息的轮次编号
+     * @return 快照
+     */
+    private TaskSnapshot snapshot(Long taskId, int roundNum) {
+        return snapshots.computeIfAbsent(taskId, k -> new TaskSnapshot(Math.max(1, maxRounds), roundNum == 0));
+    }
+
+    /**
+     * 单个任务的快照状态。
+     */
+    private static final class TaskSnapshot {
+
+        private final RoundMessage[] ring;
+        private final TreeMap<Integer, ClientMessage> clients = new TreeMap<>();
+        private final boolean fromStart;
+
+        /**
+         * 下一条写入位置。
+         */
+        private int head;
+        private int count;
+        private boolean overflowed;
+
+        TaskSnapshot(int capacity, boolean fromStart) {
+            this.ring = new RoundMessage[capacity];
+            this.fromStart = fromStart;
+        }
+
+        /**
+         * 追加 Round；不晚于最新一轮的重复投递在缓冲内原位覆盖，已滑出窗口的旧轮次忽略，保持 roundNum 升序。
+         */
+        void addRound(RoundMessage message) {
+            int roundNum = message.getRoundNum();
+            if (count > 0 && ring[Math.floorMod(head - 1, ring.length)].getRoundNum() >= roundNum) {
+                for (int i = 0; i < count; i++) {
+                    int pos = Math.floorMod(head - 1 - i, ring.length);
+                    if (ring[pos].getRoundNum() == roundNum) {
+                        ring[pos] = message;
+                        return;
+                    }
+                }
+                return;
+            }
+            if (count == ring.length) {
+                overflowed = true;
+            } else {
+                count++;
+            }
+            ring[head] = message;
+            head = (head + 1) % ring.length;
+        }
+
+        void putClient(ClientMessage message) {
+            ClientMessage existing = clients.get(message.getClientIndex());
+            if (existing == null || existing.getRoundNum() == null || existing.getRoundNum() <= message.getRoundNum()) {
+                clients.put(message.getClientIndex(), message);
+            }
+        }
+
+        List<RoundMessage> rounds() {
+            List<RoundMessage> list = new ArrayList<>(count);
+            for (int i = count; i > 0; i--) {
+                list.add(ring[Math.floorMod(head - i, ring.length)]);
+            }
+            return list;
+        }
+    }
+}
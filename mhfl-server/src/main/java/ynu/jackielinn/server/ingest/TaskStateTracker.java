@@ -0,0 +1,276 @@
+package ynu.jackielinn.server.ingest;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.entity.Task;
+import ynu.jackielinn.server.service.TaskService;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进行中任务的状态缓存与合并写回。
+ * 首条 Round 消息时从库加载任务的 status、最佳 accuracy 与 numSteps，此后每轮在内存中计算新状态，
+ * 把状态变更与最佳指标合并为一个待写入的部分 Task：状态变化时立即写回，仅指标变化时每个刷写间隔最多写一次，
+ * 其余由定时任务补写。任务进入终态时先写回再移除。
+ */
+@Slf4j
+@Component
+public class TaskStateTracker {
+
+    @Resource
+    private TaskService taskService;
+
+    @Value("${training.task-state.flush-interval-ms:1000}")
+    private long flushIntervalMs = 1000;
+
+    private final ConcurrentHashMap<Long, TaskState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 单个任务的缓存状态与尚未写回的合并更新；读写均在该对象上同步（lane 线程与定时刷写线程）。
+     */
+    private static final class TaskState {
+        private final Long taskId;
+        private final Integer numSteps;
+        private Status status;
+        private Double bestAccuracy;
+        private Task pending;
+        private long lastFlushAt;
+
+        private TaskState(Task task) {
+            this.taskId = task.getId();
+            this.numSteps = task.getNumSteps();
+            this.status = task.getStatus();
+            this.bestAccuracy = task.getAccuracy();
+        }
+    }
+
+    /**
+     * 按一轮指标更新任务状态：末轮置为 SUCCESS，否则确保为 IN_PROGRESS；accuracy 刷新最佳值时同时记录该轮指标。
+     * 状态变化立即写回，仅指标变化时距上次写回不足刷写间隔则留给定时任务。
+     *
+     * @param message 轮次指标消息
+     */
+    public void onRound(RoundMessage message) {
+        TaskState state = stateOf(message.getTaskId());
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            boolean isLastRound = state.numSteps != null && message.getRoundNum() != null
+                    && message.getRoundNum().equals(state.numSteps - 1);
+            boolean statusChanged = false;
+            if (isLastRound) {
+                pending(state).setStatus(Status.SUCCESS);
+                state.status = Status.SUCCESS;
+                statusChanged = true;
+                log.info("Task {} completed successfully (last round)", state.taskId);
+            } else if (state.status != Status.IN_PROGRESS) {
+                pending(state).setStatus(Status.IN_PROGRESS);
+                state.status = Status.IN_PROGRESS;
+                statusChanged = true;
+            }
+            if (message.getAccuracy() != null
+                    && (state.bestAccuracy == null || message.getAccuracy() > state.bestAccuracy)) {
+                Task partial = pending(state);
+                partial.setAccuracy(message.getAccuracy());
+                partial.setLoss(message.getLoss());
+                partial.setPrecision(message.getPrecision());
+                partial.setRecall(message.getRecall());
+                partial.setF1Score(message.getF1Score());
+                state.bestAccuracy = message.getAccuracy();
+            }
+            if (statusChanged || System.currentTimeMillis() - state.lastFlushAt >= flushIntervalMs) {
+                flushLocked(state);
+            }
+        }
+    }
+
+    /**
+     * 同步外部写入的非终态状态（如 IN_PROGRESS 状态消息），避免下一轮重复写回相同状态。
+     *
+     * @param taskId 任务 id
+     * @param status 新状态
+     */
+    public void onStatus(Long taskId, Status status) {
+        TaskState state = states.get(taskId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.status = status;
+        }
+    }
+
+    /**
+     * 查询缓存中的任务状态。
+     *
+     * @param taskId 任务 id
+     * @return 状态，未缓存返回 null
+     */
+    public Status getStatus(Long taskId) {
+        TaskState state = taskId == null ? null : states.get(taskId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return state.status;
+        }
+    }
+
+    /**
+     * 查询缓存中的最佳 accuracy。
+     *
+     * @param taskId 任务 id
+     * @return 最佳 accuracy，未缓存或尚无指标返回 null
+     */
+    public Double getBestAccuracy(Long taskId) {
+        TaskState state = taskId == null ? null : states.get(taskId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return state.bestAccuracy;
+        }
+    }
+
+    /**
+     * 立即写回该任务尚未落库的合并更新（Stream 接入确认前调用，保证确认时 Task 状态与指标已提交）。
+     *
+     * @param taskId 任务 id
+     * @return 无待写入内容或写回成功返回 true
+     */
+    public boolean flush(Long taskId) {
+        TaskState state = taskId == null ? null : states.get(taskId);
+        if (state == null) {
+            return true;
+        }
+        synchronized (state) {
+            return flushLocked(state);
+        }
+    }
+
+    /**
+     * 写回该任务尚未落库的合并更新并移除缓存（任务进入终态时调用）。
+     * 写回失败时缓存放回（已有新缓存则保留新缓存），由定时刷写或下一次调用重试。
+     *
+     * @param taskId 任务 id
+     * @return 无待写入内容或写回成功返回 true
+     */
+    public boolean flushAndRemove(Long taskId) {
+        TaskState state = states.remove(taskId);
+        if (state == null) {
+            return true;
+        }
+        synchronized (state) {
+            if (flushLocked(state)) {
+                return true;
+            }
+        }
+        states.putIfAbsent(taskId, state);
+        return false;
+    }
+
+    /**
+     * 丢弃该任务的缓存状态及未写回的更新（本节点失去任务归属时调用，避免旧状态覆盖新持有节点的写入）。
+     *
+     * @param taskId 任务 id
+     */
+    public void discard(Long taskId) {
+        if (taskId != null) {
+            states.remove(taskId);
+        }
+    }
+
+    /**
+     * 当前缓存状态的任务。
+     *
+     * @return 任务 id 集合（快照）
+     */
+    public Set<Long> taskIds() {
+        return Set.copyOf(states.keySet());
+    }
+
+    /**
+     * 定时写回所有留有未落库更新的任务。
+     */
+    @Scheduled(fixedDelayString = "${training.task-state.flush-interval-ms:1000}")
+    public void flushDirty() {
+        for (TaskState state : states.values()) {
+            synchronized (state) {
+                flushLocked(state);
+            }
+        }
+    }
+
+    /**
+     * 关闭前写回全部未落库更新。
+     */
+    @PreDestroy
+    public void flushAll() {
+        flushDirty();
+    }
+
+    /**
+     * 获取任务缓存状态，首次访问时从库加载；任务不存在返回 null 且不缓存。
+     *
+     * @param taskId 任务 id
+     * @return 缓存状态或 null
+     */
+    private TaskState stateOf(Long taskId) {
+        if (taskId == null) {
+            return null;
+        }
+        TaskState state = states.get(taskId);
+        if (state != null) {
+            return state;
+        }
+        Task task = taskService.getById(taskId);
+        if (task == null) {
+            return null;
+        }
+        TaskState loaded = new TaskState(task);
+        TaskState existing = states.putIfAbsent(taskId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * 获取（必要时创建）待写入的部分 Task。
+     *
+     * @param state 任务缓存状态
+     * @return 部分 Task
+     */
+    private static Task pending(TaskState state) {
+        if (state.pending == null) {
+            state.pending = Task.builder().id(state.taskId).build();
+        }
+        return state.pending;
+    }
+
+    /**
+     * 以一条 updateById 写回合并更新；调用方需持有 state 锁。写入失败时保留待写入内容，由下次刷写重试。
+     *
+     * @param state 任务缓存状态
+     * @return 无待写入内容或写回成功返回 true
+     */
+    private boolean flushLocked(TaskState state) {
+        if (state.pending == null) {
+            return true;
+        }
+        try {
+            taskService.updateById(state.pending);
+            state.pending = null;
+            state.lastFlushAt = System.currentTimeMillis();
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to write task state for task {}: {}", state.taskId, e.getMessage(), e);
+            return false;
+        }
+    }
+}
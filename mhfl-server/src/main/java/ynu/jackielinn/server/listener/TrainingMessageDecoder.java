@@ -0,0 +1,176 @@
+package ynu.jackielinn.server.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.StatusMessage;
+import ynu.jackielinn.server.entity.Client;
+import ynu.jackielinn.server.ingest.ClientWriteBuffer;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
+import ynu.jackielinn.server.service.TrainingMessageHandler;
+import ynu.jackielinn.server.utils.Const;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 训练消息解析器。
+ * 按 channel 前缀把原始消息体解析为 Round/Client/Status 消息，并绑定对应的 TrainingMessageHandler 处理逻辑，
+ * 供 Pub/Sub 监听与 Stream 消费两种接入方式共用。解析时记录发布到解析完成的耗时，处理逻辑开始执行时记录 lane 排队耗时。
+ * 回放溢出文件时另识别 ClientWriteBuffer 转存的 Client 行，放回写后缓冲重新写入。
+ */
+@Slf4j
+@Component
+public class TrainingMessageDecoder {
+
+    @Resource
+    private TrainingMessageHandler messageHandler;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private TrainingMetrics trainingMetrics;
+
+    @Resource
+    private ClientWriteBuffer clientWriteBuffer;
+
+    private static final byte[] ROUND_PREFIX = Const.TASK_EXPERIMENT_ROUND.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLIENT_PREFIX = Const.TASK_EXPERIMENT_CLIENT.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STATUS_PREFIX = Const.TASK_EXPERIMENT_STATUS.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLIENT_ROWS_PREFIX = Const.CLIENT_ROWS_SPOOL.getBytes(StandardCharsets.UTF_8);
+
+    private ObjectReader roundReader;
+    private ObjectReader clientReader;
+    private ObjectReader statusReader;
+    private ObjectReader clientRowsReader;
+
+    /**
+     * 解析后的待派发消息：所属任务及处理逻辑。
+     *
+     * @param taskId            任务 id
+     * @param handler           交给 TrainingMessageHandler 的处理逻辑，返回写入是否成功
+     * @param requiresOwnership 多节点部署时是否只由任务持有节点处理；转存的 Client 行按唯一键 upsert，任意节点均可写入
+     */
+    public record Decoded(Long taskId, BooleanSupplier handler, boolean requiresOwnership) {
+
+        /**
+         * 训练消息：多节点部署时只由任务持有节点处理。
+         *
+         * @param taskId  任务 id
+         * @param handler 处理逻辑
+         */
+        public Decoded(Long taskId, BooleanSupplier handler) {
+            this(taskId, handler, true);
+        }
+
+        /**
+         * 忽略处理结果的派发形式，供 Pub/Sub 接入使用。
+         *
+         * @return 处理逻辑
+         */
+        public Runnable action() {
+            return handler::getAsBoolean;
+        }
+    }
+
+    /**
+     * 预先构建三类消息的 ObjectReader，避免每条消息重复查找反序列化器。
+     */
+    @PostConstruct
+    public void init() {
+        roundReader = objectMapper.readerFor(RoundMessage.class);
+        clientReader = objectMapper.readerFor(ClientMessage.class);
+        statusReader = objectMapper.readerFor(StatusMessage.class);
+        clientRowsReader = objectMapper.readerForListOf(Client.class);
+    }
+
+    /**
+     * 按 channel 字节前缀识别消息类型，直接从消息体字节反序列化为 Round/Client/Status 消息并包装为待派发处理逻辑；
+     * 正常路径不构造 channel/body 字符串，仅在出错时为日志解码 channel。
+     *
+     * @param channelBytes Redis channel 原始字节
+     * @param bodyBytes    消息体原始字节
+     * @return 待派发消息，channel 未知或解析失败返回 null
+     */
+    public Decoded decode(byte[] channelBytes, byte[] bodyBytes) {
+        try {
+            if (startsWith(channelBytes, CLIENT_PREFIX)) {
+                ClientMessage clientMessage = clientReader.readValue(bodyBytes);
+                trainingMetrics.recordReceive(TrainingMetrics.MessageType.CLIENT, clientMessage.getTimestamp());
+                long decodedAt = System.nanoTime();
+                return new Decoded(clientMessage.getTaskId(), () -> {
+                    trainingMetrics.recordQueueWait(TrainingMetrics.MessageType.CLIENT, decodedAt);
+                    return messageHandler.handleClientMessage(clientMessage);
+                });
+            } else if (startsWith(channelBytes, ROUND_PREFIX)) {
+                RoundMessage roundMessage = roundReader.readValue(bodyBytes);
+                trainingMetrics.recordReceive(TrainingMetrics.MessageType.ROUND, roundMessage.getTimestamp());
+                long decodedAt = System.nanoTime();
+                return new Decoded(roundMessage.getTaskId(), () -> {
+                    trainingMetrics.recordQueueWait(TrainingMetrics.MessageType.ROUND, decodedAt);
+                    return messageHandler.handleRoundMessage(roundMessage);
+                });
+            } else if (startsWith(channelBytes, STATUS_PREFIX)) {
+                StatusMessage statusMessage = statusReader.readValue(bodyBytes);
+                trainingMetrics.recordReceive(TrainingMetrics.MessageType.STATUS, statusMessage.getTimestamp());
+                long decodedAt = System.nanoTime();
+                return new Decoded(statusMessage.getTaskId(), () -> {
+                    trainingMetrics.recordQueueWait(TrainingMetrics.MessageType.STATUS, decodedAt);
+                    return messageHandler.handleStatusMessage(statusMessage);
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to process Redis message from channel {}: {}",
+                    new String(channelBytes, StandardCharsets.UTF_8), e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 解析溢出文件中的一条记录：ClientWriteBuffer 转存的 Client 行解析为放回写后缓冲的处理逻辑，其余按训练消息解析。
+     * 转存记录只由本进程写入溢出文件，因此仅在回放时识别，Pub/Sub 与 Stream 接入不接受该前缀。
+     *
+     * @param channelBytes 溢出记录的 channel 字节
+     * @param bodyBytes    溢出记录的消息体字节
+     * @return 待派发消息，channel 未知或解析失败返回 null
+     */
+    public Decoded decodeSpooled(byte[] channelBytes, byte[] bodyBytes) {
+        if (!startsWith(channelBytes, CLIENT_ROWS_PREFIX)) {
+            return decode(channelBytes, bodyBytes);
+        }
+        try {
+            Long taskId = Long.valueOf(new String(channelBytes, CLIENT_ROWS_PREFIX.length,
+                    channelBytes.length - CLIENT_ROWS_PREFIX.length, StandardCharsets.UTF_8));
+            List<Client> rows = clientRowsReader.readValue(bodyBytes);
+            return new Decoded(taskId, () -> {
+                clientWriteBuffer.requeue(taskId, rows);
+                return true;
+            }, false);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to parse spooled client rows from {}: {}",
+                    new String(channelBytes, StandardCharsets.UTF_8), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 判断字节序列是否以给定前缀开头。
+     *
+     * @param data   字节序列
+     * @param prefix 前缀
+     * @return 以前缀开头返回 true
+     */
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        return data != null && data.length >= prefix.length
+                && Arrays.equals(data, 0, prefix.length, prefix, 0, prefix.length);
+    }
+}
@@ -1,63 +1,227 @@
 package ynu.jackielinn.server.listener;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import ynu.jackielinn.server.dto.message.ClientMessage;
-import ynu.jackielinn.server.dto.message.RoundMessage;
-import ynu.jackielinn.server.dto.message.StatusMessage;
-import ynu.jackielinn.server.service.TrainingMessageHandler;
-import ynu.jackielinn.server.utils.Const;
+import ynu.jackielinn.server.ingest.OverflowSpool;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskOwnership;
 
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.Executor;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Redis 训练消息监听器。
- * 订阅 task:experiment:round|client|status:{taskId} 通道，收到消息后提交到线程池，
- * 由 TrainingMessageHandler 先写 MySQL 再推 WebSocket。
+ * 订阅 task:experiment:round|client|status:{taskId} 通道，收到消息经 TrainingMessageDecoder 解析后按 taskId 提交到有序派发器，
+ * 由 TrainingMessageHandler 先写 MySQL 再推 WebSocket；同一任务的消息按到达顺序处理。
+ * 背压：目标 lane 排队数达到高水位或派发被拒绝时进入溢出模式，此后消息按到达顺序追加到 OverflowSpool；
+ * 定时任务在全部 lane 回落到低水位后按序回放溢出文件，排空后退出溢出模式。数据库变慢只增加延迟，不丢消息。
+ * 多节点部署时只处理本节点持有（TaskOwnership）的任务，其余任务的推送由持有节点经 ClusterPushRelay 转发。
  */
 @Slf4j
 @Component
 public class TrainingMessageListener implements MessageListener {
 
     @Resource
-    private TrainingMessageHandler messageHandler;
+    private TrainingMessageDecoder decoder;
 
-    @Resource(name = "trainingMessageExecutor")
-    private Executor executor;
+    @Resource(name = "trainingMessageDispatcher")
+    private TaskOrderedDispatcher dispatcher;
 
     @Resource
-    private ObjectMapper objectMapper;
+    private OverflowSpool spool;
+
+    @Resource
+    private TaskOwnership taskOwnership;
+
+    @Value("${training.backpressure.high-watermark:800}")
+    private int highWatermark = 800;
+
+    @Value("${training.backpressure.low-watermark:200}")
+    private int lowWatermark = 200;
+
+    @Value("${training.backpressure.drain-batch-size:500}")
+    private int drainBatchSize = 500;
 
     /**
-     * 收到 Redis 订阅消息时根据 channel 前缀解析为 Round/Client/Status 消息，
-     * 提交到 trainingMessageExecutor 线程池，由 TrainingMessageHandler 写库并推 WebSocket。
+     * 溢出模式标志；为 true 时新消息一律追加到溢出文件，保证与积压消息的先后顺序。
+     */
+    private volatile boolean spooling;
+
+    private final Object spoolLock = new Object();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong spooledCount = new AtomicLong();
+    private final AtomicLong drainedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * 收到 Redis 订阅消息时由 TrainingMessageDecoder 按 channel 前缀解析为 Round/Client/Status 消息，
+     * 按 taskId 提交到 trainingMessageDispatcher 对应 lane，由 TrainingMessageHandler 写库并推 WebSocket；
+     * 溢出模式下或 lane 达到高水位时改为追加到溢出文件；非本节点持有的任务直接丢弃。
      *
      * @param message Redis 消息体
      * @param pattern 订阅的 channel 模式（未使用）
      */
     @Override
     public void onMessage(Message message, byte[] pattern) {
-        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
-        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        byte[] channelBytes = message.getChannel();
+        byte[] body = message.getBody();
+
+        if (spooling) {
+            synchronized (spoolLock) {
+                if (spooling) {
+                    spool(channelBytes, body);
+                    return;
+                }
+            }
+        }
 
+        TrainingMessageDecoder.Decoded decoded = decoder.decode(channelBytes, body);
+        if (decoded == null || !taskOwnership.isOwner(decoded.taskId())) {
+            return;
+        }
+        if (dispatcher.getQueuedCount(decoded.taskId()) >= highWatermark) {
+            enterSpooling(channelBytes, body, "lane reached high watermark");
+            return;
+        }
         try {
-            if (channel.startsWith(Const.TASK_EXPERIMENT_ROUND)) {
-                RoundMessage roundMessage = objectMapper.readValue(body, RoundMessage.class);
-                executor.execute(() -> messageHandler.handleRoundMessage(roundMessage));
-            } else if (channel.startsWith(Const.TASK_EXPERIMENT_CLIENT)) {
-                ClientMessage clientMessage = objectMapper.readValue(body, ClientMessage.class);
-                executor.execute(() -> messageHandler.handleClientMessage(clientMessage));
-            } else if (channel.startsWith(Const.TASK_EXPERIMENT_STATUS)) {
-                StatusMessage statusMessage = objectMapper.readValue(body, StatusMessage.class);
-                executor.execute(() -> messageHandler.handleStatusMessage(statusMessage));
+            dispatcher.dispatch(decoded.taskId(), decoded.action());
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            enterSpooling(channelBytes, body, "dispatch rejected");
+        }
+    }
+
+    /**
+     * 定时回放溢出文件（含 ClientWriteBuffer 转存的 Client 行）：仅当全部 lane 排队数不高于低水位时按序读出并派发，
+     * 目标 lane 再次达到高水位或派发被拒绝时停止本轮；溢出文件排空后退出溢出模式。
+     */
+    @Scheduled(fixedDelayString = "${training.backpressure.drain-interval-ms:200}")
+    public void drainSpool() {
+        if (!spool.hasPending()) {
+            exitSpoolingIfDrained();
+            return;
+        }
+        // 启动时存在上次未排空的积压：先进入溢出模式，新消息排在积压之后
+        spooling = true;
+        if (dispatcher.getMaxLaneQueuedCount() > lowWatermark) {
+            return;
+        }
+        List<OverflowSpool.SpoolRecord> records = spool.read(drainBatchSize);
+        for (OverflowSpool.SpoolRecord record : records) {
+            TrainingMessageDecoder.Decoded decoded = decoder.decodeSpooled(record.channel(), record.body());
+            if (decoded != null && (!decoded.requiresOwnership() || taskOwnership.isOwner(decoded.taskId()))) {
+                if (dispatcher.getQueuedCount(decoded.taskId()) >= highWatermark) {
+                    break;
+                }
+                try {
+                    dispatcher.dispatch(decoded.taskId(), decoded.action());
+                } catch (RejectedExecutionException e) {
+                    rejectedCount.incrementAndGet();
+                    break;
+                }
+                drainedCount.incrementAndGet();
             }
-        } catch (Exception e) {
-            log.error("Failed to process Redis message from channel {}: {}", channel, e.getMessage(), e);
+            spool.advance(record.endOffset());
+        }
+        spool.checkpoint();
+        exitSpoolingIfDrained();
+    }
+
+    /**
+     * 获取派发被拒绝的累计次数。
+     *
+     * @return 拒绝次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 获取写入溢出文件的累计消息数。
+     *
+     * @return 溢出消息数
+     */
+    public long getSpooledCount() {
+        return spooledCount.get();
+    }
+
+    /**
+     * 获取从溢出文件回放的累计消息数。
+     *
+     * @return 回放消息数
+     */
+    public long getDrainedCount() {
+        return drainedCount.get();
+    }
+
+    /**
+     * 获取溢出文件也写入失败而丢弃的累计消息数。
+     *
+     * @return 丢弃消息数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 当前是否处于溢出模式。
+     *
+     * @return 溢出模式返回 true
+     */
+    public boolean isSpooling() {
+        return spooling;
+    }
+
+    /**
+     * 进入溢出模式并把当前消息追加到溢出文件。
+     *
+     * @param channelBytes Redis channel 原始字节
+     * @param body         消息体原始字节
+     * @param reason       进入原因（日志用）
+     */
+    private void enterSpooling(byte[] channelBytes, byte[] body, String reason) {
+        synchronized (spoolLock) {
+            if (!spooling) {
+                log.warn("Training message pipeline overloaded ({}), spooling to disk", reason);
+                spooling = true;
+            }
+            spool(channelBytes, body);
+        }
+    }
+
+    /**
+     * 溢出文件已排空时退出溢出模式；与追加共用锁，避免退出瞬间有消息越过积压先行派发。
+     */
+    private void exitSpoolingIfDrained() {
+        if (!spooling) {
+            return;
+        }
+        synchronized (spoolLock) {
+            if (spooling && !spool.hasPending()) {
+                spooling = false;
+                log.info("Training message spool drained, resuming direct dispatch");
+            }
+        }
+    }
+
+    /**
+     * 追加到溢出文件并计数；写盘失败时只能丢弃并记录。
+     *
+     * @param channelBytes Redis channel 原始字节
+     * @param body         消息体原始字节
+     */
+    private void spool(byte[] channelBytes, byte[] body) {
+        if (spool.append(channelBytes, body)) {
+            spooledCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
         }
     }
 }
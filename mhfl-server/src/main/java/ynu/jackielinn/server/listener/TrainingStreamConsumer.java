@@ -0,0 +1,542 @@
+package ynu.jackielinn.server.listener;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import ynu.jackielinn.server.ingest.ClientWriteBuffer;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskOwnership;
+import ynu.jackielinn.server.ingest.TaskStateTracker;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis Stream 训练消息消费者（training.ingest.mode=stream 时启用，对应训练端 REDIS_INGEST_MODE=stream）。
+ * 训练端以 XADD 把 {channel, payload} 写入 task:experiment:stream；配置 shards>1 时按 taskId % shards 写入
+ * task:experiment:stream:{shard}（两端 REDIS_STREAM_SHARDS 须一致）。本消费者以消费组 XREADGROUP 批量读取，
+ * 经 TrainingMessageDecoder 解析后按 taskId 提交到有序派发器；整批处理完成并把相关任务的客户端缓冲与 Task 状态写回 MySQL 后，
+ * 只 XACK 写入成功的记录：某任务的一条记录处理失败或其缓冲写回失败时，该任务本批自该记录起均不确认，
+ * 留在 PEL 中退避后按原顺序回放，避免先确认后续记录而打乱同一任务的应用顺序。
+ * 阻塞任务的那条失败记录投递次数（XPENDING）达到 max-deliveries 后转存到死信 Stream 并确认，不再阻塞该任务与所在分片。
+ * 进程崩溃或重启时未确认的记录仍留在 PEL 中，启动后先回放自己的 PEL；其他节点长时间未确认的记录定期 XCLAIM 接管。
+ * 多节点部署时消费组按条目分发会把同一任务的记录拆到不同节点，因此每个分片只由持有 TaskOwnership 分片租约的节点读取：
+ * 租约每 1/3 租期续期一次，新获得分片时立即接管其他消费者在该分片上的待确认记录，失去分片时清理该分片任务的本地写入状态。
+ * 落库重复由幂等写入兜底，实现 at-least-once。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "training.ingest.mode", havingValue = "stream")
+public class TrainingStreamConsumer implements SmartLifecycle {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TrainingMessageDecoder decoder;
+
+    @Resource(name = "trainingMessageDispatcher")
+    private TaskOrderedDispatcher dispatcher;
+
+    @Resource
+    private ClientWriteBuffer clientWriteBuffer;
+
+    @Resource
+    private TaskStateTracker taskStateTracker;
+
+    @Resource
+    private TaskOwnership taskOwnership;
+
+    @Value("${training.ingest.stream.key:task:experiment:stream}")
+    private String streamKey = "task:experiment:stream";
+
+    @Value("${training.ingest.stream.shards:1}")
+    private int shards = 1;
+
+    @Value("${training.ingest.stream.group:mhfl-server}")
+    private String group = "mhfl-server";
+
+    @Value("${training.ingest.stream.consumer:}")
+    private String consumerName = "";
+
+    @Value("${training.ingest.stream.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${training.ingest.stream.block-ms:2000}")
+    private long blockMs = 2000;
+
+    @Value("${training.ingest.stream.batch-timeout-ms:60000}")
+    private long batchTimeoutMs = 60000;
+
+    @Value("${training.ingest.stream.retry-backoff-ms:1000}")
+    private long retryBackoffMs = 1000;
+
+    @Value("${training.ingest.stream.claim-interval-ms:30000}")
+    private long claimIntervalMs = 30000;
+
+    @Value("${training.ingest.stream.claim-min-idle-ms:60000}")
+    private long claimMinIdleMs = 60000;
+
+    @Value("${training.ingest.stream.max-deliveries:10}")
+    private int maxDeliveries = 10;
+
+    @Value("${training.ingest.stream.dead-letter-key:task:experiment:stream:dead}")
+    private String deadLetterKey = "task:experiment:stream:dead";
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    /**
+     * 为 true 时下一次从 PEL 起点（offset 0）读取自己已投递未确认的记录，读空后切回只读新消息。
+     */
+    private boolean replayPending = true;
+
+    private long lastClaimAt;
+
+    private long lastShardRefreshAt;
+
+    /**
+     * 本节点当前持有的分片；仅消费线程读写。
+     */
+    private boolean[] ownedShards;
+
+    private final AtomicLong ackedCount = new AtomicLong();
+    private final AtomicLong claimedCount = new AtomicLong();
+    private final AtomicLong deadLetteredCount = new AtomicLong();
+
+    /**
+     * 创建消费组（已存在则忽略）并启动消费线程。
+     */
+    @Override
+    public void start() {
+        if (running) {
+            return;
+        }
+        if (!StringUtils.hasText(consumerName)) {
+            consumerName = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        shards = Math.max(shards, 1);
+        ownedShards = new boolean[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            createGroupIfAbsent(streamKeyOf(shard));
+        }
+        running = true;
+        worker = new Thread(this::runLoop, "training-stream-consumer");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Training stream consumer {} started on {} ({} shards, group {})", consumerName, streamKey, shards, group);
+    }
+
+    /**
+     * 停止消费线程；当前批次处理完成并确认后退出，随后释放持有的分片租约。
+     */
+    @Override
+    public void stop() {
+        running = false;
+        Thread t = worker;
+        if (t == null) {
+            return;
+        }
+        try {
+            t.join(blockMs + batchTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+        for (int shard = 0; shard < shards; shard++) {
+            if (ownedShards[shard]) {
+                taskOwnership.releaseStreamShard(shard);
+                ownedShards[shard] = false;
+            }
+        }
+        log.info("Training stream consumer {} stopped", consumerName);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 获取已确认的累计记录数。
+     *
+     * @return 确认数
+     */
+    public long getAckedCount() {
+        return ackedCount.get();
+    }
+
+    /**
+     * 获取从其他消费者接管的累计记录数。
+     *
+     * @return 接管数
+     */
+    public long getClaimedCount() {
+        return claimedCount.get();
+    }
+
+    /**
+     * 获取转存到死信 Stream 的累计记录数。
+     *
+     * @return 死信数
+     */
+    public long getDeadLetteredCount() {
+        return deadLetteredCount.get();
+    }
+
+    /**
+     * 消费循环：定期续期分片租约并接管空闲记录，然后读取并处理一批；未持有任何分片时等待后重试。Redis 异常时短暂退避后重试。
+     */
+    private void runLoop() {
+        while (running) {
+            try {
+                if (System.currentTimeMillis() - lastShardRefreshAt >= taskOwnership.getLeaseMs() / 3) {
+                    refreshShards();
+                }
+                if (System.currentTimeMillis() - lastClaimAt >= claimIntervalMs) {
+                    claimIdle();
+                }
+                if (pollOnce() < 0) {
+                    sleepQuietly(blockMs);
+                }
+            } catch (RuntimeException e) {
+                log.error("Training stream consume failed: {}", e.getMessage(), e);
+                sleepQuietly(1000);
+            }
+        }
+    }
+
+    /**
+     * 续期或抢占各分片租约：新获得的分片立即接管其他消费者的待确认记录并转入回放；
+     * 失去的分片清理属于该分片的任务在本节点的写入状态。
+     */
+    void refreshShards() {
+        lastShardRefreshAt = System.currentTimeMillis();
+        for (int shard = 0; shard < shards; shard++) {
+            boolean holds = taskOwnership.holdsStreamShard(shard);
+            if (holds && !ownedShards[shard]) {
+                ownedShards[shard] = true;
+                claimPending(streamKeyOf(shard), Duration.ZERO);
+                replayPending = true;
+                log.info("Training stream consumer {} acquired shard {}", consumerName, shard);
+            } else if (!holds && ownedShards[shard]) {
+                ownedShards[shard] = false;
+                for (Long taskId : taskOwnership.localTaskIds()) {
+                    if (shardOf(taskId) == shard) {
+                        taskOwnership.evictLocalState(taskId);
+                    }
+                }
+                log.warn("Training stream consumer {} lost shard {}", consumerName, shard);
+            }
+        }
+    }
+
+    /**
+     * 读取并处理一批记录：回放模式从各持有分片的 PEL 起点读取，否则阻塞读取新消息。
+     *
+     * @return 本批读取到的记录数，未持有任何分片返回 -1
+     */
+    @SuppressWarnings("unchecked")
+    int pollOnce() {
+        List<String> keys = ownedStreamKeys();
+        if (keys.isEmpty()) {
+            return -1;
+        }
+        Consumer consumer = Consumer.from(group, consumerName);
+        List<MapRecord<String, Object, Object>> records;
+        if (replayPending) {
+            records = stringRedisTemplate.opsForStream().read(consumer,
+                    StreamReadOptions.empty().count(batchSize),
+                    keys.stream().map(k -> StreamOffset.create(k, ReadOffset.from("0"))).toArray(StreamOffset[]::new));
+            if (records == null || records.isEmpty()) {
+                replayPending = false;
+                return 0;
+            }
+        } else {
+            records = stringRedisTemplate.opsForStream().read(consumer,
+                    StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(blockMs)),
+                    keys.stream().map(k -> StreamOffset.create(k, ReadOffset.lastConsumed())).toArray(StreamOffset[]::new));
+            if (records == null || records.isEmpty()) {
+                return 0;
+            }
+        }
+        processBatch(records);
+        return records.size();
+    }
+
+    /**
+     * 按记录顺序派发到各任务 lane，等待全部执行完毕，刷写相关任务的客户端缓冲与 Task 状态后确认写入成功的记录。
+     * 派发被拒绝时停止本批，其余留在 PEL 中下一轮回放；有记录未确认时退避 retryBackoffMs 后再回放。
+     * 处理失败、阻塞了所属任务的记录投递次数达到上限时转存死信，其后同任务的记录在下一轮回放中继续处理。
+     *
+     * @param records 本批记录
+     */
+    private void processBatch(List<MapRecord<String, Object, Object>> records) {
+        int size = records.size();
+        List<Long> taskIds = new ArrayList<>(size);
+        List<TrainingMessageDecoder.Decoded> decodedList = new ArrayList<>(size);
+        for (MapRecord<String, Object, Object> record : records) {
+            TrainingMessageDecoder.Decoded decoded = decode(record);
+            taskIds.add(decoded == null ? null : decoded.taskId());
+            decodedList.add(decoded);
+        }
+
+        // 各记录的处理结果；由 lane 线程写入，await 返回后对本线程可见
+        boolean[] stored = new boolean[size];
+        CountDownLatch done = new CountDownLatch(size);
+        int accepted = 0;
+        for (int i = 0; i < size; i++) {
+            TrainingMessageDecoder.Decoded decoded = decodedList.get(i);
+            if (decoded == null) {
+                // 无法解析的记录直接确认，避免反复投递
+                stored[i] = true;
+                done.countDown();
+                accepted++;
+                continue;
+            }
+            int index = i;
+            try {
+                dispatcher.dispatch(decoded.taskId(), () -> {
+                    try {
+                        stored[index] = decoded.handler().getAsBoolean();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                replayPending = true;
+                break;
+            }
+            accepted++;
+        }
+        // 未派发的记录不会计数，补齐后 await 只等待已派发部分
+        for (int i = accepted; i < size; i++) {
+            done.countDown();
+        }
+
+        try {
+            if (!done.await(batchTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Training stream batch not finished within {} ms, leaving it pending", batchTimeoutMs);
+                replayPending = true;
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            replayPending = true;
+            return;
+        }
+
+        Map<Long, Boolean> flushed = new LinkedHashMap<>();
+        for (int i = 0; i < accepted; i++) {
+            Long taskId = taskIds.get(i);
+            if (taskId != null && !flushed.containsKey(taskId)) {
+                boolean clientsFlushed = clientWriteBuffer.flush(taskId);
+                flushed.put(taskId, taskStateTracker.flush(taskId) && clientsFlushed);
+            }
+        }
+        Map<String, List<RecordId>> ackIds = new LinkedHashMap<>();
+        int ackCount = 0;
+        Set<Long> blockedTasks = new HashSet<>();
+        List<MapRecord<String, Object, Object>> failed = new ArrayList<>();
+        for (int i = 0; i < accepted; i++) {
+            Long taskId = taskIds.get(i);
+            if (taskId == null || (!blockedTasks.contains(taskId) && stored[i] && flushed.get(taskId))) {
+                MapRecord<String, Object, Object> record = records.get(i);
+                ackIds.computeIfAbsent(record.getStream(), k -> new ArrayList<>()).add(record.getId());
+                ackCount++;
+            } else if (blockedTasks.add(taskId) && !stored[i]) {
+                // 阻塞该任务的失败记录；缓冲写回失败不归咎于单条记录
+                failed.add(records.get(i));
+            }
+        }
+        ackIds.forEach((key, ids) -> {
+            Long acked = stringRedisTemplate.opsForStream().acknowledge(key, group, ids.toArray(new RecordId[0]));
+            ackedCount.addAndGet(acked == null ? 0 : acked);
+        });
+        failed.forEach(this::deadLetterIfExhausted);
+        if (!blockedTasks.isEmpty()) {
+            log.warn("Training stream records of tasks {} not stored, leaving {} records pending",
+                    blockedTasks, accepted - ackCount);
+            replayPending = true;
+            sleepQuietly(retryBackoffMs);
+        }
+    }
+
+    /**
+     * 记录投递次数达到 maxDeliveries 时把原字段连同来源 Stream、记录 id 与投递次数写入死信 Stream 并确认原记录；
+     * 查询或转存失败时保留原记录，下一轮回放再判断。
+     *
+     * @param record 处理失败的记录
+     */
+    private void deadLetterIfExhausted(MapRecord<String, Object, Object> record) {
+        String id = record.getId().getValue();
+        try {
+            PendingMessages pending = stringRedisTemplate.opsForStream()
+                    .pending(record.getStream(), group, Range.closed(id, id), 1);
+            long deliveries = pending == null || pending.isEmpty() ? 0 : pending.get(0).getTotalDeliveryCount();
+            if (deliveries < maxDeliveries) {
+                return;
+            }
+            Map<Object, Object> fields = new LinkedHashMap<>(record.getValue());
+            fields.put("stream", record.getStream());
+            fields.put("id", id);
+            fields.put("deliveries", String.valueOf(deliveries));
+            stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(deadLetterKey).ofMap(fields));
+            stringRedisTemplate.opsForStream().acknowledge(record.getStream(), group, record.getId());
+            deadLetteredCount.incrementAndGet();
+            log.error("Training stream record {} on {} failed {} deliveries, moved to {}",
+                    id, record.getStream(), deliveries, deadLetterKey);
+        } catch (RuntimeException e) {
+            log.warn("Failed to dead-letter training stream record {} on {}: {}", id, record.getStream(), e.getMessage());
+        }
+    }
+
+    /**
+     * 接管其他消费者在本节点持有分片上空闲超过 claimMinIdleMs 的待确认记录；接管后转入回放模式按 PEL 顺序处理。
+     */
+    void claimIdle() {
+        lastClaimAt = System.currentTimeMillis();
+        for (String key : ownedStreamKeys()) {
+            claimPending(key, Duration.ofMillis(claimMinIdleMs));
+        }
+    }
+
+    /**
+     * 接管该 Stream 上其他消费者空闲不少于 minIdle 的待确认记录。
+     *
+     * @param key     Stream key
+     * @param minIdle 最小空闲时长，新获得分片时为 0
+     */
+    private void claimPending(String key, Duration minIdle) {
+        PendingMessages pending = stringRedisTemplate.opsForStream().pending(key, group, Range.unbounded(), batchSize);
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (!consumerName.equals(message.getConsumerName())
+                    && message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                stale.add(message.getId());
+            }
+        }
+        if (stale.isEmpty()) {
+            return;
+        }
+        List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream()
+                .claim(key, group, consumerName, minIdle, stale.toArray(new RecordId[0]));
+        if (claimed != null && !claimed.isEmpty()) {
+            claimedCount.addAndGet(claimed.size());
+            replayPending = true;
+            log.info("Claimed {} idle training stream records on {} from other consumers", claimed.size(), key);
+        }
+    }
+
+    /**
+     * 本节点当前持有分片的 Stream key。
+     *
+     * @return Stream key 列表
+     */
+    private List<String> ownedStreamKeys() {
+        List<String> keys = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            if (ownedShards[shard]) {
+                keys.add(streamKeyOf(shard));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 分片对应的 Stream key：单分片沿用 streamKey，否则为 streamKey:{shard}，与训练端一致。
+     *
+     * @param shard 分片序号
+     * @return Stream key
+     */
+    private String streamKeyOf(int shard) {
+        return shards == 1 ? streamKey : streamKey + ":" + shard;
+    }
+
+    /**
+     * 任务所在分片，与训练端 task_id % shards 一致。
+     *
+     * @param taskId 任务 id
+     * @return 分片序号
+     */
+    private int shardOf(Long taskId) {
+        return (int) Math.floorMod(taskId, (long) shards);
+    }
+
+    /**
+     * 从 Stream 记录中取出原始 channel 与 payload 并解析。
+     *
+     * @param record Stream 记录
+     * @return 待派发消息，字段缺失或解析失败返回 null
+     */
+    private TrainingMessageDecoder.Decoded decode(MapRecord<String, Object, Object> record) {
+        Object channel = record.getValue().get("channel");
+        Object payload = record.getValue().get("payload");
+        if (channel == null || payload == null) {
+            log.warn("Skip malformed training stream record {}", record.getId());
+            return null;
+        }
+        return decoder.decode(channel.toString().getBytes(StandardCharsets.UTF_8),
+                payload.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 创建消费组（MKSTREAM，从头消费）；组已存在时 Redis 返回 BUSYGROUP，忽略即可。
+     *
+     * @param streamKey Stream key
+     */
+    private void createGroupIfAbsent(String streamKey) {
+        byte[] key = streamKey.getBytes(StandardCharsets.UTF_8);
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) (RedisConnection connection) ->
+                    connection.streamCommands().xGroupCreate(key, group, ReadOffset.from("0"), true));
+        } catch (DataAccessException e) {
+            String cause = String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            if (!cause.contains("BUSYGROUP")) {
+                log.warn("Failed to create training stream group {} on {}: {}", group, streamKey, cause);
+            }
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,9 +1,64 @@
 package ynu.jackielinn.server.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import ynu.jackielinn.server.entity.Client;
 
+import java.util.List;
+
 @Mapper
 public interface ClientMapper extends BaseMapper<Client> {
+
+    /**
+     * 多行 INSERT 批量写入 Client（一条语句写入整批，由写后缓冲 flush 时调用）；
+     * 与已有 (rid, client_index) 冲突时覆盖指标与时间戳，重复投递不产生重复行；冲突行已逻辑删除时一并恢复。
+     *
+     * @param clients 待写入的 Client 列表（非空）
+     * @return 影响行数
+     */
+    @Insert("<script>"
+            + "insert into client (rid, client_index, loss, accuracy, `precision`, recall, f1_score, timestamp, create_time, update_time) values "
+            + "<foreach collection='clients' item='c' separator=','>"
+            + "(#{c.rid}, #{c.clientIndex}, #{c.loss}, #{c.accuracy}, #{c.precision}, #{c.recall}, #{c.f1Score}, #{c.timestamp}, #{c.createTime}, #{c.updateTime})"
+            + "</foreach>"
+            + " on duplicate key update loss = values(loss), accuracy = values(accuracy), `precision` = values(`precision`),"
+            + " recall = values(recall), f1_score = values(f1_score), timestamp = values(timestamp), update_time = values(update_time),"
+            + " is_deleted = 0, delete_time = null"
+            + "</script>")
+    int upsertBatch(@Param("clients") List<Client> clients);
+
+    /**
+     * 某任务每个 client_index 最新一条 Client（按 timestamp 降序，同一时间取 id 较大者），按 client_index 升序；
+     * 以 round.tid 连接并用窗口函数在库内取每组第一行，一条语句完成，返回行数只随节点数增长；同时回填所属轮次编号 roundNum。
+     *
+     * @param tid 任务 id
+     * @return 每个 client_index 至多一条 Client
+     */
+    @Select("select id, rid, round_num, client_index, loss, accuracy, `precision`, recall, f1_score, timestamp, create_time, update_time from ("
+            + "select r.round_num, c.*, row_number() over (partition by c.client_index order by c.timestamp desc, c.id desc) as rn "
+            + "from client c join round r on r.id = c.rid "
+            + "where r.tid = #{tid} and r.is_deleted = 0 and c.is_deleted = 0"
+            + ") t where t.rn = 1 order by client_index")
+    List<Client> selectLatestPerClientIndexByTid(@Param("tid") Long tid);
+
+    /**
+     * 多个任务下每个 (任务, client_index) 的最新一条 Client：先比轮次，同轮次比 timestamp（空值最后），再比 id；
+     * 以窗口函数在库内取每组第一行，一条语句完成，返回行数为各任务节点数之和，并回填 tid。
+     *
+     * @param tids 任务 id 集合（非空）
+     * @return 每个 (任务, client_index) 至多一条 Client，按 tid、client_index 升序
+     */
+    @Select("<script>"
+            + "select tid, id, rid, client_index, loss, accuracy, `precision`, recall, f1_score, timestamp, create_time, update_time from ("
+            + "select r.tid, c.*, row_number() over (partition by r.tid, c.client_index "
+            + "order by r.round_num desc, c.timestamp is null, c.timestamp desc, c.id desc) as rn "
+            + "from client c join round r on r.id = c.rid "
+            + "where r.tid in <foreach collection='tids' item='tid' open='(' separator=',' close=')'>#{tid}</foreach> "
+            + "and r.is_deleted = 0 and c.is_deleted = 0"
+            + ") t where t.rn = 1 order by tid, client_index"
+            + "</script>")
+    List<Client> selectLatestPerClientIndexByTids(@Param("tids") List<Long> tids);
 }
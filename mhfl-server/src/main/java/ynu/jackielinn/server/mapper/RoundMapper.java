@@ -1,9 +1,39 @@
 package ynu.jackielinn.server.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
 import ynu.jackielinn.server.entity.Round;
 
 @Mapper
 public interface RoundMapper extends BaseMapper<Round> {
+
+    /**
+     * 按 (tid, round_num) 唯一键写入或覆盖 Round 指标；id = LAST_INSERT_ID(id) 使已存在时也回填原主键到 round.id。
+     * 唯一键不含 is_deleted，命中逻辑删除的行时一并恢复该行，使重新上报的轮次可见。
+     *
+     * @param round 待写入的 Round（createTime/updateTime 已填充）
+     * @return 影响行数（新插入 1，更新 2，无变化 0）
+     */
+    @Insert("insert into round (tid, round_num, loss, accuracy, `precision`, recall, f1_score, create_time, update_time) "
+            + "values (#{r.tid}, #{r.roundNum}, #{r.loss}, #{r.accuracy}, #{r.precision}, #{r.recall}, #{r.f1Score}, #{r.createTime}, #{r.updateTime}) "
+            + "on duplicate key update id = LAST_INSERT_ID(id), loss = values(loss), accuracy = values(accuracy), "
+            + "`precision` = values(`precision`), recall = values(recall), f1_score = values(f1_score), update_time = values(update_time), "
+            + "is_deleted = 0, delete_time = null")
+    @Options(useGeneratedKeys = true, keyProperty = "r.id", keyColumn = "id")
+    int upsert(@Param("r") Round round);
+
+    /**
+     * 按 (tid, round_num) 唯一键写入占位 Round，已存在则保持原指标不变，仅回填原主键到 round.id；已逻辑删除的行同时恢复。
+     *
+     * @param round 待写入的占位 Round（createTime/updateTime 已填充）
+     * @return 影响行数（新插入 1，已存在 0，恢复逻辑删除行 2）
+     */
+    @Insert("insert into round (tid, round_num, loss, accuracy, `precision`, recall, f1_score, create_time, update_time) "
+            + "values (#{r.tid}, #{r.roundNum}, #{r.loss}, #{r.accuracy}, #{r.precision}, #{r.recall}, #{r.f1Score}, #{r.createTime}, #{r.updateTime}) "
+            + "on duplicate key update id = LAST_INSERT_ID(id), is_deleted = 0, delete_time = null")
+    @Options(useGeneratedKeys = true, keyProperty = "r.id", keyColumn = "id")
+    int insertIfAbsent(@Param("r") Round round);
 }
@@ -0,0 +1,290 @@
+package ynu.jackielinn.server.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import ynu.jackielinn.server.ingest.RoundIdIndex;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
+import ynu.jackielinn.server.listener.TrainingMessageListener;
+import ynu.jackielinn.server.listener.TrainingStreamConsumer;
+import ynu.jackielinn.server.utils.TimeUtils;
+import ynu.jackielinn.server.websocket.ClusterPushRelay;
+import ynu.jackielinn.server.websocket.WebSocketHeartbeat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 训练消息链路指标。
+ * 按阶段记录耗时直方图：Python 发布到服务端解析（receive）、lane 排队（queue.wait）、写库（db.write）、
+ * Client 批量落库（client.flush）、单条消息写出到 WebSocket 会话（ws.send）以及发布到投递至各会话发送队列的端到端耗时（end.to.end），
+ * 经 /actuator/prometheus 暴露，用于定位每轮延迟的去向并设定 SLO。
+ * 每个写出的 WebSocket 数据帧按 text/binary 与所在连接是否协商了 permessage-deflate 记录原始字节数（ws.frame.bytes），
+ * 结合 ws.send 耗时衡量压缩在带宽与 CPU 之间的取舍。
+ * 同时作为 MeterBinder 在全部单例创建后登记派发器、溢出背压与 Stream 消费的队列/计数 Gauge。
+ * 发布时间取消息自带的 timestamp（Python 本地时间），与服务端时钟不一致导致的负值直接忽略。
+ */
+@Component
+public class TrainingMetrics implements MeterBinder {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ApplicationContext applicationContext;
+
+    /**
+     * 训练消息类型，对应指标的 type 标签。
+     */
+    public enum MessageType {
+        ROUND("round"), CLIENT("client"), STATUS("status");
+
+        private final String tag;
+
+        MessageType(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Timer[] receiveTimers = new Timer[MessageType.values().length];
+    private final Timer[] queueWaitTimers = new Timer[MessageType.values().length];
+    private final Timer[] dbWriteTimers = new Timer[MessageType.values().length];
+    private final Timer[] endToEndTimers = new Timer[MessageType.values().length];
+    private Timer clientFlushTimer;
+    private Counter clientSpooledCounter;
+    private Counter clientDiscardedCounter;
+    private Timer wsSendTimer;
+    private Counter wsOverflowCounter;
+    private final DistributionSummary[] wsFrameBytes = new DistributionSummary[4];
+
+    /**
+     * 预先注册全部 Timer，热路径上只做一次数组下标访问。
+     */
+    @PostConstruct
+    public void init() {
+        for (MessageType type : MessageType.values()) {
+            int i = type.ordinal();
+            receiveTimers[i] = timer("training.ingest.receive", "发布到服务端解析完成的耗时", type);
+            queueWaitTimers[i] = timer("training.ingest.queue.wait", "解析后在派发 lane 中的排队耗时", type);
+            dbWriteTimers[i] = timer("training.ingest.db.write", "处理器写库（含写后缓冲入队）耗时", type);
+            endToEndTimers[i] = timer("training.ingest.end.to.end", "发布到投递至 WebSocket 发送队列的端到端耗时", type);
+        }
+        clientFlushTimer = timer("training.ingest.client.flush", "Client 写后缓冲批量落库耗时", null);
+        clientSpooledCounter = Counter.builder("training.ingest.client.spooled")
+                .description("写库重试耗尽或停机时未写入、转存溢出文件的 Client 行数").register(meterRegistry);
+        clientDiscardedCounter = Counter.builder("training.ingest.client.discarded")
+                .description("转存溢出文件也失败而丢弃的 Client 行数").register(meterRegistry);
+        wsSendTimer = timer("training.ingest.ws.send", "单条消息写出到单个 WebSocket 会话的耗时", null);
+        wsOverflowCounter = Counter.builder("training.ingest.ws.overflow")
+                .description("发送队列积压超限的次数").register(meterRegistry);
+        for (int i = 0; i < wsFrameBytes.length; i++) {
+            wsFrameBytes[i] = DistributionSummary.builder("training.ingest.ws.frame.bytes")
+                    .description("写出的单个 WebSocket 数据帧的原始（压缩前）字节数")
+                    .baseUnit("bytes")
+                    .tag("type", (i & 2) != 0 ? "binary" : "text")
+                    .tag("compressed", String.valueOf((i & 1) != 0))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 记录发布到服务端解析完成的耗时。
+     *
+     * @param type        消息类型
+     * @param publishedAt 消息自带的 ISO 时间戳
+     */
+    public void recordReceive(MessageType type, String publishedAt) {
+        recordSince(receiveTimers[type.ordinal()], publishedAt);
+    }
+
+    /**
+     * 记录消息在派发 lane 中的排队耗时。
+     *
+     * @param type           消息类型
+     * @param enqueuedNanos  提交派发时的 System.nanoTime()
+     */
+    public void recordQueueWait(MessageType type, long enqueuedNanos) {
+        queueWaitTimers[type.ordinal()].record(System.nanoTime() - enqueuedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录处理器写库耗时。
+     *
+     * @param type        消息类型
+     * @param startNanos  开始写库时的 System.nanoTime()
+     */
+    public void recordDbWrite(MessageType type, long startNanos) {
+        dbWriteTimers[type.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录发布到投递至 WebSocket 发送队列的端到端耗时。
+     *
+     * @param type        消息类型
+     * @param publishedAt 消息自带的 ISO 时间戳
+     */
+    public void recordEndToEnd(MessageType type, String publishedAt) {
+        recordSince(endToEndTimers[type.ordinal()], publishedAt);
+    }
+
+    /**
+     * 记录一次 Client 批量落库耗时。
+     *
+     * @param startNanos 开始落库时的 System.nanoTime()
+     */
+    public void recordClientFlush(long startNanos) {
+        clientFlushTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录转存到溢出文件的 Client 行数。
+     *
+     * @param rows 转存的行数
+     */
+    public void recordClientSpooled(int rows) {
+        clientSpooledCounter.increment(rows);
+    }
+
+    /**
+     * 记录转存溢出文件也失败而丢弃的 Client 行数。
+     *
+     * @param rows 丢弃的行数
+     */
+    public void recordClientDiscarded(int rows) {
+        clientDiscardedCounter.increment(rows);
+    }
+
+    /**
+     * 记录一次 WebSocket 写出耗时。
+     *
+     * @param startNanos 开始写出时的 System.nanoTime()
+     */
+    public void recordWsSend(long startNanos) {
+        wsSendTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一个写出的 WebSocket 数据帧的原始字节数。
+     *
+     * @param binary     是否为二进制帧
+     * @param compressed 所在连接是否协商了 permessage-deflate
+     * @param bytes      原始字节数
+     */
+    public void recordWsFrame(boolean binary, boolean compressed, int bytes) {
+        wsFrameBytes[(binary ? 2 : 0) + (compressed ? 1 : 0)].record(bytes);
+    }
+
+    /**
+     * 记录一次会话发送队列积压超限。
+     */
+    public void recordWsOverflow() {
+        wsOverflowCounter.increment();
+    }
+
+    /**
+     * 登记链路各组件的队列深度与累计计数；由 Spring Boot 在全部单例创建后调用，避免与监听器、派发器形成循环依赖。
+     * Stream 消费者仅在 training.ingest.mode=stream 时存在；多节点转发计数仅在 training.cluster.enabled=true 时登记。
+     *
+     * @param registry 指标注册表
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        TaskOrderedDispatcher dispatcher = applicationContext.getBean("trainingMessageDispatcher", TaskOrderedDispatcher.class);
+        Gauge.builder("training.dispatcher.queued", dispatcher, TaskOrderedDispatcher::getQueuedCount)
+                .description("全部 lane 排队中的消息数").register(registry);
+        Gauge.builder("training.dispatcher.queued.max", dispatcher, TaskOrderedDispatcher::getMaxLaneQueuedCount)
+                .description("排队最深的 lane 的队列长度").register(registry);
+
+        TrainingMessageListener listener = applicationContext.getBean(TrainingMessageListener.class);
+        Gauge.builder("training.backpressure.spooling", listener, l -> l.isSpooling() ? 1 : 0)
+                .description("是否处于溢出模式").register(registry);
+        FunctionCounter.builder("training.backpressure.rejected", listener, TrainingMessageListener::getRejectedCount)
+                .description("派发被拒绝次数").register(registry);
+        FunctionCounter.builder("training.backpressure.spooled", listener, TrainingMessageListener::getSpooledCount)
+                .description("写入溢出文件的消息数").register(registry);
+        FunctionCounter.builder("training.backpressure.drained", listener, TrainingMessageListener::getDrainedCount)
+                .description("从溢出文件回放的消息数").register(registry);
+        FunctionCounter.builder("training.backpressure.dropped", listener, TrainingMessageListener::getDroppedCount)
+                .description("溢出文件写入失败而丢弃的消息数").register(registry);
+
+        Gauge.builder("training.round.index.size", applicationContext.getBean(RoundIdIndex.class), RoundIdIndex::size)
+                .description("RoundIdIndex 缓存的任务数").register(registry);
+        Gauge.builder("training.snapshot.size", applicationContext.getBean(TaskSnapshotBuffer.class), TaskSnapshotBuffer::size)
+                .description("TaskSnapshotBuffer 缓存的任务数").register(registry);
+
+        WebSocketHeartbeat heartbeat = applicationContext.getBean(WebSocketHeartbeat.class);
+        Gauge.builder("training.websocket.sessions.open", heartbeat, WebSocketHeartbeat::getOpenCount)
+                .description("已建立的 WebSocket 连接数").register(registry);
+        Gauge.builder("training.websocket.sessions.authenticated", heartbeat, WebSocketHeartbeat::getAuthenticatedCount)
+                .description("已完成首包认证的 WebSocket 连接数").register(registry);
+        FunctionCounter.builder("training.websocket.sessions.reaped", heartbeat, WebSocketHeartbeat::getReapedCount)
+                .description("因认证超时、空闲超时或失效被回收的连接数").register(registry);
+
+        applicationContext.getBeanProvider(TrainingStreamConsumer.class).ifAvailable(consumer -> {
+            FunctionCounter.builder("training.stream.acked", consumer, TrainingStreamConsumer::getAckedCount)
+                    .description("已确认的 Stream 消息数").register(registry);
+            FunctionCounter.builder("training.stream.claimed", consumer, TrainingStreamConsumer::getClaimedCount)
+                    .description("从其他消费者认领的 Stream 消息数").register(registry);
+            FunctionCounter.builder("training.stream.dead-lettered", consumer, TrainingStreamConsumer::getDeadLetteredCount)
+                    .description("投递次数耗尽后转存死信 Stream 的消息数").register(registry);
+        });
+        applicationContext.getBeanProvider(ClusterPushRelay.class).ifAvailable(relay -> {
+            if (!relay.isEnabled()) {
+                return;
+            }
+            FunctionCounter.builder("training.cluster.relay.published", relay, ClusterPushRelay::getPublishedCount)
+                    .description("发布到其他节点的推送数").register(registry);
+            FunctionCounter.builder("training.cluster.relay.received", relay, ClusterPushRelay::getReceivedCount)
+                    .description("收到其他节点转发的推送数").register(registry);
+            FunctionCounter.builder("training.cluster.relay.dropped", relay, ClusterPushRelay::getDroppedCount)
+                    .description("lane 已满而丢弃的转发推送数").register(registry);
+        });
+    }
+
+    /**
+     * 按消息时间戳记录距今的耗时；时间戳缺失、非法或晚于当前时间时不记录。
+     *
+     * @param timer       目标 Timer
+     * @param publishedAt 消息自带的 ISO 时间戳
+     */
+    private static void recordSince(Timer timer, String publishedAt) {
+        LocalDateTime published = TimeUtils.parseIsoDateTime(publishedAt);
+        if (published == null) {
+            return;
+        }
+        Duration elapsed = Duration.between(published, LocalDateTime.now());
+        if (!elapsed.isNegative()) {
+            timer.record(elapsed);
+        }
+    }
+
+    /**
+     * 注册发布百分位直方图的 Timer，桶范围限定在 1ms 至 60s。
+     *
+     * @param name        指标名
+     * @param description 指标说明
+     * @param type        消息类型标签，null 表示不带 type 标签
+     * @return Timer
+     */
+    private Timer timer(String name, String description, MessageType type) {
+        Timer.Builder builder = Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(60));
+        if (type != null) {
+            builder.tag("type", type.tag);
+        }
+        return builder.register(meterRegistry);
+    }
+}
@@ -8,12 +8,19 @@ import java.util.List;
 public interface ClientService extends IService<Client> {
 
     /**
-     * 保存单条客户端训练记录（由训练消息处理器写库时调用）。
+     * 保存单条客户端训练记录，按 (rid, client_index) 幂等写入（复制任务时调用）。
      *
      * @param client 客户端记录实体
      */
     void saveClient(Client client);
 
+    /**
+     * 以一条多行 upsert 批量保存客户端训练记录，按 (rid, client_index) 幂等（由 Client 写后缓冲 flush 时调用）。
+     *
+     * @param clients 客户端记录实体列表
+     */
+    void saveClientBatch(List<Client> clients);
+
     /**
      * 在给定 round id 集合中，查询指定 client_index 的最新一条 Client（按 timestamp 降序）。
      *
@@ -23,6 +30,22 @@ public interface ClientService extends IService<Client> {
      */
     Client getLatestByRidsAndClientIndex(List<Long> rids, Integer clientIndex);
 
+    /**
+     * 以一条语句查询某任务每个 client_index 的最新一条 Client（按 timestamp 降序），按 client_index 升序。
+     *
+     * @param tid 任务 id
+     * @return 每个 client_index 至多一条 Client，无数据返回空列表
+     */
+    List<Client> listLatestPerClientIndexByTid(Long tid);
+
+    /**
+     * 以一条语句查询多个任务下每个 client_index 的最新一条 Client（先比轮次，再比 timestamp），结果回填 tid。
+     *
+     * @param tids 任务 id 集合
+     * @return 每个 (任务, client_index) 至多一条 Client，按 tid、client_index 升序；tids 为空返回空列表
+     */
+    List<Client> listLatestPerClientIndexByTids(List<Long> tids);
+
     /**
      * 在给定 round id 集合中，查询指定 client_index 的全部 Client，按 timestamp 升序（用于客户端详情表格/曲线）。
      *
@@ -8,12 +8,19 @@ import java.util.List;
 public interface RoundService extends IService<Round> {
 
     /**
-     * 保存单条轮次记录（由训练消息处理器写库时调用）。
+     * 按 (tid, round_num) 幂等保存轮次记录：不存在则插入，已存在则覆盖指标；完成后 round.id 为该轮次主键。
      *
      * @param round 轮次记录实体
      */
     void saveRound(Round round);
 
+    /**
+     * 按 (tid, round_num) 写入占位轮次记录：已存在则不修改，仅回填主键到 round.id。
+     *
+     * @param round 占位轮次记录实体
+     */
+    void saveRoundIfAbsent(Round round);
+
     /**
      * 根据任务 id 与轮次号查询唯一 Round（用于 Client 写入时关联 rid）。
      *
@@ -30,4 +37,12 @@ public interface RoundService extends IService<Round> {
      * @return 该任务下全部 Round，按 roundNum 升序
      */
     List<Round> listByTidOrderByRoundNum(Long tid);
+
+    /**
+     * 以一条 IN 查询取多个任务的轮次列表，按 tid、roundNum 升序（用于推荐页多算法对比）。
+     *
+     * @param tids 任务 id 集合
+     * @return 这些任务下全部 Round；tids 为空返回空列表
+     */
+    List<Round> listByTidsOrderByRoundNum(List<Long> tids);
 }
@@ -1,12 +1,14 @@
 package ynu.jackielinn.server.service;
 
 import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RelayMessage;
 import ynu.jackielinn.server.dto.message.RoundMessage;
 import ynu.jackielinn.server.dto.message.StatusMessage;
 
 /**
  * 训练消息处理器：处理 Redis 订阅到的 Round/Client/Status 消息，
  * 先写 MySQL（Round/Client 表及 Task 状态），再推 WebSocket。
+ * 处理方法返回该消息的写入是否成功，Stream 接入据此只确认写入成功的记录，失败的留在 PEL 中重试。
  */
 public interface TrainingMessageHandler {
 
@@ -14,20 +16,30 @@ public interface TrainingMessageHandler {
      * 处理轮次消息：写入或更新 Round，更新 Task 指标；写库后向该 taskId 的 WebSocket 推送。
      *
      * @param message 轮次指标消息（taskId、roundNum、五指标、timestamp）
+     * @return Round 已落库返回 true；此前缓冲的 Client 行未能落库（此时不写 Round）或处理失败返回 false
      */
-    void handleRoundMessage(RoundMessage message);
+    boolean handleRoundMessage(RoundMessage message);
 
     /**
      * 处理客户端消息：按 (taskId, roundNum) 保证 Round 存在后写入 Client，再向该 taskId 的 WebSocket 推送。
      *
      * @param message 客户端指标消息（taskId、roundNum、clientIndex、五指标、timestamp）
+     * @return Round 已确保存在且 Client 已进入写后缓冲返回 true（落库结果由缓冲 flush 报告），处理失败返回 false
      */
-    void handleClientMessage(ClientMessage message);
+    boolean handleClientMessage(ClientMessage message);
 
     /**
      * 处理状态消息：更新 Task 状态（IN_PROGRESS/SUCCESS/FAILED/CANCELLED），终态时取消 Redis 订阅并可选关闭 WebSocket。
      *
      * @param message 状态消息（taskId、status、message、timestamp）
+     * @return 状态及终态前的缓冲写回均成功（或无需写入）返回 true，否则返回 false
      */
-    void handleStatusMessage(StatusMessage message);
+    boolean handleStatusMessage(StatusMessage message);
+
+    /**
+     * 处理其他节点转发的消息：不写库，只更新本节点快照并向本节点的 WebSocket 推送。
+     *
+     * @param message 转发消息（round/client/status 之一）
+     */
+    void handleRelayedMessage(RelayMessage message);
 }
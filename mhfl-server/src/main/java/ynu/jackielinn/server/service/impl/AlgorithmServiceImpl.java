@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import ynu.jackielinn.server.dto.request.ListAlgorithmRO;
 import ynu.jackielinn.server.dto.response.AlgorithmVO;
@@ -19,8 +20,11 @@ import java.util.List;
 @Service
 public class AlgorithmServiceImpl extends ServiceImpl<AlgorithmMapper, Algorithm> implements AlgorithmService {
 
+    @Resource
+    private RecommendResultCache recommendResultCache;
+
     /**
-     * 管理员创建算法，需要检查算法名字是否存在重名
+     * 管理员创建算法，需要检查算法名字是否存在重名；算法表的增删改都会清空推荐页结果缓存
      *
      * @param algorithmName 算法名字
      * @return null 表示成功，否则为错误信息
@@ -34,6 +38,7 @@ public class AlgorithmServiceImpl extends ServiceImpl<AlgorithmMapper, Algorithm
                 .algorithmName(algorithmName)
                 .build();
         if (this.save(algorithm)) {
+            recommendResultCache.invalidateAll();
             return null;
         } else {
             return "内部错误，请联系管理员";
@@ -63,6 +68,7 @@ public class AlgorithmServiceImpl extends ServiceImpl<AlgorithmMapper, Algorithm
                 .set(Algorithm::getDeleted, 1)
                 .set(Algorithm::getDeleteTime, now);
         if (this.update(updateWrapper)) {
+            recommendResultCache.invalidateAll();
             return null;
         }
         return "删除失败，请联系管理员";
@@ -94,6 +100,7 @@ public class AlgorithmServiceImpl extends ServiceImpl<AlgorithmMapper, Algorithm
                 .algorithmName(algorithmName)
                 .build();
         if (this.updateById(updateAlgorithm)) {
+            recommendResultCache.invalidateAll();
             return null;
         } else {
             return "更新失败，请联系管理员";
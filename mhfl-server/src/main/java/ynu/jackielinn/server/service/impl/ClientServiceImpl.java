@@ -6,19 +6,43 @@ import ynu.jackielinn.server.entity.Client;
 import ynu.jackielinn.server.mapper.ClientMapper;
 import ynu.jackielinn.server.service.ClientService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
 public class ClientServiceImpl extends ServiceImpl<ClientMapper, Client> implements ClientService {
 
     /**
-     * 保存单条客户端训练记录。
+     * 保存单条客户端训练记录，按 (rid, client_index) 幂等写入。
      *
      * @param client 客户端记录实体
      */
     @Override
     public void saveClient(Client client) {
-        save(client);
+        saveClientBatch(List.of(client));
+    }
+
+    /**
+     * 以一条多行 INSERT … ON DUPLICATE KEY UPDATE 批量保存客户端训练记录，重复投递覆盖而非新增；
+     * 自定义 SQL 不经过自动填充，故在此补齐 createTime/updateTime。
+     *
+     * @param clients 客户端记录实体列表
+     */
+    @Override
+    public void saveClientBatch(List<Client> clients) {
+        if (clients == null || clients.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (Client client : clients) {
+            if (client.getCreateTime() == null) {
+                client.setCreateTime(now);
+            }
+            if (client.getUpdateTime() == null) {
+                client.setUpdateTime(now);
+            }
+        }
+        getBaseMapper().upsertBatch(clients);
     }
 
     /**
@@ -41,6 +65,34 @@ public class ClientServiceImpl extends ServiceImpl<ClientMapper, Client> impleme
                 .one();
     }
 
+    /**
+     * 以一条窗口函数查询取某任务每个 client_index 的最新一条 Client，按 client_index 升序。
+     *
+     * @param tid 任务 id
+     * @return 每个 client_index 至多一条 Client，无数据返回空列表
+     */
+    @Override
+    public List<Client> listLatestPerClientIndexByTid(Long tid) {
+        if (tid == null) {
+            return List.of();
+        }
+        return getBaseMapper().selectLatestPerClientIndexByTid(tid);
+    }
+
+    /**
+     * 以一条窗口函数查询取多个任务下每个 client_index 的最新一条 Client（先比轮次，再比 timestamp），结果回填 tid。
+     *
+     * @param tids 任务 id 集合
+     * @return 每个 (任务, client_index) 至多一条 Client；tids 为空返回空列表
+     */
+    @Override
+    public List<Client> listLatestPerClientIndexByTids(List<Long> tids) {
+        if (tids == null || tids.isEmpty()) {
+            return List.of();
+        }
+        return getBaseMapper().selectLatestPerClientIndexByTids(tids);
+    }
+
     /**
      * 在给定 round id 集合中，查询指定 client_index 的全部 Client，按 timestamp 升序。
      *
@@ -0,0 +1,178 @@
+package ynu.jackielinn.server.service.impl;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import ynu.jackielinn.server.utils.Const;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * 推荐展示页结果缓存。
+ * 推荐页各接口只读取 RECOMMENDED 任务及其轮次、客户端数据，这些数据在 setRecommend 之后不再变化，
+ * 故按 (接口, datasetId, 候选任务 id, 参数) 缓存整份响应对象，超过 recommend.cache-size 时淘汰最久未访问的条目；
+ * 在任务推荐状态切换或算法表变更时整体失效。多节点部署（training.cluster.enabled=true）时失效经 Redis 通道
+ * recommend:cache:invalidate 广播，其他节点收到后清空本地缓存；条目另有 recommend.cache-ttl-ms 的存活上限，
+ * 广播丢失（如订阅重连期间）时旧结果也不会长期留存。
+ * 失效时递增代次，加载前后代次不一致的结果不写入，避免与失效交错的并发加载把旧数据放回缓存。
+ */
+@Slf4j
+@Component
+class RecommendResultCache implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${training.cluster.enabled:false}")
+    private boolean clusterEnabled = false;
+
+    @Value("${recommend.cache-size:256}")
+    private int maxEntries = 256;
+
+    @Value("${recommend.cache-ttl-ms:600000}")
+    private long ttlMs = 600000;
+
+    /**
+     * 缓存的结果及其过期时间（毫秒）。
+     *
+     * @param value     响应对象
+     * @param expiresAt 过期时间，Long.MAX_VALUE 表示不过期
+     */
+    private record Entry(Object value, long expiresAt) {
+    }
+
+    /**
+     * 本实例标识，随失效广播发出，用于忽略自己发布的消息。
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long generation;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * 命中且未过期直接返回缓存结果，否则调用 loader 计算并写入缓存；结果为 null 时不缓存。
+     *
+     * @param key    缓存键，元素须实现 equals/hashCode
+     * @param loader 未命中时的加载函数
+     * @param <T>    结果类型
+     * @return 缓存或新计算的结果
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(List<Object> key, Supplier<T> loader) {
+        long loadGeneration;
+        synchronized (entries) {
+            Entry cached = entries.get(key);
+            if (cached != null && System.currentTimeMillis() < cached.expiresAt()) {
+                hits++;
+                return (T) cached.value();
+            }
+            if (cached != null) {
+                entries.remove(key);
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        T value = loader.get();
+        if (value == null) {
+            return null;
+        }
+        long expiresAt = ttlMs > 0 ? System.currentTimeMillis() + ttlMs : Long.MAX_VALUE;
+        synchronized (entries) {
+            if (loadGeneration == generation) {
+                entries.put(key, new Entry(value, expiresAt));
+                Iterator<List<Object>> it = entries.keySet().iterator();
+                while (entries.size() > Math.max(1, maxEntries) && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 清空全部缓存结果，由推荐状态切换与算法表变更调用；多节点部署时广播给其他节点。
+     */
+    void invalidateAll() {
+        invalidateLocal();
+        if (!clusterEnabled) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(Const.RECOMMEND_CACHE_INVALIDATE_CHANNEL, instanceId);
+        } catch (Exception e) {
+            log.warn("Broadcast recommend cache invalidation failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点的失效广播时清空本地缓存；消息体为发布实例标识，忽略本实例发布的消息。
+     *
+     * @param message Redis 消息体
+     * @param pattern 订阅的 channel 模式（未使用）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String node = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!instanceId.equals(node)) {
+            invalidateLocal();
+        }
+    }
+
+    /**
+     * 递增代次并清空本节点缓存。
+     */
+    private void invalidateLocal() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    /**
+     * 当前缓存条目数。
+     *
+     * @return 条目数
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 累计命中次数。
+     *
+     * @return 命中次数
+     */
+    long getHits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    /**
+     * 累计未命中次数。
+     *
+     * @return 未命中次数
+     */
+    long getMisses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+}
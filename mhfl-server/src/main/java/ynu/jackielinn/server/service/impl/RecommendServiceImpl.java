@@ -22,8 +22,11 @@ import ynu.jackielinn.server.service.ClientService;
 import ynu.jackielinn.server.service.RecommendService;
 import ynu.jackielinn.server.service.RoundService;
 import ynu.jackielinn.server.service.TaskService;
+import ynu.jackielinn.server.utils.GaussianSmoother;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -52,6 +55,96 @@ public class RecommendServiceImpl implements RecommendService {
     @Resource
     private ClientService clientService;
 
+    @Resource
+    private RecommendResultCache recommendResultCache;
+
+    /**
+     * 查询推荐展示页实验设置，同一数据集与候选任务的结果由 RecommendResultCache 缓存。
+     *
+     * @param datasetId 数据集 ID
+     * @param candidateTaskIds 候选任务 ID 列表（由控制器维护）
+     * @return 实验设置响应对象
+     */
+    @Override
+    public RecommendExperimentSettingsVO getExperimentSettings(Long datasetId, List<Long> candidateTaskIds) {
+        return recommendResultCache.get(cacheKey("experiment-settings", datasetId, candidateTaskIds, null),
+                () -> loadExperimentSettings(datasetId, candidateTaskIds));
+    }
+
+    /**
+     * 查询推荐展示页算法效果对比数据，结果由 RecommendResultCache 缓存。
+     *
+     * @param datasetId 数据集 ID
+     * @param candidateTaskIds 候选任务 ID 列表（由控制器维护）
+     * @return 算法效果对比响应对象
+     */
+    @Override
+    public RecommendMetricsCompareVO getMetricsCompare(Long datasetId, List<Long> candidateTaskIds) {
+        return recommendResultCache.get(cacheKey("metrics-compare", datasetId, candidateTaskIds, null),
+                () -> loadMetricsCompare(datasetId, candidateTaskIds));
+    }
+
+    /**
+     * 查询推荐展示页测试集曲线数据，按规范化后的 sigma 缓存。
+     *
+     * @param datasetId 数据集 ID
+     * @param candidateTaskIds 候选任务 ID 列表（由控制器维护）
+     * @param sigma 高斯平滑 sigma（推荐范围 0~5）
+     * @return 测试集曲线响应对象
+     */
+    @Override
+    public RecommendTestCurvesVO getTestCurves(Long datasetId, List<Long> candidateTaskIds, Double sigma) {
+        double actualSigma = normalizeSigma(sigma);
+        return recommendResultCache.get(cacheKey("test-curves", datasetId, candidateTaskIds, actualSigma),
+                () -> loadTestCurves(datasetId, candidateTaskIds, actualSigma));
+    }
+
+    /**
+     * 查询推荐页客户端最新指标（按单一指标），按规范化后的指标名缓存。
+     *
+     * @param datasetId 数据集ID
+     * @param candidateTaskIds 候选任务ID列表
+     * @param metric 指标名称，仅支持 accuracy/precision/recall/f1
+     * @return 客户端指标响应对象
+     */
+    @Override
+    public RecommendClientMetricsVO getClientMetrics(Long datasetId, List<Long> candidateTaskIds, String metric) {
+        String normalizedMetric = normalizeClientMetric(metric);
+        return recommendResultCache.get(cacheKey("client-metrics", datasetId, candidateTaskIds, normalizedMetric),
+                () -> loadClientMetrics(datasetId, candidateTaskIds, normalizedMetric));
+    }
+
+    /**
+     * 查询推荐页客户端详情指标曲线，按 (clientIndex, 规范化后的指标名) 缓存。
+     *
+     * @param datasetId 数据集ID
+     * @param candidateTaskIds 候选任务ID列表
+     * @param clientIndex 客户端索引
+     * @param metric 指标名称，仅支持 accuracy/precision/recall/f1
+     * @return 客户端详情响应对象
+     */
+    @Override
+    public RecommendClientDetailVO getClientDetail(Long datasetId, List<Long> candidateTaskIds, Integer clientIndex, String metric) {
+        String normalizedMetric = normalizeClientMetric(metric);
+        return recommendResultCache.get(
+                cacheKey("client-detail", datasetId, candidateTaskIds, Arrays.asList(clientIndex, normalizedMetric)),
+                () -> loadClientDetail(datasetId, candidateTaskIds, clientIndex, normalizedMetric));
+    }
+
+    /**
+     * 构造缓存键；候选任务 ID 列表复制一份，避免调用方后续修改影响键的相等性。
+     *
+     * @param endpoint 接口名
+     * @param datasetId 数据集 ID
+     * @param candidateTaskIds 候选任务 ID 列表
+     * @param param 接口参数，无参数时为 null
+     * @return 缓存键
+     */
+    private static List<Object> cacheKey(String endpoint, Long datasetId, List<Long> candidateTaskIds, Object param) {
+        return Arrays.asList(endpoint, datasetId,
+                candidateTaskIds == null ? null : new ArrayList<>(candidateTaskIds), param);
+    }
+
     /**
      * 查询推荐展示页实验设置。
      * 从候选任务 ID 中按顺序选择第一条满足条件的任务：
@@ -64,8 +157,7 @@ public class RecommendServiceImpl implements RecommendService {
      * @param candidateTaskIds 候选任务 ID 列表（由控制器维护）
      * @return 实验设置响应对象
      */
-    @Override
-    public RecommendExperimentSettingsVO getExperimentSettings(Long datasetId, List<Long> candidateTaskIds) {
+    private RecommendExperimentSettingsVO loadExperimentSettings(Long datasetId, List<Long> candidateTaskIds) {
         List<Long> validTaskIds = candidateTaskIds == null
                 ? Collections.emptyList()
                 : candidateTaskIds.stream().filter(Objects::nonNull).distinct().toList();
@@ -120,8 +212,7 @@ public class RecommendServiceImpl implements RecommendService {
      * @param candidateTaskIds 候选任务 ID 列表（由控制器维护）
      * @return 算法效果对比响应对象
      */
-    @Override
-    public RecommendMetricsCompareVO getMetricsCompare(Long datasetId, List<Long> candidateTaskIds) {
+    private RecommendMetricsCompareVO loadMetricsCompare(Long datasetId, List<Long> candidateTaskIds) {
         List<Long> validTaskIds = candidateTaskIds == null
                 ? Collections.emptyList()
                 : candidateTaskIds.stream().filter(Objects::nonNull).distinct().toList();
@@ -136,15 +227,7 @@ public class RecommendServiceImpl implements RecommendService {
         Map<Long, Task> taskById = taskList.stream()
                 .collect(Collectors.toMap(Task::getId, t -> t, (a, b) -> a, LinkedHashMap::new));
 
-        List<Long> aidList = taskList.stream()
-                .map(Task::getAid)
-                .filter(Objects::nonNull)
-                .distinct()
-                .toList();
-        Map<Long, String> algorithmNameByAid = aidList.isEmpty()
-                ? Collections.emptyMap()
-                : algorithmService.listByIds(aidList).stream()
-                .collect(Collectors.toMap(Algorithm::getId, Algorithm::getAlgorithmName));
+        Map<Long, String> algorithmNameByAid = loadAlgorithmNames(taskList);
 
         List<RecommendMetricsCompareItemVO> items = validTaskIds.stream()
                 .map(taskId -> {
@@ -180,16 +263,14 @@ public class RecommendServiceImpl implements RecommendService {
 
     /**
      * 查询推荐展示页测试集曲线数据。
-     * 返回每个算法的 raw 与 smooth 两套序列，其中 smooth 使用 sigma=5 的高斯平滑。
+     * 返回每个算法的 raw 与 smooth 两套序列（double[]，缺失轮次为 NaN），四项指标经 GaussianSmoother 一遍平滑。
      *
      * @param datasetId 数据集 ID
      * @param candidateTaskIds 候选任务 ID 列表（由控制器维护）
-     * @param sigma 高斯平滑 sigma（推荐范围 0~5）
+     * @param actualSigma 规范化后的高斯平滑 sigma
      * @return 测试集曲线响应对象
      */
-    @Override
-    public RecommendTestCurvesVO getTestCurves(Long datasetId, List<Long> candidateTaskIds, Double sigma) {
-        double actualSigma = normalizeSigma(sigma);
+    private RecommendTestCurvesVO loadTestCurves(Long datasetId, List<Long> candidateTaskIds, double actualSigma) {
         List<Long> validTaskIds = candidateTaskIds == null
                 ? Collections.emptyList()
                 : candidateTaskIds.stream().filter(Objects::nonNull).distinct().toList();
@@ -204,35 +285,10 @@ public class RecommendServiceImpl implements RecommendService {
         Map<Long, Task> taskById = taskList.stream()
                 .collect(Collectors.toMap(Task::getId, t -> t, (a, b) -> a, LinkedHashMap::new));
 
-        List<Long> aidList = taskList.stream()
-                .map(Task::getAid)
-                .filter(Objects::nonNull)
-                .distinct()
-                .toList();
-        Map<Long, String> algorithmNameByAid = aidList.isEmpty()
-                ? Collections.emptyMap()
-                : algorithmService.listByIds(aidList).stream()
-                .collect(Collectors.toMap(Algorithm::getId, Algorithm::getAlgorithmName));
-
-        int roundsCount = taskList.stream()
-                .map(Task::getNumSteps)
-                .filter(Objects::nonNull)
-                .max(Integer::compareTo)
-                .orElse(0);
+        Map<Long, String> algorithmNameByAid = loadAlgorithmNames(taskList);
 
-        if (roundsCount <= 0) {
-            roundsCount = taskList.stream()
-                    .map(Task::getId)
-                    .map(roundService::listByTidOrderByRoundNum)
-                    .filter(list -> list != null && !list.isEmpty())
-                    .map(list -> list.stream()
-                            .map(Round::getRoundNum)
-                            .filter(Objects::nonNull)
-                            .max(Integer::compareTo)
-                            .orElse(-1) + 1)
-                    .max(Integer::compareTo)
-                    .orElse(0);
-        }
+        Map<Long, List<Round>> roundsByTask = loadRoundsByTask(taskById.keySet());
+        int roundsCount = resolveRoundsCount(taskList, roundsByTask);
 
         List<Integer> rounds = new ArrayList<>(Math.max(roundsCount, 0));
         for (int i = 0; i < roundsCount; i++) {
@@ -247,23 +303,26 @@ public class RecommendServiceImpl implements RecommendService {
                         return emptyCurveItem(finalRoundsCount);
                     }
 
-                    List<Round> roundList = roundService.listByTidOrderByRoundNum(task.getId());
-                    List<Double> accuracyRaw = initSeriesFromRounds(roundList, finalRoundsCount, Round::getAccuracy);
-                    List<Double> precisionRaw = initSeriesFromRounds(roundList, finalRoundsCount, Round::getPrecision);
-                    List<Double> recallRaw = initSeriesFromRounds(roundList, finalRoundsCount, Round::getRecall);
-                    List<Double> f1Raw = initSeriesFromRounds(roundList, finalRoundsCount, Round::getF1Score);
+                    List<Round> roundList = roundsByTask.getOrDefault(task.getId(), List.of());
+                    double[][] raw = {
+                            initSeriesFromRounds(roundList, finalRoundsCount, Round::getAccuracy),
+                            initSeriesFromRounds(roundList, finalRoundsCount, Round::getPrecision),
+                            initSeriesFromRounds(roundList, finalRoundsCount, Round::getRecall),
+                            initSeriesFromRounds(roundList, finalRoundsCount, Round::getF1Score)
+                    };
+                    double[][] smooth = GaussianSmoother.smooth(raw, actualSigma);
 
                     return RecommendCurveAlgorithmVO.builder()
                             .taskId(task.getId())
                             .algorithmName(algorithmNameByAid.get(task.getAid()))
-                            .accuracyRaw(accuracyRaw)
-                            .precisionRaw(precisionRaw)
-                            .recallRaw(recallRaw)
-                            .f1Raw(f1Raw)
-                            .accuracySmooth(gaussianSmooth(accuracyRaw, actualSigma))
-                            .precisionSmooth(gaussianSmooth(precisionRaw, actualSigma))
-                            .recallSmooth(gaussianSmooth(recallRaw, actualSigma))
-                            .f1Smooth(gaussianSmooth(f1Raw, actualSigma))
+                            .accuracyRaw(raw[0])
+                            .precisionRaw(raw[1])
+                            .recallRaw(raw[2])
+                            .f1Raw(raw[3])
+                            .accuracySmooth(smooth[0])
+                            .precisionSmooth(smooth[1])
+                            .recallSmooth(smooth[2])
+                            .f1Smooth(smooth[3])
                             .build();
                 })
                 .toList();
@@ -280,12 +339,10 @@ public class RecommendServiceImpl implements RecommendService {
      *
      * @param datasetId 数据集ID
      * @param candidateTaskIds 候选任务ID列表
-     * @param metric 指标名称，仅支持 accuracy/precision/recall/f1
+     * @param normalizedMetric 规范化后的指标名称
      * @return 客户端指标响应对象
      */
-    @Override
-    public RecommendClientMetricsVO getClientMetrics(Long datasetId, List<Long> candidateTaskIds, String metric) {
-        String normalizedMetric = normalizeClientMetric(metric);
+    private RecommendClientMetricsVO loadClientMetrics(Long datasetId, List<Long> candidateTaskIds, String normalizedMetric) {
         List<Long> validTaskIds = candidateTaskIds == null
                 ? Collections.emptyList()
                 : candidateTaskIds.stream().filter(Objects::nonNull).distinct().toList();
@@ -305,6 +362,10 @@ public class RecommendServiceImpl implements RecommendService {
                 .max(Integer::compareTo)
                 .orElse(100);
 
+        Map<Long, String> algorithmNameByAid = loadAlgorithmNames(taskList);
+        Map<Long, Map<Integer, Double>> metricMapByTask = buildLatestClientMetricMaps(
+                new ArrayList<>(taskById.keySet()), normalizedMetric);
+
         List<String> algorithmNames = new ArrayList<>(validTaskIds.size());
         List<Map<Integer, Double>> taskMetricMaps = new ArrayList<>(validTaskIds.size());
         for (Long taskId : validTaskIds) {
@@ -315,13 +376,8 @@ public class RecommendServiceImpl implements RecommendService {
                 continue;
             }
 
-            String algorithmName = null;
-            if (task.getAid() != null) {
-                Algorithm algorithm = algorithmService.getById(task.getAid());
-                algorithmName = algorithm != null ? algorithm.getAlgorithmName() : null;
-            }
-            algorithmNames.add(algorithmName);
-            taskMetricMaps.add(buildLatestClientMetricMap(task.getId(), normalizedMetric));
+            algorithmNames.add(algorithmNameByAid.get(task.getAid()));
+            taskMetricMaps.add(metricMapByTask.getOrDefault(task.getId(), Collections.emptyMap()));
         }
 
         List<RecommendClientMetricItemVO> clients = new ArrayList<>(Math.max(clientCount, 0));
@@ -350,12 +406,10 @@ public class RecommendServiceImpl implements RecommendService {
      * @param datasetId 数据集ID
      * @param candidateTaskIds 候选任务ID列表
      * @param clientIndex 客户端索引
-     * @param metric 指标名称，仅支持 accuracy/precision/recall/f1
+     * @param normalizedMetric 规范化后的指标名称
      * @return 客户端详情响应对象
      */
-    @Override
-    public RecommendClientDetailVO getClientDetail(Long datasetId, List<Long> candidateTaskIds, Integer clientIndex, String metric) {
-        String normalizedMetric = normalizeClientMetric(metric);
+    private RecommendClientDetailVO loadClientDetail(Long datasetId, List<Long> candidateTaskIds, Integer clientIndex, String normalizedMetric) {
         List<Long> validTaskIds = candidateTaskIds == null
                 ? Collections.emptyList()
                 : candidateTaskIds.stream().filter(Objects::nonNull).distinct().toList();
@@ -369,24 +423,28 @@ public class RecommendServiceImpl implements RecommendService {
         Map<Long, Task> taskById = taskList.stream()
                 .collect(Collectors.toMap(Task::getId, t -> t, (a, b) -> a, LinkedHashMap::new));
 
-        int roundsCount = taskList.stream()
-                .map(Task::getNumSteps)
-                .filter(Objects::nonNull)
-                .max(Integer::compareTo)
-                .orElse(0);
-        if (roundsCount <= 0) {
-            roundsCount = taskList.stream()
-                    .map(Task::getId)
-                    .map(roundService::listByTidOrderByRoundNum)
-                    .filter(list -> list != null && !list.isEmpty())
-                    .map(list -> list.stream()
-                            .map(Round::getRoundNum)
-                            .filter(Objects::nonNull)
-                            .max(Integer::compareTo)
-                            .orElse(-1) + 1)
-                    .max(Integer::compareTo)
-                    .orElse(0);
+        Map<Long, String> algorithmNameByAid = loadAlgorithmNames(taskList);
+        Map<Long, List<Round>> roundsByTask = loadRoundsByTask(taskById.keySet());
+        int roundsCount = resolveRoundsCount(taskList, roundsByTask);
+
+        Map<Long, Integer> ridToRoundNum = new LinkedHashMap<>();
+        Map<Long, Long> ridToTid = new LinkedHashMap<>();
+        roundsByTask.forEach((tid, roundsOfTask) -> {
+            for (Round round : roundsOfTask) {
+                if (round.getId() != null && round.getRoundNum() != null) {
+                    ridToRoundNum.putIfAbsent(round.getId(), round.getRoundNum());
+                    ridToTid.putIfAbsent(round.getId(), tid);
+                }
+            }
+        });
+        Map<Long, List<Client>> clientsByTask = new LinkedHashMap<>();
+        for (Client client : clientService.listByRidsAndClientIndex(new ArrayList<>(ridToRoundNum.keySet()), clientIndex)) {
+            Long tid = client.getRid() != null ? ridToTid.get(client.getRid()) : null;
+            if (tid != null) {
+                clientsByTask.computeIfAbsent(tid, k -> new ArrayList<>()).add(client);
+            }
         }
+
         List<Integer> rounds = new ArrayList<>(Math.max(roundsCount, 0));
         for (int i = 0; i < roundsCount; i++) {
             rounds.add(i + 1);
@@ -404,24 +462,9 @@ public class RecommendServiceImpl implements RecommendService {
                                 .build();
                     }
 
-                    String algorithmName = null;
-                    if (task.getAid() != null) {
-                        Algorithm algorithm = algorithmService.getById(task.getAid());
-                        algorithmName = algorithm != null ? algorithm.getAlgorithmName() : null;
-                    }
-
-                    List<Round> roundsOfTask = roundService.listByTidOrderByRoundNum(task.getId());
-                    Map<Long, Integer> ridToRoundNum = roundsOfTask.stream()
-                            .filter(r -> r.getId() != null && r.getRoundNum() != null)
-                            .collect(Collectors.toMap(Round::getId, Round::getRoundNum, (a, b) -> a, LinkedHashMap::new));
-                    List<Long> rids = new ArrayList<>(ridToRoundNum.keySet());
-                    List<Client> clients = clientService.listByRidsAndClientIndex(rids, clientIndex);
-
+                    List<Client> clients = clientsByTask.getOrDefault(task.getId(), List.of());
                     Map<Integer, Double> roundMetricMap = new LinkedHashMap<>();
                     for (Client client : clients) {
-                        if (client.getRid() == null) {
-                            continue;
-                        }
                         Integer roundNum = ridToRoundNum.get(client.getRid());
                         if (roundNum == null || roundNum < 0 || roundNum >= finalRoundsCount) {
                             continue;
@@ -435,7 +478,7 @@ public class RecommendServiceImpl implements RecommendService {
 
                     return RecommendClientDetailAlgorithmVO.builder()
                             .taskId(task.getId())
-                            .algorithmName(algorithmName)
+                            .algorithmName(algorithmNameByAid.get(task.getAid()))
                             .values(series)
                             .build();
                 })
@@ -450,6 +493,67 @@ public class RecommendServiceImpl implements RecommendService {
         return vo;
     }
 
+    /**
+     * 以一条 listByIds 查询取任务列表涉及的全部算法名称。
+     *
+     * @param taskList 任务列表
+     * @return aid -> 算法名称映射
+     */
+    private Map<Long, String> loadAlgorithmNames(List<Task> taskList) {
+        List<Long> aidList = taskList.stream()
+                .map(Task::getAid)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        return aidList.isEmpty()
+                ? Collections.emptyMap()
+                : algorithmService.listByIds(aidList).stream()
+                .collect(Collectors.toMap(Algorithm::getId, Algorithm::getAlgorithmName));
+    }
+
+    /**
+     * 以一条 IN 查询取全部候选任务的轮次，并按任务分组（组内按 roundNum 升序）。
+     *
+     * @param taskIds 任务ID集合
+     * @return taskId -> Round 列表映射
+     */
+    private Map<Long, List<Round>> loadRoundsByTask(Collection<Long> taskIds) {
+        if (taskIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, List<Round>> roundsByTask = new LinkedHashMap<>();
+        for (Round round : roundService.listByTidsOrderByRoundNum(new ArrayList<>(taskIds))) {
+            if (round.getTid() != null) {
+                roundsByTask.computeIfAbsent(round.getTid(), k -> new ArrayList<>()).add(round);
+            }
+        }
+        return roundsByTask;
+    }
+
+    /**
+     * 计算曲线轮次数：取任务 numSteps 的最大值，均缺失时取已有轮次中最大 roundNum + 1。
+     *
+     * @param taskList 任务列表
+     * @param roundsByTask taskId -> Round 列表映射
+     * @return 轮次数
+     */
+    private int resolveRoundsCount(List<Task> taskList, Map<Long, List<Round>> roundsByTask) {
+        int roundsCount = taskList.stream()
+                .map(Task::getNumSteps)
+                .filter(Objects::nonNull)
+                .max(Integer::compareTo)
+                .orElse(0);
+        if (roundsCount > 0) {
+            return roundsCount;
+        }
+        return roundsByTask.values().stream()
+                .flatMap(List::stream)
+                .map(Round::getRoundNum)
+                .filter(Objects::nonNull)
+                .max(Integer::compareTo)
+                .orElse(-1) + 1;
+    }
+
     /**
      * 规范化客户端指标名称，仅支持 accuracy/precision/recall/f1。
      *
@@ -471,79 +575,26 @@ public class RecommendServiceImpl implements RecommendService {
     }
 
     /**
-     * 构建任务下每个客户端的最新指标映射。
+     * 以一条查询构建多个任务下每个客户端的最新指标映射；只取回每个 (任务, clientIndex) 的最新一行，
+     * 传输与内存随节点数而非节点数 × 轮次增长。
      *
-     * @param taskId 任务ID
+     * @param taskIds 任务ID列表
      * @param metric 指标名称
-     * @return clientIndex -> metricValue 映射
+     * @return taskId -> (clientIndex -> metricValue) 映射
      */
-    private Map<Integer, Double> buildLatestClientMetricMap(Long taskId, String metric) {
-        if (taskId == null) {
+    private Map<Long, Map<Integer, Double>> buildLatestClientMetricMaps(List<Long> taskIds, String metric) {
+        if (taskIds.isEmpty()) {
             return Collections.emptyMap();
         }
-        List<Round> rounds = roundService.listByTidOrderByRoundNum(taskId);
-        if (rounds == null || rounds.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        Map<Long, Integer> ridToRoundNum = rounds.stream()
-                .filter(r -> r.getId() != null)
-                .collect(Collectors.toMap(
-                        Round::getId,
-                        r -> r.getRoundNum() != null ? r.getRoundNum() : -1,
-                        (a, b) -> a,
-                        LinkedHashMap::new
-                ));
-        List<Long> rids = new ArrayList<>(ridToRoundNum.keySet());
-        if (rids.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        List<Client> clients = clientService.listByRidIn(rids);
-        if (clients == null || clients.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        Map<Integer, Client> latestByClientIndex = new LinkedHashMap<>();
-        for (Client client : clients) {
-            Integer clientIndex = client.getClientIndex();
-            if (clientIndex == null) {
+        Map<Long, Map<Integer, Double>> metricMapByTask = new LinkedHashMap<>();
+        for (Client client : clientService.listLatestPerClientIndexByTids(taskIds)) {
+            if (client.getTid() == null || client.getClientIndex() == null) {
                 continue;
             }
-            Client currentLatest = latestByClientIndex.get(clientIndex);
-            if (currentLatest == null || isClientRecordLater(client, currentLatest, ridToRoundNum)) {
-                latestByClientIndex.put(clientIndex, client);
-            }
-        }
-
-        Map<Integer, Double> metricMap = new LinkedHashMap<>();
-        latestByClientIndex.forEach((clientIndex, latestClient) ->
-                metricMap.put(clientIndex, extractClientMetric(latestClient, metric)));
-        return metricMap;
-    }
-
-    /**
-     * 判断候选记录是否比当前记录更新。
-     * 优先比较 roundNum，轮次相同再比较 timestamp。
-     *
-     * @param candidate 候选记录
-     * @param current 当前记录
-     * @param ridToRoundNum rid -> roundNum 映射
-     * @return 候选记录是否更新
-     */
-    private boolean isClientRecordLater(Client candidate, Client current, Map<Long, Integer> ridToRoundNum) {
-        int candidateRound = candidate.getRid() != null ? ridToRoundNum.getOrDefault(candidate.getRid(), -1) : -1;
-        int currentRound = current.getRid() != null ? ridToRoundNum.getOrDefault(current.getRid(), -1) : -1;
-        if (candidateRound != currentRound) {
-            return candidateRound > currentRound;
-        }
-        if (candidate.getTimestamp() == null) {
-            return false;
+            metricMapByTask.computeIfAbsent(client.getTid(), k -> new LinkedHashMap<>())
+                    .put(client.getClientIndex(), extractClientMetric(client, metric));
         }
-        if (current.getTimestamp() == null) {
-            return true;
-        }
-        return candidate.getTimestamp().isAfter(current.getTimestamp());
+        return metricMapByTask;
     }
 
     /**
@@ -584,35 +635,29 @@ public class RecommendServiceImpl implements RecommendService {
      * @return 空算法曲线对象
      */
     private RecommendCurveAlgorithmVO emptyCurveItem(int roundsCount) {
-        List<Double> accuracy = createNullSeries(roundsCount);
-        List<Double> precision = createNullSeries(roundsCount);
-        List<Double> recall = createNullSeries(roundsCount);
-        List<Double> f1 = createNullSeries(roundsCount);
         return RecommendCurveAlgorithmVO.builder()
                 .taskId(null)
                 .algorithmName(null)
-                .accuracyRaw(accuracy)
-                .precisionRaw(precision)
-                .recallRaw(recall)
-                .f1Raw(f1)
-                .accuracySmooth(createNullSeries(roundsCount))
-                .precisionSmooth(createNullSeries(roundsCount))
-                .recallSmooth(createNullSeries(roundsCount))
-                .f1Smooth(createNullSeries(roundsCount))
+                .accuracyRaw(createNaNSeries(roundsCount))
+                .precisionRaw(createNaNSeries(roundsCount))
+                .recallRaw(createNaNSeries(roundsCount))
+                .f1Raw(createNaNSeries(roundsCount))
+                .accuracySmooth(createNaNSeries(roundsCount))
+                .precisionSmooth(createNaNSeries(roundsCount))
+                .recallSmooth(createNaNSeries(roundsCount))
+                .f1Smooth(createNaNSeries(roundsCount))
                 .build();
     }
 
     /**
-     * 创建固定长度的 null 序列。
+     * 创建固定长度、全部为缺失点（NaN）的序列。
      *
      * @param size 序列长度
-     * @return 元素全为 null 的序列
+     * @return 元素全为 NaN 的数组
      */
-    private List<Double> createNullSeries(int size) {
-        List<Double> series = new ArrayList<>(Math.max(size, 0));
-        for (int i = 0; i < size; i++) {
-            series.add(null);
-        }
+    private double[] createNaNSeries(int size) {
+        double[] series = new double[Math.max(size, 0)];
+        Arrays.fill(series, Double.NaN);
         return series;
     }
 
@@ -653,18 +698,15 @@ public class RecommendServiceImpl implements RecommendService {
 
     /**
      * 将 Round 列表按 roundNum 映射为固定长度序列。
-     * 缺失轮次保留 null。
+     * 缺失轮次与空指标为 NaN。
      *
      * @param roundList Round 列表
      * @param roundsCount 目标序列长度
      * @param getter 指标提取函数
      * @return 指标序列
      */
-    private List<Double> initSeriesFromRounds(List<Round> roundList, int roundsCount, Function<Round, Double> getter) {
-        List<Double> series = new ArrayList<>(Math.max(roundsCount, 0));
-        for (int i = 0; i < roundsCount; i++) {
-            series.add(null);
-        }
+    private double[] initSeriesFromRounds(List<Round> roundList, int roundsCount, Function<Round, Double> getter) {
+        double[] series = createNaNSeries(roundsCount);
         if (roundList == null || roundList.isEmpty()) {
             return series;
         }
@@ -673,47 +715,9 @@ public class RecommendServiceImpl implements RecommendService {
             if (r == null || r < 0 || r >= roundsCount) {
                 continue;
             }
-            series.set(r, getter.apply(round));
+            Double value = getter.apply(round);
+            series[r] = value != null ? value : Double.NaN;
         }
         return series;
     }
-
-    /**
-     * 高斯平滑（sigma 可配），忽略 null 点。
-     * 当窗口内无有效值时返回 null。
-     *
-     * @param input 输入序列
-     * @param sigma 高斯核 sigma
-     * @return 平滑后的序列
-     */
-    private List<Double> gaussianSmooth(List<Double> input, double sigma) {
-        if (input == null || input.isEmpty()) {
-            return List.of();
-        }
-        if (sigma <= 0.0) {
-            return new ArrayList<>(input);
-        }
-        int radius = Math.max(1, (int) Math.ceil(3 * sigma));
-        List<Double> output = new ArrayList<>(input.size());
-
-        for (int i = 0; i < input.size(); i++) {
-            double numerator = 0.0;
-            double denominator = 0.0;
-            int left = Math.max(0, i - radius);
-            int right = Math.min(input.size() - 1, i + radius);
-            for (int j = left; j <= right; j++) {
-                Double v = input.get(j);
-                if (v == null) {
-                    continue;
-                }
-                double dist = j - i;
-                double weight = Math.exp(-(dist * dist) / (2.0 * sigma * sigma));
-                numerator += weight * v;
-                denominator += weight;
-            }
-            output.add(denominator > 0 ? numerator / denominator : null);
-        }
-
-        return output;
-    }
 }
@@ -2,9 +2,11 @@ package ynu.jackielinn.server.service.impl;
 
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
+import ynu.jackielinn.server.ingest.TaskOwnership;
 import ynu.jackielinn.server.listener.TrainingMessageListener;
 import ynu.jackielinn.server.service.RedisSubscriptionService;
 import ynu.jackielinn.server.utils.Const;
@@ -15,6 +17,9 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * 按任务动态订阅 Redis 训练消息通道。
  * WebSocket 连接并首包鉴权通过后调用 subscribeTask；该任务最后一个连接断开时调用 unsubscribeTask。
+ * 仅 training.ingest.mode=pubsub 且 training.ingest.pubsub.subscription=channel 时生效；pattern 订阅由监听容器启动时统一 PSUBSCRIBE，
+ * stream 模式由 TrainingStreamConsumer 统一消费，均无需按任务订阅。
+ * 多节点部署时取消订阅同时释放任务归属，由仍在订阅的节点接管写库。
  */
 @Slf4j
 @Service
@@ -26,16 +31,25 @@ public class RedisSubscriptionServiceImpl implements RedisSubscriptionService {
     @Resource
     private TrainingMessageListener messageListener;
 
+    @Resource
+    private TaskOwnership taskOwnership;
+
+    @Value("${training.ingest.mode:pubsub}")
+    private String ingestMode = "pubsub";
+
+    @Value("${training.ingest.pubsub.subscription:channel}")
+    private String subscription = "channel";
+
     private final Set<Long> subscribedTasks = ConcurrentHashMap.newKeySet();
 
     /**
-     * 订阅该任务对应的 Round/Client/Status 通道（已订阅则幂等返回）。
+     * 订阅该任务对应的 Round/Client/Status 通道（已订阅或非按 channel 订阅的 pubsub 接入则直接返回）。
      *
      * @param taskId 任务 id
      */
     @Override
     public void subscribeTask(Long taskId) {
-        if (subscribedTasks.contains(taskId)) {
+        if (!"pubsub".equals(ingestMode) || !"channel".equals(subscription) || subscribedTasks.contains(taskId)) {
             return;
         }
         String roundChannel = Const.TASK_EXPERIMENT_ROUND + taskId;
@@ -49,7 +63,7 @@ public class RedisSubscriptionServiceImpl implements RedisSubscriptionService {
     }
 
     /**
-     * 取消订阅该任务对应的 Round/Client/Status 通道（未订阅则幂等返回）。
+     * 取消订阅该任务对应的 Round/Client/Status 通道并释放任务归属（未订阅则幂等返回）。
      *
      * @param taskId 任务 id
      */
@@ -65,6 +79,7 @@ public class RedisSubscriptionServiceImpl implements RedisSubscriptionService {
         redisMessageListenerContainer.removeMessageListener(messageListener, new ChannelTopic(clientChannel));
         redisMessageListenerContainer.removeMessageListener(messageListener, new ChannelTopic(statusChannel));
         subscribedTasks.remove(taskId);
+        taskOwnership.release(taskId);
         log.info("Unsubscribed from Redis channels for task {}", taskId);
     }
 }
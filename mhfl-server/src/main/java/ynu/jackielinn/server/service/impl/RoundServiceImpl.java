@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.springframework.stereotype.Service;
 import ynu.jackielinn.server.entity.Round;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import ynu.jackielinn.server.mapper.RoundMapper;
@@ -13,13 +14,57 @@ import ynu.jackielinn.server.service.RoundService;
 public class RoundServiceImpl extends ServiceImpl<RoundMapper, Round> implements RoundService {
 
     /**
-     * 保存单条轮次记录。
+     * 按 (tid, round_num) 幂等保存轮次记录，一条 INSERT … ON DUPLICATE KEY UPDATE 完成，无需先查后写。
      *
      * @param round 轮次记录实体
      */
     @Override
     public void saveRound(Round round) {
-        save(round);
+        fillTimes(round);
+        getBaseMapper().upsert(round);
+        resolveId(round);
+    }
+
+    /**
+     * 按 (tid, round_num) 写入占位轮次记录，已存在时保留原指标，仅取回主键。
+     *
+     * @param round 占位轮次记录实体
+     */
+    @Override
+    public void saveRoundIfAbsent(Round round) {
+        fillTimes(round);
+        getBaseMapper().insertIfAbsent(round);
+        resolveId(round);
+    }
+
+    /**
+     * MySQL 通过 LAST_INSERT_ID(id) 在插入与更新两种情况下都回填主键；驱动未回填时（如 H2）按唯一键补查一次。
+     *
+     * @param round 已写入的轮次记录实体
+     */
+    private void resolveId(Round round) {
+        if (round.getId() != null) {
+            return;
+        }
+        Round stored = getByTidAndRoundNum(round.getTid(), round.getRoundNum());
+        if (stored != null) {
+            round.setId(stored.getId());
+        }
+    }
+
+    /**
+     * 自定义 SQL 不经过自动填充，在此补齐 createTime/updateTime。
+     *
+     * @param round 轮次记录实体
+     */
+    private static void fillTimes(Round round) {
+        LocalDateTime now = LocalDateTime.now();
+        if (round.getCreateTime() == null) {
+            round.setCreateTime(now);
+        }
+        if (round.getUpdateTime() == null) {
+            round.setUpdateTime(now);
+        }
     }
 
     /**
@@ -51,4 +96,22 @@ public class RoundServiceImpl extends ServiceImpl<RoundMapper, Round> implements
                 .orderByAsc(Round::getRoundNum)
                 .list();
     }
+
+    /**
+     * 以一条 IN 查询取多个任务的轮次列表，按 tid、roundNum 升序。
+     *
+     * @param tids 任务 id 集合
+     * @return 这些任务下全部 Round；tids 为空返回空列表
+     */
+    @Override
+    public List<Round> listByTidsOrderByRoundNum(List<Long> tids) {
+        if (tids == null || tids.isEmpty()) {
+            return List.of();
+        }
+        return lambdaQuery()
+                .in(Round::getTid, tids)
+                .orderByAsc(Round::getTid)
+                .orderByAsc(Round::getRoundNum)
+                .list();
+    }
 }
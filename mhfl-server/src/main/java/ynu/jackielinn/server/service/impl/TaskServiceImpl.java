@@ -37,6 +37,7 @@ import ynu.jackielinn.server.service.RedisSubscriptionService;
 import ynu.jackielinn.server.service.ClientService;
 import ynu.jackielinn.server.service.RoundService;
 import ynu.jackielinn.server.service.TaskService;
+import ynu.jackielinn.server.websocket.ClusterPushRelay;
 import ynu.jackielinn.server.websocket.WebSocketSessionManager;
 
 import java.time.Instant;
@@ -75,6 +76,9 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
     @Resource
     private WebSocketSessionManager sessionManager;
 
+    @Resource
+    private ClusterPushRelay clusterPushRelay;
+
     @Resource
     private ApplicationContext applicationContext;
 
@@ -84,6 +88,9 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
     @Resource
     private ClientService clientService;
 
+    @Resource
+    private RecommendResultCache recommendResultCache;
+
     /**
      * 创建任务。若存在同配置且已成功/推荐的任务则复制其 Task/Round/Client 结果；否则新建 NOT_STARTED 任务。
      *
@@ -237,7 +244,7 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
     }
 
     /**
-     * 设置/取消推荐（仅管理员）；SUCCESS 与 RECOMMENDED 互相切换，同配置批量更新。
+     * 设置/取消推荐（仅管理员）；SUCCESS 与 RECOMMENDED 互相切换，同配置批量更新，成功后清空推荐页结果缓存。
      *
      * @param id 任务 id
      * @return null 表示成功，否则为错误信息
@@ -264,7 +271,11 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
                 .eq(Task::getEpochs, task.getEpochs())
                 .in(Task::getStatus, Status.SUCCESS, Status.RECOMMENDED)
                 .set(Task::getStatus, newStatus);
-        return update(wrapper) ? null : "设置失败，请联系管理员";
+        if (!update(wrapper)) {
+            return "设置失败，请联系管理员";
+        }
+        recommendResultCache.invalidateAll();
+        return null;
     }
 
     /**
@@ -526,7 +537,7 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
     }
 
     /**
-     * 停止训练：仅任务创建者可操作；调用 Python 停止后更新状态、推送 CANCELLED 并关闭该任务 WebSocket。
+     * 停止训练：仅任务创建者可操作；调用 Python 停止后更新状态、推送 CANCELLED 并关闭该任务 WebSocket，多节点部署时经 ClusterPushRelay 通知其他节点。
      *
      * @param taskId        任务 id
      * @param currentUserId 当前用户 id
@@ -565,7 +576,7 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
                 .message("用户停止训练")
                 .timestamp(Instant.now().toString())
                 .build();
-        sessionManager.sendToTask(taskId, statusMessage);
+        sessionManager.sendToTask(taskId, statusMessage, stamp -> clusterPushRelay.publishStatus(statusMessage, true, stamp));
         sessionManager.closeAllSessionsForTask(taskId);
         return null;
     }
@@ -597,6 +608,7 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
 
     /**
      * 某任务每个 client_index 最新一条客户端列表，按 client_index 0～numNodes-1 排序；无数据占位 -1。
+     * 各节点最新记录由一条窗口函数查询取回，查询次数与节点数无关。
      *
      * @param taskId        任务 id
      * @param currentUserId 当前用户 id
@@ -615,12 +627,18 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
             return null;
         }
         int numNodes = task.getNumNodes() != null ? task.getNumNodes() : 0;
-        List<Round> rounds = roundService.listByTidOrderByRoundNum(taskId);
-        List<Long> rids = rounds.stream().map(Round::getId).toList();
-        Map<Long, Integer> ridToRoundNum = rounds.stream().collect(Collectors.toMap(Round::getId, Round::getRoundNum));
+        if (numNodes <= 0) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Client> latestByIndex = new HashMap<>();
+        for (Client c : clientService.listLatestPerClientIndexByTid(taskId)) {
+            if (c.getClientIndex() != null) {
+                latestByIndex.put(c.getClientIndex(), c);
+            }
+        }
         List<ClientVO> result = new ArrayList<>(numNodes);
         for (int i = 0; i < numNodes; i++) {
-            Client c = clientService.getLatestByRidsAndClientIndex(rids, i);
+            Client c = latestByIndex.get(i);
             if (c == null) {
                 result.add(ClientVO.builder()
                         .id(null)
@@ -634,7 +652,7 @@ public class TaskServiceImpl extends ServiceImpl<TaskMapper, Task> implements Ta
                         .timestamp(null)
                         .build());
             } else {
-                final Integer roundNum = c.getRid() != null ? ridToRoundNum.getOrDefault(c.getRid(), -1) : -1;
+                final Integer roundNum = c.getRid() != null && c.getRoundNum() != null ? c.getRoundNum() : -1;
                 result.add(c.asViewObject(ClientVO.class, vo -> vo.setRoundNum(roundNum)));
             }
         }
@@ -2,30 +2,58 @@ package ynu.jackielinn.server.service.impl;
 
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ynu.jackielinn.server.common.Status;
 import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RelayMessage;
 import ynu.jackielinn.server.dto.message.RoundMessage;
 import ynu.jackielinn.server.dto.message.StatusMessage;
 import ynu.jackielinn.server.entity.Client;
 import ynu.jackielinn.server.entity.Round;
 import ynu.jackielinn.server.entity.Task;
-import ynu.jackielinn.server.service.ClientService;
+import ynu.jackielinn.server.ingest.ClientWriteBuffer;
+import ynu.jackielinn.server.ingest.RoundIdIndex;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
+import ynu.jackielinn.server.ingest.TaskOwnership;
+import ynu.jackielinn.server.ingest.TaskStateTracker;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
 import ynu.jackielinn.server.service.RedisSubscriptionService;
 import ynu.jackielinn.server.service.RoundService;
 import ynu.jackielinn.server.service.TaskService;
 import ynu.jackielinn.server.service.TrainingMessageHandler;
+import ynu.jackielinn.server.utils.TimeUtils;
+import ynu.jackielinn.server.websocket.AdminTaskFeed;
+import ynu.jackielinn.server.websocket.ClientFrameCoalescer;
+import ynu.jackielinn.server.websocket.ClusterPushRelay;
 import ynu.jackielinn.server.websocket.WebSocketSessionManager;
+import ynu.jackielinn.server.websocket.WebSocketSessionManager.PushStamp;
 
 import java.time.LocalDateTime;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 /**
  * 训练消息处理实现：先写 MySQL（Round/Client 及 Task 状态），再推 WebSocket。
- * Client 消息先于 Round 到达，故按 (taskId, roundNum) 先建占位 Round 再写 Client；Round 消息到达后更新该 Round 指标。
+ * Client 消息先于 Round 到达，故按 (taskId, roundNum) 先建占位 Round 再写 Client；Round 消息到达后覆盖该 Round 指标。
+ * Round/Client 均按唯一键 upsert，重复投递、回放与多节点并发写入都不会产生重复行，也无需先查后写。
+ * 同一任务的消息由 TaskOrderedDispatcher 在同一 lane 上按到达顺序串行调用，因此无需再按轮次加锁。
+ * Client 行交给 ClientWriteBuffer 批量落库并立即推送；Round 与终态消息写库前先 flush 该任务，保证提交顺序。
+ * roundId 由 RoundIdIndex 按 (taskId, roundNum) 缓存，未命中时由占位 upsert 取回，任务终态时清除。
+ * 每轮的 Task 状态与最佳指标由 TaskStateTracker 在内存中计算并合并写回。
+ * 写库耗时与发布到推送完成的端到端耗时记入 TrainingMetrics。
+ * Client 推送交给 ClientFrameCoalescer 按间隔合并成帧；Round/Status 推送前先发出该任务积压的 Client 帧。
+ * 推送的同时在 TaskSnapshotBuffer 锁内更新任务快照，供新连接的首帧回填；终态时移除快照。
+ * 每条 Round/Status 同时更新 AdminTaskFeed 中的任务摘要，供管理员实时任务流按节拍推送。
+ * 多节点部署时本节点处理的任务总维护推送流，推送时在推送流锁内连同编号经 ClusterPushRelay 转发给其他节点；
+ * 其他节点转发来的消息只更新快照并按持有节点的编号推送，不写库。
+ * 任务长时间没有消息（训练端崩溃、终态消息丢失）时由定时巡检在其 lane 上最后写回一次并清除上述内存状态，写回失败的下一周期重试。
+ * 处理失败时记录日志并返回 false，不向调用线程外抛；Stream 接入据此保留未写入的记录。
  */
 @Slf4j
 @Service
@@ -35,174 +63,379 @@ public class TrainingMessageHandlerImpl implements TrainingMessageHandler {
     private RoundService roundService;
 
     @Resource
-    private ClientService clientService;
+    private TaskService taskService;
 
     @Resource
-    private TaskService taskService;
+    private ClientWriteBuffer clientWriteBuffer;
+
+    @Resource
+    private RoundIdIndex roundIdIndex;
+
+    @Resource
+    private TaskStateTracker taskStateTracker;
+
+    @Resource
+    private TaskSnapshotBuffer taskSnapshotBuffer;
 
     @Resource
     private WebSocketSessionManager sessionManager;
 
+    @Resource
+    private ClientFrameCoalescer clientFrameCoalescer;
+
+    @Resource
+    private AdminTaskFeed adminTaskFeed;
+
+    @Resource
+    private ClusterPushRelay clusterPushRelay;
+
+    @Resource
+    private TaskOwnership taskOwnership;
+
+    @Resource
+    private TrainingMetrics trainingMetrics;
+
     @Resource
     private ApplicationContext applicationContext;
 
-    private final ConcurrentHashMap<Long, Long> lastRoundTime = new ConcurrentHashMap<>();
+    @Resource(name = "trainingMessageDispatcher")
+    private TaskOrderedDispatcher dispatcher;
 
-    /**
-     * 按 (taskId, roundNum) 加锁，避免 Client 与 Round 消息并发时重复创建 Round
-     */
-    private final ConcurrentHashMap<String, Object> roundLocks = new ConcurrentHashMap<>();
+    @Value("${training.idle-evict.idle-ms:600000}")
+    private long idleEvictMs = 600000;
 
     /**
-     * 按 (taskId, roundNum) 获取锁对象，用于 Client 与 Round 消息并发时串行化。
-     *
-     * @param taskId   任务 id
-     * @param roundNum 轮次编号
-     * @return 锁对象
+     * 各任务最近一条消息（含其他节点转发的消息）的处理时间，供空闲清除判断。
      */
-    private Object lockFor(Long taskId, Integer roundNum) {
-        return roundLocks.computeIfAbsent(taskId + ":" + roundNum, k -> new Object());
-    }
+    private final ConcurrentHashMap<Long, Long> lastMessageTime = new ConcurrentHashMap<>();
 
     /**
-     * 处理轮次消息：写入或更新 Round，更新 Task 状态与指标，写库后推送 WebSocket。
+     * 处理轮次消息：先写入该任务缓冲的 Client 行，再 upsert Round，交由 TaskStateTracker 合并更新 Task 状态与指标，写库后推送 WebSocket。
+     * 缓冲的 Client 行写入失败时不写 Round、不推送，直接返回 false，由 Stream 接入回放，保证 Round 不先于其 Client 提交。
      *
      * @param message 轮次指标消息
+     * @return Round 已落库返回 true
      */
     @Override
-    public void handleRoundMessage(RoundMessage message) {
+    public boolean handleRoundMessage(RoundMessage message) {
         try {
-            lastRoundTime.put(message.getTaskId(), System.currentTimeMillis());
-
-            synchronized (lockFor(message.getTaskId(), message.getRoundNum())) {
-                Round round = roundService.getByTidAndRoundNum(message.getTaskId(), message.getRoundNum());
-                if (round != null) {
-                    Round partialRound = Round.builder()
-                            .id(round.getId())
-                            .loss(message.getLoss())
-                            .accuracy(message.getAccuracy())
-                            .precision(message.getPrecision())
-                            .recall(message.getRecall())
-                            .f1Score(message.getF1Score())
-                            .build();
-                    roundService.updateById(partialRound);
-                } else {
-                    Round newRound = Round.builder()
-                            .tid(message.getTaskId())
-                            .roundNum(message.getRoundNum())
-                            .loss(message.getLoss())
-                            .accuracy(message.getAccuracy())
-                            .precision(message.getPrecision())
-                            .recall(message.getRecall())
-                            .f1Score(message.getF1Score())
-                            .build();
-                    roundService.saveRound(newRound);
-                }
+            long start = System.nanoTime();
+            openClusterStream(message.getTaskId());
+            lastMessageTime.put(message.getTaskId(), System.currentTimeMillis());
+            if (!clientWriteBuffer.flush(message.getTaskId())) {
+                log.warn("Buffered clients of task {} not stored, deferring round {}", message.getTaskId(), message.getRoundNum());
+                return false;
             }
 
-            Task task = taskService.getById(message.getTaskId());
-            Integer numSteps = task != null ? task.getNumSteps() : null;
-            boolean isLastRound = numSteps != null && message.getRoundNum() != null
-                    && message.getRoundNum().equals(numSteps - 1);
-            if (task != null && isLastRound) {
-                Task partialTask = Task.builder().id(task.getId()).status(Status.SUCCESS).build();
-                taskService.updateById(partialTask);
-                log.info("Task {} completed successfully (last round)", message.getTaskId());
-            } else if (task != null && task.getStatus() != Status.IN_PROGRESS) {
-                Task partialTask = Task.builder().id(task.getId()).status(Status.IN_PROGRESS).build();
-                taskService.updateById(partialTask);
-            }
-            if (task != null && message.getAccuracy() != null) {
-                if (task.getAccuracy() == null || message.getAccuracy() > task.getAccuracy()) {
-                    Task partialTask = Task.builder()
-                            .id(task.getId())
-                            .accuracy(message.getAccuracy())
-                            .loss(message.getLoss())
-                            .precision(message.getPrecision())
-                            .recall(message.getRecall())
-                            .f1Score(message.getF1Score())
-                            .build();
-                    taskService.updateById(partialTask);
-                }
-            }
+            Round round = Round.builder()
+                    .tid(message.getTaskId())
+                    .roundNum(message.getRoundNum())
+                    .loss(message.getLoss())
+                    .accuracy(message.getAccuracy())
+                    .precision(message.getPrecision())
+                    .recall(message.getRecall())
+                    .f1Score(message.getF1Score())
+                    .build();
+            roundService.saveRound(round);
+            roundIdIndex.put(message.getTaskId(), message.getRoundNum(), round.getId());
 
-            sessionManager.sendToTask(message.getTaskId(), message);
+            taskStateTracker.onRound(message);
+            trainingMetrics.recordDbWrite(TrainingMetrics.MessageType.ROUND, start);
+            Status taskStatus = taskStateTracker.getStatus(message.getTaskId());
+            Double bestAccuracy = taskStateTracker.getBestAccuracy(message.getTaskId());
+            adminTaskFeed.onRound(message.getTaskId(), message.getRoundNum(), taskStatus, bestAccuracy);
+
+            pushRound(message, null, stamp -> clusterPushRelay.publishRound(message, taskStatus, bestAccuracy, stamp));
+            trainingMetrics.recordEndToEnd(TrainingMetrics.MessageType.ROUND, message.getTimestamp());
+            return true;
         } catch (Exception e) {
             log.error("Failed to handle round message for task {}: {}", message.getTaskId(), e.getMessage(), e);
+            return false;
         }
     }
 
     /**
-     * 处理客户端消息：按 (taskId, roundNum) 加锁，无 Round 则先建占位再写 Client，写库后推送 WebSocket。
+     * 处理客户端消息：无 Round 则先建占位，Client 行交给写后缓冲批量落库，推送交给合并器按间隔成帧。
      *
      * @param message 客户端指标消息
+     * @return Client 已进入写后缓冲返回 true
      */
     @Override
-    public void handleClientMessage(ClientMessage message) {
+    public boolean handleClientMessage(ClientMessage message) {
         try {
-            Round round;
-            synchronized (lockFor(message.getTaskId(), message.getRoundNum())) {
-                round = roundService.getByTidAndRoundNum(message.getTaskId(), message.getRoundNum());
-                if (round == null) {
-                    round = Round.builder()
-                            .tid(message.getTaskId())
-                            .roundNum(message.getRoundNum())
-                            .loss(0.0)
-                            .accuracy(0.0)
-                            .precision(0.0)
-                            .recall(0.0)
-                            .f1Score(0.0)
-                            .build();
-                    roundService.saveRound(round);
-                }
-
-                Client client = Client.builder()
-                        .rid(round.getId())
-                        .clientIndex(message.getClientIndex())
-                        .loss(message.getLoss())
-                        .accuracy(message.getAccuracy())
-                        .precision(message.getPrecision())
-                        .recall(message.getRecall())
-                        .f1Score(message.getF1Score())
-                        .timestamp(parseTimestamp(message.getTimestamp()))
+            long start = System.nanoTime();
+            openClusterStream(message.getTaskId());
+            lastMessageTime.put(message.getTaskId(), System.currentTimeMillis());
+            long roundId = roundIdIndex.get(message.getTaskId(), message.getRoundNum());
+            if (roundId == 0) {
+                Round round = Round.builder()
+                        .tid(message.getTaskId())
+                        .roundNum(message.getRoundNum())
+                        .loss(0.0)
+                        .accuracy(0.0)
+                        .precision(0.0)
+                        .recall(0.0)
+                        .f1Score(0.0)
                         .build();
-                clientService.saveClient(client);
+                roundService.saveRoundIfAbsent(round);
+                if (round.getId() == null) {
+                    throw new IllegalStateException("Round id not returned for task " + message.getTaskId());
+                }
+                roundId = round.getId();
+                roundIdIndex.put(message.getTaskId(), message.getRoundNum(), roundId);
             }
 
-            sessionManager.sendToTask(message.getTaskId(), message);
+            Client client = Client.builder()
+                    .rid(roundId)
+                    .clientIndex(message.getClientIndex())
+                    .loss(message.getLoss())
+                    .accuracy(message.getAccuracy())
+                    .precision(message.getPrecision())
+                    .recall(message.getRecall())
+                    .f1Score(message.getF1Score())
+                    .timestamp(parseTimestamp(message.getTimestamp()))
+                    .build();
+            clientWriteBuffer.add(message.getTaskId(), client);
+            trainingMetrics.recordDbWrite(TrainingMetrics.MessageType.CLIENT, start);
+
+            pushClient(message);
+            trainingMetrics.recordEndToEnd(TrainingMetrics.MessageType.CLIENT, message.getTimestamp());
+            return true;
         } catch (Exception e) {
             log.error("Failed to handle client message for task {}: {}", message.getTaskId(), e.getMessage(), e);
+            return false;
         }
     }
 
     /**
-     * 处理状态消息：更新 Task 状态，终态时取消 Redis 订阅并推送 WebSocket。
+     * 处理状态消息：更新 Task 状态，终态时取消 Redis 订阅、移除任务快照，推送 WebSocket 后释放推送流。
      *
      * @param message 状态消息
+     * @return 状态及终态前的缓冲写回均成功返回 true；未知状态无需写入，同样返回 true
      */
     @Override
-    public void handleStatusMessage(StatusMessage message) {
+    public boolean handleStatusMessage(StatusMessage message) {
         try {
+            long start = System.nanoTime();
             Status status = toStatus(message.getStatus());
             if (status == null) {
                 log.warn("Unknown status: {}", message.getStatus());
-                return;
+                return true;
             }
 
+            openClusterStream(message.getTaskId());
+            lastMessageTime.put(message.getTaskId(), System.currentTimeMillis());
+            boolean flushed = true;
+            if (isTerminal(status)) {
+                flushed = clientWriteBuffer.flushAndRemove(message.getTaskId());
+                flushed &= taskStateTracker.flushAndRemove(message.getTaskId());
+                roundIdIndex.evict(message.getTaskId());
+                taskOwnership.release(message.getTaskId());
+                if (flushed) {
+                    // 写回失败时保留时间戳，未落库的缓冲由空闲巡检再次写回后清除
+                    lastMessageTime.remove(message.getTaskId());
+                }
+            } else {
+                taskStateTracker.onStatus(message.getTaskId(), status);
+            }
             Task task = taskService.getById(message.getTaskId());
             if (task != null) {
                 Task partialTask = Task.builder().id(task.getId()).status(status).build();
                 taskService.updateById(partialTask);
                 log.info("Task {} status updated to {}", message.getTaskId(), status);
-                if (status == Status.SUCCESS || status == Status.FAILED || status == Status.CANCELLED) {
-                    lastRoundTime.remove(message.getTaskId());
+                if (isTerminal(status)) {
                     applicationContext.getBean(RedisSubscriptionService.class).unsubscribeTask(message.getTaskId());
                 }
             }
+            trainingMetrics.recordDbWrite(TrainingMetrics.MessageType.STATUS, start);
+            adminTaskFeed.onStatus(message.getTaskId(), status);
 
-            sessionManager.sendToTask(message.getTaskId(), message);
+            pushStatus(message, status, null, stamp -> clusterPushRelay.publishStatus(message, false, stamp));
+            trainingMetrics.recordEndToEnd(TrainingMetrics.MessageType.STATUS, message.getTimestamp());
+            return flushed;
         } catch (Exception e) {
             log.error("Failed to handle status message for task {}: {}", message.getTaskId(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 处理其他节点转发的消息：不写库，只更新本节点的任务摘要、快照并按转发携带的编号推送本节点连接；终态时释放本节点的订阅与推送流。
+     *
+     * @param message 转发消息
+     */
+    @Override
+    public void handleRelayedMessage(RelayMessage message) {
+        Long taskId = message.getTaskId();
+        try {
+            lastMessageTime.put(taskId, System.currentTimeMillis());
+            if (message.getRound() != null) {
+                adminTaskFeed.onRound(taskId, message.getRound().getRoundNum(), message.getTaskStatus(), message.getBestAccuracy());
+                pushRound(message.getRound(), message, null);
+            } else if (message.getClient() != null) {
+                pushRelayedClients(taskId, List.of(message.getClient()), message.getClient(), message);
+            } else if (message.getClients() != null) {
+                pushRelayedClients(taskId, message.getClients().getClients(), message.getClients(), message);
+            } else if (message.getStatus() != null) {
+                Status status = toStatus(message.getStatus().getStatus());
+                if (status == null) {
+                    return;
+                }
+                if (isTerminal(status)) {
+                    lastMessageTime.remove(taskId);
+                    taskOwnership.release(taskId);
+                    applicationContext.getBean(RedisSubscriptionService.class).unsubscribeTask(taskId);
+                }
+                adminTaskFeed.onStatus(taskId, status);
+                pushStatus(message.getStatus(), status, message, null);
+                if (Boolean.TRUE.equals(message.getCloseSessions())) {
+                    sessionManager.closeAllSessionsForTask(taskId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to handle relayed message for task {}: {}", taskId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 定时巡检空闲任务：超过 idle-ms 没有消息的任务派发到其 lane 上清除，与该任务的消息处理串行。
+     * lane 已满时跳过，下一周期重试；idle-ms 不大于 0 时不清除。
+     */
+    @Scheduled(fixedDelayString = "${training.idle-evict.interval-ms:60000}")
+    public void evictIdleTasks() {
+        if (idleEvictMs <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleEvictMs;
+        lastMessageTime.forEach((taskId, lastSeen) -> {
+            if (lastSeen > cutoff) {
+                return;
+            }
+            try {
+                dispatcher.dispatch(taskId, () -> evictIfIdle(taskId, lastSeen));
+            } catch (RejectedExecutionException e) {
+                log.debug("Lane of idle task {} is full, retrying eviction next cycle", taskId);
+            }
+        });
+    }
+
+    /**
+     * 清除空闲任务的内存状态：期间有新消息则放弃；先写回 Client 缓冲与 Task 状态，均成功后再移除 roundId 缓存、快照与推送流并释放归属。
+     * 写回失败时保留全部状态与时间戳，由下一周期重试，不丢弃未落库的更新。
+     *
+     * @param taskId   任务 id
+     * @param lastSeen 巡检时读到的最近消息时间
+     */
+    private void evictIfIdle(Long taskId, long lastSeen) {
+        if (!lastMessageTime.remove(taskId, lastSeen)) {
+            return;
+        }
+        boolean flushed = clientWriteBuffer.flushAndRemove(taskId);
+        flushed &= taskStateTracker.flushAndRemove(taskId);
+        if (!flushed) {
+            lastMessageTime.putIfAbsent(taskId, lastSeen);
+            log.warn("Final flush of idle task {} failed, keeping its state for the next cycle", taskId);
+            return;
+        }
+        roundIdIndex.evict(taskId);
+        synchronized (taskSnapshotBuffer.lockFor(taskId)) {
+            clientFrameCoalescer.flush(taskId);
+            taskSnapshotBuffer.evict(taskId);
+        }
+        sessionManager.releaseStreamIfIdle(taskId);
+        taskOwnership.release(taskId);
+        log.info("Task {} idle since {}, flushed and evicted its ingest state", taskId, lastSeen);
+    }
+
+    /**
+     * 多节点模式下确保本节点处理的任务维护推送流，本节点没有连接时也为推送编号，供其他节点沿用。
+     *
+     * @param taskId 任务 id
+     */
+    private void openClusterStream(Long taskId) {
+        if (clusterPushRelay.isEnabled()) {
+            sessionManager.openStream(taskId);
+        }
+    }
+
+    /**
+     * 推送一条消息：转发来的消息按其携带的编号推送；本节点处理的消息由本节点编号，并在推送流锁内以编号回调 onPushed。
+     *
+     * @param taskId   任务 id
+     * @param payload  推送对象
+     * @param relayed  转发消息，本节点处理时为 null
+     * @param onPushed 本节点编号后的回调，可为 null
+     */
+    private void send(Long taskId, Object payload, RelayMessage relayed, Consumer<PushStamp> onPushed) {
+        if (relayed != null) {
+            sessionManager.sendRelayed(taskId, payload, ClusterPushRelay.stampOf(relayed));
+        } else {
+            sessionManager.sendToTask(taskId, payload, onPushed);
+        }
+    }
+
+    /**
+     * 在快照锁内记录轮次、发出积压的 Client 帧并推送该轮。
+     *
+     * @param message  轮次消息
+     * @param relayed  转发消息，本节点处理时为 null
+     * @param onPushed 本节点编号后的回调（转发给其他节点），可为 null
+     */
+    private void pushRound(RoundMessage message, RelayMessage relayed, Consumer<PushStamp> onPushed) {
+        synchronized (taskSnapshotBuffer.lockFor(message.getTaskId())) {
+            taskSnapshotBuffer.recordRound(message);
+            clientFrameCoalescer.flush(message.getTaskId());
+            send(message.getTaskId(), message, relayed, onPushed);
+        }
+    }
+
+    /**
+     * 在快照锁内记录客户端指标并交给合并器。
+     *
+     * @param message 客户端消息
+     */
+    private void pushClient(ClientMessage message) {
+        synchronized (taskSnapshotBuffer.lockFor(message.getTaskId())) {
+            taskSnapshotBuffer.recordClient(message);
+            clientFrameCoalescer.addClient(message.getTaskId(), message);
+        }
+    }
+
+    /**
+     * 在快照锁内记录其他节点已合并推送的客户端指标，并按其编号整帧推送，不再经本节点的合并器。
+     *
+     * @param taskId  任务 id
+     * @param clients 帧内的客户端指标
+     * @param frame   推送对象（单条 ClientMessage 或 ClientBatchMessage）
+     * @param relayed 转发消息
+     */
+    private void pushRelayedClients(Long taskId, List<ClientMessage> clients, Object frame, RelayMessage relayed) {
+        synchronized (taskSnapshotBuffer.lockFor(taskId)) {
+            if (clients != null) {
+                clients.forEach(taskSnapshotBuffer::recordClient);
+            }
+            send(taskId, frame, relayed, null);
+        }
+    }
+
+    /**
+     * 在快照锁内推送状态：终态时先移除快照，推送后释放推送流。
+     *
+     * @param message  状态消息
+     * @param status   解析后的状态
+     * @param relayed  转发消息，本节点处理时为 null
+     * @param onPushed 本节点编号后的回调（转发给其他节点），可为 null
+     */
+    private void pushStatus(StatusMessage message, Status status, RelayMessage relayed, Consumer<PushStamp> onPushed) {
+        synchronized (taskSnapshotBuffer.lockFor(message.getTaskId())) {
+            if (isTerminal(status)) {
+                taskSnapshotBuffer.evict(message.getTaskId());
+            }
+            clientFrameCoalescer.flush(message.getTaskId());
+            send(message.getTaskId(), message, relayed, onPushed);
+            if (isTerminal(status)) {
+                sessionManager.releaseStream(message.getTaskId());
+            }
         }
     }
 
@@ -225,25 +458,25 @@ public class TrainingMessageHandlerImpl implements TrainingMessageHandler {
         };
     }
 
-    private static final DateTimeFormatter ISO_LOCAL_DATE_TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    /**
+     * 判断训练状态消息是否为终态（SUCCESS/FAILED/CANCELLED）。
+     *
+     * @param status 状态
+     * @return 是否为终态
+     */
+    private static boolean isTerminal(Status status) {
+        return status == Status.SUCCESS || status == Status.FAILED || status == Status.CANCELLED;
+    }
 
     /**
      * 将 Python 发来的 ISO 时间戳转为 LocalDateTime，与 Java 写入 MySQL 兼容。
+     * 带时区偏移（Z 或 ±HH:MM）时保留其本地时间部分；格式不符返回当前时间。
      *
      * @param timestamp ISO 格式时间戳字符串
      * @return LocalDateTime，解析失败返回当前时间
      */
     private static LocalDateTime parseTimestamp(String timestamp) {
-        if (timestamp == null || timestamp.isBlank()) {
-            return LocalDateTime.now();
-        }
-        try {
-            if (timestamp.contains("Z") || timestamp.indexOf('+') > 10 || (timestamp.lastIndexOf('-') > 10 && timestamp.contains("T"))) {
-                return ZonedDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME).toLocalDateTime();
-            }
-            return LocalDateTime.parse(timestamp, ISO_LOCAL_DATE_TIME);
-        } catch (Exception e) {
-            return LocalDateTime.now();
-        }
+        LocalDateTime parsed = TimeUtils.parseIsoDateTime(timestamp);
+        return parsed != null ? parsed : LocalDateTime.now();
     }
 }
@@ -27,4 +27,14 @@ public class Const {
     public final static String TASK_EXPERIMENT_ROUND = "task:experiment:round:";
     public final static String TASK_EXPERIMENT_CLIENT = "task:experiment:client:";
     public final static String TASK_EXPERIMENT_STATUS = "task:experiment:status:";
+    public final static String TASK_EXPERIMENT_PATTERN = "task:experiment:*";
+    // 溢出文件中写库失败的 Client 行（仅本地落盘，不是 Redis channel）
+    public final static String CLIENT_ROWS_SPOOL = "spool:client-rows:";
+
+    // 多节点推送转发（不能落在 task:experiment:* 模式内）
+    public final static String WS_RELAY_CHANNEL = "ws:relay";
+    public final static String TASK_OWNER = "task:owner:";
+    public final static String STREAM_SHARD_OWNER = "task:stream:owner:";
+    // 多节点推荐页缓存失效广播
+    public final static String RECOMMEND_CACHE_INVALIDATE_CHANNEL = "recommend:cache:invalidate";
 }
@@ -0,0 +1,125 @@
+package ynu.jackielinn.server.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 double[] 的高斯平滑，NaN 表示缺失点。
+ * 每个 sigma 的半边核（半径 max(1, ⌈3σ⌉) 内的权重 exp(-d²/2σ²)）只计算一次并缓存，
+ * 多条等长序列在同一遍扫描中一并平滑；窗口内只对有效点按权重归一，无有效点的位置输出 NaN。
+ */
+public final class GaussianSmoother {
+
+    /**
+     * 最多缓存的核数量；sigma 来自请求参数，超出时整体清空重建。
+     */
+    private static final int MAX_CACHED_KERNELS = 64;
+
+    private static final ConcurrentHashMap<Double, double[]> KERNELS = new ConcurrentHashMap<>();
+
+    private GaussianSmoother() {
+    }
+
+    /**
+     * 取 sigma 对应的半边核，kernel[d] 为距离 d 的权重。
+     *
+     * @param sigma 高斯核 sigma，须为正的有限值
+     * @return 长度为 radius + 1 的权重数组（共享，不可修改）
+     */
+    public static double[] kernel(double sigma) {
+        if (!(sigma > 0.0) || !Double.isFinite(sigma)) {
+            throw new IllegalArgumentException("sigma 须为正的有限值");
+        }
+        double[] kernel = KERNELS.get(sigma);
+        if (kernel != null) {
+            return kernel;
+        }
+        if (KERNELS.size() >= MAX_CACHED_KERNELS) {
+            KERNELS.clear();
+        }
+        return KERNELS.computeIfAbsent(sigma, GaussianSmoother::buildKernel);
+    }
+
+    /**
+     * 平滑单条序列。
+     *
+     * @param input 输入序列，NaN 为缺失点
+     * @param sigma 高斯核 sigma，不大于 0 时原样复制
+     * @return 平滑后的新数组
+     */
+    public static double[] smooth(double[] input, double sigma) {
+        return smooth(new double[][]{input}, sigma)[0];
+    }
+
+    /**
+     * 在同一遍扫描中平滑多条序列，每个窗口位置的核权重只取一次。
+     *
+     * @param series 输入序列，NaN 为缺失点，null 视为空序列
+     * @param sigma  高斯核 sigma，不大于 0 或非有限值时原样复制
+     * @return 与输入一一对应的平滑结果
+     */
+    public static double[][] smooth(double[][] series, double sigma) {
+        int m = series.length;
+        double[][] output = new double[m][];
+        int n = 0;
+        for (int s = 0; s < m; s++) {
+            double[] in = series[s] != null ? series[s] : new double[0];
+            output[s] = new double[in.length];
+            n = Math.max(n, in.length);
+        }
+        if (!(sigma > 0.0) || !Double.isFinite(sigma)) {
+            for (int s = 0; s < m; s++) {
+                if (series[s] != null) {
+                    System.arraycopy(series[s], 0, output[s], 0, series[s].length);
+                }
+            }
+            return output;
+        }
+        double[] kernel = kernel(sigma);
+        int radius = kernel.length - 1;
+        double[] numerator = new double[m];
+        double[] denominator = new double[m];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(numerator, 0.0);
+            Arrays.fill(denominator, 0.0);
+            int left = Math.max(0, i - radius);
+            int right = Math.min(n - 1, i + radius);
+            for (int j = left; j <= right; j++) {
+                double weight = kernel[Math.abs(j - i)];
+                for (int s = 0; s < m; s++) {
+                    double[] in = series[s];
+                    if (in == null || j >= in.length) {
+                        continue;
+                    }
+                    double v = in[j];
+                    if (!Double.isNaN(v)) {
+                        numerator[s] += weight * v;
+                        denominator[s] += weight;
+                    }
+                }
+            }
+            for (int s = 0; s < m; s++) {
+                if (i < output[s].length) {
+                    output[s][i] = denominator[s] > 0 ? numerator[s] / denominator[s] : Double.NaN;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * 计算 sigma 对应的半边核。
+     *
+     * @param sigma 高斯核 sigma
+     * @return 权重数组
+     */
+    private static double[] buildKernel(double sigma) {
+        int radius = Math.max(1, (int) Math.ceil(3 * sigma));
+        double twoSigmaSquared = 2.0 * sigma * sigma;
+        double[] kernel = new double[radius + 1];
+        for (int d = 0; d <= radius; d++) {
+            kernel[d] = Math.exp(-((double) d * d) / twoSigmaSquared);
+        }
+        return kernel;
+    }
+}
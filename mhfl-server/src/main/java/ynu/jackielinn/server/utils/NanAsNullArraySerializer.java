@@ -0,0 +1,38 @@
+package ynu.jackielinn.server.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * 将 double[] 序列化为 JSON 数组，NaN（缺失点）写为 null，保持与 List&lt;Double&gt; 相同的输出格式。
+ */
+public class NanAsNullArraySerializer extends StdSerializer<double[]> {
+
+    public NanAsNullArraySerializer() {
+        super(double[].class);
+    }
+
+    /**
+     * 逐元素写出，NaN 写为 null。
+     *
+     * @param value    数组
+     * @param gen      JSON 生成器
+     * @param provider 序列化上下文
+     * @throws IOException 写出失败
+     */
+    @Override
+    public void serialize(double[] value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartArray(value, value.length);
+        for (double v : value) {
+            if (Double.isNaN(v)) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(v);
+            }
+        }
+        gen.writeEndArray();
+    }
+}
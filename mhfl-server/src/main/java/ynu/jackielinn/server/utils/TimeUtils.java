@@ -0,0 +1,83 @@
+package ynu.jackielinn.server.utils;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * 时间解析工具，供训练消息落库与链路耗时统计共用。
+ */
+public final class TimeUtils {
+
+    private TimeUtils() {
+    }
+
+    /**
+     * 按 yyyy-MM-ddTHH:mm:ss[.SSSSSSSSS][Z|±HH:MM] 逐字符解析 ISO 时间戳，不依赖异常判断格式，
+     * 覆盖 Python datetime.isoformat() 的全部输出形式；带时区偏移时保留其本地时间部分。
+     *
+     * @param s 时间戳字符串
+     * @return LocalDateTime，格式或取值非法返回 null
+     */
+    public static LocalDateTime parseIsoDateTime(String s) {
+        if (s == null || s.length() < 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        int len = s.length();
+        int pos = 19;
+        int nano = 0;
+        if (pos < len && s.charAt(pos) == '.') {
+            int start = ++pos;
+            while (pos < len && pos - start < 9 && Character.isDigit(s.charAt(pos))) {
+                nano = nano * 10 + (s.charAt(pos++) - '0');
+            }
+            if (pos == start) {
+                return null;
+            }
+            for (int i = pos - start; i < 9; i++) {
+                nano *= 10;
+            }
+        }
+        if (pos < len) {
+            char c = s.charAt(pos);
+            boolean utc = c == 'Z' && pos + 1 == len;
+            boolean offset = (c == '+' || c == '-') && pos + 6 == len && s.charAt(pos + 3) == ':'
+                    && digits(s, pos + 1, 2) >= 0 && digits(s, pos + 4, 2) >= 0;
+            if (!utc && !offset) {
+                return null;
+            }
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    /**
+     * 读取定长十进制数字。
+     *
+     * @param s     字符串
+     * @param from  起始下标
+     * @param count 位数
+     * @return 数值，含非数字字符返回 -1
+     */
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
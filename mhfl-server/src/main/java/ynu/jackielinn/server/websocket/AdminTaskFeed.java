@@ -0,0 +1,130 @@
+package ynu.jackielinn.server.websocket;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.TaskSummaryBatchMessage;
+import ynu.jackielinn.server.dto.message.TaskSummaryMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 管理员实时任务流。
+ * 训练消息处理器每处理一条 Round/Status 即更新该任务的摘要（taskId、状态、最新轮次、最佳 accuracy），
+ * 按固定节拍把这段时间内有变化的摘要合并为一帧推送给管理员会话，推送开销只随节拍而不随运行中任务数或消息速率增长。
+ * 管理员连接后先收到全部进行中任务的全量帧；任务进入终态时推送最后一次摘要后移出。
+ */
+@Slf4j
+@Component
+public class AdminTaskFeed {
+
+    @Resource
+    private WebSocketSessionManager sessionManager;
+
+    /**
+     * 进行中任务的最新摘要，用于新连接的全量帧。
+     */
+    private final ConcurrentHashMap<Long, TaskSummaryMessage> running = new ConcurrentHashMap<>();
+
+    /**
+     * 上个节拍以来有变化的摘要，每个任务只保留最新一条。
+     */
+    private final ConcurrentHashMap<Long, TaskSummaryMessage> changed = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一轮训练后的摘要。
+     *
+     * @param taskId       任务 id
+     * @param roundNum     轮次编号
+     * @param status       该轮处理后的任务状态，未知时按进行中处理
+     * @param bestAccuracy 目前最佳 accuracy
+     */
+    public void onRound(Long taskId, Integer roundNum, Status status, Double bestAccuracy) {
+        if (taskId == null) {
+            return;
+        }
+        update(TaskSummaryMessage.builder()
+                .taskId(taskId)
+                .status(status != null ? status : Status.IN_PROGRESS)
+                .roundNum(roundNum)
+                .bestAccuracy(bestAccuracy)
+                .build());
+    }
+
+    /**
+     * 记录任务状态变化，保留已有的轮次与最佳指标。
+     *
+     * @param taskId 任务 id
+     * @param status 新状态
+     */
+    public void onStatus(Long taskId, Status status) {
+        if (taskId == null || status == null) {
+            return;
+        }
+        TaskSummaryMessage previous = running.get(taskId);
+        update(TaskSummaryMessage.builder()
+                .taskId(taskId)
+                .status(status)
+                .roundNum(previous != null ? previous.getRoundNum() : null)
+                .bestAccuracy(previous != null ? previous.getBestAccuracy() : null)
+                .build());
+    }
+
+    /**
+     * 以全量帧为首帧登记管理员会话；与节拍推送互斥，保证新会话不漏掉登记前后的变化。
+     *
+     * @param session 已认证的管理员会话
+     */
+    public synchronized void subscribe(WebSocketSession session) {
+        List<TaskSummaryMessage> tasks = new ArrayList<>(running.values());
+        sessionManager.addAdminSession(session, TaskSummaryBatchMessage.builder().full(true).tasks(tasks).build());
+    }
+
+    /**
+     * 按节拍推送上个节拍以来有变化的摘要；无管理员在线时只丢弃变化记录。
+     */
+    @Scheduled(fixedDelayString = "${training.websocket.admin-tick-ms:1000}")
+    public synchronized void tick() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<TaskSummaryMessage> tasks = new ArrayList<>(changed.size());
+        for (Long taskId : changed.keySet()) {
+            TaskSummaryMessage summary = changed.remove(taskId);
+            if (summary != null) {
+                tasks.add(summary);
+            }
+        }
+        if (sessionManager.hasAdminSessions() && !tasks.isEmpty()) {
+            sessionManager.sendToAdmins(TaskSummaryBatchMessage.builder().full(false).tasks(tasks).build());
+        }
+    }
+
+    /**
+     * 当前进行中任务数。
+     *
+     * @return 任务数
+     */
+    public int size() {
+        return running.size();
+    }
+
+    /**
+     * 写入最新摘要：进行中任务更新全量表，终态任务移出全量表；两者都记入本节拍的变化。
+     *
+     * @param summary 任务摘要
+     */
+    private void update(TaskSummaryMessage summary) {
+        if (summary.getStatus() == Status.IN_PROGRESS) {
+            running.put(summary.getTaskId(), summary);
+        } else {
+            running.remove(summary.getTaskId());
+        }
+        changed.put(summary.getTaskId(), summary);
+    }
+}
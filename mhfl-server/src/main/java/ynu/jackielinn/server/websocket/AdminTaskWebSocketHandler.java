@@ -0,0 +1,135 @@
+package ynu.jackielinn.server.websocket;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import ynu.jackielinn.server.utils.JwtUtils;
+
+import java.util.Map;
+
+/**
+ * 管理员实时任务流 WebSocket 处理器。
+ * 连接路径 /ws/admin/tasks；首包携带 {"token": "eyJ..."}，仅管理员可订阅，非管理员或 token 无效时关闭连接。
+ * 认证后先收到全部进行中任务的摘要（full=true），之后由 AdminTaskFeed 按节拍推送有变化的摘要（full=false）。
+ */
+@Slf4j
+@Component
+public class AdminTaskWebSocketHandler extends TextWebSocketHandler {
+
+    private static final String ATTR_AUTHENTICATED = "authenticated";
+
+    @Resource
+    private WebSocketSessionManager sessionManager;
+
+    @Resource
+    private WebSocketHeartbeat heartbeat;
+
+    @Resource
+    private AdminTaskFeed adminTaskFeed;
+
+    @Resource
+    private JwtUtils jwtUtils;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 连接建立后标记为未认证，等待前端首包携带 token。
+     *
+     * @param session 当前 WebSocket 会话
+     */
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        heartbeat.register(session, this);
+        session.getAttributes().put(ATTR_AUTHENTICATED, false);
+        log.debug("Admin task WebSocket connection {} opened, awaiting auth message", session.getId());
+    }
+
+    /**
+     * 连接关闭时移除管理员会话。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param status  关闭状态
+     */
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        heartbeat.unregister(session);
+        sessionManager.removeAdminSession(session);
+        log.info("Admin task WebSocket {} closed, status: {}", session.getId(), status);
+    }
+
+    /**
+     * 收到任意消息（文本、二进制或 Pong）时刷新心跳，再按类型分发。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param message 收到的消息
+     * @throws Exception 消息处理可能抛出的异常
+     */
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        heartbeat.touch(session);
+        super.handleMessage(session, message);
+    }
+
+    /**
+     * 首包校验 token 与管理员角色，通过后登记到 AdminTaskFeed；认证后的消息忽略。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param message 文本消息
+     * @throws Exception 关闭会话可能抛出的异常
+     */
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        if (Boolean.TRUE.equals(session.getAttributes().get(ATTR_AUTHENTICATED))) {
+            return;
+        }
+        String token = parseToken(message.getPayload());
+        if (token == null || token.isBlank()) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Token required"));
+            return;
+        }
+        DecodedJWT jwt = jwtUtils.resolveJwt("Bearer " + token);
+        if (jwt == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Invalid or expired token"));
+            return;
+        }
+        boolean isAdmin = jwtUtils.toUser(jwt).getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ROLE_admin"::equals);
+        if (!isAdmin) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("No permission"));
+            return;
+        }
+        session.getAttributes().put(ATTR_AUTHENTICATED, true);
+        heartbeat.authenticated(session);
+        adminTaskFeed.subscribe(session);
+        log.info("Admin task WebSocket {} authenticated, userId: {}", session.getId(), jwtUtils.toId(jwt));
+    }
+
+    /**
+     * 解析首包中的 token。
+     *
+     * @param payload 文本内容
+     * @return token，解析失败返回 null
+     */
+    private String parseToken(String payload) {
+        if (payload == null || payload.isBlank()) {
+            return null;
+        }
+        try {
+            Map<?, ?> map = objectMapper.readValue(payload, Map.class);
+            return map != null && map.get("token") instanceof String t ? t : null;
+        } catch (Exception e) {
+            log.debug("Failed to parse admin auth payload: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ynu.jackielinn.server.websocket;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ynu.jackielinn.server.dto.message.ClientBatchMessage;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client 指标推送合并器。
+ * 位于 WebSocketSessionManager.sendToTask 之前：同一任务的 Client 消息按 clientIndex 保留最新一条，
+ * 每个合并间隔以一个 ClientBatchMessage 帧推送，帧数、系统调用与前端重渲染随时间而非客户端数增长。
+ * Round/Status 仍立即推送，推送前先 flush 该任务积压的 Client，保证前端收到的先后顺序与处理顺序一致。
+ * 合并间隔为 0 时退化为逐条推送；任务没有推送流（从未有会话或已释放）时直接丢弃，不做缓存。
+ * 多节点模式下只有任务持有节点经合并器推送，发出的帧连同编号经 ClusterPushRelay 整帧转发，其他节点不再各自合并。
+ */
+@Slf4j
+@Component
+public class ClientFrameCoalescer {
+
+    @Resource
+    private WebSocketSessionManager sessionManager;
+
+    @Resource
+    private ClusterPushRelay clusterPushRelay;
+
+    @Value("${training.websocket.client-coalesce-ms:200}")
+    private long coalesceMs = 200;
+
+    private final ConcurrentHashMap<Long, LinkedHashMap<Integer, ClientMessage>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 暂存一条 Client 消息，同一 clientIndex 的旧值被覆盖；由定时任务或下一条 Round/Status 推送前统一发出。
+     *
+     * @param taskId  任务 id
+     * @param message 客户端指标消息
+     */
+    public void addClient(Long taskId, ClientMessage message) {
+        if (coalesceMs <= 0) {
+            sessionManager.sendToTask(taskId, message, stamp -> clusterPushRelay.publishClient(message, stamp));
+            return;
+        }
+        if (!sessionManager.isStreaming(taskId)) {
+            return;
+        }
+        // 与 flushAll 移除空闲缓存互斥，避免写入已被移除的 map
+        pending.compute(taskId, (k, latest) -> {
+            LinkedHashMap<Integer, ClientMessage> map = latest != null ? latest : new LinkedHashMap<>();
+            synchronized (map) {
+                map.put(message.getClientIndex(), message);
+            }
+            return map;
+        });
+    }
+
+    /**
+     * 立即发出该任务积压的 Client 合并帧（推送 Round/Status 前调用）。
+     *
+     * @param taskId 任务 id
+     */
+    public void flush(Long taskId) {
+        LinkedHashMap<Integer, ClientMessage> latest = pending.get(taskId);
+        if (latest != null) {
+            flushLocked(taskId, latest);
+        }
+    }
+
+    /**
+     * 按合并间隔发出全部任务的积压；空闲任务的缓存随之移除。合并关闭（间隔为 0）时以 1 秒间隔空转，避免忙轮询。
+     */
+    @Scheduled(fixedDelayString = "#{${training.websocket.client-coalesce-ms:200} > 0 ? ${training.websocket.client-coalesce-ms:200} : 1000}")
+    public void flushAll() {
+        for (Long taskId : pending.keySet()) {
+            LinkedHashMap<Integer, ClientMessage> latest = pending.computeIfPresent(taskId, (k, map) -> {
+                synchronized (map) {
+                    return map.isEmpty() ? null : map;
+                }
+            });
+            if (latest != null) {
+                flushLocked(taskId, latest);
+            }
+        }
+    }
+
+    /**
+     * 取出积压并以一帧推送并转发；推送只是入队，持锁期间完成以保证与同任务其他帧的先后顺序。
+     *
+     * @param taskId 任务 id
+     * @param latest 该任务按 clientIndex 去重后的积压
+     */
+    private void flushLocked(Long taskId, LinkedHashMap<Integer, ClientMessage> latest) {
+        synchronized (latest) {
+            if (latest.isEmpty()) {
+                return;
+            }
+            ClientBatchMessage frame = ClientBatchMessage.builder()
+                    .taskId(taskId)
+                    .clients(new ArrayList<>(latest.values()))
+                    .build();
+            latest.clear();
+            sessionManager.sendToTask(taskId, frame, stamp -> clusterPushRelay.publishClients(frame, stamp));
+        }
+    }
+}
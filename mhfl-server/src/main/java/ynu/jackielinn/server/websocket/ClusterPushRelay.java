@@ -0,0 +1,226 @@
+package ynu.jackielinn.server.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.function.SingletonSupplier;
+import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.ClientBatchMessage;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RelayMessage;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.StatusMessage;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskOwnership;
+import ynu.jackielinn.server.service.TrainingMessageHandler;
+import ynu.jackielinn.server.utils.Const;
+import ynu.jackielinn.server.websocket.WebSocketSessionManager.PushStamp;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多节点 WebSocket 推送转发（training.cluster.enabled=true 时生效）。
+ * 任务持有节点（见 TaskOwnership）写库并推送本节点连接后，把同一条消息发布到 Redis 通道 ws:relay；
+ * 每个节点订阅该通道，收到其他节点的消息后按 taskId 提交到有序派发器，由 TrainingMessageHandler 只更新本地快照并推送，不写库。
+ * 转发消息携带发布节点推送时分配的 epoch/seq，各节点以同一编号推送，查看者切换节点重连后仍可按 lastSeq 续传。
+ * Client 推送由发布节点合并成帧后整帧转发，各节点的帧序列一致。
+ * 任务归属、派发器与处理器经 ObjectProvider 注入、首次使用时解析一次，避免与 TaskService 等形成循环依赖。
+ * 查看者可以连接任意节点，无需粘性路由。
+ */
+@Slf4j
+@Component
+public class ClusterPushRelay implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private ObjectProvider<TaskOwnership> taskOwnershipProvider;
+
+    @Resource
+    private ObjectProvider<TaskOrderedDispatcher> dispatcherProvider;
+
+    @Resource
+    private ObjectProvider<TrainingMessageHandler> handlerProvider;
+
+    private final SingletonSupplier<TaskOwnership> taskOwnership =
+            SingletonSupplier.of(() -> taskOwnershipProvider.getObject());
+
+    private final SingletonSupplier<TaskOrderedDispatcher> dispatcher =
+            SingletonSupplier.of(() -> dispatcherProvider.getObject());
+
+    private final SingletonSupplier<TrainingMessageHandler> handler =
+            SingletonSupplier.of(() -> handlerProvider.getObject());
+
+    private ObjectReader reader;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * 预先构建转发消息的 ObjectReader。
+     */
+    @PostConstruct
+    public void init() {
+        reader = objectMapper.readerFor(RelayMessage.class);
+    }
+
+    /**
+     * 是否启用多节点转发。
+     *
+     * @return 启用返回 true
+     */
+    public boolean isEnabled() {
+        return taskOwnership.obtain().isEnabled();
+    }
+
+    /**
+     * 转发一轮训练结果。
+     *
+     * @param message      轮次消息
+     * @param taskStatus   该轮处理后的任务状态
+     * @param bestAccuracy 该轮处理后的最佳 accuracy
+     * @param stamp        本节点推送该轮时分配的编号，可为 null
+     */
+    public void publishRound(RoundMessage message, Status taskStatus, Double bestAccuracy, PushStamp stamp) {
+        if (taskOwnership.obtain().isEnabled()) {
+            publish(RelayMessage.builder().taskId(message.getTaskId()).round(message)
+                    .taskStatus(taskStatus).bestAccuracy(bestAccuracy).build(), stamp);
+        }
+    }
+
+    /**
+     * 转发一条客户端指标（未启用合并时逐条推送）。
+     *
+     * @param message 客户端消息
+     * @param stamp   本节点推送时分配的编号，可为 null
+     */
+    public void publishClient(ClientMessage message, PushStamp stamp) {
+        if (taskOwnership.obtain().isEnabled()) {
+            publish(RelayMessage.builder().taskId(message.getTaskId()).client(message).build(), stamp);
+        }
+    }
+
+    /**
+     * 转发一个客户端指标合并帧。
+     *
+     * @param frame 合并帧
+     * @param stamp 本节点推送时分配的编号，可为 null
+     */
+    public void publishClients(ClientBatchMessage frame, PushStamp stamp) {
+        if (taskOwnership.obtain().isEnabled()) {
+            publish(RelayMessage.builder().taskId(frame.getTaskId()).clients(frame).build(), stamp);
+        }
+    }
+
+    /**
+     * 转发一条状态消息。
+     *
+     * @param message       状态消息
+     * @param closeSessions 推送后是否关闭该任务的连接
+     * @param stamp         本节点推送时分配的编号，可为 null
+     */
+    public void publishStatus(StatusMessage message, boolean closeSessions, PushStamp stamp) {
+        if (taskOwnership.obtain().isEnabled()) {
+            publish(RelayMessage.builder().taskId(message.getTaskId()).status(message)
+                    .closeSessions(closeSessions ? true : null).build(), stamp);
+        }
+    }
+
+    /**
+     * 取转发消息携带的推送编号。
+     *
+     * @param relay 转发消息
+     * @return 编号，发布节点未编号时返回 null
+     */
+    public static PushStamp stampOf(RelayMessage relay) {
+        return relay.getEpoch() == null || relay.getSeq() == null ? null : new PushStamp(relay.getEpoch(), relay.getSeq());
+    }
+
+    /**
+     * 收到 ws:relay 消息：忽略本节点发布的消息，其余按 taskId 提交到有序派发器推送给本节点连接；lane 已满时丢弃。
+     *
+     * @param message Redis 消息体
+     * @param pattern 订阅的 channel 模式（未使用）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        RelayMessage relay;
+        try {
+            relay = reader.readValue(message.getBody());
+        } catch (Exception e) {
+            log.warn("Failed to parse relay message: {}", e.getMessage());
+            return;
+        }
+        if (relay == null || relay.getTaskId() == null || taskOwnership.obtain().getNodeId().equals(relay.getNode())) {
+            return;
+        }
+        receivedCount.incrementAndGet();
+        try {
+            dispatcher.obtain().dispatch(relay.getTaskId(), () -> handler.obtain().handleRelayedMessage(relay));
+        } catch (RejectedExecutionException e) {
+            droppedCount.incrementAndGet();
+            log.warn("Relay message for task {} dropped: {}", relay.getTaskId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 获取发布的转发消息累计数。
+     *
+     * @return 发布数
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * 获取收到的其他节点转发消息累计数。
+     *
+     * @return 接收数
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * 获取因 lane 已满而丢弃的转发消息累计数。
+     *
+     * @return 丢弃数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 以本节点标识与推送编号发布转发消息；发布失败只记录日志，不影响本节点处理。
+     *
+     * @param relay 转发消息
+     * @param stamp 本节点推送时分配的编号，可为 null
+     */
+    private void publish(RelayMessage relay, PushStamp stamp) {
+        relay.setNode(taskOwnership.obtain().getNodeId());
+        if (stamp != null) {
+            relay.setEpoch(stamp.epoch());
+            relay.setSeq(stamp.seq());
+        }
+        try {
+            stringRedisTemplate.convertAndSend(Const.WS_RELAY_CHANNEL, objectMapper.writeValueAsString(relay));
+            publishedCount.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("Publish relay message for task {} failed: {}", relay.getTaskId(), e.getMessage());
+        }
+    }
+
+}
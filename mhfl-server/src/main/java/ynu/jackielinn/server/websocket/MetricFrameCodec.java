@@ -0,0 +1,121 @@
+package ynu.jackielinn.server.websocket;
+
+import ynu.jackielinn.server.dto.message.ClientBatchMessage;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * 任务监控二进制子协议 mhfl.metrics.v1 的编码器。
+ * 连接时通过 Sec-WebSocket-Protocol 协商该子协议的会话，Round/Client 指标以定长记录的二进制帧推送，其余消息仍为 JSON 文本帧。
+ * 帧布局（小端）：头 20 字节 = version(u8) + kind(u8, 1=Round 2=Client 批) + count(u16) + taskId(i64) + seq(i64, 任务内推送序号)；
+ * 随后 count 条 28 字节记录 = clientIndex(i32, Round 为 -1) + roundNum(i32) + loss/accuracy/precision/recall/f1Score(f32×5)，
+ * 指标缺失编码为 NaN。
+ */
+public final class MetricFrameCodec {
+
+    public static final String SUB_PROTOCOL = "mhfl.metrics.v1";
+
+    public static final byte VERSION = 2;
+    public static final byte KIND_ROUND = 1;
+    public static final byte KIND_CLIENTS = 2;
+
+    static final int HEADER_BYTES = 20;
+    static final int RECORD_BYTES = 28;
+
+    private MetricFrameCodec() {
+    }
+
+    /**
+     * 将推送对象编码为二进制帧；只支持 RoundMessage、ClientMessage 与 ClientBatchMessage。
+     *
+     * @param payload 推送对象
+     * @param seq     任务内推送序号
+     * @return 帧字节，不支持的类型返回 null（调用方退回 JSON 文本帧）
+     */
+    public static byte[] encode(Object payload, long seq) {
+        if (payload instanceof RoundMessage round) {
+            ByteBuffer buf = header(KIND_ROUND, 1, round.getTaskId(), seq);
+            record(buf, -1, round.getRoundNum(), round.getLoss(), round.getAccuracy(), round.getPrecision(),
+                    round.getRecall(), round.getF1Score());
+            return buf.array();
+        }
+        if (payload instanceof ClientMessage client) {
+            ByteBuffer buf = header(KIND_CLIENTS, 1, client.getTaskId(), seq);
+            clientRecord(buf, client);
+            return buf.array();
+        }
+        if (payload instanceof ClientBatchMessage batch && batch.getClients() != null
+                && batch.getClients().size() <= 0xFFFF) {
+            List<ClientMessage> clients = batch.getClients();
+            ByteBuffer buf = header(KIND_CLIENTS, clients.size(), batch.getTaskId(), seq);
+            for (ClientMessage client : clients) {
+                clientRecord(buf, client);
+            }
+            return buf.array();
+        }
+        return null;
+    }
+
+    /**
+     * 分配整帧缓冲并写入帧头。
+     *
+     * @param kind   帧类型
+     * @param count  记录条数
+     * @param taskId 任务 id
+     * @param seq    任务内推送序号
+     * @return 已写入帧头的缓冲
+     */
+    private static ByteBuffer header(byte kind, int count, Long taskId, long seq) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + count * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(VERSION).put(kind).putShort((short) count).putLong(taskId == null ? 0L : taskId).putLong(seq);
+        return buf;
+    }
+
+    /**
+     * 写入一条 Client 记录。
+     *
+     * @param buf    帧缓冲
+     * @param client 客户端指标消息
+     */
+    private static void clientRecord(ByteBuffer buf, ClientMessage client) {
+        record(buf, client.getClientIndex() == null ? -1 : client.getClientIndex(), client.getRoundNum(),
+                client.getLoss(), client.getAccuracy(), client.getPrecision(), client.getRecall(), client.getF1Score());
+    }
+
+    /**
+     * 写入一条定长记录。
+     *
+     * @param buf         帧缓冲
+     * @param clientIndex 客户端索引，Round 为 -1
+     * @param roundNum    轮次编号，缺失为 -1
+     * @param loss        损失
+     * @param accuracy    准确率
+     * @param precision   精确率
+     * @param recall      召回率
+     * @param f1Score     F1 分数
+     */
+    private static void record(ByteBuffer buf, int clientIndex, Integer roundNum, Double loss, Double accuracy,
+                               Double precision, Double recall, Double f1Score) {
+        buf.putInt(clientIndex)
+                .putInt(roundNum == null ? -1 : roundNum)
+                .putFloat(toFloat(loss))
+                .putFloat(toFloat(accuracy))
+                .putFloat(toFloat(precision))
+                .putFloat(toFloat(recall))
+                .putFloat(toFloat(f1Score));
+    }
+
+    /**
+     * 指标转 float，缺失为 NaN。
+     *
+     * @param value 指标值
+     * @return float 值
+     */
+    private static float toFloat(Double value) {
+        return value == null ? Float.NaN : value.floatValue();
+    }
+}
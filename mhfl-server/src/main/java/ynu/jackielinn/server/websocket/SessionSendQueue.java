@@ -0,0 +1,269 @@
+package ynu.jackielinn.server.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个 WebSocket 会话的异步有界发送队列。
+ * 推送方只把消息放入队列并在空闲时向共享发送线程池提交一次排空任务，不在调用线程做网络 I/O；
+ * 同一会话任一时刻至多一个线程在写，消息按入队顺序发出，无需再对会话加锁。
+ * 慢消费者隔离：单次发送超过 sendTimeLimitMs 仍未返回，或积压字节数超过 bufferSizeLimit 时，
+ * 按 OverflowStrategy 处理——TERMINATE 以 SESSION_NOT_RELIABLE 关闭会话，DROP 丢弃最早的积压消息以保留最新状态。
+ * 每个写出的数据帧按该连接是否协商了 permessage-deflate 记录原始字节数。
+ */
+@Slf4j
+public class SessionSendQueue {
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final long sendTimeLimitMs;
+    private final int bufferSizeLimit;
+    private final OverflowStrategy overflowStrategy;
+    private final TrainingMetrics trainingMetrics;
+    private final boolean compressed;
+
+    private final ConcurrentLinkedQueue<WebSocketMessage<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferedBytes = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * 当前发送开始时间（毫秒），0 表示没有进行中的发送。
+     */
+    private volatile long sendStartedAt;
+
+    /**
+     * 排空后待执行的关闭状态；非 null 时队列不再接收新消息。
+     */
+    private volatile CloseStatus pendingClose;
+
+    private volatile boolean closed;
+
+    /**
+     * 创建会话发送队列。
+     *
+     * @param session          底层 WebSocket 会话
+     * @param executor         共享发送线程池
+     * @param sendTimeLimitMs  单次发送允许的最长耗时（毫秒）
+     * @param bufferSizeLimit  允许积压的最大字节数
+     * @param overflowStrategy 积压超限时的处理策略
+     * @param trainingMetrics  链路指标
+     */
+    public SessionSendQueue(WebSocketSession session, Executor executor, long sendTimeLimitMs, int bufferSizeLimit,
+                            OverflowStrategy overflowStrategy, TrainingMetrics trainingMetrics) {
+        this.session = session;
+        this.executor = executor;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowStrategy = overflowStrategy;
+        this.trainingMetrics = trainingMetrics;
+        this.compressed = isCompressed(session);
+    }
+
+    /**
+     * 会话握手时是否协商了 permessage-deflate。
+     *
+     * @param session WebSocket 会话
+     * @return 协商了压缩返回 true
+     */
+    static boolean isCompressed(WebSocketSession session) {
+        List<WebSocketExtension> extensions = session.getExtensions();
+        return extensions != null && extensions.stream().anyMatch(e -> "permessage-deflate".equals(e.getName()));
+    }
+
+    /**
+     * 将消息放入发送队列并确保有排空任务在执行；调用方不会阻塞在网络 I/O 上。
+     *
+     * @param message 待发送消息
+     * @return 队列仍可用返回 true；会话已关闭、发送失败或因慢消费被关闭返回 false，调用方应移除该会话
+     */
+    public boolean offer(WebSocketMessage<?> message) {
+        if (closed || pendingClose != null) {
+            return false;
+        }
+        long startedAt = sendStartedAt;
+        if (startedAt != 0 && System.currentTimeMillis() - startedAt > sendTimeLimitMs) {
+            terminate("send time " + (System.currentTimeMillis() - startedAt) + " ms exceeded the limit");
+            return false;
+        }
+        queue.add(message);
+        if (bufferedBytes.addAndGet(message.getPayloadLength()) > bufferSizeLimit && !handleOverflow()) {
+            return false;
+        }
+        schedule();
+        return !closed;
+    }
+
+    /**
+     * 发送完已入队的消息后关闭会话，保证关闭前的最后一条推送（如停止训练状态）先于关闭帧到达。
+     *
+     * @param status 关闭状态
+     */
+    public void closeAfterFlush(CloseStatus status) {
+        if (closed) {
+            return;
+        }
+        pendingClose = status;
+        schedule();
+    }
+
+    /**
+     * 丢弃积压消息并由发送线程关闭会话：关闭帧在进行中的发送完成后写出，不与推送并发写同一会话。
+     *
+     * @param status 关闭状态
+     */
+    public void close(CloseStatus status) {
+        if (closed) {
+            return;
+        }
+        pendingClose = status;
+        queue.clear();
+        bufferedBytes.set(0);
+        schedule();
+    }
+
+    /**
+     * 丢弃积压消息并停止发送，不关闭底层会话（会话已由容器关闭或已被移除时调用）。
+     */
+    public void discard() {
+        closed = true;
+        queue.clear();
+        bufferedBytes.set(0);
+    }
+
+    /**
+     * 队列是否仍可接收消息。
+     *
+     * @return 可用返回 true
+     */
+    public boolean isOpen() {
+        return !closed && pendingClose == null;
+    }
+
+    /**
+     * 当前积压的字节数。
+     *
+     * @return 积压字节数
+     */
+    public int getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /**
+     * 积压超限：DROP 丢弃最早的消息直至回到上限内，TERMINATE 关闭会话。
+     *
+     * @return 队列仍可用返回 true
+     */
+    private boolean handleOverflow() {
+        trainingMetrics.recordWsOverflow();
+        if (overflowStrategy == OverflowStrategy.TERMINATE) {
+            terminate("buffered " + bufferedBytes.get() + " bytes exceeded the limit");
+            return false;
+        }
+        while (bufferedBytes.get() > bufferSizeLimit) {
+            WebSocketMessage<?> dropped = queue.poll();
+            if (dropped == null) {
+                break;
+            }
+            bufferedBytes.addAndGet(-dropped.getPayloadLength());
+        }
+        return true;
+    }
+
+    /**
+     * 以 SESSION_NOT_RELIABLE 关闭慢消费会话并丢弃积压。
+     *
+     * @param reason 原因（日志用）
+     */
+    private void terminate(String reason) {
+        if (closed) {
+            return;
+        }
+        log.warn("Closing slow WebSocket session {}: {}", session.getId(), reason);
+        discard();
+        closeSession(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * 无排空任务在执行时提交一次；线程池拒绝时关闭会话，避免消息无限积压。
+     */
+    private void schedule() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            terminate("send executor rejected the drain task");
+        }
+    }
+
+    /**
+     * 按入队顺序发送积压消息；发送失败时关闭会话。排空后若有待执行的关闭则关闭会话，
+     * 退出前再次检查队列，避免与并发入队之间漏掉消息。
+     */
+    private void drain() {
+        try {
+            WebSocketMessage<?> message;
+            while (!closed && (message = queue.poll()) != null) {
+                bufferedBytes.addAndGet(-message.getPayloadLength());
+                long start = System.nanoTime();
+                sendStartedAt = System.currentTimeMillis();
+                try {
+                    session.sendMessage(message);
+                    trainingMetrics.recordWsSend(start);
+                    if (message instanceof TextMessage || message instanceof BinaryMessage) {
+                        trainingMetrics.recordWsFrame(message instanceof BinaryMessage, compressed, message.getPayloadLength());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Send to session {} failed: {}, closing session", session.getId(), e.getMessage());
+                    discard();
+                    closeSession(CloseStatus.SESSION_NOT_RELIABLE);
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+            CloseStatus status = pendingClose;
+            if (!closed && status != null && queue.isEmpty()) {
+                closed = true;
+                closeSession(status);
+            }
+        } finally {
+            draining.set(false);
+        }
+        if (!closed && (!queue.isEmpty() || pendingClose != null)) {
+            schedule();
+        }
+    }
+
+    /**
+     * 关闭底层会话，忽略关闭失败。
+     *
+     * @param status 关闭状态
+     */
+    private void closeSession(CloseStatus status) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.close(status);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Close session {} failed: {}", session.getId(), e.getMessage());
+        }
+    }
+}
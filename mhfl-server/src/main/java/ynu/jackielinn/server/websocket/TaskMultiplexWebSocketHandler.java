@@ -0,0 +1,276 @@
+package ynu.jackielinn.server.websocket;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import ynu.jackielinn.server.dto.message.SubscriptionErrorMessage;
+import ynu.jackielinn.server.entity.Task;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
+import ynu.jackielinn.server.service.RedisSubscriptionService;
+import ynu.jackielinn.server.service.TaskService;
+import ynu.jackielinn.server.utils.JwtUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 多路复用任务监控 WebSocket 处理器。
+ * 连接路径 /ws/tasks；首包携带 token 完成一次 JWT 校验，之后以命令订阅/退订任意多个任务：
+ * {"action": "subscribe", "taskId": 1, "lastSeq": 123, "epoch": "..."} / {"action": "unsubscribe", "taskId": 1}。
+ * 每次订阅单独校验任务权限（所有者或管理员），通过后与 /ws/task/{taskId} 相同：先收到任务快照或按 lastSeq 与 epoch 补发的增量，
+ * 再经 WebSocketSessionManager 接收该任务的推送；各推送都带 taskId，由前端按任务分发。被拒绝的订阅回一条 SubscriptionErrorMessage。
+ * 连接数与 JWT 校验次数不再随监控的任务数增长。
+ */
+@Slf4j
+@Component
+public class TaskMultiplexWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    private static final String ATTR_AUTHENTICATED = "authenticated";
+    private static final String ATTR_USER_ID = "userId";
+    private static final String ATTR_ADMIN = "admin";
+
+    private static final String ACTION_SUBSCRIBE = "subscribe";
+    private static final String ACTION_UNSUBSCRIBE = "unsubscribe";
+
+    @Resource
+    private WebSocketSessionManager sessionManager;
+
+    @Resource
+    private WebSocketHeartbeat heartbeat;
+
+    @Resource
+    private RedisSubscriptionService subscriptionService;
+
+    @Resource
+    private JwtUtils jwtUtils;
+
+    @Resource
+    private TaskService taskService;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private TaskSnapshotBuffer taskSnapshotBuffer;
+
+    @Value("${training.websocket.max-subscriptions:50}")
+    private int maxSubscriptions = 50;
+
+    /**
+     * 声明支持的子协议，与 TaskWebSocketHandler 一致。
+     *
+     * @return 支持的子协议列表
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(MetricFrameCodec.SUB_PROTOCOL);
+    }
+
+    /**
+     * 连接建立后标记为多路复用、未认证，等待前端首包携带 token。
+     *
+     * @param session 当前 WebSocket 会话
+     */
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        heartbeat.register(session, this);
+        session.getAttributes().put(WebSocketSessionManager.ATTR_MULTIPLEXED, true);
+        session.getAttributes().put(ATTR_AUTHENTICATED, false);
+        log.debug("Multiplexed WebSocket connection {} opened, awaiting auth message", session.getId());
+    }
+
+    /**
+     * 连接关闭时移除该连接的全部订阅；任务无剩余连接且已终态时取消 Redis 订阅并释放推送流。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param status  关闭状态
+     */
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        heartbeat.unregister(session);
+        for (Long taskId : sessionManager.removeSession(session)) {
+            unsubscribeIfIdle(taskId);
+        }
+        log.info("Multiplexed WebSocket {} closed, status: {}", session.getId(), status);
+    }
+
+    /**
+     * 收到任意消息（文本、二进制或 Pong）时刷新心跳，再按类型分发。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param message 收到的消息
+     * @throws Exception 消息处理可能抛出的异常
+     */
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        heartbeat.touch(session);
+        super.handleMessage(session, message);
+    }
+
+    /**
+     * 未认证时首包须为 {"token": "eyJ..."}，校验失败关闭连接；认证后处理 subscribe/unsubscribe 命令。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param message 文本消息
+     * @throws Exception 关闭会话可能抛出的异常
+     */
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        Map<?, ?> command = parsePayload(message.getPayload());
+        if (!Boolean.TRUE.equals(session.getAttributes().get(ATTR_AUTHENTICATED))) {
+            authenticate(session, command);
+            return;
+        }
+        Long taskId = command.get("taskId") instanceof Number n ? n.longValue() : null;
+        Object action = command.get("action");
+        if (ACTION_SUBSCRIBE.equals(action) && taskId != null) {
+            Long lastSeq = command.get("lastSeq") instanceof Number n ? n.longValue() : null;
+            String epoch = command.get("epoch") instanceof String e ? e : null;
+            subscribe(session, taskId, lastSeq, epoch);
+        } else if (ACTION_UNSUBSCRIBE.equals(action) && taskId != null) {
+            unsubscribe(session, taskId);
+        } else {
+            reject(session, taskId, "Invalid command");
+        }
+    }
+
+    /**
+     * 校验首包 token，通过后记录用户 id 与是否管理员。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param auth    首包字段
+     * @throws Exception 关闭会话可能抛出的异常
+     */
+    private void authenticate(WebSocketSession session, Map<?, ?> auth) throws Exception {
+        String token = auth.get("token") instanceof String t ? t : null;
+        if (token == null || token.isBlank()) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Token required"));
+            return;
+        }
+        DecodedJWT jwt = jwtUtils.resolveJwt("Bearer " + token);
+        if (jwt == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Invalid or expired token"));
+            return;
+        }
+        Long userId = jwtUtils.toId(jwt);
+        boolean isAdmin = jwtUtils.toUser(jwt).getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ROLE_admin"::equals);
+        session.getAttributes().put(ATTR_USER_ID, userId);
+        session.getAttributes().put(ATTR_ADMIN, isAdmin);
+        session.getAttributes().put(ATTR_AUTHENTICATED, true);
+        heartbeat.authenticated(session);
+        log.info("Multiplexed WebSocket {} authenticated, userId: {}", session.getId(), userId);
+    }
+
+    /**
+     * 订阅任务：校验订阅数与权限，在快照锁内以快照或补发增量为首帧加入会话管理，加入成功后再订阅 Redis 通道；重复订阅忽略。
+     * 已订阅的任务以 WebSocketSessionManager 的登记为准，推送失败或停止训练移除的订阅不占订阅数，可重新订阅。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param taskId  任务 id
+     * @param lastSeq 客户端已收到的最后一个 seq，null 表示首次订阅
+     * @param epoch   lastSeq 所属的纪元
+     */
+    private void subscribe(WebSocketSession session, Long taskId, Long lastSeq, String epoch) {
+        Set<Long> taskIds = sessionManager.getTasks(session);
+        if (taskIds.contains(taskId)) {
+            return;
+        }
+        if (taskIds.size() >= maxSubscriptions) {
+            reject(session, taskId, "Too many subscriptions");
+            return;
+        }
+        Task task = taskService.getById(taskId);
+        if (task == null) {
+            reject(session, taskId, "Task not found");
+            return;
+        }
+        Long userId = (Long) session.getAttributes().get(ATTR_USER_ID);
+        if (!task.getUid().equals(userId) && !Boolean.TRUE.equals(session.getAttributes().get(ATTR_ADMIN))) {
+            reject(session, taskId, "No permission");
+            return;
+        }
+        boolean added;
+        synchronized (taskSnapshotBuffer.lockFor(taskId)) {
+            added = sessionManager.addSession(taskId, session, () -> taskSnapshotBuffer.snapshot(taskId), lastSeq, epoch);
+        }
+        if (!added) {
+            return;
+        }
+        subscriptionService.subscribeTask(taskId);
+        log.debug("Multiplexed WebSocket {} subscribed task {}", session.getId(), taskId);
+    }
+
+    /**
+     * 退订任务；任务无剩余连接且已终态时取消 Redis 订阅并释放推送流。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param taskId  任务 id
+     */
+    private void unsubscribe(WebSocketSession session, Long taskId) {
+        if (!sessionManager.getTasks(session).contains(taskId)) {
+            return;
+        }
+        sessionManager.removeSession(taskId, session);
+        unsubscribeIfIdle(taskId);
+        log.debug("Multiplexed WebSocket {} unsubscribed task {}", session.getId(), taskId);
+    }
+
+    /**
+     * 任务无剩余连接且已终态时取消 Redis 订阅并释放推送流。
+     *
+     * @param taskId 任务 id
+     */
+    private void unsubscribeIfIdle(Long taskId) {
+        if (!sessionManager.getSessions(taskId).isEmpty()) {
+            return;
+        }
+        Task task = taskService.getById(taskId);
+        if (task != null && TaskWebSocketHandler.isTerminalStatus(task.getStatus())) {
+            subscriptionService.unsubscribeTask(taskId);
+            sessionManager.releaseStreamIfIdle(taskId);
+        }
+    }
+
+    /**
+     * 回一条订阅失败应答。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param taskId  任务 id
+     * @param reason  失败原因
+     */
+    private void reject(WebSocketSession session, Long taskId, String reason) {
+        sessionManager.sendToSession(session, SubscriptionErrorMessage.builder().taskId(taskId).error(reason).build());
+    }
+
+    /**
+     * 解析 JSON 文本消息。
+     *
+     * @param payload 文本内容
+     * @return 字段 map，解析失败返回空 map
+     */
+    private Map<?, ?> parsePayload(String payload) {
+        if (payload == null || payload.isBlank()) {
+            return Map.of();
+        }
+        try {
+            Map<?, ?> map = objectMapper.readValue(payload, Map.class);
+            return map == null ? Map.of() : map;
+        } catch (Exception e) {
+            log.debug("Failed to parse multiplexed payload: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+}
@@ -7,15 +7,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 import ynu.jackielinn.server.common.Status;
 import ynu.jackielinn.server.entity.Task;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
 import ynu.jackielinn.server.service.RedisSubscriptionService;
 import ynu.jackielinn.server.service.TaskService;
 import ynu.jackielinn.server.utils.JwtUtils;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -23,18 +27,27 @@ import java.util.Set;
  * 任务监控 WebSocket 处理器。
  * 连接路径 /ws/task/{taskId}；建立连接后等首包携带 token，校验 JWT 与权限（任务所有者或管理员）通过后加入会话并订阅 Redis，
  * 断开时移除会话，无剩余连接且任务终态时取消订阅。
+ * 认证通过后以任务快照（最近 Round 与各客户端最新指标）作为首帧推送，前端无需再查库回填；
+ * 断线重连的首包携带 lastSeq 与 epoch，纪元一致且仍在重放窗口内时改为只补发缺失的推送。
+ * 握手时可协商 mhfl.metrics.v1 子协议，协商成功的会话以二进制帧接收 Round/Client 指标；未协商时保持 JSON 文本帧。
+ * 连接登记到 WebSocketHeartbeat，由其定时 Ping 并回收逾期未认证或空闲的连接。
  */
 @Slf4j
 @Component
-public class TaskWebSocketHandler extends TextWebSocketHandler {
+public class TaskWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private static final String ATTR_TASK_ID = "taskId";
     private static final String ATTR_AUTHENTICATED = "authenticated";
     private static final String AUTH_JSON_KEY_TOKEN = "token";
+    private static final String AUTH_JSON_KEY_LAST_SEQ = "lastSeq";
+    private static final String AUTH_JSON_KEY_EPOCH = "epoch";
 
     @Resource
     private WebSocketSessionManager sessionManager;
 
+    @Resource
+    private WebSocketHeartbeat heartbeat;
+
     @Resource
     private RedisSubscriptionService subscriptionService;
 
@@ -47,6 +60,19 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
     @Resource
     private ObjectMapper objectMapper;
 
+    @Resource
+    private TaskSnapshotBuffer taskSnapshotBuffer;
+
+    /**
+     * 声明支持的子协议，供握手时与客户端 Sec-WebSocket-Protocol 协商；客户端未请求时不选择子协议，沿用 JSON。
+     *
+     * @return 支持的子协议列表
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(MetricFrameCodec.SUB_PROTOCOL);
+    }
+
     /**
      * 连接建立后从路径解析 taskId，写入 session 属性并标记未认证，等待前端首包携带 token。
      *
@@ -55,6 +81,7 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        heartbeat.register(session, this);
         Long taskId = extractTaskId(session);
         if (taskId == null) {
             session.close(CloseStatus.BAD_DATA.withReason("Invalid taskId"));
@@ -66,7 +93,7 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 连接关闭时若已认证则从会话管理移除；若该任务下无剩余连接且任务已终态则取消 Redis 订阅。
+     * 连接关闭时若已认证则从会话管理移除；若该任务下无剩余连接且任务已终态则取消 Redis 订阅并释放推送流。
      *
      * @param session 当前 WebSocket 会话
      * @param status  关闭状态
@@ -74,6 +101,7 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        heartbeat.unregister(session);
         Long taskId = (Long) session.getAttributes().get(ATTR_TASK_ID);
         if (taskId == null) {
             taskId = extractTaskId(session);
@@ -89,18 +117,32 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
                 Task task = taskService.getById(taskId);
                 if (task != null && isTerminalStatus(task.getStatus())) {
                     subscriptionService.unsubscribeTask(taskId);
+                    sessionManager.releaseStreamIfIdle(taskId);
                 }
             }
         }
         log.info("WebSocket closed for task {}, authenticated: {}, status: {}", taskId, authenticated, status);
     }
 
+    /**
+     * 收到任意消息（文本、二进制或 Pong）时刷新心跳，再按类型分发。
+     *
+     * @param session 当前 WebSocket 会话
+     * @param message 收到的消息
+     * @throws Exception 消息处理可能抛出的异常
+     */
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        heartbeat.touch(session);
+        super.handleMessage(session, message);
+    }
+
     /**
      * 处理首包文本消息：解析 JSON 中的 token，校验 JWT 及任务权限（所有者或管理员），
-     * 通过后标记已认证、加入会话管理并订阅该 taskId 的 Redis 通道。
+     * 通过后标记已认证、在快照锁内按 lastSeq 与 epoch 补发增量或以任务快照为首帧加入会话管理，再订阅该 taskId 的 Redis 通道。
      *
      * @param session 当前 WebSocket 会话
-     * @param message 文本消息（约定 {"token": "eyJ..."}）
+     * @param message 文本消息（约定 {"token": "eyJ...", "lastSeq": 123, "epoch": "..."}，lastSeq 与 epoch 仅重连时携带）
      * @throws Exception 关闭会话或解析可能抛出的异常
      */
     @Override
@@ -109,7 +151,8 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        String token = parseTokenFromPayload(message.getPayload());
+        Map<?, ?> auth = parseAuthPayload(message.getPayload());
+        String token = auth.get(AUTH_JSON_KEY_TOKEN) instanceof String t ? t : null;
         if (token == null || token.isBlank()) {
             session.close(CloseStatus.POLICY_VIOLATION.withReason("Token required"));
             return;
@@ -144,29 +187,32 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
         }
 
         session.getAttributes().put(ATTR_AUTHENTICATED, true);
-        sessionManager.addSession(taskId, session);
+        heartbeat.authenticated(session);
+        Long lastSeq = auth.get(AUTH_JSON_KEY_LAST_SEQ) instanceof Number n ? n.longValue() : null;
+        String epoch = auth.get(AUTH_JSON_KEY_EPOCH) instanceof String e ? e : null;
+        synchronized (taskSnapshotBuffer.lockFor(taskId)) {
+            sessionManager.addSession(taskId, session, () -> taskSnapshotBuffer.snapshot(taskId), lastSeq, epoch);
+        }
         subscriptionService.subscribeTask(taskId);
         log.info("WebSocket authenticated for task {}, userId: {}", taskId, userId);
     }
 
     /**
-     * 从首包 JSON 中解析 token 字段，约定格式：{"token": "eyJ..."}。
+     * 解析首包 JSON，约定格式：{"token": "eyJ...", "lastSeq": 123, "epoch": "..."}。
      *
      * @param payload 首包文本内容（JSON 字符串）
-     * @return token 字符串，解析失败或不存在返回 null
+     * @return 字段 map，解析失败返回空 map
      */
-    private String parseTokenFromPayload(String payload) {
+    private Map<?, ?> parseAuthPayload(String payload) {
         if (payload == null || payload.isBlank()) {
-            return null;
+            return Map.of();
         }
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> map = objectMapper.readValue(payload, Map.class);
-            Object v = map == null ? null : map.get(AUTH_JSON_KEY_TOKEN);
-            return v instanceof String ? (String) v : null;
+            Map<?, ?> map = objectMapper.readValue(payload, Map.class);
+            return map == null ? Map.of() : map;
         } catch (Exception e) {
             log.debug("Failed to parse auth payload: {}", e.getMessage());
-            return null;
+            return Map.of();
         }
     }
 
@@ -202,7 +248,7 @@ public class TaskWebSocketHandler extends TextWebSocketHandler {
      * @param status 任务状态
      * @return 是否为终态
      */
-    private static boolean isTerminalStatus(Status status) {
+    static boolean isTerminalStatus(Status status) {
         return status == Status.SUCCESS || status == Status.RECOMMENDED
                 || status == Status.FAILED || status == Status.CANCELLED;
     }
@@ -0,0 +1,194 @@
+package ynu.jackielinn.server.websocket;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket 心跳与空闲回收。
+ * 各 WebSocket 处理器在连接建立、认证通过、收到任意消息（含 Pong）与连接关闭时登记到这里；
+ * 定时巡检：未在 auth-deadline-ms 内完成首包认证的连接以 POLICY_VIOLATION 关闭，
+ * 已认证连接每隔 ping-interval-ms 经发送队列发一次 Ping，超过 idle-timeout-ms 未收到任何消息（浏览器会自动回 Pong）的以 SESSION_NOT_RELIABLE 关闭。
+ * 回收经会话的发送队列关闭，不与推送并发写；容器未回调关闭的失效连接由登记时的处理器执行与 afterConnectionClosed 相同的清理
+ * （移除订阅、无剩余连接时取消 Redis 订阅）。连接数、已认证数与回收数由 TrainingMetrics 登记为指标。
+ */
+@Slf4j
+@Component
+public class WebSocketHeartbeat {
+
+    @Resource
+    private WebSocketSessionManager sessionManager;
+
+    @Value("${training.websocket.auth-deadline-ms:10000}")
+    private long authDeadlineMs = 10000;
+
+    @Value("${training.websocket.ping-interval-ms:25000}")
+    private long pingIntervalMs = 25000;
+
+    @Value("${training.websocket.idle-timeout-ms:60000}")
+    private long idleTimeoutMs = 60000;
+
+    /**
+     * 单个连接的心跳状态。
+     */
+    private static final class Connection {
+
+        private final long openedAt;
+        private final WebSocketHandler handler;
+        private volatile boolean authenticated;
+        private volatile long lastSeen;
+        private volatile long lastPing;
+
+        private Connection(long now, WebSocketHandler handler) {
+            this.openedAt = now;
+            this.handler = handler;
+            this.lastSeen = now;
+            this.lastPing = now;
+        }
+    }
+
+    private final Map<WebSocketSession, Connection> connections = new ConcurrentHashMap<>();
+
+    private final AtomicLong reapedCount = new AtomicLong();
+
+    /**
+     * 登记新建立的连接，开始计算认证期限。
+     *
+     * @param session WebSocket 会话
+     * @param handler 连接所属的处理器，连接失效而容器未回调关闭时由其 afterConnectionClosed 清理
+     */
+    public void register(WebSocketSession session, WebSocketHandler handler) {
+        connections.put(session, new Connection(System.currentTimeMillis(), handler));
+    }
+
+    /**
+     * 标记连接已认证，此后按 Ping 间隔与空闲超时管理。
+     *
+     * @param session WebSocket 会话
+     */
+    public void authenticated(WebSocketSession session) {
+        Connection connection = connections.get(session);
+        if (connection != null) {
+            connection.authenticated = true;
+            connection.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 记录收到该连接的消息。
+     *
+     * @param session WebSocket 会话
+     */
+    public void touch(WebSocketSession session) {
+        Connection connection = connections.get(session);
+        if (connection != null) {
+            connection.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 连接关闭时移除。
+     *
+     * @param session WebSocket 会话
+     */
+    public void unregister(WebSocketSession session) {
+        connections.remove(session);
+    }
+
+    /**
+     * 巡检全部连接：回收超过认证期限或空闲超时的连接，给到期的已认证连接发送 Ping。
+     */
+    @Scheduled(fixedDelayString = "${training.websocket.reaper-interval-ms:5000}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<WebSocketSession, Connection> entry : connections.entrySet()) {
+            WebSocketSession session = entry.getKey();
+            Connection connection = entry.getValue();
+            if (!session.isOpen()) {
+                connections.remove(session);
+                reapedCount.incrementAndGet();
+                cleanUp(session, connection.handler);
+            } else if (!connection.authenticated) {
+                if (now - connection.openedAt > authDeadlineMs) {
+                    reap(session, CloseStatus.POLICY_VIOLATION.withReason("Authentication timeout"));
+                }
+            } else if (now - connection.lastSeen > idleTimeoutMs) {
+                reap(session, CloseStatus.SESSION_NOT_RELIABLE.withReason("Idle timeout"));
+            } else if (now - connection.lastPing >= pingIntervalMs) {
+                connection.lastPing = now;
+                sessionManager.sendPing(session);
+            }
+        }
+    }
+
+    /**
+     * 当前登记的连接数。
+     *
+     * @return 连接数
+     */
+    public int getOpenCount() {
+        return connections.size();
+    }
+
+    /**
+     * 当前已认证的连接数。
+     *
+     * @return 已认证连接数
+     */
+    public int getAuthenticatedCount() {
+        int count = 0;
+        for (Connection connection : connections.values()) {
+            if (connection.authenticated) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取累计回收的连接数。
+     *
+     * @return 回收数
+     */
+    public long getReapedCount() {
+        return reapedCount.get();
+    }
+
+    /**
+     * 对容器未回调关闭的失效连接执行所属处理器的关闭清理；清理与容器回调重复时各步骤均为幂等。
+     *
+     * @param session WebSocket 会话
+     * @param handler 连接所属的处理器
+     */
+    private void cleanUp(WebSocketSession session, WebSocketHandler handler) {
+        try {
+            handler.afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            log.warn("Clean up stale WebSocket session {} failed: {}", session.getId(), e.getMessage());
+            sessionManager.removeSession(session);
+            sessionManager.removeAdminSession(session);
+        }
+    }
+
+    /**
+     * 关闭并移除连接。
+     *
+     * @param session WebSocket 会话
+     * @param status  关闭状态
+     */
+    private void reap(WebSocketSession session, CloseStatus status) {
+        connections.remove(session);
+        reapedCount.incrementAndGet();
+        log.info("Reaping WebSocket session {}: {}", session.getId(), status.getReason());
+        sessionManager.closeSession(session, status);
+    }
+}
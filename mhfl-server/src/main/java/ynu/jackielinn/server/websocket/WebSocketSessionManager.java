@@ -1,41 +1,140 @@
 package ynu.jackielinn.server.websocket;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
 
-import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * WebSocket 会话管理器。
  * 按 taskId 维护订阅该任务的会话集合，提供添加/移除/推送/关闭；训练消息处理器写库后调用 sendToTask 推送给前端。
+ * 每个会话绑定一个 SessionSendQueue：推送只入队，由 websocketSendExecutor 异步写出，训练消息处理线程不阻塞在网络 I/O 上，
+ * 单个慢浏览器只会被关闭或丢弃积压，不会拖慢同一任务的入库。
+ * 有过会话的任务维护一个推送流：每条推送带任务内单调递增的 seq（JSON 字段 seq / 二进制帧头）及其所属编号纪元 epoch（JSON 字段 epoch），
+ * 最近 replayWindow 条 JSON 帧留作重放窗口；断线重连的首包携带 lastSeq 与 epoch，纪元一致且仍在窗口内时只补发缺失的增量，否则回退为首帧快照。
+ * 每个推送流创建时生成随机纪元，seq 以创建时的毫秒时间戳为起点。多节点模式下由任务持有节点编号，
+ * 其他节点按转发消息携带的纪元与 seq 推送（纪元变化时清空重放窗口），各节点对同一推送使用同一编号，连接切换节点后仍可续传。
+ * 多路复用连接（会话属性 multiplexed=true）可同时订阅多个任务：各任务共用该连接的一个发送队列，
+ * 队列随连接存在，退订（含停止训练时的被动退订）不丢弃已入队的推送，连接关闭时才丢弃。
+ * 管理员实时任务流的会话单独维护，由 AdminTaskFeed 按节拍经 sendToAdmins 推送。
  */
 @Slf4j
 @Component
 public class WebSocketSessionManager {
 
+    /**
+     * 会话属性：为 true 表示多路复用连接。
+     */
+    public static final String ATTR_MULTIPLEXED = "multiplexed";
+
     private final ConcurrentHashMap<Long, Set<WebSocketSession>> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<WebSocketSession, SessionSendQueue> sendQueues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<WebSocketSession, Set<Long>> sessionTasks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, TaskStream> streams = new ConcurrentHashMap<>();
+    private final Set<WebSocketSession> adminSessions = ConcurrentHashMap.newKeySet();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Resource
+    private TrainingMetrics trainingMetrics;
+
+    @Resource(name = "websocketSendExecutor")
+    private Executor sendExecutor;
+
+    @Value("${training.websocket.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs = 10000;
+
+    @Value("${training.websocket.buffer-size-limit:524288}")
+    private int bufferSizeLimit = 524288;
+
+    @Value("${training.websocket.overflow-strategy:TERMINATE}")
+    private OverflowStrategy overflowStrategy = OverflowStrategy.TERMINATE;
+
+    @Value("${training.websocket.replay-window:1000}")
+    private int replayWindow = 1000;
+
+    /**
+     * 一条推送在任务推送流中的编号。
+     *
+     * @param epoch 编号纪元，推送流重建或持有节点变化时改变
+     * @param seq   纪元内单调递增的序号
+     */
+    public record PushStamp(String epoch, long seq) {
+    }
+
     /**
-     * 将已认证的 WebSocket 会话加入指定任务下的会话集合。
+     * 将已认证的 WebSocket 会话加入指定任务下的会话集合，并为其创建发送队列。
      *
      * @param taskId  任务 id
      * @param session WebSocket 会话
      */
     public void addSession(Long taskId, WebSocketSession session) {
-        sessions.computeIfAbsent(taskId, k -> ConcurrentHashMap.newKeySet()).add(session);
-        log.debug("WebSocket session added for task {}, total: {}", taskId, sessions.get(taskId).size());
+        addSession(taskId, session, null, null, null);
     }
 
     /**
-     * 从指定任务下移除该 WebSocket 会话；若该任务无剩余会话则从 map 中移除 taskId。
+     * 将已认证的 WebSocket 会话加入指定任务下的会话集合，先把补发帧放入其发送队列，再对 sendToTask 可见，
+     * 保证补发内容先于任何增量推送到达且不漏推。lastEpoch 与当前纪元一致且 lastSeq 仍在重放窗口内时补发其后的全部推送，
+     * 否则发送 firstFrame 提供的首帧（如任务快照），首帧携带当前纪元与 seq 作为续传起点。补发与首帧总以 JSON 文本帧发送。
+     *
+     * @param taskId     任务 id
+     * @param session    WebSocket 会话
+     * @param firstFrame 首帧推送对象的提供者，null 表示无首帧；可补发增量时不会调用
+     * @param lastSeq    客户端已收到的最后一个 seq，null 表示首次连接
+     * @param lastEpoch  lastSeq 所属的纪元，null 时不补发
+     * @return 已加入返回 true；会话在首帧入队前已不可用返回 false，此时未登记任何订阅
+     */
+    public boolean addSession(Long taskId, WebSocketSession session, Supplier<?> firstFrame, Long lastSeq, String lastEpoch) {
+        SessionSendQueue queue = sendQueues.computeIfAbsent(session, s -> new SessionSendQueue(s, sendExecutor,
+                sendTimeLimitMs, bufferSizeLimit, overflowStrategy, trainingMetrics));
+        TaskStream stream = streams.computeIfAbsent(taskId, k -> newStream());
+        synchronized (stream) {
+            List<TextMessage> replay = lastSeq == null || !stream.epoch.equals(lastEpoch) ? null : stream.replayAfter(lastSeq);
+            if (replay == null && firstFrame != null) {
+                TextMessage text = toTextMessage(taskId, firstFrame.get(), stream.epoch, stream.seq);
+                replay = text == null ? List.of() : List.of(text);
+            }
+            if (replay != null) {
+                for (TextMessage message : replay) {
+                    if (!queue.offer(message)) {
+                        sendQueues.remove(session);
+                        log.debug("WebSocket session {} for task {} unavailable before first frame", session.getId(), taskId);
+                        return false;
+                    }
+                }
+            }
+            sessions.computeIfAbsent(taskId, k -> ConcurrentHashMap.newKeySet()).add(session);
+            sessionTasks.computeIfAbsent(session, k -> ConcurrentHashMap.newKeySet()).add(taskId);
+        }
+        log.debug("WebSocket session added for task {}, total: {}, lastSeq: {}", taskId, getSessions(taskId).size(), lastSeq);
+        return true;
+    }
+
+    /**
+     * 从指定任务下移除该 WebSocket 会话；单任务会话不再订阅任何任务时丢弃其未发送的消息，
+     * 多路复用会话保留发送队列，已入队的推送（如停止训练的状态帧）照常发出。若该任务无剩余会话则从 map 中移除 taskId。
      *
      * @param taskId  任务 id
      * @param session 要移除的 WebSocket 会话
@@ -44,6 +143,16 @@ public class WebSocketSessionManager {
         Set<WebSocketSession> taskSessions = sessions.get(taskId);
         if (taskSessions != null) {
             taskSessions.remove(session);
+            boolean lastTask = sessionTasks.computeIfPresent(session, (s, tasks) -> {
+                tasks.remove(taskId);
+                return tasks.isEmpty() ? null : tasks;
+            }) == null;
+            if (lastTask && !isMultiplexed(session)) {
+                SessionSendQueue queue = sendQueues.remove(session);
+                if (queue != null) {
+                    queue.discard();
+                }
+            }
             if (taskSessions.isEmpty()) {
                 sessions.remove(taskId);
             }
@@ -51,6 +160,70 @@ public class WebSocketSessionManager {
         }
     }
 
+    /**
+     * 将该会话从其订阅的全部任务中移除并丢弃发送队列（连接关闭时调用）。
+     *
+     * @param session WebSocket 会话
+     * @return 该会话此前订阅的任务 id
+     */
+    public Set<Long> removeSession(WebSocketSession session) {
+        Set<Long> tasks = sessionTasks.get(session);
+        Set<Long> removed = tasks == null ? Set.of() : Set.copyOf(tasks);
+        for (Long taskId : removed) {
+            removeSession(taskId, session);
+        }
+        SessionSendQueue queue = sendQueues.remove(session);
+        if (queue != null) {
+            queue.discard();
+        }
+        return removed;
+    }
+
+    /**
+     * 向单个会话发送一条不带 seq 的 JSON 消息（如多路复用连接的订阅应答），与推送共用其发送队列以保证不并发写。
+     *
+     * @param session WebSocket 会话
+     * @param payload 要序列化为 JSON 的对象
+     * @return 已入队返回 true
+     */
+    public boolean sendToSession(WebSocketSession session, Object payload) {
+        SessionSendQueue queue = sendQueues.computeIfAbsent(session, s -> new SessionSendQueue(s, sendExecutor,
+                sendTimeLimitMs, bufferSizeLimit, overflowStrategy, trainingMetrics));
+        TextMessage text = toTextMessage(null, payload);
+        return text != null && queue.offer(text);
+    }
+
+    /**
+     * 经发送队列向会话发送 Ping 帧，与推送串行写出；会话尚无发送队列（未认证）时不发送。
+     *
+     * @param session WebSocket 会话
+     * @return 已入队返回 true
+     */
+    public boolean sendPing(WebSocketSession session) {
+        SessionSendQueue queue = sendQueues.get(session);
+        return queue != null && queue.offer(new PingMessage());
+    }
+
+    /**
+     * 丢弃会话积压的推送并关闭连接；有发送队列时由发送线程关闭，与进行中的发送串行。
+     * 订阅与会话登记由各处理器的 afterConnectionClosed 清理。
+     *
+     * @param session WebSocket 会话
+     * @param status  关闭状态
+     */
+    public void closeSession(WebSocketSession session, CloseStatus status) {
+        SessionSendQueue queue = sendQueues.get(session);
+        if (queue != null) {
+            queue.close(status);
+            return;
+        }
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            log.warn("Close session {} failed: {}", session.getId(), e.getMessage());
+        }
+    }
+
     /**
      * 获取某任务当前所有会话的只读快照，用于判断是否可取消 Redis 订阅等。
      *
@@ -66,57 +239,387 @@ public class WebSocketSessionManager {
     }
 
     /**
-     * 向订阅了该 taskId 的所有会话推送消息；先写库后推送由调用方保证顺序，发送失败或已关闭的会话会被移除。
+     * 获取该会话当前订阅的任务 id 快照；推送失败或停止训练时被移除的订阅不再包含在内，供多路复用连接判断重复订阅与订阅数。
+     *
+     * @param session WebSocket 会话
+     * @return 任务 id 集合，无订阅时返回空 Set
+     */
+    public Set<Long> getTasks(WebSocketSession session) {
+        Set<Long> tasks = sessionTasks.get(session);
+        return tasks == null ? Set.of() : Set.copyOf(tasks);
+    }
+
+    /**
+     * 该任务是否维护着推送流（有过会话且未释放）；为 true 时即使暂无在线会话，推送也会编号并进入重放窗口。
+     *
+     * @param taskId 任务 id
+     * @return 是否维护推送流
+     */
+    public boolean isStreaming(Long taskId) {
+        return streams.containsKey(taskId);
+    }
+
+    /**
+     * 确保该任务维护推送流（多节点模式下任务持有节点处理消息前调用），本节点没有会话时也为推送编号，供其他节点沿用。
+     *
+     * @param taskId 任务 id
+     */
+    public void openStream(Long taskId) {
+        if (taskId != null) {
+            streams.computeIfAbsent(taskId, k -> newStream());
+        }
+    }
+
+    /**
+     * 释放该任务的推送流与重放窗口（任务进入终态后调用）；之后重连的会话收到首帧而非补发。
+     *
+     * @param taskId 任务 id
+     */
+    public void releaseStream(Long taskId) {
+        if (taskId != null) {
+            streams.remove(taskId);
+        }
+    }
+
+    /**
+     * 该任务已无在线会话时释放其推送流（终态任务的最后一个会话断开或退订时调用），避免只被查看过的任务长期占用重放窗口。
+     * 与 addSession 同在推送流锁内判断，释放后新会话会重建推送流。
+     *
+     * @param taskId 任务 id
+     */
+    public void releaseStreamIfIdle(Long taskId) {
+        TaskStream stream = taskId == null ? null : streams.get(taskId);
+        if (stream == null) {
+            return;
+        }
+        synchronized (stream) {
+            if (getSessions(taskId).isEmpty()) {
+                streams.remove(taskId, stream);
+            }
+        }
+    }
+
+    /**
+     * 向订阅了该 taskId 的所有会话推送消息：分配下一个 seq，按需各编码一次后放入各会话的发送队列即返回，由发送线程池异步写出。
+     * 协商了 mhfl.metrics.v1 子协议的会话收到 Round/Client 的二进制帧，其余会话与其余消息为 JSON 文本帧；JSON 帧同时记入重放窗口。
+     * 同一任务的编号、入窗与入队在推送流锁内完成，seq 顺序即各会话收到的顺序。
+     * 先写库后推送由调用方保证顺序；已关闭、发送失败或因慢消费被关闭的会话会被移除。
      *
      * @param taskId  任务 id
      * @param payload 要序列化为 JSON 并推送的对象
      */
     public void sendToTask(Long taskId, Object payload) {
+        sendToTask(taskId, payload, null);
+    }
+
+    /**
+     * 与 {@link #sendToTask(Long, Object)} 相同，并在推送流锁内以本次推送的编号回调 onPushed（多节点模式下据此转发给其他节点），
+     * 回调顺序即 seq 顺序；任务没有推送流或序列化失败时以 null 回调。
+     *
+     * @param taskId   任务 id
+     * @param payload  要序列化为 JSON 并推送的对象
+     * @param onPushed 编号回调，可为 null
+     */
+    public void sendToTask(Long taskId, Object payload, Consumer<PushStamp> onPushed) {
+        TaskStream stream = streams.get(taskId);
+        if (stream == null) {
+            if (onPushed != null) {
+                onPushed.accept(null);
+            }
+            return;
+        }
+        synchronized (stream) {
+            PushStamp stamp = push(taskId, stream, payload, stream.epoch, stream.seq + 1);
+            if (onPushed != null) {
+                onPushed.accept(stamp);
+            }
+        }
+    }
+
+    /**
+     * 按任务持有节点分配的编号推送其他节点转发的消息：纪元变化时清空重放窗口后改用新纪元，
+     * 同一纪元内不大于当前 seq 的编号视为重复，不再推送。stamp 为 null（持有节点未编号）时由本节点编号。
+     *
+     * @param taskId  任务 id
+     * @param payload 要序列化为 JSON 并推送的对象
+     * @param stamp   任务持有节点分配的编号，可为 null
+     */
+    public void sendRelayed(Long taskId, Object payload, PushStamp stamp) {
+        if (stamp == null) {
+            sendToTask(taskId, payload);
+            return;
+        }
+        TaskStream stream = streams.get(taskId);
+        if (stream == null) {
+            return;
+        }
+        synchronized (stream) {
+            if (stamp.epoch().equals(stream.epoch) && stamp.seq() <= stream.seq) {
+                return;
+            }
+            push(taskId, stream, payload, stamp.epoch(), stamp.seq());
+        }
+    }
+
+    /**
+     * 以给定编号记入重放窗口并放入各会话的发送队列，调用方持有推送流锁。
+     *
+     * @param taskId  任务 id
+     * @param stream  该任务的推送流
+     * @param payload 推送对象
+     * @param epoch   编号纪元
+     * @param seq     序号
+     * @return 本次推送的编号，序列化失败返回 null
+     */
+    private PushStamp push(Long taskId, TaskStream stream, Object payload, String epoch, long seq) {
+        TextMessage text = toTextMessage(taskId, payload, epoch, seq);
+        if (text == null) {
+            return null;
+        }
+        if (!epoch.equals(stream.epoch)) {
+            stream.rebase(epoch, seq - 1);
+        }
+        stream.append(seq, text, replayWindow);
+        PushStamp pushed = new PushStamp(epoch, seq);
         Set<WebSocketSession> taskSessions = sessions.get(taskId);
         if (taskSessions == null || taskSessions.isEmpty()) {
+            return pushed;
+        }
+        byte[] binary = null;
+        boolean binaryEncoded = false;
+        for (WebSocketSession session : Set.copyOf(taskSessions)) {
+            WebSocketMessage<?> message = text;
+            if (MetricFrameCodec.SUB_PROTOCOL.equals(session.getAcceptedProtocol())) {
+                if (!binaryEncoded) {
+                    binary = MetricFrameCodec.encode(payload, seq);
+                    binaryEncoded = true;
+                }
+                if (binary != null) {
+                    // BinaryMessage 的 ByteBuffer 写出时会被消费，每个会话各包装一次
+                    message = new BinaryMessage(binary);
+                }
+            }
+            SessionSendQueue queue = sendQueues.get(session);
+            if (queue == null || !session.isOpen() || !queue.offer(message)) {
+                log.debug("Removing unavailable WebSocket session {} for task {}", session.getId(), taskId);
+                removeSession(taskId, session);
+            }
+        }
+        return pushed;
+    }
+
+    /**
+     * 登记管理员实时任务流会话，先放入首帧（全量摘要）再对 sendToAdmins 可见。
+     *
+     * @param session    已认证的管理员会话
+     * @param firstFrame 首帧推送对象
+     */
+    public void addAdminSession(WebSocketSession session, Object firstFrame) {
+        SessionSendQueue queue = sendQueues.computeIfAbsent(session, s -> new SessionSendQueue(s, sendExecutor,
+                sendTimeLimitMs, bufferSizeLimit, overflowStrategy, trainingMetrics));
+        TextMessage text = toTextMessage(null, firstFrame);
+        if (text != null && !queue.offer(text)) {
+            sendQueues.remove(session);
+            return;
+        }
+        adminSessions.add(session);
+    }
+
+    /**
+     * 移除管理员实时任务流会话并丢弃其未发送的消息。
+     *
+     * @param session 管理员会话
+     */
+    public void removeAdminSession(WebSocketSession session) {
+        if (adminSessions.remove(session)) {
+            SessionSendQueue queue = sendQueues.remove(session);
+            if (queue != null) {
+                queue.discard();
+            }
+        }
+    }
+
+    /**
+     * 是否有管理员实时任务流会话在线。
+     *
+     * @return 有则返回 true
+     */
+    public boolean hasAdminSessions() {
+        return !adminSessions.isEmpty();
+    }
+
+    /**
+     * 向全部管理员实时任务流会话推送一条 JSON 消息（序列化一次），不可用的会话会被移除。
+     *
+     * @param payload 推送对象
+     */
+    public void sendToAdmins(Object payload) {
+        if (adminSessions.isEmpty()) {
             return;
         }
-        String text;
+        TextMessage text = toTextMessage(null, payload);
+        if (text == null) {
+            return;
+        }
+        for (WebSocketSession session : adminSessions) {
+            SessionSendQueue queue = sendQueues.get(session);
+            if (queue == null || !session.isOpen() || !queue.offer(text)) {
+                removeAdminSession(session);
+            }
+        }
+    }
+
+    /**
+     * 是否为多路复用连接。
+     *
+     * @param session WebSocket 会话
+     * @return 会话属性 multiplexed 为 true 时返回 true
+     */
+    private static boolean isMultiplexed(WebSocketSession session) {
+        Map<String, Object> attributes = session.getAttributes();
+        return attributes != null && Boolean.TRUE.equals(attributes.get(ATTR_MULTIPLEXED));
+    }
+
+    /**
+     * 将推送对象序列化为不带 seq 的 JSON 文本帧。
+     *
+     * @param taskId  任务 id（日志用）
+     * @param payload 推送对象
+     * @return 文本帧，序列化失败返回 null
+     */
+    private TextMessage toTextMessage(Long taskId, Object payload) {
         try {
-            text = objectMapper.writeValueAsString(payload);
+            return new TextMessage(objectMapper.writeValueAsString(payload));
         } catch (Exception e) {
             log.warn("Serialize payload for task {} failed: {}", taskId, e.getMessage());
-            return;
+            return null;
         }
-        TextMessage message = new TextMessage(text);
-        for (WebSocketSession session : Set.copyOf(taskSessions)) {
-            if (!session.isOpen()) {
-                removeSession(taskId, session);
-                continue;
-            }
-            try {
-                session.sendMessage(message);
-            } catch (IOException e) {
-                log.warn("Send to task {} session {} failed: {}, removing session", taskId, session.getId(), e.getMessage());
-                removeSession(taskId, session);
+    }
+
+    /**
+     * 新建推送流：随机纪元，seq 以当前毫秒时间戳为起点。
+     *
+     * @return 推送流
+     */
+    private static TaskStream newStream() {
+        return new TaskStream(Long.toHexString(ThreadLocalRandom.current().nextLong()), System.currentTimeMillis());
+    }
+
+    /**
+     * 将推送对象序列化为 JSON 文本帧；对象类推送追加 seq 与 epoch 字段。
+     *
+     * @param taskId  任务 id（日志用）
+     * @param payload 推送对象
+     * @param epoch   编号纪元
+     * @param seq     任务内推送序号
+     * @return 文本帧，序列化失败返回 null
+     */
+    private TextMessage toTextMessage(Long taskId, Object payload, String epoch, long seq) {
+        try {
+            JsonNode node = objectMapper.valueToTree(payload);
+            if (node instanceof ObjectNode object) {
+                object.put("seq", seq);
+                object.put("epoch", epoch);
             }
+            return new TextMessage(objectMapper.writeValueAsString(node));
+        } catch (Exception e) {
+            log.warn("Serialize payload for task {} failed: {}", taskId, e.getMessage());
+            return null;
         }
     }
 
     /**
-     * 关闭某任务下所有 WebSocket 会话，用于停止训练后主动断开监控连接。
+     * 关闭某任务下所有 WebSocket 会话并释放推送流，用于停止训练后主动断开监控连接；已入队的推送先发送完再关闭。
+     * 多路复用连接只退订该任务，连接保持。
      *
      * @param taskId 任务 id
      */
     public void closeAllSessionsForTask(Long taskId) {
+        releaseStream(taskId);
         Set<WebSocketSession> taskSessions = sessions.get(taskId);
         if (taskSessions == null || taskSessions.isEmpty()) {
             return;
         }
         for (WebSocketSession session : Set.copyOf(taskSessions)) {
+            if (isMultiplexed(session)) {
+                removeSession(taskId, session);
+                continue;
+            }
+            SessionSendQueue queue = sendQueues.remove(session);
             removeSession(taskId, session);
-            if (session.isOpen()) {
-                try {
-                    session.close(CloseStatus.NORMAL.withReason("训练已停止"));
-                } catch (IOException e) {
-                    log.warn("Close session {} for task {} failed: {}", session.getId(), taskId, e.getMessage());
+            if (queue != null && session.isOpen()) {
+                queue.closeAfterFlush(CloseStatus.NORMAL.withReason("训练已停止"));
+            }
+        }
+    }
+
+    /**
+     * 单个任务的推送流：编号纪元、最后分配的 seq 与最近若干条 JSON 帧组成的重放窗口，只在自身锁内读写。
+     */
+    private static final class TaskStream {
+
+        /**
+         * 当前编号纪元。
+         */
+        private String epoch;
+
+        /**
+         * 最后分配的 seq。
+         */
+        private long seq;
+        private final ArrayDeque<Long> windowSeqs = new ArrayDeque<>();
+        private final ArrayDeque<TextMessage> window = new ArrayDeque<>();
+
+        TaskStream(String epoch, long initialSeq) {
+            this.epoch = epoch;
+            this.seq = initialSeq;
+        }
+
+        /**
+         * 切换到新的编号纪元并清空重放窗口，旧纪元的 lastSeq 不再补发。
+         *
+         * @param epoch 新纪元
+         * @param seq   新纪元下最后一个已分配的 seq
+         */
+        void rebase(String epoch, long seq) {
+            this.epoch = epoch;
+            this.seq = seq;
+            windowSeqs.clear();
+            window.clear();
+        }
+
+        void append(long seq, TextMessage text, int capacity) {
+            this.seq = seq;
+            if (capacity <= 0) {
+                return;
+            }
+            windowSeqs.addLast(seq);
+            window.addLast(text);
+            while (window.size() > capacity) {
+                windowSeqs.pollFirst();
+                window.pollFirst();
+            }
+        }
+
+        /**
+         * 取 lastSeq 之后的全部帧。
+         *
+         * @param lastSeq 客户端已收到的最后一个 seq
+         * @return 待补发的帧（可能为空）；lastSeq 不在窗口覆盖范围内返回 null
+         */
+        List<TextMessage> replayAfter(long lastSeq) {
+            long first = windowSeqs.isEmpty() ? seq + 1 : windowSeqs.peekFirst();
+            if (lastSeq > seq || lastSeq < first - 1) {
+                return null;
+            }
+            List<TextMessage> missed = new ArrayList<>((int) (seq - lastSeq));
+            var seqs = windowSeqs.iterator();
+            for (TextMessage text : window) {
+                if (seqs.next() > lastSeq) {
+                    missed.add(text);
                 }
             }
+            return missed;
         }
     }
 }
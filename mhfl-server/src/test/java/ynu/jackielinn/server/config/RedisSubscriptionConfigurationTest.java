@@ -0,0 +1,77 @@
+package ynu.jackielinn.server.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.listener.TrainingMessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * RedisSubscriptionConfiguration 单元测试：channel 与 pattern 订阅下监听容器都经单线程执行器按到达顺序派发消息。
+ */
+class RedisSubscriptionConfigurationTest {
+
+    private final RedisSubscriptionConfiguration configuration = new RedisSubscriptionConfiguration();
+
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = configuration.trainingSubscriptionExecutor(16);
+        executor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void channelModeShouldDispatchMessagesInArrivalOrder() throws InterruptedException {
+        assertDispatchOrder("channel");
+    }
+
+    @Test
+    void patternModeShouldDispatchMessagesInArrivalOrder() throws InterruptedException {
+        assertDispatchOrder("pattern");
+    }
+
+    private void assertDispatchOrder(String subscription) throws InterruptedException {
+        RedisMessageListenerContainer container = configuration.redisMessageListenerContainer(
+                mock(LettuceConnectionFactory.class), "pubsub", subscription, mock(TrainingMessageListener.class), executor);
+        int count = 500;
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(count);
+        MessageListener listener = (message, pattern) -> {
+            received.add(new String(message.getBody(), StandardCharsets.UTF_8));
+            done.countDown();
+        };
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String body = "{\"taskId\":1,\"roundNum\":" + i + "}";
+            sent.add(body);
+            // 与 Lettuce 推送订阅消息时走同一派发路径
+            ReflectionTestUtils.invokeMethod(container, "dispatchMessage", List.of(listener),
+                    new DefaultMessage("task:experiment:round:1".getBytes(StandardCharsets.UTF_8),
+                            body.getBytes(StandardCharsets.UTF_8)), null);
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).containsExactlyElementsOf(sent);
+    }
+}
@@ -0,0 +1,64 @@
+package ynu.jackielinn.server.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocketCompressionFilter 单元测试：/ws/ 握手隐藏扩展协商头、其他请求原样放行。
+ */
+@ExtendWith(MockitoExtension.class)
+class WebSocketCompressionFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private FilterChain chain;
+
+    private final WebSocketCompressionFilter filter = new WebSocketCompressionFilter();
+
+    @Test
+    void websocketHandshakeShouldHideExtensionsHeader() throws Exception {
+        when(request.getRequestURI()).thenReturn("/ws/task/1");
+        when(request.getHeader("Sec-WebSocket-Extensions")).thenReturn("permessage-deflate");
+        when(request.getHeaderNames()).thenReturn(Collections.enumeration(
+                List.of("Upgrade", "sec-websocket-extensions", "Sec-WebSocket-Key")));
+        when(request.getHeader("Upgrade")).thenReturn("websocket");
+
+        filter.doFilter(request, response, chain);
+
+        ArgumentCaptor<HttpServletRequest> captor = ArgumentCaptor.forClass(HttpServletRequest.class);
+        verify(chain).doFilter(captor.capture(), eq(response));
+        HttpServletRequest wrapped = captor.getValue();
+        assertThat(wrapped).isNotSameAs(request);
+        assertThat(wrapped.getHeader("sec-websocket-extensions")).isNull();
+        assertThat(wrapped.getHeaders("Sec-WebSocket-Extensions").hasMoreElements()).isFalse();
+        assertThat(Collections.list(wrapped.getHeaderNames())).containsExactly("Upgrade", "Sec-WebSocket-Key");
+        assertThat(wrapped.getHeader("Upgrade")).isEqualTo("websocket");
+    }
+
+    @Test
+    void otherRequestsShouldPassThroughUnchanged() throws Exception {
+        when(request.getRequestURI()).thenReturn("/api/task/list", "/ws/task/1");
+
+        filter.doFilter(request, response, chain);
+        filter.doFilter(request, response, chain);
+
+        verify(chain, times(2)).doFilter(request, response);
+    }
+}
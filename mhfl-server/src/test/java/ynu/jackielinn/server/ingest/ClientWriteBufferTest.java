@@ -0,0 +1,240 @@
+package ynu.jackielinn.server.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.entity.Client;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
+import ynu.jackielinn.server.service.ClientService;
+import ynu.jackielinn.server.utils.Const;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ClientWriteBuffer 单元测试：按行数/时间阈值批量写入、按任务 flush 与移除、写库失败放回重试、超限或停机失败时转存溢出文件、回放放回缓冲。
+ */
+@ExtendWith(MockitoExtension.class)
+class ClientWriteBufferTest {
+
+    @Mock
+    private ClientService clientService;
+
+    @Mock
+    private TrainingMetrics trainingMetrics;
+
+    @Mock
+    private OverflowSpool spool;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @InjectMocks
+    private ClientWriteBuffer buffer;
+
+    private static Client client(int index) {
+        return Client.builder().rid(1L).clientIndex(index).build();
+    }
+
+    @Test
+    void addShouldNotWriteBelowThreshold() {
+        buffer.add(1L, client(0));
+        buffer.add(1L, client(1));
+
+        verify(clientService, never()).saveClientBatch(anyList());
+    }
+
+    @Test
+    void addShouldFlushWhenMaxRowsReachedInArrivalOrder() {
+        ReflectionTestUtils.setField(buffer, "maxRows", 3);
+
+        buffer.add(1L, client(0));
+        buffer.add(1L, client(1));
+        buffer.add(1L, client(2));
+
+        ArgumentCaptor<List<Client>> captor = ArgumentCaptor.forClass(List.class);
+        verify(clientService).saveClientBatch(captor.capture());
+        assertThat(captor.getValue()).extracting(Client::getClientIndex).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void flushShouldWriteOnlyThatTask() {
+        buffer.add(1L, client(0));
+        buffer.add(2L, client(0));
+
+        buffer.flush(1L);
+        buffer.flush(3L);
+
+        verify(clientService, times(1)).saveClientBatch(anyList());
+    }
+
+    @Test
+    void flushExpiredShouldWriteBuffersOlderThanInterval() {
+        ReflectionTestUtils.setField(buffer, "flushIntervalMs", 0L);
+        buffer.add(1L, client(0));
+
+        buffer.flushExpired();
+        buffer.flushExpired();
+
+        verify(clientService, times(1)).saveClientBatch(anyList());
+    }
+
+    @Test
+    void flushExpiredShouldKeepFreshBuffers() {
+        ReflectionTestUtils.setField(buffer, "flushIntervalMs", 60_000L);
+        buffer.add(1L, client(0));
+
+        buffer.flushExpired();
+
+        verify(clientService, never()).saveClientBatch(anyList());
+    }
+
+    @Test
+    void flushAndRemoveShouldWriteAndDropTaskBuffer() {
+        buffer.add(1L, client(0));
+
+        buffer.flushAndRemove(1L);
+        buffer.flushAndRemove(1L);
+
+        verify(clientService, times(1)).saveClientBatch(anyList());
+        Map<Long, ?> buffers = (Map<Long, ?>) ReflectionTestUtils.getField(buffer, "buffers");
+        assertThat(buffers).doesNotContainKey(1L);
+    }
+
+    @Test
+    void flushAllShouldWriteEveryTask() {
+        buffer.add(1L, client(0));
+        buffer.add(2L, client(0));
+
+        buffer.flushAll();
+
+        verify(clientService, times(2)).saveClientBatch(anyList());
+    }
+
+    @Test
+    void flushShouldKeepFailedBatchAtHeadForRetry() {
+        doThrow(new RuntimeException("db down")).doNothing().when(clientService).saveClientBatch(anyList());
+        buffer.add(1L, client(0));
+
+        buffer.flush(1L);
+        buffer.add(1L, client(1));
+        buffer.flush(1L);
+
+        ArgumentCaptor<List<Client>> captor = ArgumentCaptor.forClass(List.class);
+        verify(clientService, times(2)).saveClientBatch(captor.capture());
+        assertThat(captor.getValue()).extracting(Client::getClientIndex).containsExactly(0, 1);
+        verify(trainingMetrics, never()).recordClientDiscarded(anyInt());
+    }
+
+    @Test
+    void flushExpiredShouldWaitForBackoffAfterFailure() {
+        ReflectionTestUtils.setField(buffer, "flushIntervalMs", 0L);
+        ReflectionTestUtils.setField(buffer, "retryBackoffMs", 60_000L);
+        doThrow(new RuntimeException("db down")).when(clientService).saveClientBatch(anyList());
+        buffer.add(1L, client(0));
+
+        buffer.flushExpired();
+        buffer.flushExpired();
+
+        verify(clientService, times(1)).saveClientBatch(anyList());
+    }
+
+    @Test
+    void flushShouldSpoolAfterMaxAttempts() throws Exception {
+        ReflectionTestUtils.setField(buffer, "maxAttempts", 2);
+        doThrow(new RuntimeException("db down")).when(clientService).saveClientBatch(anyList());
+        when(spool.append(any(), any())).thenReturn(true);
+        buffer.add(1L, client(0));
+        buffer.add(1L, client(1));
+
+        buffer.flush(1L);
+        buffer.flush(1L);
+        buffer.flush(1L);
+
+        verify(clientService, times(2)).saveClientBatch(anyList());
+        ArgumentCaptor<byte[]> channel = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(spool).append(channel.capture(), body.capture());
+        assertThat(new String(channel.getValue(), StandardCharsets.UTF_8)).isEqualTo(Const.CLIENT_ROWS_SPOOL + 1);
+        List<Client> spooled = objectMapper.readerForListOf(Client.class).readValue(body.getValue());
+        assertThat(spooled).extracting(Client::getClientIndex).containsExactly(0, 1);
+        verify(trainingMetrics).recordClientSpooled(2);
+        verify(trainingMetrics, never()).recordClientDiscarded(anyInt());
+    }
+
+    @Test
+    void flushShouldDiscardOnlyWhenSpoolFails() {
+        ReflectionTestUtils.setField(buffer, "maxAttempts", 1);
+        doThrow(new RuntimeException("db down")).when(clientService).saveClientBatch(anyList());
+        when(spool.append(any(), any())).thenReturn(false);
+        buffer.add(1L, client(0));
+
+        buffer.flush(1L);
+
+        verify(trainingMetrics).recordClientDiscarded(1);
+    }
+
+    @Test
+    void flushAllShouldSpoolRowsThatFailToWrite() throws Exception {
+        ReflectionTestUtils.setField(buffer, "retryBackoffMs", 60_000L);
+        doThrow(new RuntimeException("db down")).when(clientService).saveClientBatch(anyList());
+        when(spool.append(any(), any())).thenReturn(true);
+        buffer.add(1L, client(0).toBuilder().timestamp(LocalDateTime.of(2026, 1, 2, 3, 4, 5)).build());
+        buffer.flush(1L);
+        buffer.add(1L, client(1));
+
+        buffer.flushAll();
+
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(spool).append(any(), body.capture());
+        List<Client> spooled = objectMapper.readerForListOf(Client.class).readValue(body.getValue());
+        assertThat(spooled).extracting(Client::getClientIndex).containsExactly(0, 1);
+        assertThat(spooled.get(0).getTimestamp()).isEqualTo(LocalDateTime.of(2026, 1, 2, 3, 4, 5));
+        verify(trainingMetrics).recordClientSpooled(2);
+        buffer.flushAll();
+        verify(spool, times(1)).append(any(), any());
+    }
+
+    @Test
+    void requeueShouldBufferReplayedRowsForNextFlush() {
+        buffer.add(1L, client(0));
+
+        buffer.requeue(1L, List.of(client(1), client(2)));
+        buffer.flush(1L);
+
+        ArgumentCaptor<List<Client>> captor = ArgumentCaptor.forClass(List.class);
+        verify(clientService).saveClientBatch(captor.capture());
+        assertThat(captor.getValue()).extracting(Client::getClientIndex).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void flushAndRemoveShouldRestoreBufferOnFailure() {
+        doThrow(new RuntimeException("db down")).doNothing().when(clientService).saveClientBatch(anyList());
+        buffer.add(1L, client(0));
+
+        buffer.flushAndRemove(1L);
+        buffer.flushAndRemove(1L);
+
+        verify(clientService, times(2)).saveClientBatch(anyList());
+        Map<Long, ?> buffers = (Map<Long, ?>) ReflectionTestUtils.getField(buffer, "buffers");
+        assertThat(buffers).doesNotContainKey(1L);
+    }
+}
@@ -0,0 +1,168 @@
+package ynu.jackielinn.server.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * OverflowSpool 单元测试：按序追加与读取、消费位置推进、排空后截断、重启后从持久化位置回放、相对路径解析与目录校验、尾部不完整记录。
+ */
+class OverflowSpoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+
+    private OverflowSpool spool;
+
+    @BeforeEach
+    void setUp() {
+        file = tempDir.resolve("spool/training.spool");
+        spool = newSpool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        spool.close();
+    }
+
+    private OverflowSpool newSpool() {
+        OverflowSpool s = new OverflowSpool();
+        ReflectionTestUtils.setField(s, "spoolFile", file.toString());
+        s.init();
+        return s;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void shouldNotCreateFileUntilFirstAppend() {
+        assertThat(spool.hasPending()).isFalse();
+        assertThat(spool.read(10)).isEmpty();
+        assertThat(Files.exists(file)).isFalse();
+    }
+
+    @Test
+    void shouldReadRecordsInAppendOrderWithoutConsuming() {
+        assertThat(spool.append(bytes("c1"), bytes("b1"))).isTrue();
+        assertThat(spool.append(bytes("c2"), bytes("b2"))).isTrue();
+
+        List<OverflowSpool.SpoolRecord> first = spool.read(10);
+        List<OverflowSpool.SpoolRecord> again = spool.read(1);
+
+        assertThat(first).hasSize(2);
+        assertThat(new String(first.get(0).channel(), StandardCharsets.UTF_8)).isEqualTo("c1");
+        assertThat(new String(first.get(1).body(), StandardCharsets.UTF_8)).isEqualTo("b2");
+        assertThat(again).hasSize(1);
+        assertThat(again.get(0).endOffset()).isEqualTo(first.get(0).endOffset());
+    }
+
+    @Test
+    void advanceShouldMoveReadPositionAndTruncateWhenDrained() throws Exception {
+        spool.append(bytes("c1"), bytes("b1"));
+        spool.append(bytes("c2"), bytes("b2"));
+        List<OverflowSpool.SpoolRecord> records = spool.read(10);
+
+        spool.advance(records.get(0).endOffset());
+        assertThat(spool.hasPending()).isTrue();
+        assertThat(new String(spool.read(10).get(0).channel(), StandardCharsets.UTF_8)).isEqualTo("c2");
+
+        spool.advance(records.get(1).endOffset());
+        assertThat(spool.hasPending()).isFalse();
+        assertThat(Files.size(file)).isZero();
+    }
+
+    @Test
+    void shouldReplayBacklogAfterRestart() {
+        spool.append(bytes("c1"), bytes("b1"));
+        spool.close();
+
+        OverflowSpool restarted = newSpool();
+        try {
+            assertThat(restarted.hasPending()).isTrue();
+            assertThat(restarted.read(10)).hasSize(1);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void shouldResumeFromCheckpointedOffsetAfterRestart() {
+        spool.append(bytes("c1"), bytes("b1"));
+        spool.append(bytes("c2"), bytes("b2"));
+        spool.advance(spool.read(1).get(0).endOffset());
+        spool.checkpoint();
+        spool.close();
+
+        OverflowSpool restarted = newSpool();
+        try {
+            List<OverflowSpool.SpoolRecord> records = restarted.read(10);
+            assertThat(records).hasSize(1);
+            assertThat(new String(records.get(0).channel(), StandardCharsets.UTF_8)).isEqualTo("c2");
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void shouldIgnoreOutOfRangeOffsetAfterRestart() throws Exception {
+        spool.append(bytes("c1"), bytes("b1"));
+        spool.close();
+        Files.write(tempDir.resolve("spool/training.spool.offset"),
+                java.nio.ByteBuffer.allocate(8).putLong(1_000L).array());
+
+        OverflowSpool restarted = newSpool();
+        try {
+            assertThat(restarted.read(10)).hasSize(1);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void initShouldResolveRelativePathUnderDataDir() {
+        OverflowSpool s = new OverflowSpool();
+        ReflectionTestUtils.setField(s, "dataDir", tempDir.toString());
+        ReflectionTestUtils.setField(s, "spoolFile", "relative/training.spool");
+        s.init();
+
+        s.append(bytes("c1"), bytes("b1"));
+        s.close();
+
+        assertThat(Files.exists(tempDir.resolve("relative/training.spool"))).isTrue();
+    }
+
+    @Test
+    void initShouldFailWhenDirectoryCannotBeCreated() throws Exception {
+        Path blocker = tempDir.resolve("blocker");
+        Files.write(blocker, new byte[0]);
+        OverflowSpool s = new OverflowSpool();
+        ReflectionTestUtils.setField(s, "spoolFile", blocker.resolve("training.spool").toString());
+
+        assertThatThrownBy(s::init).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldIgnoreIncompleteTrailingRecord() throws Exception {
+        spool.append(bytes("c1"), bytes("b1"));
+        spool.close();
+        Files.write(file, new byte[]{0, 0, 0, 9, 'x'}, java.nio.file.StandardOpenOption.APPEND);
+
+        spool = newSpool();
+
+        assertThat(spool.read(10)).hasSize(1);
+    }
+}
@@ -0,0 +1,72 @@
+package ynu.jackielinn.server.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RoundIdIndex 单元测试：未命中返回 0、写入后命中、超出初始容量扩容、超过轮次上限不入索引、非法参数忽略、终态移除。
+ */
+class RoundIdIndexTest {
+
+    private final RoundIdIndex index = new RoundIdIndex();
+
+    @Test
+    void getShouldReturnZeroWhenUnknown() {
+        assertThat(index.get(1L, 0)).isZero();
+        assertThat(index.get(null, 0)).isZero();
+        assertThat(index.get(1L, null)).isZero();
+        assertThat(index.get(1L, -1)).isZero();
+    }
+
+    @Test
+    void putShouldStoreAndGrowBeyondInitialCapacity() {
+        index.put(1L, 0, 10L);
+        index.put(1L, 1000, 11L);
+
+        assertThat(index.get(1L, 0)).isEqualTo(10L);
+        assertThat(index.get(1L, 1000)).isEqualTo(11L);
+        assertThat(index.get(1L, 999)).isZero();
+        assertThat(index.get(2L, 0)).isZero();
+    }
+
+    @Test
+    void putShouldIgnoreRoundsBeyondLimit() {
+        ReflectionTestUtils.setField(index, "maxRounds", 100);
+
+        index.put(1L, 99, 10L);
+        index.put(1L, 100, 11L);
+        index.put(1L, Integer.MAX_VALUE, 12L);
+
+        assertThat(index.get(1L, 99)).isEqualTo(10L);
+        assertThat(index.get(1L, 100)).isZero();
+        assertThat(index.get(1L, Integer.MAX_VALUE)).isZero();
+        assertThat(((long[]) ((Map<?, ?>) ReflectionTestUtils.getField(index, "index")).get(1L)).length)
+                .isEqualTo(100);
+    }
+
+    @Test
+    void putShouldIgnoreInvalidArguments() {
+        index.put(null, 0, 1L);
+        index.put(1L, -1, 1L);
+        index.put(1L, 0, null);
+
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void evictShouldRemoveWholeTask() {
+        index.put(1L, 0, 10L);
+        index.put(2L, 0, 20L);
+
+        index.evict(1L);
+        index.evict(null);
+
+        assertThat(index.get(1L, 0)).isZero();
+        assertThat(index.get(2L, 0)).isEqualTo(20L);
+        assertThat(index.size()).isEqualTo(1);
+    }
+}
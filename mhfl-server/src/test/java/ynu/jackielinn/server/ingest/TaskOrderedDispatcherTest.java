@@ -0,0 +1,130 @@
+package ynu.jackielinn.server.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * TaskOrderedDispatcher 单元测试：同一任务按提交顺序执行、lane 映射稳定、不同 lane 并行、队满拒绝与关闭。
+ */
+class TaskOrderedDispatcherTest {
+
+    private TaskOrderedDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void shouldRejectNonPositiveLaneCount() {
+        assertThatThrownBy(() -> new TaskOrderedDispatcher(0, 10, "t-", 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void laneOfShouldBeStableAndInRange() {
+        dispatcher = new TaskOrderedDispatcher(4, 10, "t-", 1);
+
+        assertThat(dispatcher.getLaneCount()).isEqualTo(4);
+        assertThat(dispatcher.laneOf(null)).isZero();
+        for (long id = 1; id < 100; id++) {
+            int lane = dispatcher.laneOf(id);
+            assertThat(lane).isBetween(0, 3);
+            assertThat(dispatcher.laneOf(id)).isEqualTo(lane);
+        }
+    }
+
+    @Test
+    void messagesOfSameTaskShouldRunInSubmissionOrder() throws Exception {
+        dispatcher = new TaskOrderedDispatcher(4, 1000, "t-", 5);
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(500);
+
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            dispatcher.dispatch(7L, () -> {
+                seen.add(n);
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 500; i++) {
+            assertThat(seen.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void tasksOnDifferentLanesShouldRunInParallel() throws Exception {
+        dispatcher = new TaskOrderedDispatcher(2, 10, "t-", 5);
+        long a = 1L;
+        long b = 2L;
+        while (dispatcher.laneOf(b) == dispatcher.laneOf(a)) {
+            b++;
+        }
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+
+        dispatcher.dispatch(a, () -> {
+            try {
+                blocker.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(b, otherRan::countDown);
+
+        assertThat(otherRan.await(5, TimeUnit.SECONDS)).isTrue();
+        blocker.countDown();
+    }
+
+    @Test
+    void dispatchShouldRejectWhenLaneQueueFull() throws Exception {
+        dispatcher = new TaskOrderedDispatcher(1, 1, "t-", 5);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        dispatcher.dispatch(1L, () -> {
+            started.countDown();
+            try {
+                blocker.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        dispatcher.dispatch(1L, () -> { });
+
+        assertThat(dispatcher.getQueuedCount()).isEqualTo(1);
+        assertThatThrownBy(() -> dispatcher.dispatch(1L, () -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+        blocker.countDown();
+    }
+
+    @Test
+    void shutdownShouldFinishQueuedMessagesAndRejectNewOnes() {
+        dispatcher = new TaskOrderedDispatcher(2, 100, "t-", 5);
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            dispatcher.dispatch(3L, () -> seen.add(n));
+        }
+
+        dispatcher.shutdown();
+
+        assertThat(seen).hasSize(50);
+        assertThatThrownBy(() -> dispatcher.dispatch(3L, () -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+}
@@ -0,0 +1,297 @@
+package ynu.jackielinn.server.ingest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.utils.Const;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TaskOwnership 单元测试：未启用时恒为持有、抢占结果本地缓存、他人持有时不处理、释放仅对本节点持有的租约生效、Redis 异常时仅沿用未到期租约否则不处理、stream 分片租约、失去归属时清理本地状态、在独立线程上定时续期有写入状态的任务。
+ */
+class TaskOwnershipTest {
+
+    private TaskOwnership ownership;
+
+    private StringRedisTemplate redisTemplate;
+
+    private ClientWriteBuffer clientWriteBuffer;
+
+    private TaskStateTracker taskStateTracker;
+
+    private RoundIdIndex roundIdIndex;
+
+    @BeforeEach
+    void setUp() {
+        ownership = new TaskOwnership();
+        redisTemplate = mock(StringRedisTemplate.class);
+        clientWriteBuffer = mock(ClientWriteBuffer.class);
+        taskStateTracker = mock(TaskStateTracker.class);
+        roundIdIndex = new RoundIdIndex();
+        TaskOrderedDispatcher dispatcher = mock(TaskOrderedDispatcher.class);
+        doAnswer(inv -> {
+            ((Runnable) inv.getArgument(1)).run();
+            return null;
+        }).when(dispatcher).dispatch(anyLong(), any(Runnable.class));
+        ReflectionTestUtils.setField(ownership, "clientWriteBuffer", clientWriteBuffer);
+        ReflectionTestUtils.setField(ownership, "taskStateTracker", taskStateTracker);
+        ReflectionTestUtils.setField(ownership, "roundIdIndex", roundIdIndex);
+        ReflectionTestUtils.setField(ownership, "dispatcher", dispatcher);
+        ReflectionTestUtils.setField(ownership, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(ownership, "enabled", true);
+        ReflectionTestUtils.setField(ownership, "nodeId", "node-a");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockAcquire(Long result) {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(result);
+    }
+
+    @Test
+    void disabledShouldAlwaysOwnWithoutRedis() {
+        ReflectionTestUtils.setField(ownership, "enabled", false);
+
+        assertThat(ownership.isOwner(1L)).isTrue();
+        ownership.release(1L);
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ownerDecisionShouldBeCachedWithinLease() {
+        mockAcquire(1L);
+
+        assertThat(ownership.isOwner(1L)).isTrue();
+        assertThat(ownership.isOwner(1L)).isTrue();
+
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(List.of(Const.TASK_OWNER + 1L)),
+                eq("node-a"), eq("30000"));
+        assertThat(ownership.size()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void taskOwnedByAnotherNodeShouldNotBeProcessedAndReleaseShouldSkipRedis() {
+        mockAcquire(0L);
+
+        assertThat(ownership.isOwner(2L)).isFalse();
+        ownership.release(2L);
+
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+        assertThat(ownership.size()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseShouldDeleteOwnLeaseAndForceReacquire() {
+        mockAcquire(1L);
+        ownership.isOwner(3L);
+
+        ownership.release(3L);
+        ownership.isOwner(3L);
+
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), eq(List.of(Const.TASK_OWNER + 3L)), any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisFailureWithoutLeaseShouldNotProcess() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new IllegalStateException("down"));
+
+        assertThat(ownership.isOwner(4L)).isFalse();
+        assertThat(ownership.isOwner(null)).isTrue();
+        verify(clientWriteBuffer, never()).flushAndRemove(anyLong());
+    }
+
+    @Test
+    void redisFailureShouldKeepUnexpiredLease() throws InterruptedException {
+        ReflectionTestUtils.setField(ownership, "leaseMs", 2000L);
+        mockAcquire(1L);
+        ownership.isOwner(4L);
+        // 等到判定缓存过期（租约过半），租约本身尚未到期
+        Thread.sleep(1100);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("down"));
+
+        assertThat(ownership.isOwner(4L)).isTrue();
+        verify(clientWriteBuffer, never()).flushAndRemove(anyLong());
+    }
+
+    @Test
+    void redisFailureAfterLeaseExpiryShouldStopProcessingAndEvictState() {
+        ReflectionTestUtils.setField(ownership, "leaseMs", 0L);
+        mockAcquire(1L);
+        ownership.isOwner(4L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("down"));
+
+        assertThat(ownership.isOwner(4L)).isFalse();
+
+        verify(clientWriteBuffer).flushAndRemove(4L);
+        verify(taskStateTracker).discard(4L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamShardLeaseShouldFollowRedisResult() {
+        mockAcquire(1L);
+        assertThat(ownership.holdsStreamShard(2)).isTrue();
+        mockAcquire(0L);
+        assertThat(ownership.holdsStreamShard(2)).isFalse();
+        ownership.releaseStreamShard(2);
+
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), eq(List.of(Const.STREAM_SHARD_OWNER + 2)), any(Object[].class));
+    }
+
+    @Test
+    void streamShardShouldStayHeldOnRedisFailureOnlyWhileLeaseValid() {
+        mockAcquire(1L);
+        assertThat(ownership.holdsStreamShard(1)).isTrue();
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("down"));
+
+        assertThat(ownership.holdsStreamShard(1)).isTrue();
+        assertThat(ownership.holdsStreamShard(2)).isFalse();
+        ReflectionTestUtils.setField(ownership, "shardLeases", new ConcurrentHashMap<>(Map.of(1, 0L)));
+        assertThat(ownership.holdsStreamShard(1)).isFalse();
+    }
+
+    @Test
+    void streamShardShouldAlwaysBeHeldWhenDisabled() {
+        ReflectionTestUtils.setField(ownership, "enabled", false);
+
+        assertThat(ownership.holdsStreamShard(0)).isTrue();
+        ownership.releaseStreamShard(0);
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void evictLocalStateShouldFlushClientsAndDropStateOnTaskLane() {
+        roundIdIndex.put(5L, 0, 50L);
+        roundIdIndex.put(6L, 0, 60L);
+        when(taskStateTracker.taskIds()).thenReturn(Set.of(7L));
+        when(clientWriteBuffer.taskIds()).thenReturn(Set.of());
+
+        assertThat(ownership.localTaskIds()).containsExactlyInAnyOrder(5L, 6L, 7L);
+        ownership.evictLocalState(5L);
+
+        verify(clientWriteBuffer).flushAndRemove(5L);
+        verify(taskStateTracker).discard(5L);
+        assertThat(roundIdIndex.get(5L, 0)).isZero();
+        assertThat(roundIdIndex.get(6L, 0)).isEqualTo(60L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void renewLeasesShouldRenewOnlyOwnedTasksWithLocalState() {
+        mockAcquire(1L);
+        ownership.isOwner(1L);
+        ownership.isOwner(2L);
+        roundIdIndex.put(1L, 0, 10L);
+
+        ownership.renewLeases();
+
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), eq(List.of(Const.TASK_OWNER + 1L)), any(Object[].class));
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(List.of(Const.TASK_OWNER + 2L)), any(Object[].class));
+        verify(clientWriteBuffer, never()).flushAndRemove(anyLong());
+    }
+
+    @Test
+    void renewLeasesShouldEvictLocalStateWhenLeaseTakenOver() {
+        mockAcquire(1L);
+        ownership.isOwner(1L);
+        roundIdIndex.put(1L, 0, 10L);
+        mockAcquire(0L);
+
+        ownership.renewLeases();
+
+        verify(clientWriteBuffer).flushAndRemove(1L);
+        verify(taskStateTracker).discard(1L);
+        assertThat(roundIdIndex.get(1L, 0)).isZero();
+        assertThat(ownership.isOwner(1L)).isFalse();
+    }
+
+    @Test
+    void renewLeasesShouldEvictLocalStateWhenRedisFailsAfterLeaseExpiry() {
+        ReflectionTestUtils.setField(ownership, "leaseMs", 0L);
+        mockAcquire(1L);
+        ownership.isOwner(1L);
+        roundIdIndex.put(1L, 0, 10L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("down"));
+
+        ownership.renewLeases();
+
+        verify(clientWriteBuffer).flushAndRemove(1L);
+        assertThat(roundIdIndex.get(1L, 0)).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void initShouldRenewLeasesOnDedicatedThread() {
+        ReflectionTestUtils.setField(ownership, "leaseMs", 30L);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(inv -> {
+            threads.add(Thread.currentThread().getName());
+            return 1L;
+        });
+        ownership.isOwner(1L);
+        roundIdIndex.put(1L, 0, 10L);
+
+        ownership.init();
+        try {
+            verify(redisTemplate, timeout(2000).atLeast(3)).execute(any(RedisScript.class),
+                    eq(List.of(Const.TASK_OWNER + 1L)), any(Object[].class));
+        } finally {
+            ownership.shutdown();
+        }
+
+        assertThat(threads).anyMatch(name -> name.startsWith("task-owner-renew-"));
+    }
+
+    @Test
+    void renewLeasesShouldKeepDecisionWhenRedisFails() {
+        mockAcquire(1L);
+        ownership.isOwner(1L);
+        roundIdIndex.put(1L, 0, 10L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("down"));
+
+        ownership.renewLeases();
+
+        assertThat(ownership.isOwner(1L)).isTrue();
+        verify(clientWriteBuffer, never()).flushAndRemove(anyLong());
+    }
+
+    @Test
+    void expiredOwnerDecisionShouldEvictLocalStateWhenReacquireFails() {
+        ReflectionTestUtils.setField(ownership, "leaseMs", 0L);
+        mockAcquire(1L);
+        ownership.isOwner(1L);
+        mockAcquire(0L);
+
+        assertThat(ownership.isOwner(1L)).isFalse();
+
+        verify(clientWriteBuffer).flushAndRemove(1L);
+        verify(taskStateTracker).discard(1L);
+    }
+
+    @Test
+    void renewLeasesShouldDropExpiredDecisionsWithoutLocalState() {
+        ReflectionTestUtils.setField(ownership, "leaseMs", 0L);
+        mockAcquire(0L);
+        ownership.isOwner(3L);
+
+        ownership.renewLeases();
+
+        assertThat(ownership.size()).isZero();
+    }
+}
@@ -0,0 +1,98 @@
+package ynu.jackielinn.server.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.TaskSnapshotMessage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TaskSnapshotBuffer 单元测试：无缓存返回不完整空快照、环形缓冲保留最近轮次、重复轮次覆盖、Client 按 clientIndex 取最新、终态移除。
+ */
+class TaskSnapshotBufferTest {
+
+    private final TaskSnapshotBuffer buffer = new TaskSnapshotBuffer();
+
+    private static RoundMessage round(int roundNum, double accuracy) {
+        return RoundMessage.builder().taskId(1L).roundNum(roundNum).accuracy(accuracy).build();
+    }
+
+    private static ClientMessage client(int clientIndex, int roundNum) {
+        return ClientMessage.builder().taskId(1L).clientIndex(clientIndex).roundNum(roundNum).build();
+    }
+
+    @Test
+    void snapshotShouldBeEmptyAndIncompleteWhenUnknown() {
+        TaskSnapshotMessage snapshot = buffer.snapshot(1L);
+
+        assertThat(snapshot.getTaskId()).isEqualTo(1L);
+        assertThat(snapshot.getRounds()).isEmpty();
+        assertThat(snapshot.getClients()).isEmpty();
+        assertThat(snapshot.getComplete()).isFalse();
+    }
+
+    @Test
+    void ringShouldKeepLatestRoundsInOrderAndMarkOverflowIncomplete() {
+        ReflectionTestUtils.setField(buffer, "maxRounds", 3);
+        for (int i = 0; i < 3; i++) {
+            buffer.recordRound(round(i, i));
+        }
+        assertThat(buffer.snapshot(1L).getComplete()).isTrue();
+
+        buffer.recordRound(round(3, 3));
+        buffer.recordRound(round(4, 4));
+
+        TaskSnapshotMessage snapshot = buffer.snapshot(1L);
+        assertThat(snapshot.getRounds()).extracting(RoundMessage::getRoundNum).containsExactly(2, 3, 4);
+        assertThat(snapshot.getComplete()).isFalse();
+    }
+
+    @Test
+    void redeliveredRoundShouldReplaceInPlaceAndStaleRoundIgnored() {
+        ReflectionTestUtils.setField(buffer, "maxRounds", 3);
+        for (int i = 0; i < 5; i++) {
+            buffer.recordRound(round(i, i));
+        }
+
+        buffer.recordRound(round(3, 0.9));
+        buffer.recordRound(round(0, 0.9));
+
+        assertThat(buffer.snapshot(1L).getRounds()).extracting(RoundMessage::getAccuracy).containsExactly(2.0, 0.9, 4.0);
+    }
+
+    @Test
+    void clientsShouldKeepLatestRoundPerIndexSortedByIndex() {
+        buffer.recordClient(client(2, 0));
+        buffer.recordClient(client(0, 0));
+        buffer.recordClient(client(2, 1));
+        buffer.recordClient(client(2, 0));
+
+        TaskSnapshotMessage snapshot = buffer.snapshot(1L);
+        assertThat(snapshot.getClients()).extracting(ClientMessage::getClientIndex).containsExactly(0, 2);
+        assertThat(snapshot.getClients().get(1).getRoundNum()).isEqualTo(1);
+        assertThat(snapshot.getComplete()).isTrue();
+    }
+
+    @Test
+    void snapshotStartedMidTaskShouldBeIncomplete() {
+        buffer.recordRound(round(7, 0.5));
+
+        assertThat(buffer.snapshot(1L).getComplete()).isFalse();
+    }
+
+    @Test
+    void evictShouldRemoveTaskAndIgnoreInvalidMessages() {
+        buffer.recordRound(round(0, 0.5));
+        buffer.recordRound(RoundMessage.builder().taskId(2L).build());
+        buffer.recordClient(ClientMessage.builder().taskId(3L).roundNum(0).build());
+        assertThat(buffer.size()).isEqualTo(1);
+
+        buffer.evict(1L);
+        buffer.evict(null);
+
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.lockFor(1L)).isSameAs(buffer.lockFor(1L));
+    }
+}
@@ -0,0 +1,168 @@
+package ynu.jackielinn.server.ingest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.entity.Task;
+import ynu.jackielinn.server.service.TaskService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * TaskStateTracker 单元测试：首轮加载一次、每轮最多一次合并写回、间隔内仅指标变化时延迟写回、终态写回并移除、写回失败重试。
+ */
+@ExtendWith(MockitoExtension.class)
+class TaskStateTrackerTest {
+
+    @Mock
+    private TaskService taskService;
+
+    @InjectMocks
+    private TaskStateTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(tracker, "flushIntervalMs", 60_000L);
+    }
+
+    private static RoundMessage round(int roundNum, Double accuracy) {
+        return RoundMessage.builder().taskId(1L).roundNum(roundNum).accuracy(accuracy).loss(0.1).build();
+    }
+
+    @Test
+    void firstRoundShouldLoadOnceAndWriteSingleMergedUpdate() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.NOT_STARTED).build());
+
+        tracker.onRound(round(0, 0.5));
+
+        ArgumentCaptor<Task> captor = ArgumentCaptor.forClass(Task.class);
+        verify(taskService).updateById(captor.capture());
+        assertThat(captor.getValue().getStatus()).isEqualTo(Status.IN_PROGRESS);
+        assertThat(captor.getValue().getAccuracy()).isEqualTo(0.5);
+        assertThat(captor.getValue().getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void metricOnlyChangesWithinIntervalShouldWaitForScheduledFlush() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.NOT_STARTED).build());
+        tracker.onRound(round(0, 0.5));
+        tracker.onRound(round(1, 0.6));
+        tracker.onRound(round(2, 0.7));
+        tracker.onRound(round(3, 0.4));
+
+        verify(taskService, times(1)).getById(1L);
+        verify(taskService, times(1)).updateById(any(Task.class));
+
+        tracker.flushDirty();
+
+        ArgumentCaptor<Task> captor = ArgumentCaptor.forClass(Task.class);
+        verify(taskService, times(2)).updateById(captor.capture());
+        assertThat(captor.getValue().getAccuracy()).isEqualTo(0.7);
+        assertThat(captor.getValue().getStatus()).isNull();
+
+        tracker.flushDirty();
+        verify(taskService, times(2)).updateById(any(Task.class));
+    }
+
+    @Test
+    void lastRoundShouldWriteSuccessImmediately() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(2).status(Status.IN_PROGRESS).accuracy(0.9).build());
+        tracker.onRound(round(0, 0.5));
+        verify(taskService, never()).updateById(any(Task.class));
+
+        tracker.onRound(round(1, 0.95));
+
+        ArgumentCaptor<Task> captor = ArgumentCaptor.forClass(Task.class);
+        verify(taskService).updateById(captor.capture());
+        assertThat(captor.getValue().getStatus()).isEqualTo(Status.SUCCESS);
+        assertThat(captor.getValue().getAccuracy()).isEqualTo(0.95);
+    }
+
+    @Test
+    void missingTaskShouldNotBeCached() {
+        when(taskService.getById(1L)).thenReturn(null);
+
+        tracker.onRound(round(0, 0.5));
+        tracker.onRound(round(1, 0.5));
+
+        verify(taskService, times(2)).getById(1L);
+        verify(taskService, never()).updateById(any(Task.class));
+    }
+
+    @Test
+    void flushAndRemoveShouldWritePendingAndForgetTask() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.IN_PROGRESS).build());
+        tracker.onRound(round(0, 0.5));
+        tracker.onRound(round(1, 0.6));
+
+        tracker.flushAndRemove(1L);
+        tracker.flushDirty();
+        tracker.flushAndRemove(2L);
+
+        verify(taskService, times(2)).updateById(any(Task.class));
+        tracker.onRound(round(2, 0.7));
+        verify(taskService, times(2)).getById(1L);
+    }
+
+    @Test
+    void onStatusShouldPreventRedundantStatusWrite() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.IN_PROGRESS).build());
+        tracker.onRound(round(0, null));
+        tracker.onStatus(1L, Status.NOT_STARTED);
+        tracker.onStatus(2L, Status.IN_PROGRESS);
+
+        tracker.onRound(round(1, null));
+
+        ArgumentCaptor<Task> captor = ArgumentCaptor.forClass(Task.class);
+        verify(taskService).updateById(captor.capture());
+        assertThat(captor.getValue().getStatus()).isEqualTo(Status.IN_PROGRESS);
+    }
+
+    @Test
+    void failedWriteShouldBeRetriedOnNextFlush() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.NOT_STARTED).build());
+        when(taskService.updateById(any(Task.class))).thenThrow(new RuntimeException("db down")).thenReturn(true);
+
+        tracker.onRound(round(0, 0.5));
+        tracker.flushDirty();
+
+        verify(taskService, times(2)).updateById(any(Task.class));
+    }
+
+    @Test
+    void flushShouldWritePendingForOneTaskAndReportResult() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.IN_PROGRESS).build());
+        tracker.onRound(round(0, 0.5));
+        tracker.onRound(round(1, 0.6));
+        when(taskService.updateById(any(Task.class))).thenThrow(new RuntimeException("db down")).thenReturn(true);
+
+        assertThat(tracker.flush(1L)).isFalse();
+        assertThat(tracker.flush(1L)).isTrue();
+        assertThat(tracker.flush(1L)).isTrue();
+        assertThat(tracker.flush(2L)).isTrue();
+
+        verify(taskService, times(3)).updateById(any(Task.class));
+    }
+
+    @Test
+    void failedFlushAndRemoveShouldKeepStateForRetry() {
+        when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.IN_PROGRESS).build());
+        tracker.onRound(round(0, 0.5));
+        tracker.onRound(round(1, 0.6));
+        when(taskService.updateById(any(Task.class))).thenThrow(new RuntimeException("db down")).thenReturn(true);
+
+        assertThat(tracker.flushAndRemove(1L)).isFalse();
+        assertThat(tracker.getBestAccuracy(1L)).isEqualTo(0.6);
+        assertThat(tracker.flushAndRemove(1L)).isTrue();
+        assertThat(tracker.getBestAccuracy(1L)).isNull();
+    }
+}
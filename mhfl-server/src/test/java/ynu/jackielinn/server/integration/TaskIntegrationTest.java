@@ -250,7 +250,11 @@ class TaskIntegrationTest extends BaseIntegrationTest {
                         .requestAttr("id", 2L))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.code").value(200))
-                .andExpect(jsonPath("$.data[0].clientIndex").value(0));
+                .andExpect(jsonPath("$.data[0].clientIndex").value(0))
+                .andExpect(jsonPath("$.data[0].roundNum").value(2))
+                .andExpect(jsonPath("$.data[0].accuracy").value(0.85))
+                .andExpect(jsonPath("$.data[1].roundNum").value(1))
+                .andExpect(jsonPath("$.data[2].roundNum").value(-1));
     }
 
     @Test
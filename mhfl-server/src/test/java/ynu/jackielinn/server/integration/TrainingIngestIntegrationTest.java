@@ -0,0 +1,111 @@
+package ynu.jackielinn.server.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.jdbc.Sql;
+import ynu.jackielinn.server.entity.Client;
+import ynu.jackielinn.server.entity.Round;
+import ynu.jackielinn.server.service.ClientService;
+import ynu.jackielinn.server.service.RedisSubscriptionService;
+import ynu.jackielinn.server.service.RoundService;
+import ynu.jackielinn.server.websocket.WebSocketSessionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 训练消息落库集成测试。
+ * 覆盖 Round/Client 按唯一键 upsert 的 Service -> Mapper -> H2 链路：重复写入不产生重复行且回填原主键；
+ * 命中逻辑删除的行时恢复该行而非违反唯一键。
+ */
+@Sql(
+        scripts = {
+                "classpath:integration/task/schema.sql",
+                "classpath:integration/task/data.sql"
+        },
+        executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD
+)
+class TrainingIngestIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private RoundService roundService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @MockitoBean
+    private RedisSubscriptionService redisSubscriptionService;
+
+    @MockitoBean
+    private WebSocketSessionManager webSocketSessionManager;
+
+    @Test
+    void saveRoundShouldOverwriteExistingRoundAndReturnItsId() {
+        Round round = Round.builder().tid(3L).roundNum(1)
+                .loss(0.1).accuracy(0.99).precision(0.9).recall(0.9).f1Score(0.9).build();
+
+        roundService.saveRound(round);
+
+        assertThat(round.getId()).isEqualTo(102L);
+        assertThat(roundService.listByTidOrderByRoundNum(3L)).hasSize(3);
+        assertThat(roundService.getById(102L).getAccuracy()).isEqualTo(0.99);
+    }
+
+    @Test
+    void saveRoundIfAbsentShouldKeepExistingMetricsAndInsertNewRound() {
+        Round existing = Round.builder().tid(3L).roundNum(2)
+                .loss(0.0).accuracy(0.0).precision(0.0).recall(0.0).f1Score(0.0).build();
+        Round fresh = Round.builder().tid(3L).roundNum(3)
+                .loss(0.0).accuracy(0.0).precision(0.0).recall(0.0).f1Score(0.0).build();
+
+        roundService.saveRoundIfAbsent(existing);
+        roundService.saveRoundIfAbsent(fresh);
+
+        assertThat(existing.getId()).isEqualTo(103L);
+        assertThat(roundService.getById(103L).getAccuracy()).isEqualTo(0.80);
+        assertThat(fresh.getId()).isNotNull();
+        assertThat(roundService.getByTidAndRoundNum(3L, 3).getId()).isEqualTo(fresh.getId());
+    }
+
+    @Test
+    void saveClientBatchShouldNotDuplicateRedeliveredRows() {
+        LocalDateTime ts = LocalDateTime.of(2026, 1, 1, 0, 0);
+        Client redelivered = Client.builder().rid(101L).clientIndex(0)
+                .loss(0.2).accuracy(0.77).precision(0.7).recall(0.7).f1Score(0.7).timestamp(ts).build();
+        Client fresh = Client.builder().rid(101L).clientIndex(1)
+                .loss(0.2).accuracy(0.6).precision(0.6).recall(0.6).f1Score(0.6).timestamp(ts).build();
+
+        clientService.saveClientBatch(List.of(redelivered, fresh));
+        clientService.saveClient(Client.builder().rid(101L).clientIndex(1)
+                .loss(0.2).accuracy(0.61).precision(0.6).recall(0.6).f1Score(0.6).timestamp(ts).build());
+
+        List<Client> clients = clientService.listByRidIn(List.of(101L));
+        assertThat(clients).hasSize(2);
+        assertThat(clients).anyMatch(c -> c.getClientIndex() == 0 && c.getAccuracy() == 0.77);
+        assertThat(clients).anyMatch(c -> c.getClientIndex() == 1 && c.getAccuracy() == 0.61);
+    }
+
+    @Test
+    void upsertsShouldRestoreSoftDeletedRowsWithTheSameKey() {
+        LocalDateTime ts = LocalDateTime.of(2026, 1, 1, 0, 0);
+        roundService.removeById(102L);
+        clientService.saveClient(Client.builder().rid(101L).clientIndex(5)
+                .loss(0.2).accuracy(0.5).precision(0.5).recall(0.5).f1Score(0.5).timestamp(ts).build());
+        Long clientId = clientService.listByRidIn(List.of(101L)).stream()
+                .filter(c -> c.getClientIndex() == 5).findFirst().orElseThrow().getId();
+        clientService.removeById(clientId);
+
+        Round round = Round.builder().tid(3L).roundNum(1)
+                .loss(0.1).accuracy(0.95).precision(0.9).recall(0.9).f1Score(0.9).build();
+        roundService.saveRound(round);
+        clientService.saveClientBatch(List.of(Client.builder().rid(101L).clientIndex(5)
+                .loss(0.2).accuracy(0.55).precision(0.5).recall(0.5).f1Score(0.5).timestamp(ts).build()));
+
+        assertThat(round.getId()).isEqualTo(102L);
+        assertThat(roundService.getById(102L).getAccuracy()).isEqualTo(0.95);
+        assertThat(clientService.getById(clientId).getAccuracy()).isEqualTo(0.55);
+    }
+}
@@ -7,23 +7,32 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.data.redis.connection.Message;
 import ynu.jackielinn.server.dto.message.ClientMessage;
 import ynu.jackielinn.server.dto.message.RoundMessage;
 import ynu.jackielinn.server.dto.message.StatusMessage;
+import ynu.jackielinn.server.entity.Client;
+import ynu.jackielinn.server.ingest.ClientWriteBuffer;
+import ynu.jackielinn.server.ingest.OverflowSpool;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskOwnership;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
 import ynu.jackielinn.server.service.TrainingMessageHandler;
 import ynu.jackielinn.server.utils.Const;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.Executor;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.lenient;
+import static org.assertj.core.api.Assertions.assertThat;
 
 /**
- * TrainingMessageListener 单元测试：按 channel 解析 Round/Client/Status 并提交线程池执行。
+ * TrainingMessageListener 单元测试：按 channel 解析 Round/Client/Status 并按 taskId 提交有序派发器执行。
  */
 @ExtendWith(MockitoExtension.class)
 class TrainingMessageListenerTest {
@@ -34,26 +43,47 @@ class TrainingMessageListenerTest {
     private TrainingMessageHandler messageHandler;
 
     @Mock
-    private Executor executor;
+    private TaskOrderedDispatcher dispatcher;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private OverflowSpool spool;
+
+    @Mock
+    private TrainingMetrics trainingMetrics;
 
     @Mock
-    private ObjectMapper objectMapper;
+    private TaskOwnership taskOwnership;
+
+    @Mock
+    private ClientWriteBuffer clientWriteBuffer;
 
     @InjectMocks
     private TrainingMessageListener listener;
 
+    private TrainingMessageDecoder decoder;
+
     @Mock
     private Message message;
 
     @BeforeEach
     void setUp() {
-        // lenient：shouldNotCallHandlerWhenChannelUnknown / shouldCatchExceptionWhenReadValueFails 不会调用 execute
+        decoder = new TrainingMessageDecoder();
+        ReflectionTestUtils.setField(decoder, "messageHandler", messageHandler);
+        ReflectionTestUtils.setField(decoder, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(decoder, "trainingMetrics", trainingMetrics);
+        ReflectionTestUtils.setField(decoder, "clientWriteBuffer", clientWriteBuffer);
+        decoder.init();
+        ReflectionTestUtils.setField(listener, "decoder", decoder);
+        lenient().when(taskOwnership.isOwner(any())).thenReturn(true);
+        // lenient：shouldNotCallHandlerWhenChannelUnknown / shouldCatchExceptionWhenReadValueFails 不会调用 dispatch
         // 执行提交的 Runnable，便于验证 handler 被调用
         lenient().doAnswer(inv -> {
-            Runnable r = inv.getArgument(0);
+            Runnable r = inv.getArgument(1);
             r.run();
             return null;
-        }).when(executor).execute(any(Runnable.class));
+        }).when(dispatcher).dispatch(any(), any(Runnable.class));
     }
 
     @Test
@@ -62,13 +92,24 @@ class TrainingMessageListenerTest {
         String body = "{\"taskId\":1,\"roundNum\":0}";
         when(message.getChannel()).thenReturn(channel.getBytes(UTF_8));
         when(message.getBody()).thenReturn(body.getBytes(UTF_8));
-        RoundMessage roundMessage = new RoundMessage();
-        when(objectMapper.readValue(eq(body), eq(RoundMessage.class))).thenReturn(roundMessage);
 
         listener.onMessage(message, null);
 
-        verify(executor).execute(any(Runnable.class));
-        verify(messageHandler).handleRoundMessage(roundMessage);
+        verify(dispatcher).dispatch(any(), any(Runnable.class));
+        verify(messageHandler).handleRoundMessage(argThat(m -> m.getTaskId() == 1L && m.getRoundNum() == 0));
+    }
+
+    @Test
+    void shouldDropMessageOfTaskOwnedByAnotherNode() throws Exception {
+        String channel = Const.TASK_EXPERIMENT_ROUND + "1";
+        when(message.getChannel()).thenReturn(channel.getBytes(UTF_8));
+        when(message.getBody()).thenReturn("{\"taskId\":1,\"roundNum\":0}".getBytes(UTF_8));
+        when(taskOwnership.isOwner(1L)).thenReturn(false);
+
+        listener.onMessage(message, null);
+
+        verify(dispatcher, never()).dispatch(any(), any(Runnable.class));
+        verify(messageHandler, never()).handleRoundMessage(any());
     }
 
     @Test
@@ -77,13 +118,11 @@ class TrainingMessageListenerTest {
         String body = "{\"taskId\":1,\"clientIndex\":0}";
         when(message.getChannel()).thenReturn(channel.getBytes(UTF_8));
         when(message.getBody()).thenReturn(body.getBytes(UTF_8));
-        ClientMessage clientMessage = new ClientMessage();
-        when(objectMapper.readValue(eq(body), eq(ClientMessage.class))).thenReturn(clientMessage);
 
         listener.onMessage(message, null);
 
-        verify(executor).execute(any(Runnable.class));
-        verify(messageHandler).handleClientMessage(clientMessage);
+        verify(dispatcher).dispatch(any(), any(Runnable.class));
+        verify(messageHandler).handleClientMessage(argThat(m -> m.getTaskId() == 1L));
     }
 
     @Test
@@ -92,13 +131,11 @@ class TrainingMessageListenerTest {
         String body = "{\"taskId\":1,\"status\":\"SUCCESS\"}";
         when(message.getChannel()).thenReturn(channel.getBytes(UTF_8));
         when(message.getBody()).thenReturn(body.getBytes(UTF_8));
-        StatusMessage statusMessage = new StatusMessage();
-        when(objectMapper.readValue(eq(body), eq(StatusMessage.class))).thenReturn(statusMessage);
 
         listener.onMessage(message, null);
 
-        verify(executor).execute(any(Runnable.class));
-        verify(messageHandler).handleStatusMessage(statusMessage);
+        verify(dispatcher).dispatch(any(), any(Runnable.class));
+        verify(messageHandler).handleStatusMessage(argThat(m -> "SUCCESS".equals(m.getStatus())));
     }
 
     @Test
@@ -108,22 +145,147 @@ class TrainingMessageListenerTest {
 
         listener.onMessage(message, null);
 
-        verify(executor, never()).execute(any(Runnable.class));
+        verify(dispatcher, never()).dispatch(any(), any(Runnable.class));
         verify(messageHandler, never()).handleRoundMessage(any());
         verify(messageHandler, never()).handleClientMessage(any());
         verify(messageHandler, never()).handleStatusMessage(any());
     }
 
+    @Test
+    void shouldNotCallHandlerWhenChannelShorterThanPrefix() {
+        when(message.getChannel()).thenReturn("task:experiment:".getBytes(UTF_8));
+        when(message.getBody()).thenReturn("{\"taskId\":1}".getBytes(UTF_8));
+
+        listener.onMessage(message, null);
+
+        verify(dispatcher, never()).dispatch(any(), any(Runnable.class));
+    }
+
     @Test
     void shouldCatchExceptionWhenReadValueFails() throws Exception {
         String channel = Const.TASK_EXPERIMENT_ROUND + "1";
         when(message.getChannel()).thenReturn(channel.getBytes(UTF_8));
         when(message.getBody()).thenReturn("invalid json".getBytes(UTF_8));
-        when(objectMapper.readValue(anyString(), eq(RoundMessage.class))).thenThrow(new RuntimeException("parse error"));
 
         listener.onMessage(message, null);
 
-        verify(executor, never()).execute(any(Runnable.class));
+        verify(dispatcher, never()).dispatch(any(), any(Runnable.class));
+        verify(messageHandler, never()).handleRoundMessage(any());
+    }
+
+    @Test
+    void shouldSpoolWhenLaneReachedHighWatermark() throws Exception {
+        byte[] channel = (Const.TASK_EXPERIMENT_CLIENT + "1").getBytes(UTF_8);
+        byte[] body = "{\"taskId\":1}".getBytes(UTF_8);
+        when(message.getChannel()).thenReturn(channel);
+        when(message.getBody()).thenReturn(body);
+        when(dispatcher.getQueuedCount(1L)).thenReturn(800);
+        when(spool.append(channel, body)).thenReturn(true);
+
+        listener.onMessage(message, null);
+
+        verify(dispatcher, never()).dispatch(any(), any(Runnable.class));
+        verify(spool).append(channel, body);
+        assertThat(listener.isSpooling()).isTrue();
+        assertThat(listener.getSpooledCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldSpoolAndCountWhenDispatchRejected() throws Exception {
+        byte[] channel = (Const.TASK_EXPERIMENT_ROUND + "1").getBytes(UTF_8);
+        byte[] body = "{\"taskId\":1}".getBytes(UTF_8);
+        when(message.getChannel()).thenReturn(channel);
+        when(message.getBody()).thenReturn(body);
+        doThrow(new RejectedExecutionException("full")).when(dispatcher).dispatch(any(), any(Runnable.class));
+        when(spool.append(channel, body)).thenReturn(false);
+
+        listener.onMessage(message, null);
+
+        assertThat(listener.getRejectedCount()).isEqualTo(1);
+        assertThat(listener.getDroppedCount()).isEqualTo(1);
         verify(messageHandler, never()).handleRoundMessage(any());
     }
+
+    @Test
+    void shouldKeepSpoolingNewMessagesWhileBacklogExists() {
+        ReflectionTestUtils.setField(listener, "spooling", true);
+        byte[] channel = (Const.TASK_EXPERIMENT_STATUS + "1").getBytes(UTF_8);
+        byte[] body = "{}".getBytes(UTF_8);
+        when(message.getChannel()).thenReturn(channel);
+        when(message.getBody()).thenReturn(body);
+        when(spool.append(channel, body)).thenReturn(true);
+
+        listener.onMessage(message, null);
+
+        verify(spool).append(channel, body);
+        verify(dispatcher, never()).dispatch(any(), any(Runnable.class));
+    }
+
+    @Test
+    void drainSpoolShouldWaitUntilLanesBelowLowWatermark() {
+        when(spool.hasPending()).thenReturn(true);
+        when(dispatcher.getMaxLaneQueuedCount()).thenReturn(201);
+
+        listener.drainSpool();
+
+        assertThat(listener.isSpooling()).isTrue();
+        verify(spool, never()).read(anyInt());
+    }
+
+    @Test
+    void drainSpoolShouldReplayInOrderAndExitWhenEmpty() throws Exception {
+        ReflectionTestUtils.setField(listener, "spooling", true);
+        String body = "{\"taskId\":1}";
+        OverflowSpool.SpoolRecord r1 = new OverflowSpool.SpoolRecord((Const.TASK_EXPERIMENT_CLIENT + "1").getBytes(UTF_8), body.getBytes(UTF_8), 10);
+        OverflowSpool.SpoolRecord r2 = new OverflowSpool.SpoolRecord("other:channel".getBytes(UTF_8), body.getBytes(UTF_8), 20);
+        when(spool.hasPending()).thenReturn(true, false);
+        when(spool.read(anyInt())).thenReturn(List.of(r1, r2));
+
+        listener.drainSpool();
+
+        verify(messageHandler).handleClientMessage(argThat(m -> m.getTaskId() == 1L));
+        verify(spool).advance(10);
+        verify(spool).advance(20);
+        assertThat(listener.getDrainedCount()).isEqualTo(1);
+        assertThat(listener.isSpooling()).isFalse();
+    }
+
+    @Test
+    void drainSpoolShouldRequeueSpooledClientRowsWithoutOwnershipCheck() throws Exception {
+        byte[] body = objectMapper.writeValueAsBytes(List.of(Client.builder().rid(3L).clientIndex(1).build()));
+        OverflowSpool.SpoolRecord r1 = new OverflowSpool.SpoolRecord(ClientWriteBuffer.spoolChannel(9L), body, 30);
+        when(spool.hasPending()).thenReturn(true, false);
+        when(spool.read(anyInt())).thenReturn(List.of(r1));
+
+        listener.drainSpool();
+
+        verify(clientWriteBuffer).requeue(eq(9L), argThat(rows -> rows.size() == 1 && rows.get(0).getClientIndex() == 1));
+        verify(spool).advance(30);
+        verify(taskOwnership, never()).isOwner(any());
+        verifyNoInteractions(messageHandler);
+    }
+
+    @Test
+    void onMessageShouldIgnoreSpooledClientRowChannel() {
+        when(message.getChannel()).thenReturn(ClientWriteBuffer.spoolChannel(9L));
+        when(message.getBody()).thenReturn("[]".getBytes(UTF_8));
+
+        listener.onMessage(message, null);
+
+        verifyNoInteractions(clientWriteBuffer, dispatcher);
+    }
+
+    @Test
+    void drainSpoolShouldStopWithoutAdvancingWhenRejected() throws Exception {
+        String body = "{\"taskId\":1}";
+        OverflowSpool.SpoolRecord r1 = new OverflowSpool.SpoolRecord((Const.TASK_EXPERIMENT_ROUND + "1").getBytes(UTF_8), body.getBytes(UTF_8), 10);
+        when(spool.hasPending()).thenReturn(true);
+        when(spool.read(anyInt())).thenReturn(List.of(r1));
+        doThrow(new RejectedExecutionException("full")).when(dispatcher).dispatch(any(), any(Runnable.class));
+
+        listener.drainSpool();
+
+        verify(spool, never()).advance(anyLong());
+        assertThat(listener.isSpooling()).isTrue();
+    }
 }
@@ -0,0 +1,298 @@
+package ynu.jackielinn.server.listener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.ingest.ClientWriteBuffer;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskOwnership;
+import ynu.jackielinn.server.ingest.TaskStateTracker;
+import ynu.jackielinn.server.utils.Const;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * TrainingStreamConsumer 单元测试：PEL 回放后切换到新消息、整批处理后刷写缓冲再确认、只确认写入成功的记录、投递耗尽的失败记录转存死信、拒绝时保留未确认记录、按分片租约读取与确认、接管空闲记录。
+ */
+@ExtendWith(MockitoExtension.class)
+class TrainingStreamConsumerTest {
+
+    private static final String KEY = "task:experiment:stream";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    @Mock
+    private TrainingMessageDecoder decoder;
+
+    @Mock
+    private TaskOrderedDispatcher dispatcher;
+
+    @Mock
+    private ClientWriteBuffer clientWriteBuffer;
+
+    @Mock
+    private TaskStateTracker taskStateTracker;
+
+    @Mock
+    private TaskOwnership taskOwnership;
+
+    @InjectMocks
+    private TrainingStreamConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(consumer, "consumerName", "node-a");
+        ReflectionTestUtils.setField(consumer, "retryBackoffMs", 0L);
+        ReflectionTestUtils.setField(consumer, "ownedShards", new boolean[]{true});
+        lenient().when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        lenient().when(clientWriteBuffer.flush(any())).thenReturn(true);
+        lenient().when(taskStateTracker.flush(any())).thenReturn(true);
+        lenient().doAnswer(inv -> {
+            Runnable r = inv.getArgument(1);
+            r.run();
+            return null;
+        }).when(dispatcher).dispatch(any(), any(Runnable.class));
+    }
+
+    private static MapRecord<String, Object, Object> record(String id, String channel, String payload) {
+        return StreamRecords.newRecord().in(KEY).withId(RecordId.of(id))
+                .ofMap(Map.<Object, Object>of("channel", channel, "payload", payload));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubRead(List<MapRecord<String, Object, Object>> records) {
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class)))
+                .thenReturn(records);
+    }
+
+    @Test
+    void pollOnceShouldSwitchToNewMessagesWhenPendingListEmpty() {
+        stubRead(List.of());
+
+        assertThat(consumer.pollOnce()).isZero();
+
+        assertThat(ReflectionTestUtils.getField(consumer, "replayPending")).isEqualTo(false);
+        verify(streamOperations, never()).acknowledge(eq(KEY), eq("mhfl-server"), any(RecordId[].class));
+    }
+
+    @Test
+    void pollOnceShouldDispatchFlushAndAcknowledgeBatch() {
+        MapRecord<String, Object, Object> r1 = record("1-0", Const.TASK_EXPERIMENT_CLIENT + "7", "{\"taskId\":7}");
+        MapRecord<String, Object, Object> r2 = record("2-0", "other:channel", "{}");
+        stubRead(List.of(r1, r2));
+        BooleanSupplier handler = mock(BooleanSupplier.class);
+        when(handler.getAsBoolean()).thenReturn(true);
+        when(decoder.decode(any(), any())).thenReturn(new TrainingMessageDecoder.Decoded(7L, handler), (TrainingMessageDecoder.Decoded) null);
+        when(streamOperations.acknowledge(eq(KEY), eq("mhfl-server"), any(RecordId[].class))).thenReturn(2L);
+
+        assertThat(consumer.pollOnce()).isEqualTo(2);
+
+        var inOrder = inOrder(handler, clientWriteBuffer, taskStateTracker, streamOperations);
+        inOrder.verify(handler).getAsBoolean();
+        inOrder.verify(clientWriteBuffer).flush(7L);
+        inOrder.verify(taskStateTracker).flush(7L);
+        inOrder.verify(streamOperations).acknowledge(KEY, "mhfl-server", RecordId.of("1-0"), RecordId.of("2-0"));
+        assertThat(consumer.getAckedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void pollOnceShouldLeaveRejectedRecordsPending() {
+        ReflectionTestUtils.setField(consumer, "replayPending", false);
+        MapRecord<String, Object, Object> r1 = record("1-0", Const.TASK_EXPERIMENT_ROUND + "7", "{}");
+        MapRecord<String, Object, Object> r2 = record("2-0", Const.TASK_EXPERIMENT_ROUND + "7", "{}");
+        stubRead(List.of(r1, r2));
+        when(decoder.decode(any(), any())).thenReturn(new TrainingMessageDecoder.Decoded(7L, () -> true));
+        doAnswer(inv -> {
+            Runnable r = inv.getArgument(1);
+            r.run();
+            return null;
+        }).doThrow(new RejectedExecutionException("full")).when(dispatcher).dispatch(any(), any(Runnable.class));
+
+        consumer.pollOnce();
+
+        verify(streamOperations).acknowledge(KEY, "mhfl-server", RecordId.of("1-0"));
+        assertThat(ReflectionTestUtils.getField(consumer, "replayPending")).isEqualTo(true);
+    }
+
+    @Test
+    void pollOnceShouldLeaveFailedRecordAndLaterRecordsOfSameTaskPending() {
+        ReflectionTestUtils.setField(consumer, "replayPending", false);
+        stubRead(List.of(record("1-0", "c", "{}"), record("2-0", "c", "{}"), record("3-0", "c", "{}"), record("4-0", "c", "{}")));
+        when(decoder.decode(any(), any())).thenReturn(
+                new TrainingMessageDecoder.Decoded(7L, () -> true),
+                new TrainingMessageDecoder.Decoded(7L, () -> false),
+                new TrainingMessageDecoder.Decoded(7L, () -> true),
+                new TrainingMessageDecoder.Decoded(8L, () -> true));
+
+        consumer.pollOnce();
+
+        verify(streamOperations).acknowledge(KEY, "mhfl-server", RecordId.of("1-0"), RecordId.of("4-0"));
+        assertThat(ReflectionTestUtils.getField(consumer, "replayPending")).isEqualTo(true);
+    }
+
+    @Test
+    void pollOnceShouldNotAcknowledgeTaskWhoseBuffersFailedToFlush() {
+        ReflectionTestUtils.setField(consumer, "replayPending", false);
+        stubRead(List.of(record("1-0", "c", "{}"), record("2-0", "c", "{}")));
+        when(decoder.decode(any(), any())).thenReturn(
+                new TrainingMessageDecoder.Decoded(7L, () -> true),
+                new TrainingMessageDecoder.Decoded(8L, () -> true));
+        when(taskStateTracker.flush(7L)).thenReturn(false);
+
+        consumer.pollOnce();
+
+        verify(streamOperations).acknowledge(KEY, "mhfl-server", RecordId.of("2-0"));
+    }
+
+    @Test
+    void pollOnceShouldNotAcknowledgeWhenEveryRecordFailed() {
+        ReflectionTestUtils.setField(consumer, "replayPending", false);
+        stubRead(List.of(record("1-0", "c", "{}")));
+        when(decoder.decode(any(), any())).thenReturn(new TrainingMessageDecoder.Decoded(7L, () -> false));
+
+        consumer.pollOnce();
+
+        verify(streamOperations, never()).acknowledge(eq(KEY), eq("mhfl-server"), any(RecordId[].class));
+        assertThat(ReflectionTestUtils.getField(consumer, "replayPending")).isEqualTo(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordFailingEveryTimeShouldBeDeadLetteredSoLaterRecordsAreConsumed() {
+        ReflectionTestUtils.setField(consumer, "replayPending", false);
+        ReflectionTestUtils.setField(consumer, "maxDeliveries", 3);
+        MapRecord<String, Object, Object> poison = record("1-0", "c", "poison");
+        MapRecord<String, Object, Object> next = record("2-0", "c", "{}");
+        MapRecord<String, Object, Object> other = record("3-0", "c", "{}");
+        MapRecord<String, Object, Object> later = record("4-0", "c", "{}");
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class)))
+                .thenReturn(List.of(poison, next, other), List.of(poison, next), List.of(poison, next),
+                        List.of(next), List.of(), List.of(later));
+        when(decoder.decode(any(), any())).thenAnswer(inv -> {
+            boolean fails = "poison".equals(new String((byte[]) inv.getArgument(1)));
+            return new TrainingMessageDecoder.Decoded(7L, () -> !fails);
+        });
+        when(streamOperations.pending(eq(KEY), eq("mhfl-server"), any(Range.class), eq(1L))).thenReturn(
+                pending("1-0", 1), pending("1-0", 2), pending("1-0", 3));
+
+        for (int i = 0; i < 6; i++) {
+            consumer.pollOnce();
+        }
+
+        ArgumentCaptor<MapRecord<String, Object, Object>> dead = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamOperations).add(dead.capture());
+        assertThat(dead.getValue().getStream()).isEqualTo("task:experiment:stream:dead");
+        assertThat(dead.getValue().getValue()).containsEntry("payload", "poison").containsEntry("id", "1-0")
+                .containsEntry("stream", KEY).containsEntry("deliveries", "3");
+        verify(streamOperations).acknowledge(KEY, "mhfl-server", RecordId.of("1-0"));
+        verify(streamOperations).acknowledge(KEY, "mhfl-server", RecordId.of("2-0"));
+        verify(streamOperations).acknowledge(KEY, "mhfl-server", RecordId.of("4-0"));
+        assertThat(consumer.getDeadLetteredCount()).isEqualTo(1);
+        assertThat(ReflectionTestUtils.getField(consumer, "replayPending")).isEqualTo(false);
+    }
+
+    private static PendingMessages pending(String id, long deliveries) {
+        return new PendingMessages("mhfl-server", List.of(new PendingMessage(RecordId.of(id),
+                Consumer.from("mhfl-server", "node-a"), Duration.ofSeconds(1), deliveries)));
+    }
+
+    @Test
+    void pollOnceShouldSkipReadingWhenNoShardOwned() {
+        ReflectionTestUtils.setField(consumer, "ownedShards", new boolean[]{false});
+
+        assertThat(consumer.pollOnce()).isEqualTo(-1);
+
+        verifyNoInteractions(streamOperations);
+    }
+
+    @Test
+    void pollOnceShouldAcknowledgePerShardStream() {
+        ReflectionTestUtils.setField(consumer, "shards", 2);
+        ReflectionTestUtils.setField(consumer, "ownedShards", new boolean[]{true, true});
+        MapRecord<String, Object, Object> r1 = StreamRecords.newRecord().in(KEY + ":0").withId(RecordId.of("1-0"))
+                .ofMap(Map.<Object, Object>of("channel", "c", "payload", "{}"));
+        MapRecord<String, Object, Object> r2 = StreamRecords.newRecord().in(KEY + ":1").withId(RecordId.of("1-0"))
+                .ofMap(Map.<Object, Object>of("channel", "c", "payload", "{}"));
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class), any(StreamOffset.class)))
+                .thenReturn(List.of(r1, r2));
+        when(decoder.decode(any(), any())).thenReturn(
+                new TrainingMessageDecoder.Decoded(4L, () -> true),
+                new TrainingMessageDecoder.Decoded(5L, () -> true));
+
+        consumer.pollOnce();
+
+        verify(streamOperations).acknowledge(KEY + ":0", "mhfl-server", RecordId.of("1-0"));
+        verify(streamOperations).acknowledge(KEY + ":1", "mhfl-server", RecordId.of("1-0"));
+    }
+
+    @Test
+    void refreshShardsShouldClaimNewShardAndEvictTasksOfLostShard() {
+        ReflectionTestUtils.setField(consumer, "shards", 2);
+        ReflectionTestUtils.setField(consumer, "ownedShards", new boolean[]{false, true});
+        ReflectionTestUtils.setField(consumer, "replayPending", false);
+        when(taskOwnership.holdsStreamShard(0)).thenReturn(true);
+        when(taskOwnership.holdsStreamShard(1)).thenReturn(false);
+        when(taskOwnership.localTaskIds()).thenReturn(java.util.Set.of(3L, 4L));
+        PendingMessages pending = new PendingMessages("mhfl-server", List.of(
+                new PendingMessage(RecordId.of("1-0"), Consumer.from("mhfl-server", "node-b"), Duration.ofSeconds(1), 1)));
+        when(streamOperations.pending(eq(KEY + ":0"), eq("mhfl-server"), any(Range.class), anyLong())).thenReturn(pending);
+        when(streamOperations.claim(eq(KEY + ":0"), eq("mhfl-server"), eq("node-a"), any(Duration.class), any(RecordId[].class)))
+                .thenReturn(List.of(record("1-0", Const.TASK_EXPERIMENT_ROUND + "4", "{}")));
+
+        consumer.refreshShards();
+
+        verify(streamOperations).claim(KEY + ":0", "mhfl-server", "node-a", Duration.ZERO, RecordId.of("1-0"));
+        verify(taskOwnership).evictLocalState(3L);
+        verify(taskOwnership, never()).evictLocalState(4L);
+        assertThat((boolean[]) ReflectionTestUtils.getField(consumer, "ownedShards")).containsExactly(true, false);
+        assertThat(ReflectionTestUtils.getField(consumer, "replayPending")).isEqualTo(true);
+    }
+
+    @Test
+    void claimIdleShouldClaimOnlyIdleRecordsOfOtherConsumers() {
+        ReflectionTestUtils.setField(consumer, "replayPending", false);
+        PendingMessages pending = new PendingMessages("mhfl-server", List.of(
+                new PendingMessage(RecordId.of("1-0"), Consumer.from("mhfl-server", "node-b"), Duration.ofMinutes(5), 1),
+                new PendingMessage(RecordId.of("2-0"), Consumer.from("mhfl-server", "node-b"), Duration.ofSeconds(1), 1),
+                new PendingMessage(RecordId.of("3-0"), Consumer.from("mhfl-server", "node-a"), Duration.ofMinutes(5), 1)));
+        when(streamOperations.pending(eq(KEY), eq("mhfl-server"), any(Range.class), anyLong())).thenReturn(pending);
+        when(streamOperations.claim(eq(KEY), eq("mhfl-server"), eq("node-a"), any(Duration.class), any(RecordId[].class)))
+                .thenReturn(List.of(record("1-0", Const.TASK_EXPERIMENT_ROUND + "7", "{}")));
+
+        consumer.claimIdle();
+
+        verify(streamOperations).claim(KEY, "mhfl-server", "node-a", Duration.ofMillis(60000), RecordId.of("1-0"));
+        assertThat(consumer.getClaimedCount()).isEqualTo(1);
+        assertThat(ReflectionTestUtils.getField(consumer, "replayPending")).isEqualTo(true);
+    }
+}
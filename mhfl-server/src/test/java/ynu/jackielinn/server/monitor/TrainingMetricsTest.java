@@ -0,0 +1,116 @@
+package ynu.jackielinn.server.monitor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.ingest.RoundIdIndex;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
+import ynu.jackielinn.server.listener.TrainingMessageListener;
+import ynu.jackielinn.server.websocket.WebSocketHeartbeat;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * TrainingMetrics 单元测试：各阶段 Timer 按 type 标签记录、非法或超前时间戳不记录、Gauge 登记与 Stream 消费者缺省。
+ */
+class TrainingMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    private TrainingMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new TrainingMetrics();
+        ReflectionTestUtils.setField(metrics, "meterRegistry", registry);
+        metrics.init();
+    }
+
+    private long count(String name, String type) {
+        return registry.get(name).tag("type", type).timer().count();
+    }
+
+    @Test
+    void stageTimersShouldRecordPerMessageType() {
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+
+        metrics.recordQueueWait(TrainingMetrics.MessageType.ROUND, start);
+        metrics.recordDbWrite(TrainingMetrics.MessageType.CLIENT, start);
+        metrics.recordDbWrite(TrainingMetrics.MessageType.CLIENT, start);
+        metrics.recordClientFlush(start);
+        metrics.recordWsSend(start);
+
+        assertThat(count("training.ingest.queue.wait", "round")).isEqualTo(1);
+        assertThat(count("training.ingest.queue.wait", "client")).isZero();
+        assertThat(count("training.ingest.db.write", "client")).isEqualTo(2);
+        assertThat(registry.get("training.ingest.client.flush").timer().count()).isEqualTo(1);
+        assertThat(registry.get("training.ingest.ws.send").timer().totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    void wsFrameBytesShouldBeTaggedByTypeAndCompression() {
+        metrics.recordWsFrame(false, true, 100);
+        metrics.recordWsFrame(false, true, 300);
+        metrics.recordWsFrame(true, false, 50);
+
+        assertThat(registry.get("training.ingest.ws.frame.bytes").tags("type", "text", "compressed", "true")
+                .summary().totalAmount()).isEqualTo(400);
+        assertThat(registry.get("training.ingest.ws.frame.bytes").tags("type", "binary", "compressed", "false")
+                .summary().count()).isEqualTo(1);
+        assertThat(registry.get("training.ingest.ws.frame.bytes").tags("type", "text", "compressed", "false")
+                .summary().count()).isZero();
+    }
+
+    @Test
+    void publishLatencyShouldSkipMissingMalformedAndFutureTimestamps() {
+        metrics.recordReceive(TrainingMetrics.MessageType.STATUS, LocalDateTime.now().minusSeconds(2).toString());
+        metrics.recordReceive(TrainingMetrics.MessageType.STATUS, null);
+        metrics.recordReceive(TrainingMetrics.MessageType.STATUS, "bad-ts");
+        metrics.recordEndToEnd(TrainingMetrics.MessageType.ROUND, LocalDateTime.now().plusMinutes(1).toString());
+
+        assertThat(count("training.ingest.receive", "status")).isEqualTo(1);
+        assertThat(registry.get("training.ingest.receive").tag("type", "status").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(2000);
+        assertThat(count("training.ingest.end.to.end", "round")).isZero();
+    }
+
+    @Test
+    void bindToShouldRegisterPipelineGaugesWithoutStreamConsumer() {
+        TaskOrderedDispatcher dispatcher = mock(TaskOrderedDispatcher.class);
+        TrainingMessageListener listener = mock(TrainingMessageListener.class);
+        RoundIdIndex roundIdIndex = new RoundIdIndex();
+        roundIdIndex.put(1L, 0, 10L);
+        when(dispatcher.getQueuedCount()).thenReturn(7);
+        when(listener.isSpooling()).thenReturn(true);
+        when(listener.getSpooledCount()).thenReturn(3L);
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean("trainingMessageDispatcher", TaskOrderedDispatcher.class, () -> dispatcher);
+        context.registerBean(TrainingMessageListener.class, () -> listener);
+        context.registerBean(RoundIdIndex.class, () -> roundIdIndex);
+        context.registerBean(TaskSnapshotBuffer.class, TaskSnapshotBuffer::new);
+        context.registerBean(WebSocketHeartbeat.class, WebSocketHeartbeat::new);
+        context.refresh();
+        ReflectionTestUtils.setField(metrics, "applicationContext", context);
+
+        metrics.bindTo(registry);
+
+        assertThat(registry.get("training.dispatcher.queued").gauge().value()).isEqualTo(7);
+        assertThat(registry.get("training.backpressure.spooling").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("training.backpressure.spooled").functionCounter().count()).isEqualTo(3);
+        assertThat(registry.get("training.round.index.size").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("training.snapshot.size").gauge().value()).isZero();
+        assertThat(registry.get("training.websocket.sessions.open").gauge().value()).isZero();
+        assertThat(registry.get("training.websocket.sessions.reaped").functionCounter().count()).isZero();
+        assertThat(registry.find("training.stream.acked").functionCounter()).isNull();
+        context.close();
+    }
+}
@@ -41,6 +41,9 @@ class AlgorithmServiceImplTest {
     @Mock
     private AlgorithmMapper algorithmMapper;
 
+    @Mock
+    private RecommendResultCache recommendResultCache;
+
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(service, "baseMapper", algorithmMapper);
@@ -73,6 +76,7 @@ class AlgorithmServiceImplTest {
         ArgumentCaptor<Algorithm> captor = ArgumentCaptor.forClass(Algorithm.class);
         verify(service).save(captor.capture());
         assertThat(captor.getValue().getAlgorithmName()).isEqualTo("FedAvg");
+        verify(recommendResultCache).invalidateAll();
     }
 
     @Test
@@ -86,6 +90,7 @@ class AlgorithmServiceImplTest {
         String result = service.createAlgorithm("FedAvg");
 
         assertThat(result).isNotNull();
+        verify(recommendResultCache, never()).invalidateAll();
     }
 
     @Test
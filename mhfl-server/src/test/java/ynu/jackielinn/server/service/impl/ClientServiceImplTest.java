@@ -8,6 +8,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import ynu.jackielinn.server.entity.Client;
+import ynu.jackielinn.server.mapper.ClientMapper;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -17,6 +18,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,13 +30,38 @@ class ClientServiceImplTest {
     private ClientServiceImpl service;
 
     @Test
-    void saveClientShouldDelegateToSave() {
+    void saveClientShouldUpsertSingleRow() {
+        ClientMapper mapper = mock(ClientMapper.class);
+        doReturn(mapper).when(service).getBaseMapper();
         Client client = Client.builder().rid(1L).clientIndex(0).build();
-        doReturn(true).when(service).save(client);
 
         service.saveClient(client);
 
-        verify(service).save(client);
+        verify(mapper).upsertBatch(List.of(client));
+        assertThat(client.getCreateTime()).isNotNull();
+    }
+
+    @Test
+    void saveClientBatchShouldFillTimesAndInsertInOneStatement() {
+        ClientMapper mapper = mock(ClientMapper.class);
+        doReturn(mapper).when(service).getBaseMapper();
+        List<Client> clients = List.of(
+                Client.builder().rid(1L).clientIndex(0).build(),
+                Client.builder().rid(1L).clientIndex(1).build()
+        );
+
+        service.saveClientBatch(clients);
+
+        verify(mapper).upsertBatch(clients);
+        assertThat(clients).allMatch(c -> c.getCreateTime() != null && c.getUpdateTime() != null);
+    }
+
+    @Test
+    void saveClientBatchShouldSkipEmptyInput() {
+        service.saveClientBatch(List.of());
+        service.saveClientBatch(null);
+
+        verify(service, never()).getBaseMapper();
     }
 
     @Test
@@ -59,6 +86,31 @@ class ClientServiceImplTest {
         assertThat(result).isSameAs(latest);
     }
 
+    @Test
+    void listLatestPerClientIndexByTidShouldUseSingleMapperQuery() {
+        ClientMapper mapper = mock(ClientMapper.class);
+        doReturn(mapper).when(service).getBaseMapper();
+        List<Client> latest = List.of(Client.builder().id(1L).clientIndex(0).build());
+        when(mapper.selectLatestPerClientIndexByTid(5L)).thenReturn(latest);
+
+        assertThat(service.listLatestPerClientIndexByTid(5L)).isSameAs(latest);
+        assertThat(service.listLatestPerClientIndexByTid(null)).isEmpty();
+        verify(mapper).selectLatestPerClientIndexByTid(5L);
+    }
+
+    @Test
+    void listLatestPerClientIndexByTidsShouldUseSingleMapperQuery() {
+        ClientMapper mapper = mock(ClientMapper.class);
+        doReturn(mapper).when(service).getBaseMapper();
+        List<Client> latest = List.of(Client.builder().id(1L).tid(5L).clientIndex(0).build());
+        when(mapper.selectLatestPerClientIndexByTids(List.of(5L, 6L))).thenReturn(latest);
+
+        assertThat(service.listLatestPerClientIndexByTids(List.of(5L, 6L))).isSameAs(latest);
+        assertThat(service.listLatestPerClientIndexByTids(List.of())).isEmpty();
+        assertThat(service.listLatestPerClientIndexByTids(null)).isEmpty();
+        verify(mapper).selectLatestPerClientIndexByTids(List.of(5L, 6L));
+    }
+
     @Test
     void listByRidsAndClientIndexShouldReturnEmptyWhenRidsEmpty() {
         assertThat(service.listByRidsAndClientIndex(null, 1)).isEmpty();
@@ -0,0 +1,117 @@
+package ynu.jackielinn.server.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.utils.Const;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * RecommendResultCache 单元测试：命中不再加载、按访问顺序淘汰、null 不缓存、失效清空并丢弃与失效交错的加载结果、过期重载、多节点失效广播与接收。
+ */
+class RecommendResultCacheTest {
+
+    private final RecommendResultCache cache = new RecommendResultCache();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private String load(String value) {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    @Test
+    void hitShouldNotReload() {
+        assertThat(cache.get(List.of("a", 1L), () -> load("x"))).isEqualTo("x");
+        assertThat(cache.get(List.of("a", 1L), () -> load("y"))).isEqualTo("x");
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyAccessedBeyondLimit() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.get(List.of("a"), () -> load("a"));
+        cache.get(List.of("b"), () -> load("b"));
+        cache.get(List.of("a"), () -> load("a"));
+        cache.get(List.of("c"), () -> load("c"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        cache.get(List.of("a"), () -> load("a"));
+        cache.get(List.of("b"), () -> load("b"));
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    void nullResultShouldNotBeCached() {
+        assertThat(cache.<String>get(List.of("a"), () -> null)).isNull();
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void invalidateShouldClearAndDropLoadsStartedBefore() {
+        cache.get(List.of("a"), () -> load("a"));
+        cache.invalidateAll();
+        assertThat(cache.size()).isZero();
+
+        String value = cache.get(List.of("b"), () -> {
+            cache.invalidateAll();
+            return load("stale");
+        });
+
+        assertThat(value).isEqualTo("stale");
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void expiredEntryShouldBeReloaded() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "ttlMs", 1L);
+        cache.get(List.of("a"), () -> load("a"));
+        Thread.sleep(5);
+        cache.get(List.of("a"), () -> load("a"));
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void invalidateShouldBroadcastOnlyInClusterMode() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ReflectionTestUtils.setField(cache, "stringRedisTemplate", redisTemplate);
+
+        cache.invalidateAll();
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+
+        ReflectionTestUtils.setField(cache, "clusterEnabled", true);
+        cache.invalidateAll();
+        verify(redisTemplate).convertAndSend(Const.RECOMMEND_CACHE_INVALIDATE_CHANNEL,
+                ReflectionTestUtils.getField(cache, "instanceId"));
+    }
+
+    @Test
+    void invalidationFromOtherNodeShouldClearLocalCacheOnly() {
+        cache.get(List.of("a"), () -> load("a"));
+
+        cache.onMessage(message((String) ReflectionTestUtils.getField(cache, "instanceId")), null);
+        assertThat(cache.size()).isEqualTo(1);
+
+        cache.onMessage(message("other-node"), null);
+        assertThat(cache.size()).isZero();
+    }
+
+    private static DefaultMessage message(String node) {
+        return new DefaultMessage(Const.RECOMMEND_CACHE_INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                node.getBytes(StandardCharsets.UTF_8));
+    }
+}
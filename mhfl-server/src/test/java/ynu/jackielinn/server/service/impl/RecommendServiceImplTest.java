@@ -5,8 +5,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.response.RecommendClientDetailAlgorithmVO;
 import ynu.jackielinn.server.dto.response.RecommendClientDetailVO;
 import ynu.jackielinn.server.dto.response.RecommendClientMetricsVO;
 import ynu.jackielinn.server.dto.response.RecommendExperimentSettingsVO;
@@ -30,6 +32,7 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -51,6 +54,9 @@ class RecommendServiceImplTest {
     @Mock
     private ClientService clientService;
 
+    @Spy
+    private RecommendResultCache recommendResultCache = new RecommendResultCache();
+
     @Test
     void getExperimentSettingsShouldReturnBasicDataWhenNoSourceTask() {
         when(algorithmService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(
@@ -65,6 +71,24 @@ class RecommendServiceImplTest {
         assertThat(vo.getSourceTaskId()).isNull();
     }
 
+    @Test
+    void repeatedCallsShouldBeServedFromCacheUntilInvalidated() {
+        when(algorithmService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(
+                Algorithm.builder().id(1L).algorithmName("A").build()
+        ));
+
+        RecommendExperimentSettingsVO first = service.getExperimentSettings(1L, List.of(1L, 2L));
+        RecommendExperimentSettingsVO second = service.getExperimentSettings(1L, List.of(1L, 2L));
+        service.getExperimentSettings(2L, List.of(1L, 2L));
+
+        assertThat(second).isSameAs(first);
+        verify(taskService, times(2)).list(any(LambdaQueryWrapper.class));
+
+        recommendResultCache.invalidateAll();
+        assertThat(service.getExperimentSettings(1L, List.of(1L, 2L))).isNotSameAs(first);
+        verify(taskService, times(3)).list(any(LambdaQueryWrapper.class));
+    }
+
     @Test
     void getExperimentSettingsShouldPickFirstMatchedTaskByCandidateOrder() {
         Task task1 = Task.builder().id(1L).did(1L).status(Status.RECOMMENDED).numNodes(100).epochs(10).build();
@@ -135,7 +159,7 @@ class RecommendServiceImplTest {
         Task task = Task.builder().id(1L).aid(11L).did(1L).status(Status.RECOMMENDED).numSteps(3).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
         when(algorithmService.listByIds(any())).thenReturn(List.of(Algorithm.builder().id(11L).algorithmName("FedAvg").build()));
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
                 Round.builder().tid(1L).roundNum(0).accuracy(0.2).precision(0.3).recall(0.4).f1Score(0.5).build(),
                 Round.builder().tid(1L).roundNum(2).accuracy(0.6).precision(0.7).recall(0.8).f1Score(0.9).build()
         ));
@@ -145,16 +169,16 @@ class RecommendServiceImplTest {
         assertThat(vo.getRounds()).containsExactly(1, 2, 3);
         assertThat(vo.getAlgorithms()).hasSize(1);
         assertThat(vo.getAlgorithms().get(0).getAccuracyRaw())
-                .containsExactly(0.2, null, 0.6);
+                .containsExactly(0.2, Double.NaN, 0.6);
         assertThat(vo.getAlgorithms().get(0).getAccuracySmooth())
-                .containsExactly(0.2, null, 0.6);
+                .containsExactly(0.2, Double.NaN, 0.6);
     }
 
     @Test
     void getTestCurvesShouldHandleNaNSigmaAndAllNullSeries() {
         Task task = Task.builder().id(1L).aid(null).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
                 Round.builder().tid(1L).roundNum(0).accuracy(null).precision(null).recall(null).f1Score(null).build(),
                 Round.builder().tid(1L).roundNum(1).accuracy(null).precision(null).recall(null).f1Score(null).build()
         ));
@@ -163,7 +187,7 @@ class RecommendServiceImplTest {
 
         assertThat(vo.getRounds()).containsExactly(1, 2);
         assertThat(vo.getAlgorithms().get(0).getAlgorithmName()).isNull();
-        assertThat(vo.getAlgorithms().get(0).getAccuracySmooth()).containsExactly(null, null);
+        assertThat(vo.getAlgorithms().get(0).getAccuracySmooth()).containsExactly(Double.NaN, Double.NaN);
         verify(algorithmService, never()).listByIds(any());
     }
 
@@ -172,7 +196,7 @@ class RecommendServiceImplTest {
         Task task = Task.builder().id(1L).aid(11L).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
         when(algorithmService.listByIds(any())).thenReturn(List.of(Algorithm.builder().id(11L).algorithmName("FedAvg").build()));
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
                 Round.builder().tid(1L).roundNum(0).accuracy(0.1).precision(0.2).recall(0.3).f1Score(0.4).build(),
                 Round.builder().tid(1L).roundNum(1).accuracy(0.2).precision(0.3).recall(0.4).f1Score(0.5).build()
         ));
@@ -182,6 +206,25 @@ class RecommendServiceImplTest {
         assertThat(vo.getAlgorithms().get(0).getAccuracySmooth()).containsExactly(0.1, 0.2);
     }
 
+    @Test
+    void getTestCurvesShouldLoadRoundsOfAllTasksInOneQuery() {
+        Task task1 = Task.builder().id(1L).aid(11L).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
+        Task task2 = Task.builder().id(2L).aid(11L).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
+        when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task1, task2));
+        when(algorithmService.listByIds(any())).thenReturn(List.of(Algorithm.builder().id(11L).algorithmName("FedAvg").build()));
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L, 2L))).thenReturn(List.of(
+                Round.builder().tid(1L).roundNum(0).accuracy(0.1).build(),
+                Round.builder().tid(2L).roundNum(1).accuracy(0.4).build()
+        ));
+
+        RecommendTestCurvesVO vo = service.getTestCurves(1L, List.of(1L, 2L), 0.0);
+
+        assertThat(vo.getAlgorithms().get(0).getAccuracyRaw()).containsExactly(0.1, Double.NaN);
+        assertThat(vo.getAlgorithms().get(1).getAccuracyRaw()).containsExactly(Double.NaN, 0.4);
+        verify(roundService, times(1)).listByTidsOrderByRoundNum(any());
+        verify(roundService, never()).listByTidOrderByRoundNum(any());
+    }
+
     @Test
     void getTestCurvesShouldReturnEmptyWhenOnlyNullCandidates() {
         RecommendTestCurvesVO vo = service.getTestCurves(1L, Arrays.asList(null, null), 2.5);
@@ -196,7 +239,7 @@ class RecommendServiceImplTest {
         Task task = Task.builder().id(1L).aid(11L).did(1L).status(Status.RECOMMENDED).numSteps(null).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
         when(algorithmService.listByIds(any())).thenReturn(List.of(Algorithm.builder().id(11L).algorithmName("FedAvg").build()));
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
                 Round.builder().tid(1L).roundNum(0).accuracy(0.2).precision(0.3).recall(0.4).f1Score(0.5).build(),
                 Round.builder().tid(1L).roundNum(1).accuracy(0.3).precision(0.4).recall(0.5).f1Score(0.6).build()
         ));
@@ -228,11 +271,8 @@ class RecommendServiceImplTest {
     void getClientMetricsShouldAcceptTrimmedPrecisionMetric() {
         Task task = Task.builder().id(1L).aid(null).did(1L).status(Status.RECOMMENDED).numNodes(1).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(10L).roundNum(0).build()
-        ));
-        when(clientService.listByRidIn(eq(List.of(10L)))).thenReturn(List.of(
-                Client.builder().rid(10L).clientIndex(0).precision(0.7).build()
+        when(clientService.listLatestPerClientIndexByTids(List.of(1L))).thenReturn(List.of(
+                Client.builder().tid(1L).rid(10L).clientIndex(0).precision(0.7).build()
         ));
 
         RecommendClientMetricsVO vo = service.getClientMetrics(1L, List.of(1L), "  Precision ");
@@ -240,16 +280,17 @@ class RecommendServiceImplTest {
         assertThat(vo.getMetric()).isEqualTo("precision");
         assertThat(vo.getAlgorithmNames()).containsExactly((String) null);
         assertThat(vo.getClients().get(0).getValues()).containsExactly(0.7);
-        verify(algorithmService, never()).getById(any());
+        verify(algorithmService, never()).listByIds(any());
     }
 
     @Test
-    void getClientMetricsShouldHandleRoundsWithoutRidAndClientListNull() {
+    void getClientMetricsShouldSkipRowsWithoutTidOrClientIndex() {
         Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numNodes(2).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(null).roundNum(0).build()
+        when(algorithmService.listByIds(List.of(7L))).thenReturn(List.of(Algorithm.builder().id(7L).algorithmName("FedAvg").build()));
+        when(clientService.listLatestPerClientIndexByTids(List.of(1L))).thenReturn(List.of(
+                Client.builder().tid(null).clientIndex(0).accuracy(0.8).build(),
+                Client.builder().tid(1L).clientIndex(null).accuracy(0.4).build()
         ));
 
         RecommendClientMetricsVO vo = service.getClientMetrics(1L, List.of(1L), "accuracy");
@@ -257,63 +298,39 @@ class RecommendServiceImplTest {
         assertThat(vo.getClients()).hasSize(2);
         assertThat(vo.getClients().get(0).getValues()).containsExactly((Double) null);
         assertThat(vo.getClients().get(1).getValues()).containsExactly((Double) null);
-        verify(clientService, never()).listByRidIn(any());
     }
 
     @Test
-    void getClientMetricsShouldKeepLatestWhenCandidateOlderOrTimestampNull() {
-        Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numNodes(1).build();
-        LocalDateTime now = LocalDateTime.now();
-        when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(10L).roundNum(1).build()
+    void getClientMetricsShouldFetchLatestRowsOfAllTasksInOneQuery() {
+        Task task1 = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numNodes(3).build();
+        Task task3 = Task.builder().id(3L).aid(null).did(1L).status(Status.RECOMMENDED).numNodes(2).build();
+        when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task1, task3));
+        when(algorithmService.listByIds(List.of(7L))).thenReturn(List.of(Algorithm.builder().id(7L).algorithmName("FedAvg").build()));
+        when(clientService.listLatestPerClientIndexByTids(List.of(1L, 3L))).thenReturn(List.of(
+                Client.builder().tid(1L).clientIndex(0).accuracy(0.6).build(),
+                Client.builder().tid(1L).clientIndex(1).accuracy(0.5).build(),
+                Client.builder().tid(3L).clientIndex(1).accuracy(0.9).build()
         ));
-        when(clientService.listByRidIn(eq(List.of(10L)))).thenReturn(List.of(
-                Client.builder().rid(10L).clientIndex(0).accuracy(0.8).timestamp(now).build(),
-                Client.builder().rid(10L).clientIndex(0).accuracy(0.2).timestamp(null).build(),
-                Client.builder().rid(10L).clientIndex(0).accuracy(0.3).timestamp(now.minusSeconds(10)).build(),
-                Client.builder().rid(10L).clientIndex(null).accuracy(0.4).timestamp(now.plusSeconds(1)).build()
-        ));
-
-        RecommendClientMetricsVO vo = service.getClientMetrics(1L, List.of(1L), "accuracy");
 
-        assertThat(vo.getClients().get(0).getValues()).containsExactly(0.8);
-    }
-
-    @Test
-    void getClientMetricsShouldReturnLatestMetricsByClient() {
-        Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numNodes(3).build();
-        when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(10L).roundNum(0).build(),
-                Round.builder().id(11L).roundNum(1).build()
-        ));
-        when(clientService.listByRidIn(eq(List.of(10L, 11L)))).thenReturn(List.of(
-                Client.builder().rid(10L).clientIndex(0).accuracy(0.3).timestamp(LocalDateTime.now().minusMinutes(2)).build(),
-                Client.builder().rid(11L).clientIndex(0).accuracy(0.6).timestamp(LocalDateTime.now().minusMinutes(1)).build(),
-                Client.builder().rid(11L).clientIndex(1).accuracy(0.4).timestamp(null).build(),
-                Client.builder().rid(11L).clientIndex(1).accuracy(0.5).timestamp(LocalDateTime.now()).build(),
-                Client.builder().rid(11L).clientIndex(1).accuracy(0.45).timestamp(null).build()
-        ));
-
-        RecommendClientMetricsVO vo = service.getClientMetrics(1L, List.of(1L, 2L), "accuracy");
+        RecommendClientMetricsVO vo = service.getClientMetrics(1L, List.of(1L, 2L, 3L), "accuracy");
 
         assertThat(vo.getMetric()).isEqualTo("accuracy");
-        assertThat(vo.getAlgorithmNames()).containsExactly("FedAvg", null);
+        assertThat(vo.getAlgorithmNames()).containsExactly("FedAvg", null, null);
         assertThat(vo.getClients()).hasSize(3);
-        assertThat(vo.getClients().get(0).getValues()).containsExactly(0.6, null);
-        assertThat(vo.getClients().get(1).getValues()).containsExactly(0.5, null);
-        assertThat(vo.getClients().get(2).getValues()).containsExactly(null, null);
+        assertThat(vo.getClients().get(0).getValues()).containsExactly(0.6, null, null);
+        assertThat(vo.getClients().get(1).getValues()).containsExactly(0.5, null, 0.9);
+        assertThat(vo.getClients().get(2).getValues()).containsExactly(null, null, null);
+        verify(clientService, times(1)).listLatestPerClientIndexByTids(any());
+        verify(clientService, never()).listByRidIn(any());
+        verify(roundService, never()).listByTidsOrderByRoundNum(any());
     }
 
     @Test
-    void getClientMetricsShouldReturnEmptyWhenTaskRoundsMissing() {
+    void getClientMetricsShouldReturnEmptyWhenTaskHasNoClients() {
         Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numNodes(2).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of());
+        when(algorithmService.listByIds(List.of(7L))).thenReturn(List.of(Algorithm.builder().id(7L).algorithmName("FedAvg").build()));
+        when(clientService.listLatestPerClientIndexByTids(List.of(1L))).thenReturn(List.of());
 
         RecommendClientMetricsVO vo = service.getClientMetrics(1L, List.of(1L), "accuracy");
 
@@ -332,10 +349,10 @@ class RecommendServiceImplTest {
     void getClientDetailShouldSupportRecallMetric() {
         Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(10L).roundNum(0).build(),
-                Round.builder().id(11L).roundNum(1).build()
+        when(algorithmService.listByIds(List.of(7L))).thenReturn(List.of(Algorithm.builder().id(7L).algorithmName("FedAvg").build()));
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
+                Round.builder().tid(1L).id(10L).roundNum(0).build(),
+                Round.builder().tid(1L).id(11L).roundNum(1).build()
         ));
         when(clientService.listByRidsAndClientIndex(eq(List.of(10L, 11L)), eq(0))).thenReturn(List.of(
                 Client.builder().rid(10L).clientIndex(0).recall(0.5).build(),
@@ -352,12 +369,12 @@ class RecommendServiceImplTest {
     void getClientDetailShouldIgnoreInvalidRidAndRoundRangeAndNullMetricValue() {
         Task task = Task.builder().id(1L).aid(null).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(10L).roundNum(0).build(),
-                Round.builder().id(11L).roundNum(1).build(),
-                Round.builder().id(12L).roundNum(-1).build(),
-                Round.builder().id(13L).roundNum(5).build(),
-                Round.builder().id(14L).roundNum(null).build()
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
+                Round.builder().tid(1L).id(10L).roundNum(0).build(),
+                Round.builder().tid(1L).id(11L).roundNum(1).build(),
+                Round.builder().tid(1L).id(12L).roundNum(-1).build(),
+                Round.builder().tid(1L).id(13L).roundNum(5).build(),
+                Round.builder().tid(1L).id(14L).roundNum(null).build()
         ));
         when(clientService.listByRidsAndClientIndex(eq(List.of(10L, 11L, 12L, 13L)), eq(0))).thenReturn(List.of(
                 Client.builder().rid(null).clientIndex(0).f1Score(0.2).build(),
@@ -375,6 +392,37 @@ class RecommendServiceImplTest {
         assertThat(vo.getAlgorithms().get(0).getValues()).containsExactly(0.6, 0.6);
     }
 
+    @Test
+    void getClientDetailShouldBatchRoundsClientsAndAlgorithmsAcrossTasks() {
+        Task task1 = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
+        Task task2 = Task.builder().id(2L).aid(8L).did(1L).status(Status.RECOMMENDED).numSteps(2).build();
+        when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task1, task2));
+        when(algorithmService.listByIds(List.of(7L, 8L))).thenReturn(List.of(
+                Algorithm.builder().id(7L).algorithmName("FedAvg").build(),
+                Algorithm.builder().id(8L).algorithmName("FedProx").build()
+        ));
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L, 2L))).thenReturn(List.of(
+                Round.builder().tid(1L).id(10L).roundNum(0).build(),
+                Round.builder().tid(1L).id(11L).roundNum(1).build(),
+                Round.builder().tid(2L).id(20L).roundNum(0).build()
+        ));
+        when(clientService.listByRidsAndClientIndex(eq(List.of(10L, 11L, 20L)), eq(0))).thenReturn(List.of(
+                Client.builder().rid(10L).clientIndex(0).accuracy(0.1).build(),
+                Client.builder().rid(20L).clientIndex(0).accuracy(0.5).build(),
+                Client.builder().rid(11L).clientIndex(0).accuracy(0.3).build(),
+                Client.builder().rid(99L).clientIndex(0).accuracy(0.9).build()
+        ));
+
+        RecommendClientDetailVO vo = service.getClientDetail(1L, List.of(2L, 1L), 0, "accuracy");
+
+        assertThat(vo.getAlgorithms()).extracting(RecommendClientDetailAlgorithmVO::getAlgorithmName)
+                .containsExactly("FedProx", "FedAvg");
+        assertThat(vo.getAlgorithms().get(0).getValues()).containsExactly(0.5, 0.5);
+        assertThat(vo.getAlgorithms().get(1).getValues()).containsExactly(0.1, 0.3);
+        verify(roundService, never()).listByTidOrderByRoundNum(any());
+        verify(algorithmService, never()).getById(any());
+    }
+
     @Test
     void getClientDetailShouldReturnEmptyForNullCandidates() {
         RecommendClientDetailVO vo = service.getClientDetail(1L, null, 0, "accuracy");
@@ -389,10 +437,10 @@ class RecommendServiceImplTest {
     void getClientDetailShouldReturnCarryForwardSeriesAndZeroForMissingTask() {
         Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numSteps(5).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(100L).roundNum(1).build(),
-                Round.builder().id(101L).roundNum(3).build()
+        when(algorithmService.listByIds(List.of(7L))).thenReturn(List.of(Algorithm.builder().id(7L).algorithmName("FedAvg").build()));
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
+                Round.builder().tid(1L).id(100L).roundNum(1).build(),
+                Round.builder().tid(1L).id(101L).roundNum(3).build()
         ));
         when(clientService.listByRidsAndClientIndex(eq(List.of(100L, 101L)), eq(0))).thenReturn(List.of(
                 Client.builder().rid(100L).clientIndex(0).accuracy(0.2).build(),
@@ -413,10 +461,10 @@ class RecommendServiceImplTest {
     void getClientDetailShouldFallbackRoundsCountWhenNumStepsMissing() {
         Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numSteps(null).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(List.of(
-                Round.builder().id(100L).roundNum(0).build(),
-                Round.builder().id(101L).roundNum(2).build()
+        when(algorithmService.listByIds(List.of(7L))).thenReturn(List.of(Algorithm.builder().id(7L).algorithmName("FedAvg").build()));
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of(
+                Round.builder().tid(1L).id(100L).roundNum(0).build(),
+                Round.builder().tid(1L).id(101L).roundNum(2).build()
         ));
         when(clientService.listByRidsAndClientIndex(eq(List.of(100L, 101L)), eq(0))).thenReturn(List.of());
 
@@ -430,8 +478,8 @@ class RecommendServiceImplTest {
     void getClientDetailShouldHandleRoundsWithNullListOnFallback() {
         Task task = Task.builder().id(1L).aid(7L).did(1L).status(Status.RECOMMENDED).numSteps(null).build();
         when(taskService.list(any(LambdaQueryWrapper.class))).thenReturn(List.of(task));
-        when(algorithmService.getById(7L)).thenReturn(Algorithm.builder().id(7L).algorithmName("FedAvg").build());
-        when(roundService.listByTidOrderByRoundNum(1L)).thenReturn(null, List.of());
+        when(algorithmService.listByIds(List.of(7L))).thenReturn(List.of(Algorithm.builder().id(7L).algorithmName("FedAvg").build()));
+        when(roundService.listByTidsOrderByRoundNum(List.of(1L))).thenReturn(List.of());
         when(clientService.listByRidsAndClientIndex(eq(List.of()), eq(0))).thenReturn(List.of());
 
         RecommendClientDetailVO vo = service.getClientDetail(1L, List.of(1L), 0, "accuracy");
@@ -10,6 +10,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.ingest.TaskOwnership;
 import ynu.jackielinn.server.listener.TrainingMessageListener;
 import ynu.jackielinn.server.utils.Const;
 
@@ -32,6 +33,9 @@ class RedisSubscriptionServiceImplTest {
     @Mock
     private TrainingMessageListener messageListener;
 
+    @Mock
+    private TaskOwnership taskOwnership;
+
     @BeforeEach
     void setUp() {
         // no-op
@@ -61,6 +65,18 @@ class RedisSubscriptionServiceImplTest {
                 .addMessageListener(org.mockito.ArgumentMatchers.eq(messageListener), org.mockito.ArgumentMatchers.any(ChannelTopic.class));
     }
 
+    @Test
+    void subscribeTaskShouldDoNothingInStreamOrPatternMode() {
+        ReflectionTestUtils.setField(service, "ingestMode", "stream");
+        service.subscribeTask(15L);
+        ReflectionTestUtils.setField(service, "ingestMode", "pubsub");
+        ReflectionTestUtils.setField(service, "subscription", "pattern");
+        service.subscribeTask(15L);
+
+        verify(redisMessageListenerContainer, never())
+                .addMessageListener(org.mockito.ArgumentMatchers.eq(messageListener), org.mockito.ArgumentMatchers.any(ChannelTopic.class));
+    }
+
     @Test
     void unsubscribeTaskShouldDoNothingWhenNotSubscribed() {
         service.unsubscribeTask(13L);
@@ -84,6 +100,7 @@ class RedisSubscriptionServiceImplTest {
                 Const.TASK_EXPERIMENT_CLIENT + 14L,
                 Const.TASK_EXPERIMENT_STATUS + 14L
         );
+        verify(taskOwnership, times(1)).release(14L);
     }
 
     @Test
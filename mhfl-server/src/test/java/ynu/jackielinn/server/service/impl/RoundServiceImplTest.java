@@ -8,14 +8,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import ynu.jackielinn.server.entity.Round;
+import ynu.jackielinn.server.mapper.RoundMapper;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,13 +32,41 @@ class RoundServiceImplTest {
     private RoundServiceImpl service;
 
     @Test
-    void saveRoundShouldDelegateToSave() {
+    void saveRoundShouldFillTimesAndUpsert() {
+        RoundMapper mapper = mock(RoundMapper.class);
+        doReturn(mapper).when(service).getBaseMapper();
         Round round = Round.builder().tid(1L).roundNum(1).build();
-        doReturn(true).when(service).save(round);
+        doAnswer(inv -> {
+            Round r = inv.getArgument(0);
+            r.setId(5L);
+            return 1;
+        }).when(mapper).upsert(round);
 
         service.saveRound(round);
 
-        verify(service).save(round);
+        verify(mapper).upsert(round);
+        verify(service, never()).getByTidAndRoundNum(any(), any());
+        assertThat(round.getId()).isEqualTo(5L);
+        assertThat(round.getCreateTime()).isNotNull();
+        assertThat(round.getUpdateTime()).isNotNull();
+    }
+
+    @Test
+    void saveRoundIfAbsentShouldKeepGivenTimesAndLookUpIdWhenDriverReturnsNone() {
+        RoundMapper mapper = mock(RoundMapper.class);
+        doReturn(mapper).when(service).getBaseMapper();
+        LocalDateTime created = LocalDateTime.of(2026, 1, 1, 0, 0);
+        Round round = Round.builder().tid(1L).roundNum(1).build();
+        round.setCreateTime(created);
+
+        doReturn(Round.builder().id(7L).build()).when(service).getByTidAndRoundNum(1L, 1);
+
+        service.saveRoundIfAbsent(round);
+
+        verify(mapper).insertIfAbsent(round);
+        assertThat(round.getId()).isEqualTo(7L);
+        assertThat(round.getCreateTime()).isEqualTo(created);
+        assertThat(round.getUpdateTime()).isNotNull();
     }
 
     @Test
@@ -67,6 +100,24 @@ class RoundServiceImplTest {
         assertThat(result).containsExactlyElementsOf(rounds);
     }
 
+    @Test
+    void listByTidsOrderByRoundNumShouldUseSingleInQuery() {
+        LambdaQueryChainWrapper<Round> chain = mock(LambdaQueryChainWrapper.class);
+        List<Round> rounds = List.of(
+                Round.builder().id(1L).tid(8L).roundNum(0).build(),
+                Round.builder().id(2L).tid(9L).roundNum(0).build()
+        );
+        doReturn(chain).when(service).lambdaQuery();
+        when(chain.in(anyRoundFn(), org.mockito.ArgumentMatchers.<Long>anyList())).thenReturn(chain);
+        when(chain.orderByAsc(anyRoundFn())).thenReturn(chain);
+        when(chain.list()).thenReturn(rounds);
+
+        assertThat(service.listByTidsOrderByRoundNum(List.of(8L, 9L))).containsExactlyElementsOf(rounds);
+        assertThat(service.listByTidsOrderByRoundNum(List.of())).isEmpty();
+        assertThat(service.listByTidsOrderByRoundNum(null)).isEmpty();
+        verify(chain, times(1)).list();
+    }
+
     private static <R> SFunction<Round, R> anyRoundFn() {
         return (SFunction<Round, R>) any(SFunction.class);
     }
@@ -20,6 +20,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.StatusMessage;
 import ynu.jackielinn.server.dto.request.CreateTaskRO;
 import ynu.jackielinn.server.dto.request.ListTaskRO;
 import ynu.jackielinn.server.dto.response.ClientVO;
@@ -39,7 +40,9 @@ import ynu.jackielinn.server.service.ClientService;
 import ynu.jackielinn.server.service.DatasetService;
 import ynu.jackielinn.server.service.RedisSubscriptionService;
 import ynu.jackielinn.server.service.RoundService;
+import ynu.jackielinn.server.websocket.ClusterPushRelay;
 import ynu.jackielinn.server.websocket.WebSocketSessionManager;
+import ynu.jackielinn.server.websocket.WebSocketSessionManager.PushStamp;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -68,6 +71,9 @@ class TaskServiceImplTest {
     @InjectMocks
     private TaskServiceImpl service;
 
+    @Mock
+    private RecommendResultCache recommendResultCache;
+
     @Mock
     private TaskMapper taskMapper;
 
@@ -86,6 +92,9 @@ class TaskServiceImplTest {
     @Mock
     private WebSocketSessionManager sessionManager;
 
+    @Mock
+    private ClusterPushRelay clusterPushRelay;
+
     @Mock
     private ApplicationContext applicationContext;
 
@@ -363,11 +372,13 @@ class TaskServiceImplTest {
                 .when(service).getById(3L);
         doReturn(true).when(service).update(any(LambdaUpdateWrapper.class));
         assertThat(service.setRecommend(3L)).isNull();
+        verify(recommendResultCache).invalidateAll();
 
         doReturn(Task.builder().id(4L).did(1L).aid(2L).numNodes(10).fraction(0.1).classesPerNode(5).lowProb(0.2).numSteps(20).epochs(2).status(Status.RECOMMENDED).build())
                 .when(service).getById(4L);
         doReturn(false).when(service).update(any(LambdaUpdateWrapper.class));
         assertThat(service.setRecommend(4L)).isNotNull();
+        verify(recommendResultCache, times(1)).invalidateAll();
     }
 
     @Test
@@ -649,6 +660,10 @@ class TaskServiceImplTest {
                 .thenReturn(new ResponseEntity<>("{\"code\":500,\"message\":\"stop-failed\"}", HttpStatus.OK),
                         new ResponseEntity<>("{\"code\":200,\"data\":{\"stopped\":true}}", HttpStatus.OK));
         doReturn(true).when(service).updateById(any(Task.class));
+        doAnswer(inv -> {
+            inv.<Consumer<PushStamp>>getArgument(2).accept(new PushStamp("e1", 5L));
+            return null;
+        }).when(sessionManager).sendToTask(eq(9L), any(), any(Consumer.class));
 
         String fail = service.stopTask(9L, 7L);
         String ok = service.stopTask(9L, 7L);
@@ -656,8 +671,9 @@ class TaskServiceImplTest {
         assertThat(fail).isEqualTo("stop-failed");
         assertThat(ok).isNull();
         assertThat(running.getStatus()).isEqualTo(Status.CANCELLED);
-        verify(sessionManager).sendToTask(eq(9L), any());
+        verify(sessionManager).sendToTask(eq(9L), any(), any(Consumer.class));
         verify(sessionManager).closeAllSessionsForTask(9L);
+        verify(clusterPushRelay).publishStatus(any(StatusMessage.class), eq(true), eq(new PushStamp("e1", 5L)));
     }
 
     @Test
@@ -715,38 +731,32 @@ class TaskServiceImplTest {
         assertThat(service.getTaskClientsLatest(2L, 7L, false)).isNull();
 
         doReturn(Task.builder().id(3L).uid(7L).numNodes(3).status(Status.SUCCESS).build()).when(service).getById(3L);
-        when(roundService.listByTidOrderByRoundNum(3L)).thenReturn(List.of(
-                Round.builder().id(11L).roundNum(1).build(),
-                Round.builder().id(12L).roundNum(2).build()
+        when(clientService.listLatestPerClientIndexByTid(3L)).thenReturn(List.of(
+                Client.builder().id(99L).rid(12L).roundNum(2).clientIndex(1).accuracy(0.88).build(),
+                Client.builder().id(98L).rid(11L).roundNum(1).clientIndex(5).build()
         ));
-        when(clientService.getLatestByRidsAndClientIndex(List.of(11L, 12L), 0)).thenReturn(null);
-        when(clientService.getLatestByRidsAndClientIndex(List.of(11L, 12L), 1))
-                .thenReturn(Client.builder().id(99L).rid(12L).clientIndex(1).accuracy(0.88).build());
-        when(clientService.getLatestByRidsAndClientIndex(List.of(11L, 12L), 2)).thenReturn(null);
 
         List<ClientVO> result = service.getTaskClientsLatest(3L, 7L, false);
 
         assertThat(result).hasSize(3);
         assertThat(result.get(0).getRoundNum()).isEqualTo(-1);
         assertThat(result.get(1).getRoundNum()).isEqualTo(2);
+        assertThat(result.get(1).getAccuracy()).isEqualTo(0.88);
         assertThat(result.get(2).getRoundNum()).isEqualTo(-1);
+        verify(clientService, times(1)).listLatestPerClientIndexByTid(3L);
+        verify(roundService, never()).listByTidOrderByRoundNum(3L);
     }
 
     @Test
     void getTaskClientsLatestShouldCoverNullNumNodesAndNullRid() {
         doReturn(Task.builder().id(31L).uid(7L).numNodes(null).status(Status.SUCCESS).build()).when(service).getById(31L);
-        when(roundService.listByTidOrderByRoundNum(31L)).thenReturn(List.of(
-                Round.builder().id(21L).roundNum(1).build()
-        ));
         List<ClientVO> empty = service.getTaskClientsLatest(31L, 7L, false);
         assertThat(empty).isEmpty();
+        verify(clientService, never()).listLatestPerClientIndexByTid(31L);
 
         doReturn(Task.builder().id(32L).uid(7L).numNodes(1).status(Status.SUCCESS).build()).when(service).getById(32L);
-        when(roundService.listByTidOrderByRoundNum(32L)).thenReturn(List.of(
-                Round.builder().id(22L).roundNum(2).build()
-        ));
-        when(clientService.getLatestByRidsAndClientIndex(List.of(22L), 0))
-                .thenReturn(Client.builder().id(100L).rid(null).clientIndex(0).build());
+        when(clientService.listLatestPerClientIndexByTid(32L))
+                .thenReturn(List.of(Client.builder().id(100L).rid(null).roundNum(2).clientIndex(0).build()));
         List<ClientVO> one = service.getTaskClientsLatest(32L, 7L, false);
         assertThat(one).hasSize(1);
         assertThat(one.get(0).getRoundNum()).isEqualTo(-1);
@@ -1,34 +1,54 @@
 package ynu.jackielinn.server.service.impl;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationContext;
 import org.springframework.test.util.ReflectionTestUtils;
 import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.ClientBatchMessage;
 import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RelayMessage;
 import ynu.jackielinn.server.dto.message.RoundMessage;
 import ynu.jackielinn.server.dto.message.StatusMessage;
 import ynu.jackielinn.server.entity.Client;
 import ynu.jackielinn.server.entity.Round;
 import ynu.jackielinn.server.entity.Task;
-import ynu.jackielinn.server.service.ClientService;
+import ynu.jackielinn.server.ingest.ClientWriteBuffer;
+import ynu.jackielinn.server.ingest.RoundIdIndex;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskOwnership;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
+import ynu.jackielinn.server.ingest.TaskStateTracker;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
 import ynu.jackielinn.server.service.RedisSubscriptionService;
 import ynu.jackielinn.server.service.RoundService;
 import ynu.jackielinn.server.service.TaskService;
+import ynu.jackielinn.server.websocket.AdminTaskFeed;
+import ynu.jackielinn.server.websocket.ClientFrameCoalescer;
+import ynu.jackielinn.server.websocket.ClusterPushRelay;
 import ynu.jackielinn.server.websocket.WebSocketSessionManager;
+import ynu.jackielinn.server.websocket.WebSocketSessionManager.PushStamp;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -37,6 +57,8 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class TrainingMessageHandlerImplTest {
 
+    private static final PushStamp STAMP = new PushStamp("e1", 100L);
+
     @InjectMocks
     private TrainingMessageHandlerImpl service;
 
@@ -44,7 +66,13 @@ class TrainingMessageHandlerImplTest {
     private RoundService roundService;
 
     @Mock
-    private ClientService clientService;
+    private ClientWriteBuffer clientWriteBuffer;
+
+    @Spy
+    private RoundIdIndex roundIdIndex = new RoundIdIndex();
+
+    @Spy
+    private TaskSnapshotBuffer taskSnapshotBuffer = new TaskSnapshotBuffer();
 
     @Mock
     private TaskService taskService;
@@ -52,26 +80,107 @@ class TrainingMessageHandlerImplTest {
     @Mock
     private WebSocketSessionManager sessionManager;
 
+    @Mock
+    private TrainingMetrics trainingMetrics;
+
+    @Mock
+    private ClientFrameCoalescer clientFrameCoalescer;
+
+    @Mock
+    private AdminTaskFeed adminTaskFeed;
+
+    @Mock
+    private ClusterPushRelay clusterPushRelay;
+
+    @Mock
+    private TaskOwnership taskOwnership;
+
     @Mock
     private ApplicationContext applicationContext;
 
     @Mock
     private RedisSubscriptionService redisSubscriptionService;
 
+    @Mock
+    private TaskOrderedDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        TaskStateTracker taskStateTracker = new TaskStateTracker();
+        ReflectionTestUtils.setField(taskStateTracker, "taskService", taskService);
+        ReflectionTestUtils.setField(service, "taskStateTracker", taskStateTracker);
+        lenient().when(clientWriteBuffer.flush(any())).thenReturn(true);
+        lenient().doAnswer(inv -> {
+            Consumer<PushStamp> onPushed = inv.getArgument(2);
+            if (onPushed != null) {
+                onPushed.accept(STAMP);
+            }
+            return null;
+        }).when(sessionManager).sendToTask(any(), any(), any());
+    }
+
+    @Test
+    void clusterModeShouldOpenPushStreamBeforeProcessing() {
+        when(clusterPushRelay.isEnabled()).thenReturn(true);
+        RoundMessage message = RoundMessage.builder().taskId(7L).roundNum(0).accuracy(0.5).build();
+
+        service.handleRoundMessage(message);
+
+        InOrder inOrder = inOrder(sessionManager);
+        inOrder.verify(sessionManager).openStream(7L);
+        inOrder.verify(sessionManager).sendToTask(eq(7L), eq(message), any());
+    }
+
     @Test
     void handleRoundMessageShouldUpdateExistingRoundAndTaskMetrics() {
         RoundMessage message = RoundMessage.builder()
                 .taskId(1L).roundNum(2)
                 .loss(0.4).accuracy(0.8).precision(0.7).recall(0.6).f1Score(0.65)
                 .build();
-        when(roundService.getByTidAndRoundNum(1L, 2)).thenReturn(Round.builder().id(100L).tid(1L).roundNum(2).build());
         when(taskService.getById(1L)).thenReturn(Task.builder().id(1L).numSteps(10).status(Status.NOT_STARTED).accuracy(0.7).build());
 
         service.handleRoundMessage(message);
 
-        verify(roundService).updateById(any(Round.class));
-        verify(taskService, times(2)).updateById(any(Task.class));
-        verify(sessionManager).sendToTask(1L, message);
+        ArgumentCaptor<Round> roundCaptor = ArgumentCaptor.forClass(Round.class);
+        verify(roundService).saveRound(roundCaptor.capture());
+        assertThat(roundCaptor.getValue().getTid()).isEqualTo(1L);
+        assertThat(roundCaptor.getValue().getRoundNum()).isEqualTo(2);
+        assertThat(roundCaptor.getValue().getAccuracy()).isEqualTo(0.8);
+        ArgumentCaptor<Task> captor = ArgumentCaptor.forClass(Task.class);
+        verify(taskService).updateById(captor.capture());
+        assertThat(captor.getValue().getStatus()).isEqualTo(Status.IN_PROGRESS);
+        assertThat(captor.getValue().getAccuracy()).isEqualTo(0.8);
+        verify(sessionManager).sendToTask(eq(1L), eq(message), any());
+        verify(adminTaskFeed).onRound(1L, 2, Status.IN_PROGRESS, 0.8);
+        verify(clusterPushRelay).publishRound(message, Status.IN_PROGRESS, 0.8, STAMP);
+    }
+
+    @Test
+    void handleRoundMessageShouldFlushBufferedClientsBeforeWritingRound() {
+        RoundMessage message = RoundMessage.builder().taskId(5L).roundNum(1).accuracy(0.5).build();
+        when(taskService.getById(5L)).thenReturn(null);
+
+        service.handleRoundMessage(message);
+
+        InOrder inOrder = inOrder(clientWriteBuffer, roundService, clientFrameCoalescer, sessionManager);
+        inOrder.verify(clientWriteBuffer).flush(5L);
+        inOrder.verify(roundService).saveRound(any(Round.class));
+        inOrder.verify(clientFrameCoalescer).flush(5L);
+        inOrder.verify(sessionManager).sendToTask(eq(5L), eq(message), any());
+        assertThat(taskSnapshotBuffer.snapshot(5L).getRounds()).containsExactly(message);
+    }
+
+    @Test
+    void handleRoundMessageShouldNotWriteOrPushRoundWhenClientFlushFails() {
+        RoundMessage message = RoundMessage.builder().taskId(6L).roundNum(1).accuracy(0.5).build();
+        when(clientWriteBuffer.flush(6L)).thenReturn(false);
+
+        assertThat(service.handleRoundMessage(message)).isFalse();
+
+        verify(roundService, never()).saveRound(any(Round.class));
+        verify(sessionManager, never()).sendToTask(eq(6L), any(), any());
+        verify(clusterPushRelay, never()).publishRound(any(), any(), any(), any());
+        assertThat(roundIdIndex.get(6L, 1)).isZero();
     }
 
     @Test
@@ -80,38 +189,37 @@ class TrainingMessageHandlerImplTest {
                 .taskId(2L).roundNum(4)
                 .loss(0.3).accuracy(0.9).precision(0.88).recall(0.87).f1Score(0.875)
                 .build();
-        when(roundService.getByTidAndRoundNum(2L, 4)).thenReturn(null);
         when(taskService.getById(2L)).thenReturn(Task.builder().id(2L).numSteps(5).status(Status.IN_PROGRESS).accuracy(0.85).build());
 
         service.handleRoundMessage(message);
 
         verify(roundService).saveRound(any(Round.class));
         ArgumentCaptor<Task> captor = ArgumentCaptor.forClass(Task.class);
-        verify(taskService, times(2)).updateById(captor.capture());
-        assertThat(captor.getAllValues().stream().anyMatch(t -> t.getStatus() == Status.SUCCESS)).isTrue();
+        verify(taskService).updateById(captor.capture());
+        assertThat(captor.getValue().getStatus()).isEqualTo(Status.SUCCESS);
+        assertThat(captor.getValue().getAccuracy()).isEqualTo(0.9);
     }
 
     @Test
     void handleRoundMessageShouldHandleTaskNullAndAccuracyNull() {
         RoundMessage message = RoundMessage.builder().taskId(3L).roundNum(1).accuracy(null).build();
-        when(roundService.getByTidAndRoundNum(3L, 1)).thenReturn(null);
         when(taskService.getById(3L)).thenReturn(null);
 
-        service.handleRoundMessage(message);
+        assertThat(service.handleRoundMessage(message)).isTrue();
 
         verify(roundService).saveRound(any(Round.class));
         verify(taskService, never()).updateById(any(Task.class));
-        verify(sessionManager).sendToTask(3L, message);
+        verify(sessionManager).sendToTask(eq(3L), eq(message), any());
     }
 
     @Test
     void handleRoundMessageShouldSwallowException() {
         RoundMessage message = RoundMessage.builder().taskId(4L).roundNum(1).build();
-        when(roundService.getByTidAndRoundNum(4L, 1)).thenThrow(new RuntimeException("boom"));
+        doThrow(new RuntimeException("boom")).when(roundService).saveRound(any(Round.class));
 
-        service.handleRoundMessage(message);
+        assertThat(service.handleRoundMessage(message)).isFalse();
 
-        verify(sessionManager, never()).sendToTask(eq(4L), any());
+        verify(sessionManager, never()).sendToTask(eq(4L), any(), any());
     }
 
     @Test
@@ -121,16 +229,17 @@ class TrainingMessageHandlerImplTest {
                 .loss(0.5).accuracy(0.6).precision(0.61).recall(0.62).f1Score(0.63)
                 .timestamp("2026-03-24T12:00:00")
                 .build();
-        when(roundService.getByTidAndRoundNum(10L, 1)).thenReturn(Round.builder().id(99L).tid(10L).roundNum(1).build());
+        roundIdIndex.put(10L, 1, 99L);
 
-        service.handleClientMessage(message);
+        assertThat(service.handleClientMessage(message)).isTrue();
 
-        verify(roundService, never()).saveRound(any(Round.class));
+        verify(roundService, never()).saveRoundIfAbsent(any(Round.class));
         ArgumentCaptor<Client> captor = ArgumentCaptor.forClass(Client.class);
-        verify(clientService).saveClient(captor.capture());
+        verify(clientWriteBuffer).add(eq(10L), captor.capture());
         assertThat(captor.getValue().getRid()).isEqualTo(99L);
         assertThat(captor.getValue().getTimestamp()).isNotNull();
-        verify(sessionManager).sendToTask(10L, message);
+        verify(clientFrameCoalescer).addClient(10L, message);
+        assertThat(taskSnapshotBuffer.snapshot(10L).getClients()).containsExactly(message);
     }
 
     @Test
@@ -139,53 +248,100 @@ class TrainingMessageHandlerImplTest {
                 .taskId(11L).roundNum(2).clientIndex(4)
                 .timestamp("bad-ts")
                 .build();
-        when(roundService.getByTidAndRoundNum(11L, 2)).thenReturn(null);
         doAnswer(invocation -> {
             Round round = invocation.getArgument(0);
             round.setId(123L);
             return null;
-        }).when(roundService).saveRound(any(Round.class));
+        }).when(roundService).saveRoundIfAbsent(any(Round.class));
 
         service.handleClientMessage(message);
 
-        verify(roundService).saveRound(any(Round.class));
+        verify(roundService).saveRoundIfAbsent(any(Round.class));
         ArgumentCaptor<Client> captor = ArgumentCaptor.forClass(Client.class);
-        verify(clientService).saveClient(captor.capture());
+        verify(clientWriteBuffer).add(eq(11L), captor.capture());
         assertThat(captor.getValue().getRid()).isEqualTo(123L);
         assertThat(captor.getValue().getTimestamp()).isNotNull();
     }
 
+    @Test
+    void handleClientMessageShouldReuseCachedRoundIdWithoutWriting() {
+        ClientMessage first = ClientMessage.builder().taskId(14L).roundNum(0).clientIndex(0).build();
+        ClientMessage second = ClientMessage.builder().taskId(14L).roundNum(0).clientIndex(1).build();
+        doAnswer(invocation -> {
+            Round round = invocation.getArgument(0);
+            round.setId(140L);
+            return null;
+        }).when(roundService).saveRoundIfAbsent(any(Round.class));
+
+        service.handleClientMessage(first);
+        service.handleClientMessage(second);
+
+        verify(roundService, times(1)).saveRoundIfAbsent(any(Round.class));
+        verify(roundService, never()).getByTidAndRoundNum(any(), any());
+        ArgumentCaptor<Client> captor = ArgumentCaptor.forClass(Client.class);
+        verify(clientWriteBuffer, times(2)).add(eq(14L), captor.capture());
+        assertThat(captor.getAllValues()).allMatch(c -> c.getRid() == 140L);
+    }
+
+    @Test
+    void handleClientMessageShouldNotBufferWhenRoundIdMissing() {
+        ClientMessage message = ClientMessage.builder().taskId(15L).roundNum(0).clientIndex(0).build();
+
+        service.handleClientMessage(message);
+
+        verify(clientWriteBuffer, never()).add(any(), any(Client.class));
+        verify(clientFrameCoalescer, never()).addClient(eq(15L), any());
+    }
+
+    @Test
+    void handleRoundMessageShouldIndexUpsertedRoundId() {
+        doAnswer(invocation -> {
+            Round round = invocation.getArgument(0);
+            round.setId(160L);
+            return null;
+        }).when(roundService).saveRound(any(Round.class));
+        when(taskService.getById(16L)).thenReturn(null);
+
+        service.handleRoundMessage(RoundMessage.builder().taskId(16L).roundNum(3).build());
+        service.handleClientMessage(ClientMessage.builder().taskId(16L).roundNum(3).clientIndex(0).build());
+
+        verify(roundService, never()).saveRoundIfAbsent(any(Round.class));
+        ArgumentCaptor<Client> captor = ArgumentCaptor.forClass(Client.class);
+        verify(clientWriteBuffer).add(eq(16L), captor.capture());
+        assertThat(captor.getValue().getRid()).isEqualTo(160L);
+    }
+
     @Test
     void handleClientMessageShouldHandleNullAndOffsetTimestamps() {
         ClientMessage m1 = ClientMessage.builder().taskId(12L).roundNum(1).clientIndex(1).timestamp(null).build();
         ClientMessage m2 = ClientMessage.builder().taskId(12L).roundNum(2).clientIndex(2).timestamp("2026-03-24T12:00:00+08:00").build();
-        when(roundService.getByTidAndRoundNum(12L, 1)).thenReturn(Round.builder().id(1L).build());
-        when(roundService.getByTidAndRoundNum(12L, 2)).thenReturn(Round.builder().id(2L).build());
+        roundIdIndex.put(12L, 1, 1L);
+        roundIdIndex.put(12L, 2, 2L);
 
         service.handleClientMessage(m1);
         service.handleClientMessage(m2);
 
-        verify(clientService, times(2)).saveClient(any(Client.class));
+        verify(clientWriteBuffer, times(2)).add(eq(12L), any(Client.class));
     }
 
     @Test
     void handleClientMessageShouldSwallowException() {
         ClientMessage message = ClientMessage.builder().taskId(13L).roundNum(1).clientIndex(1).build();
-        doThrow(new RuntimeException("x")).when(roundService).getByTidAndRoundNum(13L, 1);
+        doThrow(new RuntimeException("x")).when(roundService).saveRoundIfAbsent(any(Round.class));
 
-        service.handleClientMessage(message);
+        assertThat(service.handleClientMessage(message)).isFalse();
 
-        verify(sessionManager, never()).sendToTask(eq(13L), any());
+        verify(clientFrameCoalescer, never()).addClient(eq(13L), any());
     }
 
     @Test
     void handleStatusMessageShouldReturnWhenUnknownStatus() {
         StatusMessage message = StatusMessage.builder().taskId(20L).status("UNKNOWN").build();
 
-        service.handleStatusMessage(message);
+        assertThat(service.handleStatusMessage(message)).isTrue();
 
         verify(taskService, never()).updateById(any(Task.class));
-        verify(sessionManager, never()).sendToTask(eq(20L), any());
+        verify(sessionManager, never()).sendToTask(eq(20L), any(), any());
     }
 
     @Test
@@ -197,7 +353,11 @@ class TrainingMessageHandlerImplTest {
 
         verify(taskService).updateById(any(Task.class));
         verify(redisSubscriptionService, never()).unsubscribeTask(any());
-        verify(sessionManager).sendToTask(21L, message);
+        verify(clientWriteBuffer, never()).flushAndRemove(any());
+        verify(sessionManager).sendToTask(eq(21L), eq(message), any());
+        verify(adminTaskFeed).onStatus(21L, Status.IN_PROGRESS);
+        verify(clusterPushRelay).publishStatus(message, false, STAMP);
+        verify(taskOwnership, never()).release(any());
     }
 
     @Test
@@ -209,6 +369,32 @@ class TrainingMessageHandlerImplTest {
             service.handleStatusMessage(message);
         }
         verify(redisSubscriptionService, times(3)).unsubscribeTask(22L);
+        verify(clientWriteBuffer, times(3)).flushAndRemove(22L);
+        verify(roundIdIndex, times(3)).evict(22L);
+        verify(taskSnapshotBuffer, times(3)).evict(22L);
+        verify(sessionManager, times(3)).releaseStream(22L);
+        verify(taskOwnership, times(3)).release(22L);
+    }
+
+    @Test
+    void handleStatusMessageShouldReportFailedClientFlushOnTerminalStatus() {
+        when(applicationContext.getBean(RedisSubscriptionService.class)).thenReturn(redisSubscriptionService);
+        when(taskService.getById(25L)).thenReturn(Task.builder().id(25L).build());
+        when(clientWriteBuffer.flushAndRemove(25L)).thenReturn(false);
+
+        boolean stored = service.handleStatusMessage(StatusMessage.builder().taskId(25L).status("SUCCESS").build());
+
+        assertThat(stored).isFalse();
+        verify(taskService).updateById(any(Task.class));
+    }
+
+    @Test
+    void handleStatusMessageShouldReportSuccessWhenTerminalFlushSucceeds() {
+        when(applicationContext.getBean(RedisSubscriptionService.class)).thenReturn(redisSubscriptionService);
+        when(taskService.getById(26L)).thenReturn(Task.builder().id(26L).build());
+        when(clientWriteBuffer.flushAndRemove(26L)).thenReturn(true);
+
+        assertThat(service.handleStatusMessage(StatusMessage.builder().taskId(26L).status("FAILED").build())).isTrue();
     }
 
     @Test
@@ -220,7 +406,7 @@ class TrainingMessageHandlerImplTest {
 
         verify(taskService, never()).updateById(any(Task.class));
         verify(redisSubscriptionService, never()).unsubscribeTask(any());
-        verify(sessionManager).sendToTask(23L, message);
+        verify(sessionManager).sendToTask(eq(23L), eq(message), any());
     }
 
     @Test
@@ -228,9 +414,9 @@ class TrainingMessageHandlerImplTest {
         StatusMessage message = StatusMessage.builder().taskId(24L).status("SUCCESS").build();
         when(taskService.getById(24L)).thenThrow(new RuntimeException("status-ex"));
 
-        service.handleStatusMessage(message);
+        assertThat(service.handleStatusMessage(message)).isFalse();
 
-        verify(sessionManager, never()).sendToTask(eq(24L), any());
+        verify(sessionManager, never()).sendToTask(eq(24L), any(), any());
     }
 
     @Test
@@ -262,18 +448,198 @@ class TrainingMessageHandlerImplTest {
     }
 
     @Test
-    void lastRoundTimeShouldBeUpdatedAndRemoved() {
+    void parseTimestampShouldParseIsoFormatsExactly() {
+        LocalDateTime plain = ReflectionTestUtils.invokeMethod(service, "parseTimestamp", "2026-03-24T12:00:05");
+        LocalDateTime micros = ReflectionTestUtils.invokeMethod(service, "parseTimestamp", "2026-03-24T12:00:05.123456");
+        LocalDateTime utc = ReflectionTestUtils.invokeMethod(service, "parseTimestamp", "2026-03-24T12:00:05.5Z");
+        LocalDateTime offset = ReflectionTestUtils.invokeMethod(service, "parseTimestamp", "2024-02-29T23:59:59-05:00");
+
+        assertThat(plain).isEqualTo(LocalDateTime.of(2026, 3, 24, 12, 0, 5));
+        assertThat(micros).isEqualTo(LocalDateTime.of(2026, 3, 24, 12, 0, 5, 123_456_000));
+        assertThat(utc).isEqualTo(LocalDateTime.of(2026, 3, 24, 12, 0, 5, 500_000_000));
+        assertThat(offset).isEqualTo(LocalDateTime.of(2024, 2, 29, 23, 59, 59));
+    }
+
+    @Test
+    void parseTimestampShouldFallBackToNowForMalformedInput() {
+        LocalDateTime before = LocalDateTime.now();
+        for (String bad : new String[]{"2023-02-29T00:00:00", "2026-13-01T00:00:00", "2026-03-24 12:00:00",
+                "2026-03-24T12:00:00.", "2026-03-24T12:00:00+0800", "2026-03-24T12:00:00.1234567890", "2026-03-24T24:00:00"}) {
+            LocalDateTime parsed = ReflectionTestUtils.invokeMethod(service, "parseTimestamp", bad);
+            assertThat(parsed).as(bad).isAfterOrEqualTo(before);
+        }
+    }
+
+    @Test
+    void lastMessageTimeShouldBeUpdatedAndRemoved() {
         RoundMessage rm = RoundMessage.builder().taskId(30L).roundNum(1).accuracy(0.8).build();
-        when(roundService.getByTidAndRoundNum(30L, 1)).thenReturn(null);
         when(taskService.getById(30L)).thenReturn(null);
         service.handleRoundMessage(rm);
 
-        Map<Long, Long> map = (Map<Long, Long>) ReflectionTestUtils.getField(service, "lastRoundTime");
+        Map<Long, Long> map = lastMessageTime();
         assertThat(map).containsKey(30L);
 
         when(taskService.getById(30L)).thenReturn(Task.builder().id(30L).build());
         when(applicationContext.getBean(RedisSubscriptionService.class)).thenReturn(redisSubscriptionService);
+        when(clientWriteBuffer.flushAndRemove(30L)).thenReturn(true);
         service.handleStatusMessage(StatusMessage.builder().taskId(30L).status("SUCCESS").build());
         assertThat(map).doesNotContainKey(30L);
     }
+
+    @Test
+    void terminalStatusWithFailedFlushShouldKeepTaskForIdleEviction() {
+        when(clientWriteBuffer.flushAndRemove(31L)).thenReturn(false);
+
+        service.handleStatusMessage(StatusMessage.builder().taskId(31L).status("FAILED").build());
+
+        assertThat(lastMessageTime()).containsKey(31L);
+    }
+
+    @Test
+    void evictIdleTasksShouldFlushAndEvictIdleTaskOnItsLane() {
+        runDispatchedInline();
+        assignRoundIds();
+        when(clientWriteBuffer.flushAndRemove(32L)).thenReturn(true);
+        when(taskService.getById(32L)).thenReturn(Task.builder().id(32L).numSteps(10).status(Status.IN_PROGRESS).build());
+        service.handleRoundMessage(RoundMessage.builder().taskId(32L).roundNum(0).accuracy(0.5).build());
+        service.handleClientMessage(ClientMessage.builder().taskId(32L).roundNum(1).clientIndex(0).build());
+        TaskStateTracker taskStateTracker = (TaskStateTracker) ReflectionTestUtils.getField(service, "taskStateTracker");
+        assertThat(taskStateTracker.taskIds()).contains(32L);
+        lastMessageTime().put(32L, System.currentTimeMillis() - 600_001);
+
+        service.evictIdleTasks();
+
+        verify(dispatcher).dispatch(eq(32L), any());
+        verify(clientWriteBuffer).flushAndRemove(32L);
+        assertThat(taskStateTracker.taskIds()).doesNotContain(32L);
+        assertThat(roundIdIndex.taskIds()).doesNotContain(32L);
+        assertThat(taskSnapshotBuffer.size()).isZero();
+        verify(sessionManager).releaseStreamIfIdle(32L);
+        verify(taskOwnership).release(32L);
+        assertThat(lastMessageTime()).doesNotContainKey(32L);
+    }
+
+    @Test
+    void evictIdleTasksShouldKeepRecentlyActiveTasks() {
+        assignRoundIds();
+        service.handleRoundMessage(RoundMessage.builder().taskId(33L).roundNum(0).accuracy(0.5).build());
+
+        service.evictIdleTasks();
+
+        verify(dispatcher, never()).dispatch(any(), any());
+        assertThat(roundIdIndex.taskIds()).contains(33L);
+        assertThat(lastMessageTime()).containsKey(33L);
+    }
+
+    @Test
+    void evictIdleTasksShouldKeepStateWhenFinalFlushFails() {
+        runDispatchedInline();
+        assignRoundIds();
+        when(clientWriteBuffer.flushAndRemove(34L)).thenReturn(false, true);
+        service.handleRoundMessage(RoundMessage.builder().taskId(34L).roundNum(0).accuracy(0.5).build());
+        long idleSince = System.currentTimeMillis() - 600_001;
+        lastMessageTime().put(34L, idleSince);
+
+        service.evictIdleTasks();
+
+        assertThat(lastMessageTime()).containsEntry(34L, idleSince);
+        assertThat(roundIdIndex.taskIds()).contains(34L);
+        assertThat(taskSnapshotBuffer.size()).isEqualTo(1);
+        verify(taskOwnership, never()).release(34L);
+
+        service.evictIdleTasks();
+
+        assertThat(roundIdIndex.taskIds()).doesNotContain(34L);
+        assertThat(lastMessageTime()).doesNotContainKey(34L);
+    }
+
+    @Test
+    void evictIdleTasksShouldSkipTaskThatReceivedMessageBeforeEvictionRan() {
+        long idleSince = System.currentTimeMillis() - 600_001;
+        lastMessageTime().put(35L, idleSince);
+        doAnswer(inv -> {
+            lastMessageTime().put(35L, System.currentTimeMillis());
+            inv.<Runnable>getArgument(1).run();
+            return null;
+        }).when(dispatcher).dispatch(eq(35L), any());
+
+        service.evictIdleTasks();
+
+        verify(clientWriteBuffer, never()).flushAndRemove(any());
+        assertThat(lastMessageTime()).containsKey(35L);
+    }
+
+    @Test
+    void evictIdleTasksShouldRetryNextCycleWhenLaneIsFull() {
+        lastMessageTime().put(36L, System.currentTimeMillis() - 600_001);
+        doThrow(new RejectedExecutionException("full")).when(dispatcher).dispatch(eq(36L), any());
+
+        service.evictIdleTasks();
+
+        verify(clientWriteBuffer, never()).flushAndRemove(any());
+        assertThat(lastMessageTime()).containsKey(36L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Long> lastMessageTime() {
+        return (Map<Long, Long>) ReflectionTestUtils.getField(service, "lastMessageTime");
+    }
+
+    private void assignRoundIds() {
+        doAnswer(inv -> {
+            inv.<Round>getArgument(0).setId(500L);
+            return null;
+        }).when(roundService).saveRound(any(Round.class));
+    }
+
+    private void runDispatchedInline() {
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return null;
+        }).when(dispatcher).dispatch(any(), any());
+    }
+
+    @Test
+    void handleRelayedRoundAndClientShouldPushWithoutWriting() {
+        RoundMessage round = RoundMessage.builder().taskId(40L).roundNum(0).accuracy(0.5).build();
+        ClientMessage client = ClientMessage.builder().taskId(40L).roundNum(1).clientIndex(0).build();
+
+        ClientBatchMessage batch = ClientBatchMessage.builder().taskId(40L).clients(List.of(
+                ClientMessage.builder().taskId(40L).roundNum(1).clientIndex(1).build())).build();
+
+        service.handleRelayedMessage(RelayMessage.builder().taskId(40L).round(round)
+                .taskStatus(Status.IN_PROGRESS).bestAccuracy(0.5).epoch("e1").seq(9L).build());
+        service.handleRelayedMessage(RelayMessage.builder().taskId(40L).client(client).build());
+        service.handleRelayedMessage(RelayMessage.builder().taskId(40L).clients(batch).epoch("e1").seq(11L).build());
+
+        verify(sessionManager).sendRelayed(40L, round, new PushStamp("e1", 9L));
+        verify(sessionManager).sendRelayed(40L, client, null);
+        verify(sessionManager).sendRelayed(40L, batch, new PushStamp("e1", 11L));
+        verify(clientFrameCoalescer, never()).addClient(any(), any());
+        assertThat(taskSnapshotBuffer.snapshot(40L).getClients()).hasSize(2);
+        verify(adminTaskFeed).onRound(40L, 0, Status.IN_PROGRESS, 0.5);
+        assertThat(taskSnapshotBuffer.snapshot(40L).getRounds()).containsExactly(round);
+        verify(roundService, never()).saveRound(any());
+        verify(clientWriteBuffer, never()).add(any(), any());
+        verify(clusterPushRelay, never()).publishRound(any(), any(), any(), any());
+        verify(sessionManager, never()).sendToTask(any(), any(), any());
+    }
+
+    @Test
+    void handleRelayedTerminalStatusShouldReleaseLocalStateAndCloseWhenAsked() {
+        StatusMessage status = StatusMessage.builder().taskId(41L).status("CANCELLED").build();
+        when(applicationContext.getBean(RedisSubscriptionService.class)).thenReturn(redisSubscriptionService);
+
+        service.handleRelayedMessage(RelayMessage.builder().taskId(41L).status(status).closeSessions(true).build());
+        service.handleRelayedMessage(RelayMessage.builder().taskId(41L)
+                .status(StatusMessage.builder().taskId(41L).status("UNKNOWN").build()).build());
+
+        verify(taskOwnership).release(41L);
+        verify(redisSubscriptionService).unsubscribeTask(41L);
+        verify(adminTaskFeed).onStatus(41L, Status.CANCELLED);
+        verify(sessionManager).sendRelayed(41L, status, null);
+        verify(sessionManager).releaseStream(41L);
+        verify(sessionManager).closeAllSessionsForTask(41L);
+        verify(taskService, never()).updateById(any(Task.class));
+    }
 }
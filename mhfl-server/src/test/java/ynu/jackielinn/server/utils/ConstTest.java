@@ -41,4 +41,11 @@ class ConstTest {
         assertEquals("task:experiment:client:", Const.TASK_EXPERIMENT_CLIENT);
         assertEquals("task:experiment:status:", Const.TASK_EXPERIMENT_STATUS);
     }
+
+    @Test
+    void relayConstantsShouldStayOutsideTaskExperimentPattern() {
+        assertEquals("ws:relay", Const.WS_RELAY_CHANNEL);
+        assertEquals("task:owner:", Const.TASK_OWNER);
+        assertFalse(Const.WS_RELAY_CHANNEL.startsWith("task:experiment:"));
+    }
 }
@@ -0,0 +1,91 @@
+package ynu.jackielinn.server.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * GaussianSmoother 单元测试：与逐点计算的参考实现一致、缺失点与全缺失窗口、非正 sigma 原样复制、核缓存复用、多序列一遍平滑。
+ */
+class GaussianSmootherTest {
+
+    private static double[] reference(double[] input, double sigma) {
+        int radius = Math.max(1, (int) Math.ceil(3 * sigma));
+        double[] output = new double[input.length];
+        for (int i = 0; i < input.length; i++) {
+            double numerator = 0.0;
+            double denominator = 0.0;
+            for (int j = Math.max(0, i - radius); j <= Math.min(input.length - 1, i + radius); j++) {
+                if (Double.isNaN(input[j])) {
+                    continue;
+                }
+                double weight = Math.exp(-((double) (j - i) * (j - i)) / (2.0 * sigma * sigma));
+                numerator += weight * input[j];
+                denominator += weight;
+            }
+            output[i] = denominator > 0 ? numerator / denominator : Double.NaN;
+        }
+        return output;
+    }
+
+    @Test
+    void smoothShouldMatchPointwiseReferenceAndSkipMissing() {
+        double[] input = new double[200];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = i % 7 == 0 ? Double.NaN : Math.sin(i / 10.0);
+        }
+
+        double[] expected = reference(input, 2.5);
+        double[] actual = GaussianSmoother.smooth(input, 2.5);
+
+        for (int i = 0; i < input.length; i++) {
+            assertThat(actual[i]).isCloseTo(expected[i], within(1e-12));
+        }
+    }
+
+    @Test
+    void windowWithoutValidPointsShouldBeNaN() {
+        double[] input = {Double.NaN, Double.NaN, Double.NaN, Double.NaN, 1.0};
+
+        double[] actual = GaussianSmoother.smooth(input, 0.2);
+
+        assertThat(actual[0]).isNaN();
+        assertThat(actual[3]).isEqualTo(1.0);
+        assertThat(actual[4]).isEqualTo(1.0);
+    }
+
+    @Test
+    void nonPositiveSigmaShouldCopyInput() {
+        double[] input = {0.1, Double.NaN, 0.3};
+
+        double[] actual = GaussianSmoother.smooth(input, 0.0);
+
+        assertThat(actual).containsExactly(0.1, Double.NaN, 0.3).isNotSameAs(input);
+        assertThat(GaussianSmoother.smooth(input, Double.NaN)).containsExactly(0.1, Double.NaN, 0.3);
+    }
+
+    @Test
+    void kernelShouldBeCachedPerSigma() {
+        double[] kernel = GaussianSmoother.kernel(1.5);
+
+        assertThat(GaussianSmoother.kernel(1.5)).isSameAs(kernel);
+        assertThat(kernel).hasSize(6);
+        assertThat(kernel[0]).isEqualTo(1.0);
+        assertThatThrownBy(() -> GaussianSmoother.kernel(0.0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GaussianSmoother.kernel(Double.POSITIVE_INFINITY)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void multipleSeriesShouldEachMatchSingleSmoothing() {
+        double[] a = {0.1, 0.4, Double.NaN, 0.8, 0.9};
+        double[] b = {Double.NaN, 0.2, 0.3, 0.4, Double.NaN};
+
+        double[][] actual = GaussianSmoother.smooth(new double[][]{a, b, null}, 1.0);
+
+        assertThat(actual[0]).containsExactly(GaussianSmoother.smooth(a, 1.0));
+        assertThat(actual[1]).containsExactly(GaussianSmoother.smooth(b, 1.0));
+        assertThat(actual[2]).isEmpty();
+    }
+}
@@ -0,0 +1,26 @@
+package ynu.jackielinn.server.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ynu.jackielinn.server.dto.response.RecommendCurveAlgorithmVO;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * NanAsNullArraySerializer 单元测试：NaN 写为 null，输出与 List&lt;Double&gt; 一致。
+ */
+class NanAsNullArraySerializerTest {
+
+    @Test
+    void nanShouldBeWrittenAsNull() throws Exception {
+        RecommendCurveAlgorithmVO vo = RecommendCurveAlgorithmVO.builder()
+                .accuracyRaw(new double[]{0.5, Double.NaN, 1.0})
+                .accuracySmooth(new double[0])
+                .build();
+
+        String json = new ObjectMapper().writeValueAsString(vo);
+
+        assertThat(json).contains("\"accuracyRaw\":[0.5,null,1.0]");
+        assertThat(json).contains("\"accuracySmooth\":[]");
+    }
+}
@@ -0,0 +1,98 @@
+package ynu.jackielinn.server.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.TaskSummaryBatchMessage;
+import ynu.jackielinn.server.dto.message.TaskSummaryMessage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * AdminTaskFeed 单元测试：新会话收到进行中任务全量帧、节拍内同一任务只推最新摘要、终态推送后移出、无管理员时不推送。
+ */
+class AdminTaskFeedTest {
+
+    private AdminTaskFeed feed;
+
+    private WebSocketSessionManager sessionManager;
+
+    @BeforeEach
+    void setUp() {
+        feed = new AdminTaskFeed();
+        sessionManager = mock(WebSocketSessionManager.class);
+        ReflectionTestUtils.setField(feed, "sessionManager", sessionManager);
+    }
+
+    @Test
+    void subscribeShouldSendRunningTasksAsFullFrame() {
+        feed.onRound(1L, 3, Status.IN_PROGRESS, 0.8);
+        feed.onRound(2L, 9, Status.SUCCESS, 0.9);
+        WebSocketSession session = mock(WebSocketSession.class);
+
+        feed.subscribe(session);
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(sessionManager).addAdminSession(eq(session), captor.capture());
+        TaskSummaryBatchMessage batch = (TaskSummaryBatchMessage) captor.getValue();
+        assertThat(batch.getFull()).isTrue();
+        assertThat(batch.getTasks()).extracting(TaskSummaryMessage::getTaskId).containsExactly(1L);
+        assertThat(feed.size()).isEqualTo(1);
+    }
+
+    @Test
+    void tickShouldSendLatestChangePerTaskOnce() {
+        when(sessionManager.hasAdminSessions()).thenReturn(true);
+        feed.onRound(1L, 3, null, 0.7);
+        feed.onRound(1L, 4, Status.IN_PROGRESS, 0.8);
+        feed.onStatus(1L, Status.FAILED);
+
+        feed.tick();
+        feed.tick();
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(sessionManager, times(1)).sendToAdmins(captor.capture());
+        TaskSummaryBatchMessage batch = (TaskSummaryBatchMessage) captor.getValue();
+        assertThat(batch.getFull()).isFalse();
+        assertThat(batch.getTasks()).hasSize(1);
+        TaskSummaryMessage summary = batch.getTasks().get(0);
+        assertThat(summary.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(summary.getRoundNum()).isEqualTo(4);
+        assertThat(feed.size()).isZero();
+    }
+
+    @Test
+    void statusShouldKeepPreviousRoundAndAccuracy() {
+        when(sessionManager.hasAdminSessions()).thenReturn(true);
+        feed.onRound(1L, 4, Status.IN_PROGRESS, 0.8);
+        feed.tick();
+        feed.onStatus(1L, Status.IN_PROGRESS);
+
+        feed.tick();
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(sessionManager, times(2)).sendToAdmins(captor.capture());
+        TaskSummaryMessage summary = ((TaskSummaryBatchMessage) captor.getValue()).getTasks().get(0);
+        assertThat(summary.getRoundNum()).isEqualTo(4);
+        assertThat(summary.getBestAccuracy()).isEqualTo(0.8);
+    }
+
+    @Test
+    void tickWithoutAdminsShouldDiscardChanges() {
+        feed.onRound(1L, 0, Status.IN_PROGRESS, null);
+        feed.onRound(null, 0, Status.IN_PROGRESS, null);
+        feed.onStatus(1L, null);
+
+        feed.tick();
+        when(sessionManager.hasAdminSessions()).thenReturn(true);
+        feed.tick();
+
+        verify(sessionManager, never()).sendToAdmins(any());
+        assertThat(feed.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,107 @@
+package ynu.jackielinn.server.websocket;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import ynu.jackielinn.server.utils.JwtUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * AdminTaskWebSocketHandler 单元测试：首包鉴权、仅管理员可订阅、认证后消息忽略、连接关闭移除会话。
+ */
+@ExtendWith(MockitoExtension.class)
+class AdminTaskWebSocketHandlerTest {
+
+    @Mock
+    private WebSocketSessionManager sessionManager;
+
+    @Mock
+    private WebSocketHeartbeat heartbeat;
+
+    @Mock
+    private AdminTaskFeed adminTaskFeed;
+
+    @Mock
+    private JwtUtils jwtUtils;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private AdminTaskWebSocketHandler handler;
+
+    @Mock
+    private WebSocketSession session;
+
+    @Mock
+    private DecodedJWT decodedJwt;
+
+    private final Map<String, Object> sessionAttrs = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(session.getAttributes()).thenReturn(sessionAttrs);
+        handler.afterConnectionEstablished(session);
+    }
+
+    private void mockUser(String role) {
+        when(jwtUtils.resolveJwt("Bearer t")).thenReturn(decodedJwt);
+        when(jwtUtils.toUser(decodedJwt)).thenReturn(User.builder().username("u").password("")
+                .authorities(List.of(new SimpleGrantedAuthority(role))).build());
+    }
+
+    @Test
+    void adminTokenShouldSubscribeOnce() throws Exception {
+        mockUser("ROLE_admin");
+
+        handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
+        handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
+
+        verify(adminTaskFeed, times(1)).subscribe(session);
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    void nonAdminShouldBeClosed() throws Exception {
+        mockUser("ROLE_user");
+
+        handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
+
+        verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        verify(adminTaskFeed, never()).subscribe(any());
+    }
+
+    @Test
+    void missingOrInvalidTokenShouldBeClosed() throws Exception {
+        handler.handleTextMessage(session, new TextMessage("not json"));
+        handler.handleTextMessage(session, new TextMessage("{\"token\":\"x\"}"));
+
+        verify(session, times(2)).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        verify(adminTaskFeed, never()).subscribe(any());
+    }
+
+    @Test
+    void afterConnectionClosedShouldRemoveAdminSession() {
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        verify(sessionManager).removeAdminSession(session);
+    }
+}
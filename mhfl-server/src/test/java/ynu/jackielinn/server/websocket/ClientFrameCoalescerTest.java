@@ -0,0 +1,124 @@
+package ynu.jackielinn.server.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.dto.message.ClientBatchMessage;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.websocket.WebSocketSessionManager.PushStamp;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * ClientFrameCoalescer 单元测试：同一 clientIndex 取最新值合并为一帧、flush 立即发出、无会话不缓存、间隔为 0 逐条推送、发出的帧连同编号转发。
+ */
+@ExtendWith(MockitoExtension.class)
+class ClientFrameCoalescerTest {
+
+    @Mock
+    private WebSocketSessionManager sessionManager;
+
+    @Mock
+    private ClusterPushRelay clusterPushRelay;
+
+    @InjectMocks
+    private ClientFrameCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(sessionManager.isStreaming(1L)).thenReturn(true);
+    }
+
+    private static ClientMessage client(int index, double accuracy) {
+        return ClientMessage.builder().taskId(1L).roundNum(0).clientIndex(index).accuracy(accuracy).build();
+    }
+
+    @Test
+    void flushAllShouldSendOneFrameWithLatestValuePerClient() {
+        coalescer.addClient(1L, client(0, 0.1));
+        coalescer.addClient(1L, client(1, 0.2));
+        coalescer.addClient(1L, client(0, 0.3));
+        verify(sessionManager, never()).sendToTask(any(), any(), any());
+
+        coalescer.flushAll();
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(sessionManager).sendToTask(eq(1L), captor.capture(), any());
+        ClientBatchMessage frame = (ClientBatchMessage) captor.getValue();
+        assertThat(frame.getTaskId()).isEqualTo(1L);
+        assertThat(frame.getClients()).extracting(ClientMessage::getClientIndex).containsExactly(0, 1);
+        assertThat(frame.getClients().get(0).getAccuracy()).isEqualTo(0.3);
+    }
+
+    @Test
+    void flushAllShouldDropIdleTaskAfterEmptyInterval() {
+        coalescer.addClient(1L, client(0, 0.1));
+        coalescer.flushAll();
+        coalescer.flushAll();
+
+        verify(sessionManager, times(1)).sendToTask(eq(1L), any(), any());
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(coalescer, "pending")).isEmpty();
+    }
+
+    @Test
+    void flushShouldSendPendingFrameImmediatelyOnlyOnce() {
+        coalescer.addClient(1L, client(0, 0.1));
+
+        coalescer.flush(1L);
+        coalescer.flush(1L);
+        coalescer.flush(2L);
+
+        verify(sessionManager, times(1)).sendToTask(eq(1L), any(ClientBatchMessage.class), any());
+    }
+
+    @Test
+    void addClientShouldSkipTasksWithoutStream() {
+        when(sessionManager.isStreaming(2L)).thenReturn(false);
+
+        coalescer.addClient(2L, client(0, 0.1));
+        coalescer.flushAll();
+
+        verify(sessionManager, never()).sendToTask(any(), any(), any());
+    }
+
+    @Test
+    void zeroIntervalShouldSendEachMessageDirectly() {
+        ReflectionTestUtils.setField(coalescer, "coalesceMs", 0L);
+        ClientMessage message = client(0, 0.1);
+
+        coalescer.addClient(1L, message);
+
+        verify(sessionManager).sendToTask(eq(1L), eq(message), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sentFramesShouldBeRelayedWithTheirStamp() {
+        PushStamp stamp = new PushStamp("e1", 7L);
+        doAnswer(inv -> {
+            ((Consumer<PushStamp>) inv.getArgument(2)).accept(stamp);
+            return null;
+        }).when(sessionManager).sendToTask(eq(1L), any(), any());
+        coalescer.addClient(1L, client(0, 0.1));
+
+        coalescer.flush(1L);
+        ReflectionTestUtils.setField(coalescer, "coalesceMs", 0L);
+        ClientMessage single = client(1, 0.2);
+        coalescer.addClient(1L, single);
+
+        verify(clusterPushRelay).publishClients(argThat(f -> f.getClients().size() == 1), eq(stamp));
+        verify(clusterPushRelay).publishClient(single, stamp);
+    }
+}
@@ -0,0 +1,144 @@
+package ynu.jackielinn.server.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.ClientBatchMessage;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RelayMessage;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.StatusMessage;
+import ynu.jackielinn.server.ingest.TaskOrderedDispatcher;
+import ynu.jackielinn.server.ingest.TaskOwnership;
+import ynu.jackielinn.server.service.TrainingMessageHandler;
+import ynu.jackielinn.server.utils.Const;
+import ynu.jackielinn.server.websocket.WebSocketSessionManager.PushStamp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ClusterPushRelay 单元测试：未启用不发布、发布带节点标识与推送编号、忽略本节点消息、其他节点消息经有序派发器交给处理器、依赖只解析一次、lane 已满时丢弃。
+ */
+class ClusterPushRelayTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ClusterPushRelay relay;
+
+    private StringRedisTemplate redisTemplate;
+
+    private TaskOwnership ownership;
+
+    private TaskOrderedDispatcher dispatcher;
+
+    private TrainingMessageHandler handler;
+
+    private ObjectProvider<TaskOwnership> ownershipProvider;
+
+    @BeforeEach
+    void setUp() {
+        relay = new ClusterPushRelay();
+        redisTemplate = mock(StringRedisTemplate.class);
+        ownership = mock(TaskOwnership.class);
+        dispatcher = mock(TaskOrderedDispatcher.class);
+        handler = mock(TrainingMessageHandler.class);
+        ownershipProvider = provider(ownership);
+        when(ownership.isEnabled()).thenReturn(true);
+        when(ownership.getNodeId()).thenReturn("node-a");
+        ReflectionTestUtils.setField(relay, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(relay, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(relay, "taskOwnershipProvider", ownershipProvider);
+        ReflectionTestUtils.setField(relay, "dispatcherProvider", provider(dispatcher));
+        ReflectionTestUtils.setField(relay, "handlerProvider", provider(handler));
+        relay.init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ObjectProvider<T> provider(T bean) {
+        ObjectProvider<T> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(bean);
+        return provider;
+    }
+
+    private static Message message(String body) {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+
+    @Test
+    void disabledShouldNotPublish() {
+        when(ownership.isEnabled()).thenReturn(false);
+
+        relay.publishRound(RoundMessage.builder().taskId(1L).build(), Status.IN_PROGRESS, 0.5, null);
+        relay.publishClient(ClientMessage.builder().taskId(1L).build(), null);
+        relay.publishClients(ClientBatchMessage.builder().taskId(1L).build(), null);
+        relay.publishStatus(StatusMessage.builder().taskId(1L).build(), true, null);
+
+        verifyNoInteractions(redisTemplate);
+        assertThat(relay.isEnabled()).isFalse();
+    }
+
+    @Test
+    void publishShouldSendTaggedMessageToRelayChannel() throws Exception {
+        relay.publishRound(RoundMessage.builder().taskId(1L).roundNum(3).build(), Status.IN_PROGRESS, 0.5,
+                new PushStamp("e1", 41L));
+        relay.publishStatus(StatusMessage.builder().taskId(1L).status("CANCELLED").build(), true, null);
+        relay.publishClients(ClientBatchMessage.builder().taskId(1L)
+                .clients(List.of(ClientMessage.builder().taskId(1L).clientIndex(2).build())).build(), new PushStamp("e1", 42L));
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(3)).convertAndSend(eq(Const.WS_RELAY_CHANNEL), captor.capture());
+        RelayMessage round = objectMapper.readValue(captor.getAllValues().get(0), RelayMessage.class);
+        assertThat(round.getNode()).isEqualTo("node-a");
+        assertThat(round.getRound().getRoundNum()).isEqualTo(3);
+        assertThat(round.getTaskStatus()).isEqualTo(Status.IN_PROGRESS);
+        assertThat(round.getClient()).isNull();
+        assertThat(ClusterPushRelay.stampOf(round)).isEqualTo(new PushStamp("e1", 41L));
+        RelayMessage status = objectMapper.readValue(captor.getAllValues().get(1), RelayMessage.class);
+        assertThat(status.getCloseSessions()).isTrue();
+        assertThat(ClusterPushRelay.stampOf(status)).isNull();
+        RelayMessage clients = objectMapper.readValue(captor.getAllValues().get(2), RelayMessage.class);
+        assertThat(clients.getClients().getClients()).extracting(ClientMessage::getClientIndex).containsExactly(2);
+        assertThat(clients.getSeq()).isEqualTo(42L);
+        assertThat(relay.getPublishedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void onMessageShouldDispatchOtherNodesMessagesOnly() {
+        doAnswer(inv -> {
+            ((Runnable) inv.getArgument(1)).run();
+            return null;
+        }).when(dispatcher).dispatch(anyLong(), any(Runnable.class));
+
+        relay.onMessage(message("{\"node\":\"node-a\",\"taskId\":1,\"client\":{\"taskId\":1}}"), null);
+        relay.onMessage(message("{\"node\":\"node-b\",\"taskId\":1,\"client\":{\"taskId\":1}}"), null);
+        relay.onMessage(message("not json"), null);
+
+        verify(handler, times(1)).handleRelayedMessage(argThat(m -> "node-b".equals(m.getNode())));
+        assertThat(relay.getReceivedCount()).isEqualTo(1);
+        verify(ownershipProvider, times(1)).getObject();
+    }
+
+    @Test
+    void onMessageShouldDropWhenLaneFull() {
+        doThrow(new RejectedExecutionException("full")).when(dispatcher).dispatch(anyLong(), any(Runnable.class));
+
+        relay.onMessage(message("{\"node\":\"node-b\",\"taskId\":1}"), null);
+
+        verify(handler, never()).handleRelayedMessage(any());
+        assertThat(relay.getDroppedCount()).isEqualTo(1);
+    }
+}
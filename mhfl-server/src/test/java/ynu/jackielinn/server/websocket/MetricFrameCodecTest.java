@@ -0,0 +1,82 @@
+package ynu.jackielinn.server.websocket;
+
+import org.junit.jupiter.api.Test;
+import ynu.jackielinn.server.dto.message.ClientBatchMessage;
+import ynu.jackielinn.server.dto.message.ClientMessage;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.StatusMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MetricFrameCodec 单元测试：Round/Client/Client 批的帧头（含推送序号）与定长记录布局、缺失指标为 NaN、不支持的类型返回 null。
+ */
+class MetricFrameCodecTest {
+
+    private static ByteBuffer wrap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    void roundShouldEncodeSingleRecordWithNegativeClientIndex() {
+        RoundMessage round = RoundMessage.builder().taskId(42L).roundNum(7)
+                .loss(0.5).accuracy(0.9).precision(0.8).recall(0.7).f1Score(0.75).build();
+
+        ByteBuffer buf = wrap(MetricFrameCodec.encode(round, 5L));
+
+        assertThat(buf.capacity()).isEqualTo(MetricFrameCodec.HEADER_BYTES + MetricFrameCodec.RECORD_BYTES);
+        assertThat(buf.get()).isEqualTo(MetricFrameCodec.VERSION);
+        assertThat(buf.get()).isEqualTo(MetricFrameCodec.KIND_ROUND);
+        assertThat(buf.getShort()).isEqualTo((short) 1);
+        assertThat(buf.getLong()).isEqualTo(42L);
+        assertThat(buf.getLong()).isEqualTo(5L);
+        assertThat(buf.getInt()).isEqualTo(-1);
+        assertThat(buf.getInt()).isEqualTo(7);
+        assertThat(buf.getFloat()).isEqualTo(0.5f);
+        assertThat(buf.getFloat()).isEqualTo(0.9f);
+        assertThat(buf.getFloat()).isEqualTo(0.8f);
+        assertThat(buf.getFloat()).isEqualTo(0.7f);
+        assertThat(buf.getFloat()).isEqualTo(0.75f);
+    }
+
+    @Test
+    void clientBatchShouldEncodeOneRecordPerClientAndNaNForMissingMetrics() {
+        ClientBatchMessage batch = ClientBatchMessage.builder().taskId(3L).clients(List.of(
+                ClientMessage.builder().taskId(3L).roundNum(1).clientIndex(0).accuracy(0.6).build(),
+                ClientMessage.builder().taskId(3L).roundNum(1).clientIndex(9).loss(0.2).build())).build();
+
+        ByteBuffer buf = wrap(MetricFrameCodec.encode(batch, 1L));
+
+        assertThat(buf.capacity()).isEqualTo(MetricFrameCodec.HEADER_BYTES + 2 * MetricFrameCodec.RECORD_BYTES);
+        assertThat(buf.get(1)).isEqualTo(MetricFrameCodec.KIND_CLIENTS);
+        assertThat(buf.getShort(2)).isEqualTo((short) 2);
+        int second = MetricFrameCodec.HEADER_BYTES + MetricFrameCodec.RECORD_BYTES;
+        assertThat(buf.getInt(second)).isEqualTo(9);
+        assertThat(buf.getFloat(second + 8)).isEqualTo(0.2f);
+        assertThat(Float.isNaN(buf.getFloat(second + 12))).isTrue();
+        assertThat(buf.getFloat(MetricFrameCodec.HEADER_BYTES + 12)).isEqualTo(0.6f);
+    }
+
+    @Test
+    void singleClientShouldEncodeAsOneRecordBatch() {
+        ClientMessage client = ClientMessage.builder().taskId(3L).roundNum(2).clientIndex(4).build();
+
+        ByteBuffer buf = wrap(MetricFrameCodec.encode(client, 1L));
+
+        assertThat(buf.get(1)).isEqualTo(MetricFrameCodec.KIND_CLIENTS);
+        assertThat(buf.getShort(2)).isEqualTo((short) 1);
+        assertThat(buf.getInt(MetricFrameCodec.HEADER_BYTES)).isEqualTo(4);
+        assertThat(buf.getInt(MetricFrameCodec.HEADER_BYTES + 4)).isEqualTo(2);
+    }
+
+    @Test
+    void unsupportedPayloadShouldReturnNull() {
+        assertThat(MetricFrameCodec.encode(StatusMessage.builder().taskId(1L).status("SUCCESS").build(), 1L)).isNull();
+        assertThat(MetricFrameCodec.encode("text", 1L)).isNull();
+        assertThat(MetricFrameCodec.encode(new ClientBatchMessage(1L, null), 1L)).isNull();
+    }
+}
@@ -0,0 +1,191 @@
+package ynu.jackielinn.server.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * SessionSendQueue 单元测试：调用线程只入队、按序异步写出、积压超限按策略关闭或丢弃、发送超时关闭、排空后关闭。
+ */
+class SessionSendQueueTest {
+
+    private final List<Runnable> submitted = new ArrayList<>();
+
+    private final Executor executor = submitted::add;
+
+    private WebSocketSession session;
+
+    private TrainingMetrics trainingMetrics;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        trainingMetrics = mock(TrainingMetrics.class);
+    }
+
+    private SessionSendQueue queue(int bufferSizeLimit, OverflowStrategy strategy) {
+        return new SessionSendQueue(session, executor, 10_000, bufferSizeLimit, strategy, trainingMetrics);
+    }
+
+    private void runSubmitted() {
+        while (!submitted.isEmpty()) {
+            submitted.remove(0).run();
+        }
+    }
+
+    @Test
+    void offerShouldSubmitSingleDrainAndSendInOrder() throws Exception {
+        SessionSendQueue queue = queue(1024, OverflowStrategy.TERMINATE);
+
+        assertThat(queue.offer(new TextMessage("a"))).isTrue();
+        assertThat(queue.offer(new TextMessage("b"))).isTrue();
+
+        verify(session, never()).sendMessage(any());
+        assertThat(submitted).hasSize(1);
+        runSubmitted();
+        var inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(new TextMessage("a"));
+        inOrder.verify(session).sendMessage(new TextMessage("b"));
+        assertThat(queue.getBufferedBytes()).isZero();
+        verify(trainingMetrics, times(2)).recordWsSend(anyLong());
+    }
+
+    @Test
+    void sentDataFramesShouldRecordBytesByTypeAndCompression() throws Exception {
+        when(session.getExtensions()).thenReturn(List.of(new WebSocketExtension("permessage-deflate")));
+        SessionSendQueue queue = queue(1024, OverflowStrategy.TERMINATE);
+
+        queue.offer(new TextMessage("abc"));
+        queue.offer(new BinaryMessage(new byte[5]));
+        queue.offer(new PingMessage());
+        runSubmitted();
+
+        verify(trainingMetrics).recordWsFrame(false, true, 3);
+        verify(trainingMetrics).recordWsFrame(true, true, 5);
+        verify(trainingMetrics, times(2)).recordWsFrame(anyBoolean(), anyBoolean(), anyInt());
+    }
+
+    @Test
+    void sessionWithoutDeflateShouldRecordUncompressedFrames() throws Exception {
+        SessionSendQueue queue = queue(1024, OverflowStrategy.TERMINATE);
+
+        queue.offer(new TextMessage("abc"));
+        runSubmitted();
+
+        verify(trainingMetrics).recordWsFrame(false, false, 3);
+    }
+
+    @Test
+    void overflowWithTerminateShouldCloseSessionAndRejectFurtherMessages() throws Exception {
+        SessionSendQueue queue = queue(4, OverflowStrategy.TERMINATE);
+        queue.offer(new TextMessage("abc"));
+
+        assertThat(queue.offer(new TextMessage("de"))).isFalse();
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(trainingMetrics).recordWsOverflow();
+        assertThat(queue.offer(new TextMessage("f"))).isFalse();
+        runSubmitted();
+        verify(session, never()).sendMessage(any());
+    }
+
+    @Test
+    void overflowWithDropShouldKeepNewestMessages() throws Exception {
+        SessionSendQueue queue = queue(4, OverflowStrategy.DROP);
+        queue.offer(new TextMessage("ab"));
+        queue.offer(new TextMessage("cd"));
+
+        assertThat(queue.offer(new TextMessage("ef"))).isTrue();
+        runSubmitted();
+
+        verify(session, never()).sendMessage(new TextMessage("ab"));
+        verify(session).sendMessage(new TextMessage("cd"));
+        verify(session).sendMessage(new TextMessage("ef"));
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    void offerShouldTerminateWhenInFlightSendExceedsTimeLimit() throws Exception {
+        SessionSendQueue queue = queue(1024, OverflowStrategy.DROP);
+        ReflectionTestUtils.setField(queue, "sendStartedAt", System.currentTimeMillis() - 60_000);
+
+        assertThat(queue.offer(new TextMessage("a"))).isFalse();
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(queue.isOpen()).isFalse();
+    }
+
+    @Test
+    void sendFailureShouldCloseSessionAndCloseQueue() throws Exception {
+        SessionSendQueue queue = queue(1024, OverflowStrategy.TERMINATE);
+        doThrow(new IOException("broken pipe")).when(session).sendMessage(any());
+        queue.offer(new TextMessage("a"));
+        queue.offer(new TextMessage("b"));
+
+        runSubmitted();
+
+        verify(session, times(1)).sendMessage(any());
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(queue.isOpen()).isFalse();
+    }
+
+    @Test
+    void closeAfterFlushShouldSendQueuedMessagesFirst() throws Exception {
+        SessionSendQueue queue = queue(1024, OverflowStrategy.TERMINATE);
+        queue.offer(new TextMessage("last"));
+
+        queue.closeAfterFlush(CloseStatus.NORMAL);
+        assertThat(queue.offer(new TextMessage("late"))).isFalse();
+        runSubmitted();
+
+        var inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(new TextMessage("last"));
+        inOrder.verify(session).close(CloseStatus.NORMAL);
+        verify(session, never()).sendMessage(new TextMessage("late"));
+    }
+
+    @Test
+    void closeShouldDropQueuedMessagesAndCloseOnSendThread() throws Exception {
+        SessionSendQueue queue = queue(1024, OverflowStrategy.TERMINATE);
+        queue.offer(new TextMessage("stale"));
+
+        queue.close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(queue.offer(new TextMessage("late"))).isFalse();
+        verify(session, never()).close(any());
+        runSubmitted();
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(session, never()).sendMessage(any());
+        assertThat(queue.isOpen()).isFalse();
+    }
+
+    @Test
+    void rejectedDrainShouldTerminateSession() throws Exception {
+        SessionSendQueue queue = new SessionSendQueue(session, task -> {
+            throw new RejectedExecutionException("shut down");
+        }, 10_000, 1024, OverflowStrategy.TERMINATE, trainingMetrics);
+
+        assertThat(queue.offer(new TextMessage("a"))).isFalse();
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+}
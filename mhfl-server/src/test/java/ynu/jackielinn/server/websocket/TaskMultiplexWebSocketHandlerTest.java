@@ -0,0 +1,240 @@
+package ynu.jackielinn.server.websocket;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.SubscriptionErrorMessage;
+import ynu.jackielinn.server.entity.Task;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
+import ynu.jackielinn.server.service.RedisSubscriptionService;
+import ynu.jackielinn.server.service.TaskService;
+import ynu.jackielinn.server.utils.JwtUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * TaskMultiplexWebSocketHandler 单元测试：首包鉴权、subscribe/unsubscribe 命令、逐任务权限与订阅数上限、被管理器移除的订阅可重新订阅、连接关闭清理订阅。
+ */
+@ExtendWith(MockitoExtension.class)
+class TaskMultiplexWebSocketHandlerTest {
+
+    @Mock
+    private WebSocketSessionManager sessionManager;
+
+    @Mock
+    private WebSocketHeartbeat heartbeat;
+
+    @Mock
+    private RedisSubscriptionService subscriptionService;
+
+    @Mock
+    private JwtUtils jwtUtils;
+
+    @Mock
+    private TaskService taskService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private TaskSnapshotBuffer taskSnapshotBuffer = new TaskSnapshotBuffer();
+
+    @InjectMocks
+    private TaskMultiplexWebSocketHandler handler;
+
+    @Mock
+    private WebSocketSession session;
+
+    @Mock
+    private DecodedJWT decodedJwt;
+
+    private final Map<String, Object> sessionAttrs = new HashMap<>();
+
+    /**
+     * 模拟会话管理器中该连接登记的订阅。
+     */
+    private final Set<Long> registered = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(session.getAttributes()).thenReturn(sessionAttrs);
+        lenient().when(sessionManager.getTasks(session)).thenAnswer(inv -> Set.copyOf(registered));
+        lenient().when(sessionManager.addSession(anyLong(), eq(session), any(), any(), any()))
+                .thenAnswer(inv -> registered.add(inv.getArgument(0)));
+        lenient().doAnswer(inv -> registered.remove(inv.<Long>getArgument(0)))
+                .when(sessionManager).removeSession(anyLong(), eq(session));
+        handler.afterConnectionEstablished(session);
+    }
+
+    private void authenticate(Long userId, String... roles) throws Exception {
+        when(jwtUtils.resolveJwt("Bearer t")).thenReturn(decodedJwt);
+        when(jwtUtils.toId(decodedJwt)).thenReturn(userId);
+        when(jwtUtils.toUser(decodedJwt)).thenReturn(User.builder().username("u").password("")
+                .authorities(roles.length == 0 ? Collections.emptyList()
+                        : List.of(new SimpleGrantedAuthority(roles[0]))).build());
+        handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
+    }
+
+    private static Task task(Long uid, Status status) {
+        Task task = new Task();
+        task.setUid(uid);
+        task.setStatus(status);
+        return task;
+    }
+
+    @Test
+    void afterConnectionEstablishedShouldMarkSessionMultiplexed() {
+        assertThat(sessionAttrs.get(WebSocketSessionManager.ATTR_MULTIPLEXED)).isEqualTo(true);
+        assertThat(sessionAttrs.get("authenticated")).isEqualTo(false);
+    }
+
+    @Test
+    void firstMessageWithoutValidTokenShouldClose() throws Exception {
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+
+        verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
+    }
+
+    @Test
+    void subscribeShouldAddSessionForEachPermittedTask() throws Exception {
+        authenticate(100L);
+        when(taskService.getById(1L)).thenReturn(task(100L, Status.IN_PROGRESS));
+        when(taskService.getById(2L)).thenReturn(task(100L, Status.IN_PROGRESS));
+
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":2,\"lastSeq\":7,\"epoch\":\"e1\"}"));
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+
+        verify(sessionManager).addSession(eq(1L), eq(session), any(), isNull(), isNull());
+        verify(sessionManager).addSession(eq(2L), eq(session), any(), eq(7L), eq("e1"));
+        verify(subscriptionService).subscribeTask(1L);
+        verify(subscriptionService).subscribeTask(2L);
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    void subscribeShouldRejectTaskOfAnotherUserUnlessAdmin() throws Exception {
+        authenticate(100L);
+        when(taskService.getById(3L)).thenReturn(task(200L, Status.IN_PROGRESS));
+
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":3}"));
+
+        verify(sessionManager).sendToSession(eq(session), argThat(m ->
+                m instanceof SubscriptionErrorMessage e && e.getTaskId() == 3L && "No permission".equals(e.getError())));
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
+    }
+
+    @Test
+    void adminShouldSubscribeAnyTask() throws Exception {
+        authenticate(1L, "ROLE_admin");
+        when(taskService.getById(3L)).thenReturn(task(200L, Status.IN_PROGRESS));
+
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":3}"));
+
+        verify(sessionManager).addSession(eq(3L), eq(session), any(), isNull(), isNull());
+    }
+
+    @Test
+    void subscribeBeyondLimitOrUnknownTaskShouldReply() throws Exception {
+        authenticate(100L);
+        ReflectionTestUtils.setField(handler, "maxSubscriptions", 1);
+        when(taskService.getById(1L)).thenReturn(task(100L, Status.IN_PROGRESS));
+
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":2}"));
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"noop\"}"));
+
+        verify(sessionManager).sendToSession(eq(session), argThat(m ->
+                m instanceof SubscriptionErrorMessage e && "Too many subscriptions".equals(e.getError())));
+        verify(sessionManager).sendToSession(eq(session), argThat(m ->
+                m instanceof SubscriptionErrorMessage e && "Invalid command".equals(e.getError())));
+        verify(taskService, never()).getById(2L);
+    }
+
+    @Test
+    void subscriptionRemovedByManagerShouldBeResubscribableAndNotCountTowardsLimit() throws Exception {
+        authenticate(100L);
+        ReflectionTestUtils.setField(handler, "maxSubscriptions", 1);
+        when(taskService.getById(1L)).thenReturn(task(100L, Status.IN_PROGRESS));
+        when(taskService.getById(2L)).thenReturn(task(100L, Status.IN_PROGRESS));
+
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+        registered.remove(1L);
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":2}"));
+        registered.remove(2L);
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+
+        verify(sessionManager, times(2)).addSession(eq(1L), eq(session), any(), isNull(), isNull());
+        verify(sessionManager).addSession(eq(2L), eq(session), any(), isNull(), isNull());
+        verify(sessionManager, never()).sendToSession(any(), any());
+    }
+
+    @Test
+    void subscribeShouldNotSubscribeRedisWhenSessionUnavailableBeforeFirstFrame() throws Exception {
+        authenticate(100L);
+        when(taskService.getById(1L)).thenReturn(task(100L, Status.IN_PROGRESS));
+        when(sessionManager.addSession(eq(1L), eq(session), any(), any(), any())).thenReturn(false);
+
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+
+        verify(sessionManager, times(2)).addSession(eq(1L), eq(session), any(), isNull(), isNull());
+        verify(subscriptionService, never()).subscribeTask(anyLong());
+    }
+
+    @Test
+    void unsubscribeShouldRemoveSessionAndReleaseRedisWhenTaskTerminal() throws Exception {
+        authenticate(100L);
+        when(taskService.getById(1L)).thenReturn(task(100L, Status.IN_PROGRESS), task(100L, Status.SUCCESS));
+        when(sessionManager.getSessions(1L)).thenReturn(Set.of());
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"subscribe\",\"taskId\":1}"));
+
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"unsubscribe\",\"taskId\":1}"));
+        handler.handleTextMessage(session, new TextMessage("{\"action\":\"unsubscribe\",\"taskId\":1}"));
+
+        verify(sessionManager, times(1)).removeSession(1L, session);
+        verify(subscriptionService).unsubscribeTask(1L);
+    }
+
+    @Test
+    void afterConnectionClosedShouldRemoveAllSubscriptions() {
+        when(sessionManager.removeSession(session)).thenReturn(Set.of(1L, 2L));
+        when(sessionManager.getSessions(anyLong())).thenReturn(Set.of());
+        when(taskService.getById(1L)).thenReturn(task(100L, Status.CANCELLED));
+        when(taskService.getById(2L)).thenReturn(task(100L, Status.IN_PROGRESS));
+
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        verify(subscriptionService).unsubscribeTask(1L);
+        verify(subscriptionService, never()).unsubscribeTask(2L);
+        verify(sessionManager).releaseStreamIfIdle(1L);
+        verify(sessionManager, never()).releaseStreamIfIdle(2L);
+    }
+}
@@ -7,14 +7,20 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import ynu.jackielinn.server.common.Status;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.TaskSnapshotMessage;
 import ynu.jackielinn.server.entity.Task;
+import ynu.jackielinn.server.ingest.TaskSnapshotBuffer;
 import ynu.jackielinn.server.service.RedisSubscriptionService;
 import ynu.jackielinn.server.service.TaskService;
 import ynu.jackielinn.server.utils.JwtUtils;
@@ -22,20 +28,24 @@ import ynu.jackielinn.server.utils.JwtUtils;
 import java.net.URI;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.lenient;
 
 /**
- * TaskWebSocketHandler 单元测试：连接建立/关闭、首包鉴权及权限分支。
+ * TaskWebSocketHandler 单元测试：连接建立/关闭、首包鉴权及权限分支、认证后以任务快照为首帧或按 lastSeq 与 epoch 续传。
  */
 @ExtendWith(MockitoExtension.class)
 class TaskWebSocketHandlerTest {
@@ -43,6 +53,9 @@ class TaskWebSocketHandlerTest {
     @Mock
     private WebSocketSessionManager sessionManager;
 
+    @Mock
+    private WebSocketHeartbeat heartbeat;
+
     @Mock
     private RedisSubscriptionService subscriptionService;
 
@@ -55,6 +68,9 @@ class TaskWebSocketHandlerTest {
     @Mock
     private ObjectMapper objectMapper;
 
+    @Spy
+    private TaskSnapshotBuffer taskSnapshotBuffer = new TaskSnapshotBuffer();
+
     @InjectMocks
     private TaskWebSocketHandler handler;
 
@@ -78,6 +94,11 @@ class TaskWebSocketHandlerTest {
         sessionAttrs.clear();
     }
 
+    @Test
+    void getSubProtocolsShouldAdvertiseBinaryMetricsProtocol() {
+        assertEquals(List.of(MetricFrameCodec.SUB_PROTOCOL), handler.getSubProtocols());
+    }
+
     @Test
     void afterConnectionEstablishedShouldCloseWhenInvalidTaskId() throws Exception {
         when(session.getUri()).thenReturn(URI.create("http://localhost/ws/task/abc"));
@@ -114,6 +135,19 @@ class TaskWebSocketHandlerTest {
         assertEquals(1L, sessionAttrs.get("taskId"));
         assertEquals(false, sessionAttrs.get("authenticated"));
         verify(session, never()).close(any());
+        verify(heartbeat).register(session, handler);
+    }
+
+    @Test
+    void inboundMessagesAndCloseShouldUpdateHeartbeat() throws Exception {
+        sessionAttrs.put("authenticated", true);
+
+        handler.handleMessage(session, new PongMessage());
+        handler.handleMessage(session, new TextMessage("{}"));
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        verify(heartbeat, times(2)).touch(session);
+        verify(heartbeat).unregister(session);
     }
 
     @Test
@@ -152,6 +186,7 @@ class TaskWebSocketHandlerTest {
 
         verify(sessionManager).removeSession(1L, session);
         verify(subscriptionService).unsubscribeTask(1L);
+        verify(sessionManager).releaseStreamIfIdle(1L);
     }
 
     @Test
@@ -180,6 +215,7 @@ class TaskWebSocketHandlerTest {
 
         verify(sessionManager).removeSession(1L, session);
         verify(subscriptionService, never()).unsubscribeTask(anyLong());
+        verify(sessionManager, never()).releaseStreamIfIdle(anyLong());
     }
 
     @Test
@@ -254,7 +290,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"x\"}"));
 
         verify(session, never()).close(any());
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -265,7 +301,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{}"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -276,7 +312,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("   "));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -288,7 +324,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"   \"}"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -300,7 +336,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("invalid"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -312,7 +348,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":123}"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -325,7 +361,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.BAD_DATA.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -344,7 +380,8 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
 
         verify(session, never()).close(any());
-        verify(sessionManager).addSession(1L, session);
+        verify(sessionManager).addSession(eq(1L), eq(session), any(), isNull(), isNull());
+        verify(heartbeat).authenticated(session);
         verify(subscriptionService).subscribeTask(1L);
     }
 
@@ -358,7 +395,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"bad\"}"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -373,7 +410,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
     }
 
     @Test
@@ -392,7 +429,49 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
 
         verify(session).close(argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
-        verify(sessionManager, never()).addSession(anyLong(), any());
+        verify(sessionManager, never()).addSession(anyLong(), any(), any(), any(), any());
+    }
+
+    @Test
+    void handleTextMessageShouldSendTaskSnapshotAsFirstFrame() throws Exception {
+        sessionAttrs.put("taskId", 1L);
+        sessionAttrs.put("authenticated", false);
+        when(objectMapper.readValue(anyString(), eq(Map.class))).thenReturn(Map.of("token", "t"));
+        when(jwtUtils.resolveJwt("Bearer t")).thenReturn(decodedJwt);
+        when(jwtUtils.toId(decodedJwt)).thenReturn(100L);
+        when(jwtUtils.toUser(decodedJwt)).thenReturn(org.springframework.security.core.userdetails.User.builder()
+                .username("u").password("").authorities(Collections.emptyList()).build());
+        Task task = new Task();
+        task.setUid(100L);
+        when(taskService.getById(1L)).thenReturn(task);
+        taskSnapshotBuffer.recordRound(RoundMessage.builder().taskId(1L).roundNum(0).accuracy(0.5).build());
+
+        handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Supplier<?>> frame = ArgumentCaptor.forClass(Supplier.class);
+        verify(sessionManager).addSession(eq(1L), eq(session), frame.capture(), isNull(), isNull());
+        TaskSnapshotMessage snapshot = (TaskSnapshotMessage) frame.getValue().get();
+        assertThat(snapshot.getRounds()).extracting(RoundMessage::getRoundNum).containsExactly(0);
+        assertThat(snapshot.getComplete()).isTrue();
+    }
+
+    @Test
+    void handleTextMessageShouldPassLastSeqForResume() throws Exception {
+        sessionAttrs.put("taskId", 1L);
+        sessionAttrs.put("authenticated", false);
+        when(objectMapper.readValue(anyString(), eq(Map.class))).thenReturn(Map.of("token", "t", "lastSeq", 42, "epoch", "e1"));
+        when(jwtUtils.resolveJwt("Bearer t")).thenReturn(decodedJwt);
+        when(jwtUtils.toId(decodedJwt)).thenReturn(100L);
+        when(jwtUtils.toUser(decodedJwt)).thenReturn(org.springframework.security.core.userdetails.User.builder()
+                .username("u").password("").authorities(Collections.emptyList()).build());
+        Task task = new Task();
+        task.setUid(100L);
+        when(taskService.getById(1L)).thenReturn(task);
+
+        handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\",\"lastSeq\":42,\"epoch\":\"e1\"}"));
+
+        verify(sessionManager).addSession(eq(1L), eq(session), any(), eq(42L), eq("e1"));
     }
 
     @Test
@@ -411,7 +490,7 @@ class TaskWebSocketHandlerTest {
         handler.handleTextMessage(session, new TextMessage("{\"token\":\"t\"}"));
 
         verify(session, never()).close(any());
-        verify(sessionManager).addSession(1L, session);
+        verify(sessionManager).addSession(eq(1L), eq(session), any(), isNull(), isNull());
         verify(subscriptionService).subscribeTask(1L);
         assertEquals(true, sessionAttrs.get("authenticated"));
     }
@@ -0,0 +1,120 @@
+package ynu.jackielinn.server.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocketHeartbeat 单元测试：认证期限内不回收、逾期未认证与空闲超时回收、到期发送 Ping、失效连接经处理器清理、计数。
+ */
+class WebSocketHeartbeatTest {
+
+    private WebSocketHeartbeat heartbeat;
+
+    private WebSocketSessionManager sessionManager;
+
+    private WebSocketSession session;
+
+    private WebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        heartbeat = new WebSocketHeartbeat();
+        sessionManager = mock(WebSocketSessionManager.class);
+        ReflectionTestUtils.setField(heartbeat, "sessionManager", sessionManager);
+        session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        handler = mock(WebSocketHandler.class);
+    }
+
+    @Test
+    void unauthenticatedSessionShouldBeReapedAfterDeadlineOnly() {
+        heartbeat.register(session, handler);
+        heartbeat.tick();
+        verify(sessionManager, never()).closeSession(any(), any());
+
+        ReflectionTestUtils.setField(heartbeat, "authDeadlineMs", -1L);
+        heartbeat.tick();
+
+        verify(sessionManager).closeSession(eq(session),
+                argThat(s -> s.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        assertThat(heartbeat.getOpenCount()).isZero();
+        assertThat(heartbeat.getReapedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void authenticatedSessionShouldBePingedWhenIntervalElapsed() {
+        heartbeat.register(session, handler);
+        heartbeat.authenticated(session);
+        heartbeat.tick();
+        verify(sessionManager, never()).sendPing(any());
+
+        ReflectionTestUtils.setField(heartbeat, "pingIntervalMs", 0L);
+        heartbeat.touch(session);
+        heartbeat.tick();
+
+        verify(sessionManager).sendPing(session);
+        assertThat(heartbeat.getAuthenticatedCount()).isEqualTo(1);
+        assertThat(heartbeat.getReapedCount()).isZero();
+    }
+
+    @Test
+    void idleAuthenticatedSessionShouldBeReaped() {
+        ReflectionTestUtils.setField(heartbeat, "idleTimeoutMs", -1L);
+        heartbeat.register(session, handler);
+        heartbeat.authenticated(session);
+
+        heartbeat.tick();
+
+        verify(sessionManager).closeSession(eq(session),
+                argThat(s -> s.getCode() == CloseStatus.SESSION_NOT_RELIABLE.getCode()));
+        verify(sessionManager, never()).sendPing(any());
+    }
+
+    @Test
+    void closedSessionMissedByContainerShouldRunHandlerCloseCleanup() throws Exception {
+        heartbeat.register(session, handler);
+        when(session.isOpen()).thenReturn(false);
+
+        heartbeat.tick();
+
+        verify(handler).afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+        verify(sessionManager, never()).closeSession(any(), any());
+        assertThat(heartbeat.getOpenCount()).isZero();
+        assertThat(heartbeat.getReapedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedHandlerCleanupShouldFallBackToManagerRemoval() throws Exception {
+        heartbeat.register(session, handler);
+        when(session.isOpen()).thenReturn(false);
+        doThrow(new IllegalStateException("db down")).when(handler).afterConnectionClosed(any(), any());
+
+        heartbeat.tick();
+
+        verify(sessionManager).removeSession(session);
+        verify(sessionManager).removeAdminSession(session);
+    }
+
+    @Test
+    void unregisterShouldStopTracking() {
+        heartbeat.register(session, handler);
+        heartbeat.unregister(session);
+        heartbeat.authenticated(session);
+        heartbeat.touch(session);
+
+        heartbeat.tick();
+
+        assertThat(heartbeat.getOpenCount()).isZero();
+        verifyNoInteractions(sessionManager);
+    }
+}
@@ -4,19 +4,32 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import ynu.jackielinn.server.dto.message.RoundMessage;
+import ynu.jackielinn.server.dto.message.StatusMessage;
+import ynu.jackielinn.server.monitor.TrainingMetrics;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 /**
- * WebSocketSessionManager 单元测试：add/remove/getSessions、sendToTask、closeAllSessionsForTask。
+ * WebSocketSessionManager 单元测试：add/remove/getSessions、sendToTask、closeAllSessionsForTask、按 seq 与 epoch 续传、沿用其他节点的编号推送。
+ * 发送线程池替换为同步执行，便于直接校验写出结果。
  */
 class WebSocketSessionManagerTest {
 
@@ -25,6 +38,8 @@ class WebSocketSessionManagerTest {
     @BeforeEach
     void setUp() {
         manager = new WebSocketSessionManager();
+        ReflectionTestUtils.setField(manager, "trainingMetrics", mock(TrainingMetrics.class));
+        ReflectionTestUtils.setField(manager, "sendExecutor", (Executor) Runnable::run);
     }
 
     @Test
@@ -209,4 +224,372 @@ class WebSocketSessionManagerTest {
 
         assertTrue(manager.getSessions(taskId).isEmpty());
     }
+
+    @Test
+    void sendToTaskShouldOnlyEnqueueOnCallerThread() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        ReflectionTestUtils.setField(manager, "sendExecutor", (Executor) submitted::add);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        manager.addSession(1L, session);
+
+        manager.sendToTask(1L, "first");
+        manager.sendToTask(1L, "second");
+
+        verify(session, never()).sendMessage(any());
+        assertEquals(1, submitted.size());
+        submitted.get(0).run();
+        InOrder inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("first")));
+        inOrder.verify(session).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("second")));
+    }
+
+    @Test
+    void addSessionWithFirstFrameShouldQueueItBeforeLivePushes() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        ReflectionTestUtils.setField(manager, "sendExecutor", (Executor) submitted::add);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        manager.addSession(1L, session, () -> "snapshot", null, null);
+
+        manager.sendToTask(1L, "live");
+        submitted.get(0).run();
+
+        InOrder inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("snapshot")));
+        inOrder.verify(session).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("live")));
+    }
+
+    @Test
+    void closeAllSessionsForTaskShouldSendQueuedMessagesBeforeClosing() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        ReflectionTestUtils.setField(manager, "sendExecutor", (Executor) submitted::add);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        manager.addSession(1L, session);
+
+        manager.sendToTask(1L, "stopped");
+        manager.closeAllSessionsForTask(1L);
+        submitted.get(0).run();
+
+        InOrder inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(any(TextMessage.class));
+        inOrder.verify(session).close(any());
+        assertTrue(manager.getSessions(1L).isEmpty());
+    }
+
+    @Test
+    void sendToTaskShouldSendBinaryMetricsOnlyToBinaryProtocolSessions() throws Exception {
+        WebSocketSession binarySession = mock(WebSocketSession.class);
+        when(binarySession.isOpen()).thenReturn(true);
+        when(binarySession.getAcceptedProtocol()).thenReturn(MetricFrameCodec.SUB_PROTOCOL);
+        WebSocketSession jsonSession = mock(WebSocketSession.class);
+        when(jsonSession.isOpen()).thenReturn(true);
+        manager.addSession(1L, binarySession);
+        manager.addSession(1L, jsonSession);
+
+        manager.sendToTask(1L, RoundMessage.builder().taskId(1L).roundNum(0).accuracy(0.5).build());
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("SUCCESS").build());
+
+        InOrder inOrder = inOrder(binarySession);
+        inOrder.verify(binarySession).sendMessage(argThat(m -> m instanceof BinaryMessage
+                && m.getPayloadLength() == MetricFrameCodec.HEADER_BYTES + MetricFrameCodec.RECORD_BYTES));
+        inOrder.verify(binarySession).sendMessage(argThat(m -> m instanceof TextMessage
+                && ((TextMessage) m).getPayload().contains("SUCCESS")));
+        verify(jsonSession, times(2)).sendMessage(argThat(m -> m instanceof TextMessage));
+    }
+
+    @Test
+    void sendToTaskShouldStampIncreasingSeqOnJsonPayloads() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        manager.addSession(1L, session);
+
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("IN_PROGRESS").build());
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("SUCCESS").build());
+
+        List<Long> seqs = new ArrayList<>();
+        verify(session, times(2)).sendMessage(argThat(m -> {
+            seqs.add(seqOf((TextMessage) m));
+            return true;
+        }));
+        assertEquals(seqs.get(0) + 1, seqs.get(1));
+    }
+
+    @Test
+    void reconnectWithLastSeqInWindowShouldReplayOnlyMissedFrames() throws Exception {
+        WebSocketSession first = mock(WebSocketSession.class);
+        when(first.isOpen()).thenReturn(true);
+        manager.addSession(1L, first);
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("a").build());
+        List<TextMessage> received = new ArrayList<>();
+        verify(first).sendMessage(argThat(m -> received.add((TextMessage) m)));
+        manager.removeSession(1L, first);
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("b").build());
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("c").build());
+
+        WebSocketSession second = mock(WebSocketSession.class);
+        when(second.isOpen()).thenReturn(true);
+        manager.addSession(1L, second, () -> "snapshot", seqOf(received.get(0)), epochOf(received.get(0)));
+
+        InOrder inOrder = inOrder(second);
+        inOrder.verify(second).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("\"b\"")));
+        inOrder.verify(second).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("\"c\"")));
+        verify(second, never()).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("snapshot")));
+        verify(second, times(2)).sendMessage(any());
+    }
+
+    @Test
+    void reconnectWithLastSeqOutsideWindowShouldFallBackToFirstFrame() throws Exception {
+        ReflectionTestUtils.setField(manager, "replayWindow", 1);
+        WebSocketSession first = mock(WebSocketSession.class);
+        when(first.isOpen()).thenReturn(true);
+        manager.addSession(1L, first);
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("a").build());
+        List<TextMessage> received = new ArrayList<>();
+        verify(first).sendMessage(argThat(m -> received.add((TextMessage) m)));
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("b").build());
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("c").build());
+
+        WebSocketSession second = mock(WebSocketSession.class);
+        when(second.isOpen()).thenReturn(true);
+        manager.addSession(1L, second, () -> StatusMessage.builder().taskId(1L).status("snapshot").build(),
+                seqOf(received.get(0)), epochOf(received.get(0)));
+
+        verify(second).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("snapshot")));
+        verify(second, times(1)).sendMessage(any());
+    }
+
+    @Test
+    void reconnectWithLastSeqFromAnotherEpochShouldFallBackToFirstFrame() throws Exception {
+        WebSocketSession first = mock(WebSocketSession.class);
+        when(first.isOpen()).thenReturn(true);
+        manager.addSession(1L, first);
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("a").build());
+        List<TextMessage> received = new ArrayList<>();
+        verify(first).sendMessage(argThat(m -> received.add((TextMessage) m)));
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("b").build());
+
+        WebSocketSession second = mock(WebSocketSession.class);
+        when(second.isOpen()).thenReturn(true);
+        manager.addSession(1L, second, () -> StatusMessage.builder().taskId(1L).status("snapshot").build(),
+                seqOf(received.get(0)), "other-node");
+
+        verify(second).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("snapshot")));
+        verify(second, times(1)).sendMessage(any());
+    }
+
+    @Test
+    void relayedPushesShouldKeepOwnerNumberingSoReconnectOnAnotherNodeResumes() throws Exception {
+        WebSocketSessionManager owner = new WebSocketSessionManager();
+        ReflectionTestUtils.setField(owner, "trainingMetrics", mock(TrainingMetrics.class));
+        ReflectionTestUtils.setField(owner, "sendExecutor", (Executor) Runnable::run);
+        owner.openStream(1L);
+        WebSocketSession viewer = mock(WebSocketSession.class);
+        when(viewer.isOpen()).thenReturn(true);
+        manager.addSession(1L, viewer);
+
+        List<WebSocketSessionManager.PushStamp> stamps = new ArrayList<>();
+        for (String status : List.of("a", "b", "c")) {
+            StatusMessage message = StatusMessage.builder().taskId(1L).status(status).build();
+            owner.sendToTask(1L, message, stamp -> {
+                stamps.add(stamp);
+                manager.sendRelayed(1L, message, stamp);
+            });
+        }
+        // 重复投递的转发消息不再推送
+        manager.sendRelayed(1L, StatusMessage.builder().taskId(1L).status("dup").build(), stamps.get(2));
+
+        List<TextMessage> received = new ArrayList<>();
+        verify(viewer, times(3)).sendMessage(argThat(m -> received.add((TextMessage) m)));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(stamps.get(i).seq(), seqOf(received.get(i)));
+            assertEquals(stamps.get(i).epoch(), epochOf(received.get(i)));
+        }
+        assertEquals(stamps.get(0).seq() + 2, stamps.get(2).seq());
+
+        WebSocketSession resumed = mock(WebSocketSession.class);
+        when(resumed.isOpen()).thenReturn(true);
+        manager.addSession(1L, resumed, () -> "snapshot", stamps.get(0).seq(), stamps.get(0).epoch());
+
+        InOrder inOrder = inOrder(resumed);
+        inOrder.verify(resumed).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("\"b\"")));
+        inOrder.verify(resumed).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("\"c\"")));
+        verify(resumed, times(2)).sendMessage(any());
+    }
+
+    @Test
+    void sendToTaskWithoutStreamShouldReportNullStamp() {
+        List<WebSocketSessionManager.PushStamp> stamps = new ArrayList<>();
+
+        manager.sendToTask(1L, "x", stamps::add);
+
+        assertEquals(1, stamps.size());
+        assertNull(stamps.get(0));
+        assertFalse(manager.isStreaming(1L));
+    }
+
+    @Test
+    void releaseStreamShouldStopNumberingUntilNextSession() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        manager.addSession(1L, session);
+        manager.removeSession(1L, session);
+        assertTrue(manager.isStreaming(1L));
+
+        manager.releaseStream(1L);
+
+        assertFalse(manager.isStreaming(1L));
+    }
+
+    @Test
+    void releaseStreamIfIdleShouldKeepStreamWhileSessionsRemain() {
+        WebSocketSession first = mock(WebSocketSession.class);
+        WebSocketSession second = mock(WebSocketSession.class);
+        manager.addSession(1L, first);
+        manager.addSession(1L, second);
+
+        manager.removeSession(1L, first);
+        manager.releaseStreamIfIdle(1L);
+        assertTrue(manager.isStreaming(1L));
+
+        manager.removeSession(1L, second);
+        manager.releaseStreamIfIdle(1L);
+        manager.releaseStreamIfIdle(null);
+        assertFalse(manager.isStreaming(1L));
+    }
+
+    @Test
+    void multiplexedSessionShouldShareQueueAcrossTasksAndKeepItAfterUnsubscribe() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAttributes()).thenReturn(new HashMap<>(Map.of(WebSocketSessionManager.ATTR_MULTIPLEXED, true)));
+        manager.addSession(1L, session);
+        manager.addSession(2L, session);
+
+        manager.removeSession(1L, session);
+        manager.sendToTask(2L, "still-open");
+        manager.closeAllSessionsForTask(2L);
+
+        verify(session).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("still-open")));
+        verify(session, never()).close(any());
+        assertTrue(manager.getSessions(2L).isEmpty());
+        assertTrue(manager.sendToSession(session, Map.of("error", "x")));
+    }
+
+    @Test
+    void closeAllSessionsForTaskShouldDeliverQueuedFrameToMultiplexedSession() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        ReflectionTestUtils.setField(manager, "sendExecutor", (Executor) submitted::add);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAttributes()).thenReturn(new HashMap<>(Map.of(WebSocketSessionManager.ATTR_MULTIPLEXED, true)));
+        manager.addSession(1L, session);
+
+        manager.sendToTask(1L, StatusMessage.builder().taskId(1L).status("CANCELLED").build());
+        manager.closeAllSessionsForTask(1L);
+        submitted.get(0).run();
+
+        verify(session).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("CANCELLED")));
+        verify(session, never()).close(any());
+        assertTrue(manager.getSessions(1L).isEmpty());
+        assertEquals(Set.of(), manager.removeSession(session));
+    }
+
+    @Test
+    void getTasksShouldReflectRemovalsByManager() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(false);
+        assertTrue(manager.addSession(1L, session, null, null, null));
+        manager.addSession(2L, session);
+
+        manager.sendToTask(1L, "gone");
+
+        assertEquals(Set.of(2L), manager.getTasks(session));
+        assertEquals(Set.of(), manager.getTasks(mock(WebSocketSession.class)));
+    }
+
+    @Test
+    void removeSessionForConnectionShouldReturnSubscribedTasks() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        manager.addSession(1L, session);
+        manager.addSession(2L, session);
+
+        assertEquals(Set.of(1L, 2L), manager.removeSession(session));
+        assertTrue(manager.getSessions(1L).isEmpty());
+        assertTrue(manager.getSessions(2L).isEmpty());
+        assertEquals(Set.of(), manager.removeSession(session));
+    }
+
+    @Test
+    void adminSessionShouldReceiveFirstFrameThenBroadcasts() throws Exception {
+        WebSocketSession admin = mock(WebSocketSession.class);
+        when(admin.isOpen()).thenReturn(true);
+        assertFalse(manager.hasAdminSessions());
+
+        manager.addAdminSession(admin, Map.of("full", true));
+        manager.sendToAdmins(Map.of("full", false));
+
+        assertTrue(manager.hasAdminSessions());
+        InOrder inOrder = inOrder(admin);
+        inOrder.verify(admin).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("true")));
+        inOrder.verify(admin).sendMessage(argThat(m -> ((TextMessage) m).getPayload().contains("false")));
+    }
+
+    @Test
+    void sendToAdminsShouldDropClosedSessions() throws Exception {
+        WebSocketSession admin = mock(WebSocketSession.class);
+        manager.addAdminSession(admin, Map.of("full", true));
+        when(admin.isOpen()).thenReturn(false);
+
+        manager.sendToAdmins(Map.of("full", false));
+
+        assertFalse(manager.hasAdminSessions());
+        manager.removeAdminSession(admin);
+    }
+
+    @Test
+    void sendPingShouldUseQueueOnlyForRegisteredSessions() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        WebSocketSession pending = mock(WebSocketSession.class);
+        manager.addSession(1L, session);
+
+        assertTrue(manager.sendPing(session));
+        assertFalse(manager.sendPing(pending));
+
+        verify(session).sendMessage(any(PingMessage.class));
+    }
+
+    @Test
+    void closeSessionShouldDiscardQueueAndClose() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        ReflectionTestUtils.setField(manager, "sendExecutor", (Executor) submitted::add);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        manager.addSession(1L, session);
+        manager.sendToTask(1L, "pending");
+
+        manager.closeSession(session, CloseStatus.SESSION_NOT_RELIABLE);
+        verify(session, never()).close(any());
+        submitted.forEach(Runnable::run);
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(session, never()).sendMessage(any());
+    }
+
+    private static String epochOf(TextMessage message) {
+        try {
+            return new ObjectMapper().readTree(message.getPayload()).get("epoch").asText();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long seqOf(TextMessage message) {
+        try {
+            return new ObjectMapper().readTree(message.getPayload()).get("seq").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -64,6 +64,8 @@ CREATE TABLE round
     is_deleted  TINYINT  NOT NULL DEFAULT 0
 );
 
+CREATE UNIQUE INDEX round_tid_round_num_uindex ON round (tid, round_num);
+
 CREATE TABLE client
 (
     id           BIGINT PRIMARY KEY,
@@ -80,3 +82,5 @@ CREATE TABLE client
     delete_time  DATETIME NULL,
     is_deleted   TINYINT  NOT NULL DEFAULT 0
 );
+
+CREATE UNIQUE INDEX client_rid_client_index_uindex ON client (rid, client_index);
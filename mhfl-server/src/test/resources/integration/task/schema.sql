@@ -82,6 +82,8 @@ CREATE TABLE round
     is_deleted  TINYINT  NOT NULL DEFAULT 0
 );
 
+CREATE UNIQUE INDEX round_tid_round_num_uindex ON round (tid, round_num);
+
 CREATE TABLE client
 (
     id          BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -98,3 +100,5 @@ CREATE TABLE client
     delete_time DATETIME NULL,
     is_deleted  TINYINT  NOT NULL DEFAULT 0
 );
+
+CREATE UNIQUE INDEX client_rid_client_index_uindex ON client (rid, client_index);
@@ -1,12 +1,35 @@
 /**
  * 任务训练实时监控 WebSocket
  * 连接 /ws/task/{taskId}，首包发送 JWT 鉴权，接收 Round/Client/Status 消息
+ * 鉴权通过后服务端先推送一帧 TaskSnapshotMessage（最近 Round 与各客户端最新指标），可直接回填而无需请求接口
+ * 每条推送带任务内递增的 seq 及其编号纪元 epoch；连接异常断开后自动重连，首包携带 lastSeq 与 epoch，
+ * 纪元一致时服务端只补发缺失的推送，否则重新下发快照（二进制帧不带 epoch，沿用最近一条 JSON 帧的纪元）
+ * Client 指标由服务端按间隔合并为 ClientBatchMessage 帧（每个 clientIndex 取最新值），一帧只触发一次更新
+ * 可选协商 mhfl.metrics.v1 二进制子协议：Round/Client 指标以定长记录的二进制帧到达，Status 仍为 JSON 文本帧
  */
 import {ref, onBeforeUnmount} from 'vue'
 import {takeAccessToken} from '@/utils'
 
 const WS_BASE = import.meta.env.VITE_WS_BASE ?? 'ws://localhost:8088'
 
+/** 二进制指标子协议，与服务端 MetricFrameCodec 一致 */
+export const METRICS_SUB_PROTOCOL = 'mhfl.metrics.v1'
+
+/** 默认是否请求二进制子协议，由 VITE_WS_BINARY=true 开启 */
+const BINARY_DEFAULT = import.meta.env.VITE_WS_BINARY === 'true'
+
+const FRAME_HEADER_BYTES = 20
+const FRAME_RECORD_BYTES = 28
+const FRAME_KIND_ROUND = 1
+const FRAME_KIND_CLIENTS = 2
+
+/** 自动重连的退避上限与最多尝试次数 */
+const RECONNECT_MAX_DELAY_MS = 10000
+const RECONNECT_MAX_ATTEMPTS = 10
+
+/** 服务端主动关闭（正常结束、数据非法、鉴权失败）时不重连 */
+const NO_RECONNECT_CODES = [1000, 1007, 1008]
+
 /** 全局唯一活跃连接，切换任务时关闭旧连接 */
 let activeWs: WebSocket | null = null
 
@@ -33,6 +56,19 @@ export interface ClientMessage {
     timestamp?: string | null
 }
 
+export interface ClientBatchMessage {
+    taskId: number
+    clients: ClientMessage[]
+}
+
+export interface TaskSnapshotMessage {
+    taskId: number
+    rounds: RoundMessage[]
+    clients: ClientMessage[]
+    /** 是否覆盖自第 0 轮起的全部 Round；为 false 时需通过接口回填 */
+    complete: boolean
+}
+
 export interface StatusMessage {
     taskId: number
     status: string
@@ -40,37 +76,116 @@ export interface StatusMessage {
     timestamp?: string | null
 }
 
+export interface MetricFrame {
+    seq: number
+    rounds: RoundMessage[]
+    clients: ClientMessage[]
+}
+
+/**
+ * 解码 mhfl.metrics.v1 二进制帧（小端）：
+ * 头 20 字节 = version(u8) + kind(u8, 1=Round 2=Client 批) + count(u16) + taskId(i64) + seq(i64)，
+ * 随后 count 条 28 字节记录 = clientIndex(i32) + roundNum(i32) + loss/accuracy/precision/recall/f1Score(f32×5)，NaN 表示缺失
+ */
+export const decodeMetricFrame = (buffer: ArrayBuffer): MetricFrame | null => {
+    if (buffer.byteLength < FRAME_HEADER_BYTES) return null
+    const view = new DataView(buffer)
+    const kind = view.getUint8(1)
+    const count = view.getUint16(2, true)
+    const taskId = Number(view.getBigInt64(4, true))
+    if (buffer.byteLength < FRAME_HEADER_BYTES + count * FRAME_RECORD_BYTES) return null
+    const metric = (offset: number) => {
+        const v = view.getFloat32(offset, true)
+        return Number.isNaN(v) ? null : v
+    }
+    const frame: MetricFrame = {seq: Number(view.getBigInt64(12, true)), rounds: [], clients: []}
+    for (let i = 0; i < count; i++) {
+        const o = FRAME_HEADER_BYTES + i * FRAME_RECORD_BYTES
+        const values = {
+            taskId,
+            roundNum: view.getInt32(o + 4, true),
+            loss: metric(o + 8),
+            accuracy: metric(o + 12),
+            precision: metric(o + 16),
+            recall: metric(o + 20),
+            f1Score: metric(o + 24),
+            timestamp: null
+        }
+        if (kind === FRAME_KIND_ROUND) {
+            frame.rounds.push(values)
+        } else if (kind === FRAME_KIND_CLIENTS) {
+            frame.clients.push({...values, clientIndex: view.getInt32(o, true)})
+        }
+    }
+    return frame
+}
+
+export interface UseTaskWebSocketOptions {
+    /** 是否请求二进制子协议，默认取 VITE_WS_BINARY */
+    binary?: boolean
+}
+
 export interface UseTaskWebSocketCallbacks {
     onRound: (msg: RoundMessage) => void
     onClient: (msg: ClientMessage) => void
+    /** 合并帧回调；未提供时逐条回调 onClient */
+    onClients?: (msgs: ClientMessage[]) => void
     onStatus: (msg: StatusMessage) => void
+    /** 鉴权后的首帧快照回调 */
+    onSnapshot?: (msg: TaskSnapshotMessage) => void
 }
 
-export const useTaskWebSocket = (taskId: number, callbacks: UseTaskWebSocketCallbacks) => {
+export const useTaskWebSocket = (
+    taskId: number,
+    callbacks: UseTaskWebSocketCallbacks,
+    options: UseTaskWebSocketOptions = {}
+) => {
+    const binary = options.binary ?? BINARY_DEFAULT
     const connected = ref(false)
     let ws: WebSocket | null = null
+    /** 已收到的最后一条推送的 seq，重连时随首包发送 */
+    let lastSeq: number | null = null
+    /** lastSeq 所属的编号纪元 */
+    let lastEpoch: string | null = null
+    let reconnectTimer: ReturnType<typeof setTimeout> | null = null
+    let reconnectAttempts = 0
+
+    const clearReconnect = () => {
+        if (reconnectTimer) {
+            clearTimeout(reconnectTimer)
+            reconnectTimer = null
+        }
+    }
 
     const disconnect = () => {
+        clearReconnect()
         if (activeWs) {
-            activeWs.close()
+            activeWs.close(1000)
             activeWs = null
         }
         ws = null
         connected.value = false
     }
 
-    const connect = () => {
-        if (!Number.isFinite(taskId) || taskId < 1) return
+    const trackSeq = (seq: unknown, epoch?: unknown) => {
+        if (typeof seq === 'number' && Number.isFinite(seq)) lastSeq = seq
+        if (typeof epoch === 'string') lastEpoch = epoch
+    }
+
+    const open = () => {
         const token = takeAccessToken()
         if (!token) return
 
-        disconnect()
+        if (activeWs) activeWs.close(1000)
         const url = `${WS_BASE.replace(/\/$/, '')}/ws/task/${taskId}`
-        ws = new WebSocket(url)
-        activeWs = ws
+        const socket = binary ? new WebSocket(url, [METRICS_SUB_PROTOCOL]) : new WebSocket(url)
+        socket.binaryType = 'arraybuffer'
+        ws = socket
+        activeWs = socket
 
-        ws.onopen = () => {
-            ws?.send(JSON.stringify({token}))
+        socket.onopen = () => {
+            reconnectAttempts = 0
+            socket.send(JSON.stringify(lastSeq == null || lastEpoch == null ? {token} : {token, lastSeq, epoch: lastEpoch}))
         }
 
         const setConnectedAnd = (fn: () => void) => {
@@ -78,15 +193,46 @@ export const useTaskWebSocket = (taskId: number, callbacks: UseTaskWebSocketCall
             fn()
         }
 
-        ws.onmessage = (event) => {
+        const dispatchFrame = (frame: MetricFrame) => {
+            setConnectedAnd(() => {
+                frame.rounds.forEach(callbacks.onRound)
+                if (frame.clients.length === 0) return
+                if (callbacks.onClients) callbacks.onClients(frame.clients)
+                else frame.clients.forEach(callbacks.onClient)
+            })
+        }
+
+        socket.onmessage = (event) => {
+            if (event.data instanceof ArrayBuffer) {
+                const frame = decodeMetricFrame(event.data)
+                if (frame) {
+                    trackSeq(frame.seq)
+                    dispatchFrame(frame)
+                }
+                return
+            }
             try {
                 const data = JSON.parse(event.data)
                 if (data == null || typeof data !== 'object') return
+                trackSeq(data.seq, data.epoch)
 
                 if ('status' in data && typeof data.status === 'string') {
                     setConnectedAnd(() => callbacks.onStatus(data as StatusMessage))
                     return
                 }
+                if (Array.isArray(data.rounds)) {
+                    setConnectedAnd(() => callbacks.onSnapshot?.(data as TaskSnapshotMessage))
+                    return
+                }
+                if (Array.isArray(data.clients)) {
+                    const batch = (data as ClientBatchMessage).clients
+                        .filter((c) => c != null && typeof c.clientIndex === 'number')
+                    setConnectedAnd(() => {
+                        if (callbacks.onClients) callbacks.onClients(batch)
+                        else batch.forEach(callbacks.onClient)
+                    })
+                    return
+                }
                 if ('clientIndex' in data && typeof data.clientIndex === 'number') {
                     setConnectedAnd(() => callbacks.onClient(data as ClientMessage))
                     return
@@ -99,17 +245,34 @@ export const useTaskWebSocket = (taskId: number, callbacks: UseTaskWebSocketCall
             }
         }
 
-        ws.onclose = () => {
-            if (activeWs === ws) activeWs = null
+        socket.onclose = (event) => {
+            if (ws !== socket) return
             connected.value = false
             ws = null
+            if (activeWs === socket) activeWs = null
+            if (NO_RECONNECT_CODES.includes(event.code) || reconnectAttempts >= RECONNECT_MAX_ATTEMPTS) return
+            const delay = Math.min(RECONNECT_MAX_DELAY_MS, 1000 * 2 ** reconnectAttempts)
+            reconnectAttempts++
+            reconnectTimer = setTimeout(() => {
+                reconnectTimer = null
+                open()
+            }, delay)
         }
 
-        ws.onerror = () => {
-            connected.value = false
+        socket.onerror = () => {
+            if (ws === socket) connected.value = false
         }
     }
 
+    const connect = () => {
+        if (!Number.isFinite(taskId) || taskId < 1) return
+        disconnect()
+        lastSeq = null
+        lastEpoch = null
+        reconnectAttempts = 0
+        open()
+    }
+
     onBeforeUnmount(disconnect)
 
     return {connect, disconnect, connected}
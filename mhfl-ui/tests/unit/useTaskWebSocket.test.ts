@@ -0,0 +1,51 @@
+import { describe, expect, it, vi } from 'vitest'
+
+vi.mock('@/utils', () => ({
+  takeAccessToken: () => null,
+}))
+
+import { decodeMetricFrame } from '@/composables/useTaskWebSocket'
+
+const frame = (kind: number, records: Array<[number, number, number[]]>) => {
+  const buffer = new ArrayBuffer(20 + records.length * 28)
+  const view = new DataView(buffer)
+  view.setUint8(0, 2)
+  view.setUint8(1, kind)
+  view.setUint16(2, records.length, true)
+  view.setBigInt64(4, 42n, true)
+  view.setBigInt64(12, 1700000000123n, true)
+  records.forEach(([clientIndex, roundNum, metrics], i) => {
+    const o = 20 + i * 28
+    view.setInt32(o, clientIndex, true)
+    view.setInt32(o + 4, roundNum, true)
+    metrics.forEach((m, j) => view.setFloat32(o + 8 + j * 4, m, true))
+  })
+  return buffer
+}
+
+describe('decodeMetricFrame', () => {
+  it('should decode round frame', () => {
+    const result = decodeMetricFrame(frame(1, [[-1, 3, [0.5, 0.25, 0.75, 1, 0]]]))
+    expect(result?.clients).toHaveLength(0)
+    expect(result?.seq).toBe(1700000000123)
+    expect(result?.rounds).toEqual([
+      { taskId: 42, roundNum: 3, loss: 0.5, accuracy: 0.25, precision: 0.75, recall: 1, f1Score: 0, timestamp: null },
+    ])
+  })
+
+  it('should decode client batch and map NaN to null', () => {
+    const result = decodeMetricFrame(frame(2, [
+      [0, 1, [0.5, NaN, 0.5, 0.5, 0.5]],
+      [7, 1, [0.25, 0.25, 0.25, 0.25, 0.25]],
+    ]))
+    expect(result?.rounds).toHaveLength(0)
+    expect(result?.clients.map((c) => c.clientIndex)).toEqual([0, 7])
+    expect(result?.clients[0].accuracy).toBeNull()
+    expect(result?.clients[1].f1Score).toBe(0.25)
+  })
+
+  it('should return null for truncated frame', () => {
+    expect(decodeMetricFrame(new ArrayBuffer(4))).toBeNull()
+    expect(decodeMetricFrame(frame(2, [[0, 1, [0, 0, 0, 0, 0]]]).slice(0, 28))).toBeNull()
+  })
+})